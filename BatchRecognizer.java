@@ -0,0 +1,177 @@
+package gramatyka;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.IntPredicate;
+
+/**
+ * * Membership of many words in languages of a few grammars.
+ *
+ * Recognizers are built once for every grammar and kept in a cache with
+ * least recently used eviction, keyed by fingerprints of grammars, so equal
+ * grammars created again share one. Words given as ids need the same ids of
+ * terminals, so the number of nonterminals is a part of the key. Words of
+ * a batch are split into chunks recognized on a fork-join pool; results are
+ * passed to a listener in order of the words, as soon as all chunks before
+ * them are done. Every batch measures the time of every word. **
+ */
+public final class BatchRecognizer {
+
+    /* Words recognized by one task. */
+    private static final int CHUNK_SIZE = 256;
+
+    /**
+     * * Receives results of a batch in order of words, in the calling
+     * thread. **
+     */
+    public interface Listener {
+
+        void accept(int index, boolean member);
+    }
+
+    private static final class Key {
+
+        private final GrammarFingerprint fingerprint;
+        private final int nonterminalsCount;
+
+        Key(GrammarFingerprint fingerprint, int nonterminalsCount) {
+            this.fingerprint = fingerprint;
+            this.nonterminalsCount = nonterminalsCount;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && fingerprint.equals(((Key) o).fingerprint)
+                    && nonterminalsCount == ((Key) o).nonterminalsCount;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * fingerprint.hashCode() + nonterminalsCount;
+        }
+    }
+
+    private final ForkJoinPool pool;
+    private final int capacity;
+    /* Access ordered, so the eldest entry is the least recently used. */
+    private final LinkedHashMap<Key, Recognizer> recognizers;
+    private long hits;
+    private long misses;
+
+    BatchRecognizer(int capacity) {
+        this(capacity, ForkJoinPool.commonPool());
+    }
+
+    BatchRecognizer(int capacity, ForkJoinPool pool) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Wrong capacity: " + capacity);
+        }
+        this.capacity = capacity;
+        this.pool = pool;
+        recognizers = new LinkedHashMap<Key, Recognizer>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Recognizer> eldest) {
+                return size() > BatchRecognizer.this.capacity;
+            }
+        };
+    }
+
+    /* Cached recognizer of an equal grammar, or the one of this grammar,
+     * built outside the lock and cached. */
+    public Recognizer recognizerOf(ContextFreeGrammar grammar) {
+        Key key = new Key(grammar.getFingerprint(), grammar.getCompiled().getNonterminalsCount());
+        synchronized (recognizers) {
+            Recognizer recognizer = recognizers.get(key);
+            if (recognizer != null) {
+                hits++;
+                return recognizer;
+            }
+            misses++;
+        }
+        Recognizer recognizer = grammar.getRecognizer();
+        synchronized (recognizers) {
+            Recognizer cached = recognizers.putIfAbsent(key, recognizer);
+            return cached != null ? cached : recognizer;
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getCachedCount() {
+        synchronized (recognizers) {
+            return recognizers.size();
+        }
+    }
+
+    public long getHits() {
+        synchronized (recognizers) {
+            return hits;
+        }
+    }
+
+    public long getMisses() {
+        synchronized (recognizers) {
+            return misses;
+        }
+    }
+
+    public BatchStatistics recognizeAll(ContextFreeGrammar grammar, List<String> words, Listener listener) {
+        Recognizer recognizer = recognizerOf(grammar);
+        return run(words.size(), i -> recognizer.recognize(words.get(i)), listener);
+    }
+
+    /* Words given as ids of terminals in the symbol table of the grammar. */
+    public BatchStatistics recognizeAll(ContextFreeGrammar grammar, int[][] words, Listener listener) {
+        Recognizer recognizer = recognizerOf(grammar);
+        return run(words.length, i -> recognizer.recognize(words[i]), listener);
+    }
+
+    /* Results are stored in results[i] for word i. */
+    public BatchStatistics recognizeAll(ContextFreeGrammar grammar, List<String> words, boolean[] results) {
+        return recognizeAll(grammar, words, (index, member) -> results[index] = member);
+    }
+
+    public BatchStatistics recognizeAll(ContextFreeGrammar grammar, int[][] words, boolean[] results) {
+        return recognizeAll(grammar, words, (index, member) -> results[index] = member);
+    }
+
+    /* Chunks are submitted at once and joined in order; joining makes their
+     * results visible here. If recognition or the listener throws, chunks
+     * not yet started are cancelled. */
+    private BatchStatistics run(int count, IntPredicate member, Listener listener) {
+        long begin = System.nanoTime();
+        boolean[] results = new boolean[count];
+        long[] latencies = new long[count];
+        ForkJoinTask<?>[] chunks = new ForkJoinTask<?>[(count + CHUNK_SIZE - 1) / CHUNK_SIZE];
+        for (int chunk = 0; chunk < chunks.length; chunk++) {
+            int from = chunk * CHUNK_SIZE;
+            int to = Math.min(count, from + CHUNK_SIZE);
+            chunks[chunk] = pool.submit(() -> {
+                for (int i = from; i < to; i++) {
+                    long start = System.nanoTime();
+                    results[i] = member.test(i);
+                    latencies[i] = System.nanoTime() - start;
+                }
+            });
+        }
+        int joined = 0;
+        try {
+            for (; joined < chunks.length; joined++) {
+                chunks[joined].join();
+                for (int i = joined * CHUNK_SIZE, to = Math.min(count, i + CHUNK_SIZE); i < to; i++) {
+                    listener.accept(i, results[i]);
+                }
+            }
+        } finally {
+            for (int chunk = joined + 1; chunk < chunks.length; chunk++) {
+                chunks[chunk].cancel(false);
+            }
+        }
+        return new BatchStatistics(latencies, System.nanoTime() - begin);
+    }
+}
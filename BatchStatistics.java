@@ -0,0 +1,61 @@
+package gramatyka;
+
+import java.util.Arrays;
+
+/**
+ * * Times of a batch of words: the whole batch from submission to the last
+ * result, and recognition of every word, in nanoseconds. Percentiles are
+ * taken by the nearest rank. **
+ */
+public final class BatchStatistics {
+
+    private final int wordsCount;
+    private final long elapsedNanos;
+    /* Times of words, sorted. */
+    private final long[] latencies;
+
+    BatchStatistics(long[] latencies, long elapsedNanos) {
+        this.wordsCount = latencies.length;
+        this.elapsedNanos = elapsedNanos;
+        this.latencies = latencies;
+        Arrays.sort(latencies);
+    }
+
+    public int getWordsCount() {
+        return wordsCount;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /* Words per second. */
+    public double getThroughput() {
+        return elapsedNanos == 0 ? 0 : wordsCount * 1e9 / elapsedNanos;
+    }
+
+    /* Smallest time not exceeded by the given percent of words, 0 for an
+     * empty batch. */
+    public long getLatencyPercentile(double percent) {
+        if (!(percent >= 0 && percent <= 100)) {
+            throw new IllegalArgumentException("Wrong percentile: " + percent);
+        }
+        if (wordsCount == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(percent / 100 * wordsCount);
+        return latencies[Math.max(rank, 1) - 1];
+    }
+
+    public long getMaxLatency() {
+        return wordsCount == 0 ? 0 : latencies[wordsCount - 1];
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Słowa: %d, czas: %.3f ms, przepustowość: %.0f słów/s, "
+                + "opóźnienie p50/p90/p99/max: %.1f/%.1f/%.1f/%.1f µs", wordsCount, elapsedNanos / 1e6,
+                getThroughput(), getLatencyPercentile(50) / 1e3, getLatencyPercentile(90) / 1e3,
+                getLatencyPercentile(99) / 1e3, getMaxLatency() / 1e3);
+    }
+}
@@ -0,0 +1,260 @@
+package gramatyka;
+
+import java.util.Arrays;
+
+/**
+ * * Canonical form of a grammar: the same for grammars which differ only in
+ * names of nonterminals, their order and order of productions.
+ *
+ * Nonterminals reachable from the start variable are numbered in order of
+ * a breadth-first search from it, unreachable ones are left out. Productions
+ * of every nonterminal are visited in order of their symbols: terminals
+ * first, then nonterminals already numbered, then new ones, compared by
+ * a color of their structure. Colors are refined in a few rounds from the
+ * productions of nonterminals and colors of their symbols, as in the
+ * Weisfeiler-Lehman test, so nonterminals are told apart without depending
+ * on the order in which they were given; only ones with equal colors can
+ * still be numbered in the order of the input. Productions of the result are
+ * sorted. Ids of terminals are kept, so their order is part of the form. **
+ */
+final class CanonicalForm {
+
+    /* Rounds of refinement of colors, which only break ties. */
+    private static final int COLOR_ROUNDS = 16;
+
+    private static final long TERMINAL = 0;
+    private static final long NUMBERED = 1;
+    private static final long NEW = 2;
+
+    private final CompiledGrammar compiled;
+    private final int nonterminalsCount;
+    /* Original nonterminal of every canonical one, and canonical id of every
+     * original one, -1 if it's unreachable. */
+    private final int[] nonterminals;
+    private final int[] canonicalIds;
+    private long[] colors;
+    /* Productions in canonical ids, terminals after the canonical
+     * nonterminals, as in CompiledGrammar. */
+    private int[] ruleStart;
+    private int[] productionStart;
+    private int[] symbols;
+
+    private CanonicalForm(CompiledGrammar compiled) {
+        this.compiled = compiled;
+        nonterminalsCount = compiled.getNonterminalsCount();
+        canonicalIds = new int[nonterminalsCount];
+        Arrays.fill(canonicalIds, -1);
+        colorNonterminals();
+        nonterminals = numberNonterminals();
+        sortProductions();
+    }
+
+    static CanonicalForm of(CompiledGrammar compiled) {
+        return new CanonicalForm(compiled);
+    }
+
+    /* Finalizer of SplitMix64. */
+    private static long mix(long h) {
+        h = (h ^ (h >>> 30)) * 0xbf58476d1ce4e5b9L;
+        h = (h ^ (h >>> 27)) * 0x94d049bb133111ebL;
+        return h ^ (h >>> 31);
+    }
+
+    private boolean isReachable(int nonterminal) {
+        return compiled.getAnalysis().isReachable(nonterminal);
+    }
+
+    private void colorNonterminals() {
+        colors = new long[nonterminalsCount];
+        if (nonterminalsCount > 0) {
+            colors[0] = 1;
+        }
+        int classes = Math.min(nonterminalsCount, 2);
+        for (int round = 0; round < COLOR_ROUNDS; round++) {
+            long[] next = new long[nonterminalsCount];
+            for (int nonterminal = 0; nonterminal < nonterminalsCount; nonterminal++) {
+                if (!isReachable(nonterminal)) {
+                    continue;
+                }
+                int start = compiled.rulesStart(nonterminal);
+                long[] productions = new long[compiled.rulesEnd(nonterminal) - start];
+                for (int production = start; production < compiled.rulesEnd(nonterminal); production++) {
+                    long h = mix(compiled.length(production));
+                    for (int i = 0; i < compiled.length(production); i++) {
+                        int symbol = compiled.symbolAt(production, i);
+                        h = mix(h + (compiled.isTerminal(symbol) ? 2L * (symbol - nonterminalsCount) + 1
+                                : 2 * colors[symbol]));
+                    }
+                    productions[production - start] = h;
+                }
+                Arrays.sort(productions);
+                long h = mix(colors[nonterminal]);
+                for (long production : productions) {
+                    h = mix(h + production);
+                }
+                next[nonterminal] = h;
+            }
+            long[] sorted = next.clone();
+            Arrays.sort(sorted);
+            int nextClasses = 0;
+            for (int i = 0; i < sorted.length; i++) {
+                if (i == 0 || sorted[i] != sorted[i - 1]) {
+                    nextClasses++;
+                }
+            }
+            colors = next;
+            if (nextClasses <= classes) {
+                break;
+            }
+            classes = nextClasses;
+        }
+    }
+
+    /* Key of a production as pairs (kind, value) of its symbols. */
+    private long[] key(int production) {
+        long[] key = new long[2 * compiled.length(production)];
+        for (int i = 0; i < compiled.length(production); i++) {
+            int symbol = compiled.symbolAt(production, i);
+            if (compiled.isTerminal(symbol)) {
+                key[2 * i] = TERMINAL;
+                key[2 * i + 1] = symbol - nonterminalsCount;
+            } else if (canonicalIds[symbol] >= 0) {
+                key[2 * i] = NUMBERED;
+                key[2 * i + 1] = canonicalIds[symbol];
+            } else {
+                key[2 * i] = NEW;
+                key[2 * i + 1] = colors[symbol];
+            }
+        }
+        return key;
+    }
+
+    private static int compareKeys(long[] a, long[] b) {
+        for (int i = 0; i < Math.min(a.length, b.length); i++) {
+            int compared = Long.compare(a[i], b[i]);
+            if (compared != 0) {
+                return compared;
+            }
+        }
+        return Integer.compare(a.length, b.length);
+    }
+
+    private int[] numberNonterminals() {
+        int[] order = new int[nonterminalsCount];
+        int count = 0;
+        if (nonterminalsCount > 0) {
+            canonicalIds[0] = 0;
+            order[count++] = 0;
+        }
+        for (int head = 0; head < count; head++) {
+            int nonterminal = order[head];
+            int start = compiled.rulesStart(nonterminal);
+            Integer[] productions = new Integer[compiled.rulesEnd(nonterminal) - start];
+            long[][] keys = new long[productions.length][];
+            for (int i = 0; i < productions.length; i++) {
+                productions[i] = i;
+                keys[i] = key(start + i);
+            }
+            Arrays.sort(productions, (a, b) -> compareKeys(keys[a], keys[b]));
+            for (int i : productions) {
+                int production = start + i;
+                for (int j = 0; j < compiled.length(production); j++) {
+                    int symbol = compiled.symbolAt(production, j);
+                    if (compiled.isNonterminal(symbol) && canonicalIds[symbol] < 0) {
+                        canonicalIds[symbol] = count;
+                        order[count++] = symbol;
+                    }
+                }
+            }
+        }
+        return Arrays.copyOf(order, count);
+    }
+
+    private int canonicalSymbol(int symbol) {
+        return compiled.isTerminal(symbol) ? symbol - nonterminalsCount + nonterminals.length : canonicalIds[symbol];
+    }
+
+    private void sortProductions() {
+        ruleStart = new int[nonterminals.length + 1];
+        int productionsCount = 0;
+        int symbolsCount = 0;
+        for (int nonterminal : nonterminals) {
+            for (int production = compiled.rulesStart(nonterminal); production < compiled.rulesEnd(nonterminal); production++) {
+                productionsCount++;
+                symbolsCount += compiled.length(production);
+            }
+        }
+        productionStart = new int[productionsCount + 1];
+        symbols = new int[symbolsCount];
+        int production = 0;
+        int position = 0;
+        for (int canonical = 0; canonical < nonterminals.length; canonical++) {
+            int nonterminal = nonterminals[canonical];
+            ruleStart[canonical] = production;
+            int start = compiled.rulesStart(nonterminal);
+            int[][] products = new int[compiled.rulesEnd(nonterminal) - start][];
+            for (int i = 0; i < products.length; i++) {
+                products[i] = new int[compiled.length(start + i)];
+                for (int j = 0; j < products[i].length; j++) {
+                    products[i][j] = canonicalSymbol(compiled.symbolAt(start + i, j));
+                }
+            }
+            Arrays.sort(products, Arrays::compare);
+            for (int[] product : products) {
+                productionStart[production++] = position;
+                System.arraycopy(product, 0, symbols, position, product.length);
+                position += product.length;
+            }
+        }
+        ruleStart[nonterminals.length] = production;
+        productionStart[production] = position;
+    }
+
+    /* Number of canonical nonterminals, the reachable ones. */
+    int getNonterminalsCount() {
+        return nonterminals.length;
+    }
+
+    int originalOf(int canonical) {
+        return nonterminals[canonical];
+    }
+
+    /* Canonical id of a nonterminal, -1 if it's unreachable. */
+    int canonicalOf(int nonterminal) {
+        return canonicalIds[nonterminal];
+    }
+
+    int getProductionsCount() {
+        return productionStart.length - 1;
+    }
+
+    int rulesStart(int canonical) {
+        return ruleStart[canonical];
+    }
+
+    int rulesEnd(int canonical) {
+        return ruleStart[canonical + 1];
+    }
+
+    int length(int production) {
+        return productionStart[production + 1] - productionStart[production];
+    }
+
+    int symbolAt(int production, int position) {
+        return symbols[productionStart[production] + position];
+    }
+
+    /* Grammar of the canonical form, with names of the original symbols. */
+    CompiledGrammar toCompiled() throws ConstructorException {
+        String[] nonterminalsNames = new String[nonterminals.length];
+        for (int canonical = 0; canonical < nonterminals.length; canonical++) {
+            nonterminalsNames[canonical] = compiled.nameOf(nonterminals[canonical]);
+        }
+        String[] terminalsNames = new String[compiled.getTerminalsCount()];
+        for (int terminal = 0; terminal < terminalsNames.length; terminal++) {
+            terminalsNames[terminal] = compiled.nameOf(nonterminalsCount + terminal);
+        }
+        return new CompiledGrammar(new SymbolTable(terminalsNames, nonterminalsNames), ruleStart.clone(),
+                productionStart.clone(), symbols.clone());
+    }
+}
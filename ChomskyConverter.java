@@ -0,0 +1,545 @@
+package gramatyka;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * * Conversion of any context-free grammar to Chomsky normal form, in the
+ * order START, TERM, BIN, DEL, UNIT, which keeps the grammar linear in its
+ * size before UNIT; UNIT makes it O(|G|^2) at most.
+ *
+ * Grammars in Chomsky normal form have no empty productions here, so the
+ * result generates the language without the empty word. The new start
+ * variable of START only protects an empty production of the start, so it is
+ * not needed and the start variable stays first. TERM replaces terminals in
+ * longer productions with new nonterminals T_a -> a, BIN splits productions
+ * longer than two into chains of new nonterminals and DEL adds versions of
+ * productions without nullable nonterminals; as every production has at most
+ * two symbols by then, DEL at most doubles the productions. UNIT first
+ * replaces every cycle of unit productions, a strongly connected component
+ * of the unit graph, by one of its nonterminals, as they all derive the same
+ * words, and then gives every nonterminal the other productions of all
+ * nonterminals reachable from it through unit productions, found by
+ * a search of the unit graph. That is still quadratic for long chains of
+ * unit productions: every nonterminal of a chain gets the productions of all
+ * after it. Useless nonterminals are removed at the end.
+ *
+ * Nonterminals are numbered from 0, originals first and then new ones in
+ * order of creation, and terminal t (counting among terminals) is -1 - t. **
+ */
+class ChomskyConverter {
+
+    private final CompiledGrammar compiled;
+    private final int originalsCount;
+    private final List<List<int[]>> rules = new ArrayList<>();
+    /* Name of every new nonterminal made of the name of its origin: the
+     * terminal for TERM (as -1 - t) or the nonterminal for BIN. */
+    private final List<Integer> origins = new ArrayList<>();
+    private final Instrumentation instrumentation;
+
+    ChomskyConverter(ContextFreeGrammar grammar) {
+        compiled = grammar.getCompiled();
+        originalsCount = compiled.getNonterminalsCount();
+        instrumentation = Instrumentation.begin(compiled);
+    }
+
+    private static boolean isNonterminal(int symbol) {
+        return symbol >= 0;
+    }
+
+    private int addNonterminal(int origin, List<int[]> products) {
+        rules.add(products);
+        origins.add(origin);
+        return rules.size() - 1;
+    }
+
+    private void loadRules() {
+        for (int lhs = 0; lhs < originalsCount; lhs++) {
+            List<int[]> products = new ArrayList<>();
+            for (int production = compiled.rulesStart(lhs); production < compiled.rulesEnd(lhs); production++) {
+                int[] product = new int[compiled.length(production)];
+                for (int i = 0; i < product.length; i++) {
+                    int symbol = compiled.symbolAt(production, i);
+                    product[i] = compiled.isNonterminal(symbol) ? symbol : originalsCount - 1 - symbol;
+                }
+                products.add(product);
+            }
+            rules.add(products);
+        }
+    }
+
+    /* Terminals in productions of at least two symbols are replaced with
+     * T_a -> a, one for every terminal. */
+    private void eliminateTerminals() {
+        int[] wrappers = new int[compiled.getTerminalsCount()];
+        Arrays.fill(wrappers, CompiledGrammar.UNKNOWN);
+        for (int lhs = 0; lhs < originalsCount; lhs++) {
+            for (int[] product : rules.get(lhs)) {
+                if (product.length < 2) {
+                    continue;
+                }
+                for (int i = 0; i < product.length; i++) {
+                    int terminal = -1 - product[i];
+                    if (isNonterminal(product[i])) {
+                        continue;
+                    }
+                    if (wrappers[terminal] == CompiledGrammar.UNKNOWN) {
+                        List<int[]> products = new ArrayList<>();
+                        products.add(new int[]{product[i]});
+                        wrappers[terminal] = addNonterminal(product[i], products);
+                    }
+                    product[i] = wrappers[terminal];
+                }
+            }
+        }
+    }
+
+    /* A -> X1 X2 .. Xk becomes A -> X1 A_1, A_1 -> X2 A_2, .., A_k-2 -> Xk-1 Xk. */
+    private void splitLongProductions() {
+        for (int lhs = 0; lhs < originalsCount; lhs++) {
+            List<int[]> products = rules.get(lhs);
+            for (int i = 0; i < products.size(); i++) {
+                int[] product = products.get(i);
+                if (product.length <= 2) {
+                    continue;
+                }
+                int next = product[product.length - 1];
+                for (int j = product.length - 2; j >= 1; j--) {
+                    List<int[]> chain = new ArrayList<>();
+                    chain.add(new int[]{product[j], next});
+                    next = addNonterminal(lhs, chain);
+                }
+                products.set(i, new int[]{product[0], next});
+            }
+        }
+    }
+
+    /**
+     * * Nonterminals deriving a word in which terminals are allowed or not,
+     * which gives productive or nullable nonterminals. Every production keeps
+     * the number of its nonterminals not yet known to derive one, and when it
+     * drops to zero, its left-hand side is queued, which takes time linear in
+     * the size of the grammar. **
+     */
+    private boolean[] derivingNonterminals(boolean terminalsAllowed) {
+        int nonterminalsCount = rules.size();
+        int productionsCount = 0;
+        int[] occurrencesStart = new int[nonterminalsCount + 1];
+        for (List<int[]> products : rules) {
+            for (int[] product : products) {
+                productionsCount++;
+                for (int symbol : product) {
+                    if (isNonterminal(symbol)) {
+                        occurrencesStart[symbol + 1]++;
+                    }
+                }
+            }
+        }
+        for (int i = 0; i < nonterminalsCount; i++) {
+            occurrencesStart[i + 1] += occurrencesStart[i];
+        }
+        /* Productions with every nonterminal, numbered in order of rules. */
+        int[] occurrences = new int[occurrencesStart[nonterminalsCount]];
+        int[] filled = Arrays.copyOf(occurrencesStart, nonterminalsCount);
+        int[] lhsOf = new int[productionsCount];
+        int[] unresolved = new int[productionsCount];
+        boolean[] deriving = new boolean[nonterminalsCount];
+        int[] queue = new int[nonterminalsCount];
+        int queueEnd = 0;
+        int production = 0;
+        for (int lhs = 0; lhs < nonterminalsCount; lhs++) {
+            for (int[] product : rules.get(lhs)) {
+                lhsOf[production] = lhs;
+                for (int symbol : product) {
+                    if (isNonterminal(symbol)) {
+                        occurrences[filled[symbol]++] = production;
+                        unresolved[production]++;
+                    } else if (!terminalsAllowed) {
+                        /* Never resolved. */
+                        unresolved[production] = product.length + 1;
+                    }
+                }
+                if (unresolved[production] == 0 && !deriving[lhs]) {
+                    deriving[lhs] = true;
+                    queue[queueEnd++] = lhs;
+                }
+                production++;
+            }
+        }
+        for (int queueStart = 0; queueStart < queueEnd; queueStart++) {
+            int nonterminal = queue[queueStart];
+            for (int i = occurrencesStart[nonterminal]; i < occurrencesStart[nonterminal + 1]; i++) {
+                int lhs = lhsOf[occurrences[i]];
+                if (--unresolved[occurrences[i]] == 0 && !deriving[lhs]) {
+                    deriving[lhs] = true;
+                    queue[queueEnd++] = lhs;
+                }
+            }
+        }
+        return deriving;
+    }
+
+    /* Key of a production of at most two symbols, for removing duplicates. */
+    private long key(int[] product) {
+        int offset = compiled.getTerminalsCount() + 1;
+        long first = product.length > 0 ? product[0] + offset : 0;
+        long second = product.length > 1 ? product[1] + offset : 0;
+        return first << 32 | second;
+    }
+
+    /* Empty productions are removed and every production gets versions
+     * without its nullable nonterminals; unit productions A -> A are dropped. */
+    private void eliminateEmptyProductions() {
+        boolean[] nullable = derivingNonterminals(false);
+        for (int lhs = 0; lhs < rules.size(); lhs++) {
+            List<int[]> products = new ArrayList<>();
+            Set<Long> keys = new HashSet<>();
+            for (int[] product : rules.get(lhs)) {
+                if (product.length == 2) {
+                    if (isNonterminal(product[0]) && nullable[product[0]]) {
+                        addProduct(lhs, products, keys, new int[]{product[1]});
+                    }
+                    if (isNonterminal(product[1]) && nullable[product[1]]) {
+                        addProduct(lhs, products, keys, new int[]{product[0]});
+                    }
+                }
+                if (product.length > 0) {
+                    addProduct(lhs, products, keys, product);
+                }
+            }
+            rules.set(lhs, products);
+        }
+    }
+
+    private void addProduct(int lhs, List<int[]> products, Set<Long> keys, int[] product) {
+        if (product.length == 1 && product[0] == lhs) {
+            return;
+        }
+        if (keys.add(key(product))) {
+            products.add(product);
+        }
+    }
+
+    /* Targets of unit productions of every nonterminal, null if there are
+     * none at all. */
+    private int[][] unitsOf() {
+        int nonterminalsCount = rules.size();
+        int[][] units = new int[nonterminalsCount][];
+        boolean anyUnit = false;
+        for (int lhs = 0; lhs < nonterminalsCount; lhs++) {
+            int count = 0;
+            for (int[] product : rules.get(lhs)) {
+                count += product.length == 1 && isNonterminal(product[0]) ? 1 : 0;
+            }
+            units[lhs] = new int[count];
+            count = 0;
+            for (int[] product : rules.get(lhs)) {
+                if (product.length == 1 && isNonterminal(product[0])) {
+                    units[lhs][count++] = product[0];
+                }
+            }
+            anyUnit |= count > 0;
+        }
+        return anyUnit ? units : null;
+    }
+
+    /* First nonterminal of the strongly connected component of the unit
+     * graph of every nonterminal, by Tarjan's algorithm without recursion;
+     * null if every component is a single nonterminal. */
+    private static int[] unitComponents(int[][] units) {
+        int nonterminalsCount = units.length;
+        int[] index = new int[nonterminalsCount];
+        int[] low = new int[nonterminalsCount];
+        int[] component = new int[nonterminalsCount];
+        Arrays.fill(index, -1);
+        int[] stack = new int[nonterminalsCount];
+        int stackSize = 0;
+        boolean[] onStack = new boolean[nonterminalsCount];
+        /* Nonterminals of the search with the next unit production of each. */
+        int[] path = new int[nonterminalsCount];
+        int[] nextUnit = new int[nonterminalsCount];
+        int counter = 0;
+        boolean anyCycle = false;
+        for (int root = 0; root < nonterminalsCount; root++) {
+            if (index[root] >= 0) {
+                continue;
+            }
+            int depth = 0;
+            path[0] = root;
+            nextUnit[0] = 0;
+            index[root] = low[root] = counter++;
+            stack[stackSize++] = root;
+            onStack[root] = true;
+            while (depth >= 0) {
+                int nonterminal = path[depth];
+                if (nextUnit[depth] < units[nonterminal].length) {
+                    int target = units[nonterminal][nextUnit[depth]++];
+                    if (index[target] < 0) {
+                        index[target] = low[target] = counter++;
+                        stack[stackSize++] = target;
+                        onStack[target] = true;
+                        path[++depth] = target;
+                        nextUnit[depth] = 0;
+                    } else if (onStack[target]) {
+                        low[nonterminal] = Math.min(low[nonterminal], index[target]);
+                    }
+                    continue;
+                }
+                if (low[nonterminal] == index[nonterminal]) {
+                    int first = nonterminal;
+                    int size = 0;
+                    for (int i = stackSize - 1; stack[i] != nonterminal; i--) {
+                        first = Math.min(first, stack[i]);
+                        size++;
+                    }
+                    anyCycle |= size > 0;
+                    int member;
+                    do {
+                        member = stack[--stackSize];
+                        onStack[member] = false;
+                        component[member] = first;
+                    } while (member != nonterminal);
+                }
+                depth--;
+                if (depth >= 0) {
+                    low[path[depth]] = Math.min(low[path[depth]], low[nonterminal]);
+                }
+            }
+        }
+        return anyCycle ? component : null;
+    }
+
+    /* Every nonterminal of a component is replaced by the first one, which
+     * takes the productions of all of them; the others are left without
+     * productions. The start variable is first of its component. */
+    private void collapseUnitCycles(int[] component) {
+        List<List<int[]>> newRules = new ArrayList<>();
+        List<Set<Long>> keys = new ArrayList<>();
+        for (int lhs = 0; lhs < rules.size(); lhs++) {
+            newRules.add(new ArrayList<>());
+            keys.add(component[lhs] == lhs ? new HashSet<>() : null);
+        }
+        for (int lhs = 0; lhs < rules.size(); lhs++) {
+            int first = component[lhs];
+            for (int[] product : rules.get(lhs)) {
+                int[] newProduct = product;
+                for (int i = 0; i < product.length; i++) {
+                    if (isNonterminal(product[i]) && component[product[i]] != product[i]) {
+                        if (newProduct == product) {
+                            newProduct = product.clone();
+                        }
+                        newProduct[i] = component[product[i]];
+                    }
+                }
+                if (newProduct.length == 1 && newProduct[0] == first) {
+                    continue;
+                }
+                if (keys.get(first).add(key(newProduct))) {
+                    newRules.get(first).add(newProduct);
+                }
+            }
+        }
+        rules.clear();
+        rules.addAll(newRules);
+    }
+
+    /* Every nonterminal gets other productions of nonterminals reachable
+     * through unit productions, which are removed. */
+    private void eliminateUnitProductions() {
+        int[][] units = unitsOf();
+        if (units == null) {
+            return;
+        }
+        int[] component = unitComponents(units);
+        if (component != null) {
+            collapseUnitCycles(component);
+            units = unitsOf();
+            if (units == null) {
+                return;
+            }
+        }
+        int nonterminalsCount = rules.size();
+        List<List<int[]>> newRules = new ArrayList<>();
+        /* Search of the unit graph; visited[B] == lhs + 1 if B was reached
+         * from lhs. */
+        int[] visited = new int[nonterminalsCount];
+        int[] queue = new int[nonterminalsCount];
+        for (int lhs = 0; lhs < nonterminalsCount; lhs++) {
+            List<int[]> products = new ArrayList<>();
+            if (units[lhs].length == 0) {
+                products.addAll(rules.get(lhs));
+                newRules.add(products);
+                continue;
+            }
+            Set<Long> keys = new HashSet<>();
+            int queueEnd = 0;
+            queue[queueEnd++] = lhs;
+            visited[lhs] = lhs + 1;
+            for (int queueStart = 0; queueStart < queueEnd; queueStart++) {
+                int nonterminal = queue[queueStart];
+                for (int[] product : rules.get(nonterminal)) {
+                    if (product.length == 1 && isNonterminal(product[0])) {
+                        if (visited[product[0]] != lhs + 1) {
+                            visited[product[0]] = lhs + 1;
+                            queue[queueEnd++] = product[0];
+                        }
+                    } else if (keys.add(key(product))) {
+                        products.add(product);
+                    }
+                }
+            }
+            newRules.add(products);
+        }
+        rules.clear();
+        rules.addAll(newRules);
+    }
+
+    /* Nonterminals both productive and reachable from the start. */
+    private boolean[] usefulNonterminals() throws ConstructorException {
+        int nonterminalsCount = rules.size();
+        boolean[] productive = derivingNonterminals(true);
+        if (!productive[0]) {
+            throw new ConstructorException("Empty language");
+        }
+
+        boolean[] useful = new boolean[nonterminalsCount];
+        int[] queue = new int[nonterminalsCount];
+        int queueEnd = 0;
+        useful[0] = true;
+        queue[queueEnd++] = 0;
+        for (int queueStart = 0; queueStart < queueEnd; queueStart++) {
+            for (int[] product : rules.get(queue[queueStart])) {
+                if (!allProductive(product, productive)) {
+                    continue;
+                }
+                for (int symbol : product) {
+                    if (isNonterminal(symbol) && !useful[symbol]) {
+                        useful[symbol] = true;
+                        queue[queueEnd++] = symbol;
+                    }
+                }
+            }
+        }
+        return useful;
+    }
+
+    private static boolean allProductive(int[] product, boolean[] productive) {
+        for (int symbol : product) {
+            if (isNonterminal(symbol) && !productive[symbol]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /* Original nonterminals keep their names. New ones get free letters if
+     * there are enough of them, otherwise names made of their origins. */
+    private NormalChomskyGrammar castRules(boolean[] useful) throws ConstructorException {
+        SymbolTable symbolTable = compiled.getSymbolTable();
+        int usefulCount = 0;
+        int usefulNew = 0;
+        for (int nonterminal = 0; nonterminal < useful.length; nonterminal++) {
+            if (useful[nonterminal]) {
+                usefulCount++;
+                usefulNew += nonterminal < originalsCount ? 0 : 1;
+            }
+        }
+        int freeLetters = 0;
+        for (char letter = 'A'; letter <= 'Z'; letter++) {
+            freeLetters += symbolTable.idOf(letter) == SymbolTable.UNKNOWN ? 1 : 0;
+        }
+        boolean letters = symbolTable.hasSingleCharacterNames() && usefulNew <= freeLetters;
+
+        SymbolTable.Builder builder = new SymbolTable.Builder(symbolTable);
+        int[] newIds = new int[useful.length];
+        char freeLetter = 'A';
+        int[] splits = new int[originalsCount];
+        for (int nonterminal = 0; nonterminal < useful.length; nonterminal++) {
+            if (!useful[nonterminal]) {
+                continue;
+            }
+            if (nonterminal < originalsCount) {
+                newIds[nonterminal] = builder.addNonterminal(compiled.nameOf(nonterminal));
+            } else if (letters) {
+                while (symbolTable.idOf(freeLetter) != SymbolTable.UNKNOWN) {
+                    freeLetter++;
+                }
+                newIds[nonterminal] = builder.addNonterminal(String.valueOf(freeLetter++));
+            } else {
+                int origin = origins.get(nonterminal - originalsCount);
+                String name = isNonterminal(origin) ? compiled.nameOf(origin) + "_" + ++splits[origin]
+                        : "T_" + compiled.nameOf(originalsCount - 1 - origin);
+                newIds[nonterminal] = builder.addFreshNonterminal(name);
+            }
+        }
+        for (int symbol = originalsCount; symbol < compiled.getSymbolsCount(); symbol++) {
+            builder.addTerminal(compiled.nameOf(symbol));
+        }
+
+        int[][][] rulesArray = new int[usefulCount][][];
+        for (int nonterminal = 0; nonterminal < useful.length; nonterminal++) {
+            if (!useful[nonterminal]) {
+                continue;
+            }
+            List<int[]> products = new ArrayList<>();
+            for (int[] product : rules.get(nonterminal)) {
+                boolean allUseful = true;
+                int[] newProduct = new int[product.length];
+                for (int i = 0; i < product.length; i++) {
+                    if (isNonterminal(product[i])) {
+                        allUseful &= useful[product[i]];
+                        newProduct[i] = newIds[product[i]];
+                    } else {
+                        newProduct[i] = usefulCount - 1 - product[i];
+                    }
+                }
+                if (allUseful) {
+                    products.add(newProduct);
+                }
+            }
+            rulesArray[newIds[nonterminal]] = products.toArray(new int[0][]);
+        }
+        /* Every nonterminal left is productive. */
+        CompiledGrammar result = CompiledGrammar.compile(builder.build(), rulesArray);
+        result.getAnalysis().setContextFree();
+        return new NormalChomskyGrammar(new ContextFreeGrammar(result));
+    }
+
+    private void startPhase() {
+        if (instrumentation != null) {
+            instrumentation.startPhase(rules, Math.max(rules.size(), originalsCount));
+        }
+    }
+
+    /* Productions of useful nonterminals once they are known. */
+    private void finishPhase(String phase, boolean[] useful) {
+        if (instrumentation != null) {
+            instrumentation.finishPhase(phase, rules, useful, Math.max(rules.size(), originalsCount));
+        }
+    }
+
+    public NormalChomskyGrammar convert() throws ConstructorException {
+        startPhase();
+        loadRules();
+        finishPhase("loadRules", null);
+        startPhase();
+        eliminateTerminals();
+        finishPhase("eliminateTerminals", null);
+        startPhase();
+        splitLongProductions();
+        finishPhase("splitLongProductions", null);
+        startPhase();
+        eliminateEmptyProductions();
+        finishPhase("eliminateEmptyProductions", null);
+        startPhase();
+        eliminateUnitProductions();
+        finishPhase("eliminateUnitProductions", null);
+        startPhase();
+        boolean[] useful = usefulNonterminals();
+        finishPhase("usefulNonterminals", useful);
+        return castRules(useful);
+    }
+}
@@ -0,0 +1,290 @@
+package gramatyka;
+
+import java.util.Arrays;
+
+/**
+ * * Grammar with every symbol mapped to a dense int id, built once for every
+ * ContextFreeGrammar.
+ *
+ * Ids of symbols come from the symbol table: nonterminals are 0..N-1, so the
+ * start variable is 0, and terminals are N..N+T-1. Productions are stored
+ * one after another in a flat int array: production p takes
+ * symbols[productionStart[p]..productionStart[p + 1] - 1] and productions of
+ * nonterminal A are ruleStart[A]..ruleStart[A + 1] - 1. **
+ */
+public final class CompiledGrammar {
+
+    public static final int UNKNOWN = SymbolTable.UNKNOWN;
+
+    private final SymbolTable symbolTable;
+    private final int nonterminalsCount;
+    private final int symbolsCount;
+    private final int productionsCount;
+    private final int[] ruleStart;
+    private final int[] productionStart;
+    private final int[] productionLhs;
+    private final int[] symbols;
+    private final GrammarAnalysis analysis;
+    private volatile CanonicalForm canonicalForm;
+    private volatile GrammarFingerprint fingerprint;
+
+    /* Doesn't validate rules: unknown symbols are left for the grammar
+     * to report. */
+    CompiledGrammar(SymbolTable symbolTable, int[] ruleStart, int[] productionStart, int[] symbols) {
+        this(symbolTable, ruleStart, productionStart, lhsOf(symbolTable, ruleStart, productionStart), symbols);
+    }
+
+    /* Arrays are shared, not copied, so they must not change later. */
+    CompiledGrammar(SymbolTable symbolTable, int[] ruleStart, int[] productionStart, int[] productionLhs,
+            int[] symbols) {
+        this(symbolTable, ruleStart, productionStart, productionLhs, symbols, productionLhs.length);
+    }
+
+    /* Arrays may be longer than the productionsCount productions need; the
+     * rest of them is never read. */
+    CompiledGrammar(SymbolTable symbolTable, int[] ruleStart, int[] productionStart, int[] productionLhs,
+            int[] symbols, int productionsCount) {
+        this.symbolTable = symbolTable;
+        this.nonterminalsCount = symbolTable.getNonterminalsCount();
+        this.symbolsCount = symbolTable.getSymbolsCount();
+        this.productionsCount = productionsCount;
+        this.ruleStart = ruleStart;
+        this.productionStart = productionStart;
+        this.productionLhs = productionLhs;
+        this.symbols = symbols;
+        analysis = new GrammarAnalysis(this);
+    }
+
+    private static int[] lhsOf(SymbolTable symbolTable, int[] ruleStart, int[] productionStart) {
+        int[] productionLhs = new int[productionStart.length - 1];
+        for (int lhs = 0; lhs < symbolTable.getNonterminalsCount(); lhs++) {
+            Arrays.fill(productionLhs, ruleStart[lhs], ruleStart[lhs + 1], lhs);
+        }
+        return productionLhs;
+    }
+
+    /* rules[A] are productions of nonterminal A, as arrays of symbol ids. */
+    static CompiledGrammar compile(SymbolTable symbolTable, int[][][] rules) {
+        int nonterminalsCount = symbolTable.getNonterminalsCount();
+        int productionsCount = 0;
+        int symbolsCount = 0;
+        for (int[][] products : rules) {
+            productionsCount += products.length;
+            for (int[] product : products) {
+                symbolsCount += product.length;
+            }
+        }
+        int[] ruleStart = new int[nonterminalsCount + 1];
+        int[] productionStart = new int[productionsCount + 1];
+        int[] symbols = new int[symbolsCount];
+
+        int production = 0;
+        int position = 0;
+        for (int lhs = 0; lhs < nonterminalsCount; lhs++) {
+            ruleStart[lhs] = production;
+            for (int[] product : rules[lhs]) {
+                productionStart[production++] = position;
+                for (int symbol : product) {
+                    symbols[position++] = symbol >= 0 && symbol < symbolTable.getSymbolsCount() ? symbol : UNKNOWN;
+                }
+            }
+        }
+        ruleStart[nonterminalsCount] = production;
+        productionStart[production] = position;
+        return new CompiledGrammar(symbolTable, ruleStart, productionStart, symbols);
+    }
+
+    /* Every character of a product is a symbol; characters outside the
+     * alphabet are UNKNOWN. */
+    static CompiledGrammar compile(SymbolTable symbolTable, String[][] rules) {
+        int[][][] symbolRules = new int[rules.length][][];
+        for (int lhs = 0; lhs < rules.length; lhs++) {
+            symbolRules[lhs] = new int[rules[lhs].length][];
+            for (int i = 0; i < rules[lhs].length; i++) {
+                String product = rules[lhs][i];
+                int[] symbols = new int[product.length()];
+                for (int j = 0; j < symbols.length; j++) {
+                    symbols[j] = symbolTable.idOf(product.charAt(j));
+                }
+                symbolRules[lhs][i] = symbols;
+            }
+        }
+        return compile(symbolTable, symbolRules);
+    }
+
+    public SymbolTable getSymbolTable() {
+        return symbolTable;
+    }
+
+    /* Properties of the grammar computed on first use, shared by every
+     * grammar built on these rules. */
+    public GrammarAnalysis getAnalysis() {
+        return analysis;
+    }
+
+    /* Computed on first use, as the fingerprint; racing threads compute
+     * equal ones. */
+    CanonicalForm getCanonicalForm() {
+        CanonicalForm result = canonicalForm;
+        if (result == null) {
+            result = CanonicalForm.of(this);
+            canonicalForm = result;
+        }
+        return result;
+    }
+
+    public GrammarFingerprint getFingerprint() {
+        GrammarFingerprint result = fingerprint;
+        if (result == null) {
+            result = GrammarFingerprint.of(this);
+            fingerprint = result;
+        }
+        return result;
+    }
+
+    /* Fingerprint known before, as one read with the rules. */
+    void setFingerprint(GrammarFingerprint fingerprint) {
+        this.fingerprint = fingerprint;
+    }
+
+    public int getNonterminalsCount() {
+        return nonterminalsCount;
+    }
+
+    public int getTerminalsCount() {
+        return symbolsCount - nonterminalsCount;
+    }
+
+    public int getSymbolsCount() {
+        return symbolsCount;
+    }
+
+    public int getProductionsCount() {
+        return productionsCount;
+    }
+
+    public int symbolOf(char c) {
+        return symbolTable.idOf(c);
+    }
+
+    public String nameOf(int symbol) {
+        return symbolTable.nameOf(symbol);
+    }
+
+    public boolean isNonterminal(int symbol) {
+        return symbol >= 0 && symbol < nonterminalsCount;
+    }
+
+    public boolean isTerminal(int symbol) {
+        return symbol >= nonterminalsCount && symbol < symbolsCount;
+    }
+
+    /* First production of a nonterminal. */
+    public int rulesStart(int nonterminal) {
+        return ruleStart[nonterminal];
+    }
+
+    /* Production after the last one of a nonterminal. */
+    public int rulesEnd(int nonterminal) {
+        return ruleStart[nonterminal + 1];
+    }
+
+    public int lhs(int production) {
+        return productionLhs[production];
+    }
+
+    public int length(int production) {
+        return productionStart[production + 1] - productionStart[production];
+    }
+
+    public int symbolAt(int production, int position) {
+        return symbols[productionStart[production] + position];
+    }
+
+    int maxProductionLength() {
+        int max = 0;
+        for (int production = 0; production < getProductionsCount(); production++) {
+            max = Math.max(max, length(production));
+        }
+        return max;
+    }
+
+    /* Production as in descriptions of grammars, for messages. */
+    String productionToString(int production) {
+        StringBuilder sb = new StringBuilder(nameOf(productionLhs[production])).append(" -> ");
+        if (length(production) == 0) {
+            sb.append("&");
+        }
+        for (int i = 0; i < length(production); i++) {
+            if (i > 0 && !symbolTable.hasSingleCharacterNames()) {
+                sb.append(' ');
+            }
+            sb.append(nameOf(symbolAt(production, i)));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * * Nonterminals from which a word can be derived: any word, which gives
+     * productive nonterminals, or with terminalsAllowed false only the empty
+     * one, which gives nullable nonterminals.
+     *
+     * Every production keeps a number of occurrences of nonterminals not yet
+     * known to derive a word, and one more if it has a terminal that is not
+     * allowed. A nonterminal derives a word when one of its productions drops
+     * to zero, and then its occurrences are resolved through the reverse
+     * occurrence lists, so every occurrence is visited once. **
+     */
+    boolean[] derivingNonterminals(boolean terminalsAllowed) {
+        int productionsCount = getProductionsCount();
+        int[] unresolved = new int[productionsCount];
+        int[] occurrencesStart = new int[nonterminalsCount + 1];
+        for (int production = 0; production < productionsCount; production++) {
+            boolean blocked = false;
+            for (int i = productionStart[production]; i < productionStart[production + 1]; i++) {
+                if (isNonterminal(symbols[i])) {
+                    unresolved[production]++;
+                    occurrencesStart[symbols[i] + 1]++;
+                } else if (!terminalsAllowed) {
+                    blocked = true;
+                }
+            }
+            if (blocked) {
+                unresolved[production]++;
+            }
+        }
+        for (int nonterminal = 0; nonterminal < nonterminalsCount; nonterminal++) {
+            occurrencesStart[nonterminal + 1] += occurrencesStart[nonterminal];
+        }
+        int[] occurrences = new int[occurrencesStart[nonterminalsCount]];
+        int[] filled = Arrays.copyOf(occurrencesStart, nonterminalsCount);
+        for (int production = 0; production < productionsCount; production++) {
+            for (int i = productionStart[production]; i < productionStart[production + 1]; i++) {
+                if (isNonterminal(symbols[i])) {
+                    occurrences[filled[symbols[i]]++] = production;
+                }
+            }
+        }
+
+        boolean[] deriving = new boolean[nonterminalsCount];
+        int[] queue = new int[nonterminalsCount];
+        int queueEnd = 0;
+        for (int production = 0; production < productionsCount; production++) {
+            if (unresolved[production] == 0 && !deriving[productionLhs[production]]) {
+                deriving[productionLhs[production]] = true;
+                queue[queueEnd++] = productionLhs[production];
+            }
+        }
+        for (int queueStart = 0; queueStart < queueEnd; queueStart++) {
+            int nonterminal = queue[queueStart];
+            for (int i = occurrencesStart[nonterminal]; i < occurrencesStart[nonterminal + 1]; i++) {
+                int production = occurrences[i];
+                if (--unresolved[production] == 0 && !deriving[productionLhs[production]]) {
+                    deriving[productionLhs[production]] = true;
+                    queue[queueEnd++] = productionLhs[production];
+                }
+            }
+        }
+        return deriving;
+    }
+}
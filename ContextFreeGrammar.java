@@ -1,45 +1,119 @@
 package gramatyka;
 
-import java.util.Arrays;
-import java.util.HashSet;
-import java.util.Iterator;
-import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class ContextFreeGrammar {
 
-    private final String terminals;
-    private final String nonterminals;
-    private final String[][] rules;
+    /* Largest automaton built for the default recognizer of a regular grammar. */
+    private static final int RECOGNIZER_STATES_LIMIT = 1 << 16;
+    /* Largest LALR(1) tables built for the default recognizer, in cells. */
+    private static final long RECOGNIZER_TABLE_LIMIT = 1 << 22;
+
     private final boolean isRegular;
+    private final CompiledGrammar compiled;
+    private Recognizer recognizer;
+    private Dfa dfa;
+    private Ll1Table ll1Table;
+    private Lalr1Table lalr1Table;
 
-    private ContextFreeGrammar(String terminals, String nonterminals, String[][] rules, boolean isRegular) throws ConstructorException {
-        this.terminals = terminals;
-        this.nonterminals = nonterminals;
-        this.rules = rules;
+    private ContextFreeGrammar(CompiledGrammar compiled, boolean isRegular) throws ConstructorException {
         this.isRegular = isRegular;
+        this.compiled = compiled;
         checkIfContextFree();
     }
 
+    /* Rules built by a converter, which may mark what it knows about them
+     * in the analysis before, as being context-free. */
+    ContextFreeGrammar(CompiledGrammar compiled) throws ConstructorException {
+        this(compiled, false);
+    }
+
     protected ContextFreeGrammar(ContextFreeGrammar grammar, boolean isRegular) throws ConstructorException {
-        this(grammar.getTerminals(), grammar.getNonterminals(), grammar.getRules(), isRegular);
+        this(grammar.compiled, isRegular);
     }
 
     ContextFreeGrammar(String terminals, String nonterminals, String[][] rules) throws ConstructorException {
-        this(terminals, nonterminals, rules, false);
+        this(compile(terminals, nonterminals, rules), false);
+    }
+
+    /* rules[A] are productions of nonterminal A, as arrays of symbol ids. */
+    ContextFreeGrammar(SymbolTable symbolTable, int[][][] rules) throws ConstructorException {
+        this(compile(symbolTable, rules), false);
+    }
+
+    /* rules[A] are productions of nonterminal A, as arrays of symbol names. */
+    ContextFreeGrammar(String[] terminals, String[] nonterminals, String[][][] rules) throws ConstructorException {
+        this(compile(new SymbolTable(terminals, nonterminals), rules), false);
+    }
+
+    private static CompiledGrammar compile(String terminals, String nonterminals, String[][] rules) throws ConstructorException {
+        if (!StringUtils.allCharactersLowerCase(terminals) || !StringUtils.allCharactersUnique(terminals)) {
+            throw new ConstructorException("Wrong terminals");
+        }
+        if (!StringUtils.allCharactersUpperCase(nonterminals) || !StringUtils.allCharactersUnique(nonterminals)) {
+            throw new ConstructorException("Wrong nonterminals");
+        }
+        if (rules.length != nonterminals.length()) {
+            throw new ConstructorException("Wrong number of productions");
+        }
+        return CompiledGrammar.compile(SymbolTable.ofCharacters(terminals, nonterminals), rules);
+    }
+
+    private static CompiledGrammar compile(SymbolTable symbolTable, int[][][] rules) throws ConstructorException {
+        if (rules.length != symbolTable.getNonterminalsCount()) {
+            throw new ConstructorException("Wrong number of productions");
+        }
+        return CompiledGrammar.compile(symbolTable, rules);
+    }
+
+    private static CompiledGrammar compile(SymbolTable symbolTable, String[][][] rules) throws ConstructorException {
+        int[][][] symbolRules = new int[rules.length][][];
+        for (int lhs = 0; lhs < rules.length; lhs++) {
+            symbolRules[lhs] = new int[rules[lhs].length][];
+            for (int i = 0; i < rules[lhs].length; i++) {
+                symbolRules[lhs][i] = new int[rules[lhs][i].length];
+                for (int j = 0; j < rules[lhs][i].length; j++) {
+                    symbolRules[lhs][i][j] = symbolTable.idOf(rules[lhs][i][j]);
+                }
+            }
+        }
+        return compile(symbolTable, symbolRules);
+    }
+
+    /* Names of symbols, separated with spaces unless all of them are single
+     * characters. */
+    private String namesToString(int from, int to) {
+        StringBuilder sb = new StringBuilder();
+        for (int symbol = from; symbol < to; symbol++) {
+            appendName(sb, compiled.nameOf(symbol), symbol == from);
+        }
+        return sb.toString();
+    }
+
+    private void appendName(StringBuilder sb, String name, boolean first) {
+        if (!first && !compiled.getSymbolTable().hasSingleCharacterNames()) {
+            sb.append(' ');
+        }
+        sb.append(name);
     }
 
     public String descriptionToString() {
         StringBuilder sb = new StringBuilder();
-        sb.append("Terminale: ").append(terminals).append("\n");
-        sb.append("Nieterminale: ").append(nonterminals).append("\n");
+        sb.append("Terminale: ").append(namesToString(compiled.getNonterminalsCount(), compiled.getSymbolsCount())).append("\n");
+        sb.append("Nieterminale: ").append(namesToString(0, compiled.getNonterminalsCount())).append("\n");
         sb.append("Produkcje\n");
-        for (int i = 0; i < nonterminals.length(); i++) {
-            for (String product : rules[i]) {
-                if (product.equals("")) {
-                    product = "&";
-                }
-                sb.append(nonterminals.charAt(i)).append(" -> ").append(product).append("\n");
+        for (int production = 0; production < compiled.getProductionsCount(); production++) {
+            sb.append(compiled.nameOf(compiled.lhs(production))).append(" -> ");
+            if (compiled.length(production) == 0) {
+                sb.append("&");
             }
+            for (int i = 0; i < compiled.length(production); i++) {
+                appendName(sb, compiled.nameOf(compiled.symbolAt(production, i)), i == 0);
+            }
+            sb.append("\n");
         }
         return sb.toString();
     }
@@ -67,32 +141,261 @@ public class ContextFreeGrammar {
         return new ContextFreeGrammar(grammar, true);
     }
 
+    private void checkSingleCharacterNames() {
+        if (!compiled.getSymbolTable().hasSingleCharacterNames()) {
+            throw new UnsupportedOperationException("Symbol names longer than one character");
+        }
+    }
+
+    /* Char based view, only for grammars with single character names. */
     public String getTerminals() {
-        return terminals;
+        checkSingleCharacterNames();
+        return namesToString(compiled.getNonterminalsCount(), compiled.getSymbolsCount());
     }
 
     public String getNonterminals() {
-        return nonterminals;
+        checkSingleCharacterNames();
+        return namesToString(0, compiled.getNonterminalsCount());
     }
 
     public String[][] getRules() {
-        String[][] newArray = new String[rules.length][];
-        for (int i = 0; i < rules.length; i++) {
-            newArray[i] = Arrays.copyOf(rules[i], rules[i].length);
+        checkSingleCharacterNames();
+        String[][] newArray = new String[compiled.getNonterminalsCount()][];
+        for (int i = 0; i < newArray.length; i++) {
+            newArray[i] = new String[compiled.rulesEnd(i) - compiled.rulesStart(i)];
+            for (int production = compiled.rulesStart(i); production < compiled.rulesEnd(i); production++) {
+                char[] product = new char[compiled.length(production)];
+                for (int j = 0; j < product.length; j++) {
+                    product[j] = compiled.nameOf(compiled.symbolAt(production, j)).charAt(0);
+                }
+                newArray[i][production - compiled.rulesStart(i)] = new String(product);
+            }
         }
         return newArray;
     }
 
+    public SymbolTable getSymbolTable() {
+        return compiled.getSymbolTable();
+    }
+
     public boolean isRegular() {
         return isRegular;
     }
 
+    public int getProductionsCount() {
+        return compiled.getProductionsCount();
+    }
+
+    public CompiledGrammar getCompiled() {
+        return compiled;
+    }
+
+    public GrammarAnalysis getAnalysis() {
+        return compiled.getAnalysis();
+    }
+
+    public GrammarFingerprint getFingerprint() {
+        return compiled.getFingerprint();
+    }
+
+    /**
+     * * Equal grammar in canonical form, with nonterminals in order of
+     * a breadth-first search from the start variable, sorted productions
+     * and without unreachable nonterminals. Grammars equal up to renaming
+     * and reordering have the same canonical form up to names. **
+     */
+    public ContextFreeGrammar toCanonical() throws ConstructorException {
+        return new ContextFreeGrammar(compiled.getCanonicalForm().toCompiled());
+    }
+
+    /* Builder starting with the productions of this grammar. */
+    public GrammarBuilder toBuilder() {
+        return new GrammarBuilder(this);
+    }
+
+    /**
+     * * Recognizer of words of this grammar. Created once and shared, as the
+     * grammar is immutable. **
+     */
+    public synchronized Recognizer getRecognizer() {
+        if (recognizer == null) {
+            recognizer = createRecognizer();
+        }
+        return recognizer;
+    }
+
+    /* Regular grammars are recognized by their automaton, unless it's too
+     * large or productions of two nonterminals, which pass ifRegular, leave
+     * them without one. Other grammars are parsed in linear time by LALR(1)
+     * tables if they are not too large and have no conflicts. */
+    protected Recognizer createRecognizer() {
+        if (isRegular) {
+            try {
+                return Dfa.of(compiled, RECOGNIZER_STATES_LIMIT);
+            } catch (ConstructorException e) {
+                /* Earley recognizer works for every grammar. */
+            }
+        }
+        try {
+            Lalr1Table table = Lalr1Table.of(compiled, RECOGNIZER_TABLE_LIMIT);
+            if (!table.hasConflicts()) {
+                return table;
+            }
+        } catch (ConstructorException e) {
+            /* Earley recognizer works for every grammar. */
+        }
+        return new EarleyRecognizer(this);
+    }
+
+    /**
+     * * Minimal deterministic automaton of a left- or right-linear grammar,
+     * built once through an NFA and the subset construction. **
+     */
+    public synchronized Dfa toDfa() throws ConstructorException {
+        if (dfa == null) {
+            if (!ifRegular()) {
+                throw new ConstructorException("Grammar not regular");
+            }
+            dfa = Dfa.of(compiled, Integer.MAX_VALUE);
+        }
+        return dfa;
+    }
+
+    /**
+     * * LL(1) predict table, built once. Conflicts, if any, are listed by the
+     * table, which then can't recognize words. **
+     */
+    public synchronized Ll1Table getLl1Table() {
+        if (ll1Table == null) {
+            ll1Table = Ll1Table.of(compiled);
+        }
+        return ll1Table;
+    }
+
+    /**
+     * * LALR(1) action and goto tables, built once. Conflicts, if any, are
+     * listed by the tables, which then can't recognize words. **
+     */
+    public synchronized Lalr1Table getLalr1Table() throws ConstructorException {
+        if (lalr1Table == null) {
+            lalr1Table = Lalr1Table.of(compiled, Long.MAX_VALUE);
+        }
+        return lalr1Table;
+    }
+
+    /**
+     * * Equivalent grammar in Chomsky normal form, without the empty word,
+     * which that form can't generate. Throws if nothing else is left. **
+     */
+    public NormalChomskyGrammar toChomsky() throws ConstructorException {
+        return new ChomskyConverter(this).convert();
+    }
+
+    public boolean recognize(String word) {
+        return getRecognizer().recognize(word);
+    }
+
+    public boolean recognize(int[] word) {
+        return getRecognizer().recognize(word);
+    }
+
+    /**
+     * * Shared packed forest of all derivation trees of a word, built in
+     * O(n^3) time for a grammar of fixed size; empty if the word isn't in
+     * the language. **
+     */
+    public ParseForest parse(String word) {
+        int[] input = new int[word.length()];
+        for (int i = 0; i < word.length(); i++) {
+            input[i] = compiled.symbolOf(word.charAt(i));
+        }
+        return parse(input);
+    }
+
+    public ParseForest parse(int[] word) {
+        return ParseForest.of(compiled, word);
+    }
+
+    /**
+     * * All words of the language as ids of terminals, shortest first and in
+     * order of ids among words of the same length, each once. The stream is
+     * lazy and endless for an infinite language. **
+     */
+    public Stream<int[]> words() throws ConstructorException {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(new WordEnumerator(this),
+                Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    /* Random words of lengths up to maxLength, after counting derivation
+     * trees of all of them. */
+    public WordSampler sampler(int maxLength) throws ConstructorException {
+        return WordSampler.of(this, maxLength);
+    }
+
+    /**
+     * * Recognizer of the word which keeps its Earley sets and recomputes
+     * only the ones changed by later edits of the word. **
+     */
+    public IncrementalRecognizer incrementalRecognizer(String word) {
+        return IncrementalRecognizer.of(this, word);
+    }
+
+    public IncrementalRecognizer incrementalRecognizer(int[] word) {
+        return IncrementalRecognizer.of(this, word);
+    }
+
+    private static void checkRegular(ContextFreeGrammar grammar) throws ConstructorException {
+        if (!grammar.ifRegular()) {
+            throw new ConstructorException("Grammar not regular");
+        }
+    }
+
+    /**
+     * * Word, as names of terminals, in exactly one of the languages of this
+     * and of the other regular grammar; null if the languages are equal.
+     * Decided on automata built only as far as needed. **
+     */
+    public String[] distinguishingWord(ContextFreeGrammar other) throws ConstructorException {
+        checkRegular(this);
+        checkRegular(other);
+        return RegularLanguages.distinguishingWord(this, other);
+    }
+
+    public boolean isEquivalent(ContextFreeGrammar other) throws ConstructorException {
+        return distinguishingWord(other) == null;
+    }
+
+    /* Word of this language and not of the other, both regular; null if
+     * this language is included in the other one. */
+    public String[] inclusionCounterexample(ContextFreeGrammar other) throws ConstructorException {
+        checkRegular(this);
+        checkRegular(other);
+        return RegularLanguages.inclusionCounterexample(this, other);
+    }
+
+    public boolean isIncludedIn(ContextFreeGrammar other) throws ConstructorException {
+        return inclusionCounterexample(other) == null;
+    }
+
+    /**
+     * * Word, as names of terminals, of both languages; null if they are
+     * disjoint. At least one of the grammars has to be regular, the other
+     * one can be any context-free grammar. **
+     */
+    public String[] commonWord(ContextFreeGrammar other) throws ConstructorException {
+        return RegularLanguages.commonWord(this, other);
+    }
+
+    public boolean intersects(ContextFreeGrammar other) throws ConstructorException {
+        return commonWord(other) != null;
+    }
+
     public boolean isTerminal(Character c) {
-        return terminals.contains("" + c);
+        return compiled.isTerminal(compiled.symbolOf(c));
     }
 
     public boolean isNonterminal(Character c) {
-        return nonterminals.contains("" + c);
+        return compiled.isNonterminal(compiled.symbolOf(c));
     }
 
     public boolean isInAlphabet(Character c) {
@@ -106,132 +409,64 @@ public class ContextFreeGrammar {
      * Nonterminal is not useless if there exists a word in grammar created
      * with a rule containing this nonterminal.
      *
-     * Starting with a set of all nonterminals, not useless ones are removed
-     * from set. **
+     * Productive nonterminals are found with a worklist, in time linear in
+     * the size of the rules; the message lists the remaining ones. **
      */
-    private void checkUselessNonterminal(String nonterminals, String[][] rules) throws ConstructorException {
-        boolean checkAgain = true;
-        Set<Character> uselessNonterminals = new HashSet<>();
-        Set<Integer> uselessNonterminalsIndexes = new HashSet<>();
-
-        for (int i = 0; i < nonterminals.length(); i++) {
-            uselessNonterminalsIndexes.add(i);
-            uselessNonterminals.add(nonterminals.charAt(i));
-        }
-        while (checkAgain) {
-            int indexToRemove = -1;
-            checkAgain = false;
-            Iterator iterator = uselessNonterminalsIndexes.iterator();
-            while (iterator.hasNext() && !checkAgain) {
-                int index = (int) iterator.next();
-                /* If there exists a rule for a nonterminal not containing useless
-                 nonterminal it is not useless. */
-                for (String product : rules[index]) {
-                    if (!StringUtils.stringContainsCharFromSet(product, uselessNonterminals)) {
-                        checkAgain = true;
-                        indexToRemove = index;
-                    }
-                }
-            }
-            if (indexToRemove != -1) {
-                uselessNonterminals.remove(nonterminals.charAt(indexToRemove));
-                uselessNonterminalsIndexes.remove(indexToRemove);
+    private void checkUselessNonterminal() throws ConstructorException {
+        int[] uselessNonterminals = compiled.getAnalysis().unproductiveNonterminals();
+        if (uselessNonterminals.length > 0) {
+            StringBuilder sb = new StringBuilder("Useless nonterminal: ");
+            for (int i = 0; i < uselessNonterminals.length; i++) {
+                appendName(sb, compiled.nameOf(uselessNonterminals[i]), i == 0);
             }
-        }
-        if (!uselessNonterminals.isEmpty()) {
-            throw new ConstructorException("Useless nonterminal");
+            throw new ConstructorException(sb.toString());
         }
     }
 
     /*
      * * Throws ConstructorException if parameters don't describe correct
-     * context-free grammar. **
+     * context-free grammar. Names of symbols are checked when the symbol
+     * table is created. Passing the check is kept in the analysis, shared
+     * with grammars built on the same rules. **
      */
     public void checkIfContextFree() throws ConstructorException {
-        if (!StringUtils.allCharactersLowerCase(terminals) || !StringUtils.allCharactersUnique(terminals)) {
-            throw new ConstructorException("Wrong terminals");
-        }
-        if (!StringUtils.allCharactersUpperCase(nonterminals) || !StringUtils.allCharactersUnique(nonterminals)) {
-            throw new ConstructorException("Wrong nonterminals");
+        if (compiled.getAnalysis().isContextFree()) {
+            return;
         }
-        if (rules.length != nonterminals.length()) {
-            throw new ConstructorException("Wrong number of productions");
+        Instrumentation instrumentation = Instrumentation.begin();
+        if (instrumentation != null) {
+            instrumentation.startPhase(compiled.getProductionsCount(), compiled.getNonterminalsCount());
         }
-
-        for (String[] products : rules) {
-            if (products.length == 0) {
+        for (int nonterminal = 0; nonterminal < compiled.getNonterminalsCount(); nonterminal++) {
+            if (compiled.rulesStart(nonterminal) == compiled.rulesEnd(nonterminal)) {
                 throw new ConstructorException("Useless nonterminal");
             }
-            for (String product : products) {
-                for (int i = 0; i < product.length(); i++) {
-                    if (!isInAlphabet(product.charAt(i))) {
-                        throw new ConstructorException("Non-existing character in a production");
-                    }
+        }
+        for (int production = 0; production < compiled.getProductionsCount(); production++) {
+            for (int i = 0; i < compiled.length(production); i++) {
+                if (compiled.symbolAt(production, i) == CompiledGrammar.UNKNOWN) {
+                    throw new ConstructorException("Non-existing character in a production");
                 }
             }
         }
-        checkUselessNonterminal(nonterminals, rules);
-    }
-
-    /**
-     * * Type of regular grammar: not set, left linear, right linear. **
-     */
-    private enum RegularType {
-
-        NONE, LEFT, RIGHT
+        checkUselessNonterminal();
+        compiled.getAnalysis().setContextFree();
+        if (instrumentation != null) {
+            instrumentation.finishPhase("checkIfContextFree", compiled.getProductionsCount(),
+                    compiled.getNonterminalsCount(), compiled.maxProductionLength());
+        }
     }
 
     public boolean ifRegular() {
-        RegularType type = RegularType.NONE;
-        for (String[] products : rules) {
-            for (String product : products) {
-                if (product.length() > 2)
-                    return false;
-                if (product.length() == 1 && !isTerminal(product.charAt(0)))
-                    return false;
-                if (product.length() == 2) {
-                    if (isTerminal(product.charAt(0)) && isNonterminal(product.charAt(1))) {
-                        if (type == RegularType.LEFT) return false;
-                        type = RegularType.RIGHT;
-                    }
-                    if (isTerminal(product.charAt(1)) && isNonterminal(product.charAt(0))) {
-                        if (type == RegularType.RIGHT) return false;
-                        type = RegularType.LEFT;
-                    }
-                }
-            }
-        }
-        return true;
+        return compiled.getAnalysis().isRegularForm();
     }
 
     public boolean ifChomsky() {
-        for (String[] products : rules) {
-            for (String product : products) {
-                if (product.length() == 0 || product.length() > 2)
-                    return false;
-                if (product.length() == 1 && !isTerminal(product.charAt(0)))
-                    return false;
-                if (product.length() == 2 && (!isNonterminal(product.charAt(0)) || !isNonterminal(product.charAt(1))))
-                    return false;
-            }
-        }
-        return true;
+        return compiled.getAnalysis().isChomskyForm();
     }
 
     public boolean ifGreibach() {
-        for (String[] products : rules) {
-            for (String product : products) {
-                if (product.length() == 1 && isTerminal(product.charAt(0))) {
-                    continue;
-                }
-                if (product.length() > 1 && isTerminal(product.charAt(0))
-                        && StringUtils.allCharactersUpperCase(product.substring(1))) {
-                    continue;
-                }
-                return false;
-            }
-        }
-        return true;
+        return compiled.getAnalysis().isGreibachForm();
     }
 
 }
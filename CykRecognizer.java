@@ -0,0 +1,206 @@
+package gramatyka;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * * CYK recognizer for a grammar in Chomsky normal form.
+ *
+ * Every cell of the chart is a set of nonterminals stored as a bitset of long
+ * words. Binary rules are indexed by the first nonterminal of their right-hand
+ * side, so for every nonterminal in the left cell only the pairs starting with
+ * it are checked. Cells of the same span length don't depend on each other and
+ * are computed in parallel. **
+ */
+public class CykRecognizer implements Recognizer {
+
+    /* Below this number of (cell, split) pairs a span length is computed
+     * in the calling thread. */
+    private static final int SEQUENTIAL_THRESHOLD = 1 << 12;
+
+    private final CompiledGrammar compiled;
+    private final int nonterminalsCount;
+    private final int words;
+    /* Bitset of nonterminals A with a rule A -> a, for every terminal a. */
+    private final long[][] terminalHeads;
+    /* Pairs BC of right-hand sides: pairsStart[B]..pairsStart[B + 1] - 1 index
+     * pairRight (C) and pairHeads (bitset of A with a rule A -> BC). */
+    private final int[] pairsStart;
+    private final int[] pairRight;
+    private final long[] pairHeads;
+    private final ForkJoinPool pool;
+
+    CykRecognizer(NormalChomskyGrammar grammar) {
+        this(grammar, ForkJoinPool.commonPool());
+    }
+
+    CykRecognizer(NormalChomskyGrammar grammar, ForkJoinPool pool) {
+        this.pool = pool;
+        compiled = grammar.getCompiled();
+        nonterminalsCount = compiled.getNonterminalsCount();
+        words = (nonterminalsCount + 63) >>> 6;
+        terminalHeads = new long[compiled.getTerminalsCount()][words];
+
+        List<Map<Integer, long[]>> pairs = new ArrayList<>();
+        for (int i = 0; i < nonterminalsCount; i++) {
+            pairs.add(new HashMap<>());
+        }
+        int pairsCount = 0;
+        for (int production = 0; production < compiled.getProductionsCount(); production++) {
+            int head = compiled.lhs(production);
+            if (compiled.length(production) == 1) {
+                setBit(terminalHeads[compiled.symbolAt(production, 0) - nonterminalsCount], 0, head);
+            } else {
+                int left = compiled.symbolAt(production, 0);
+                int right = compiled.symbolAt(production, 1);
+                long[] heads = pairs.get(left).get(right);
+                if (heads == null) {
+                    heads = new long[words];
+                    pairs.get(left).put(right, heads);
+                    pairsCount++;
+                }
+                setBit(heads, 0, head);
+            }
+        }
+
+        pairsStart = new int[nonterminalsCount + 1];
+        pairRight = new int[pairsCount];
+        pairHeads = new long[pairsCount * words];
+        int pair = 0;
+        for (int left = 0; left < nonterminalsCount; left++) {
+            pairsStart[left] = pair;
+            for (Map.Entry<Integer, long[]> entry : pairs.get(left).entrySet()) {
+                pairRight[pair] = entry.getKey();
+                System.arraycopy(entry.getValue(), 0, pairHeads, pair * words, words);
+                pair++;
+            }
+        }
+        pairsStart[nonterminalsCount] = pair;
+    }
+
+    /**
+     * * Checks if the word can be derived from the start nonterminal. **
+     */
+    @Override
+    public boolean recognize(String word) {
+        int[] input = new int[word.length()];
+        for (int i = 0; i < word.length(); i++) {
+            input[i] = compiled.symbolOf(word.charAt(i));
+        }
+        return recognize(input);
+    }
+
+    @Override
+    public boolean recognize(int[] word) {
+        int n = word.length;
+        if (n == 0) {
+            /* Grammar in Chomsky normal form has no empty productions. */
+            return false;
+        }
+        Chart chart = new Chart(n);
+        for (int i = 0; i < n; i++) {
+            int terminal = word[i];
+            if (!compiled.isTerminal(terminal)) {
+                return false;
+            }
+            System.arraycopy(terminalHeads[terminal - nonterminalsCount], 0, chart.cells, chart.offset(1, i), words);
+        }
+        for (int length = 2; length <= n; length++) {
+            int cellsCount = n - length + 1;
+            if ((long) cellsCount * (length - 1) < SEQUENTIAL_THRESHOLD) {
+                chart.fill(length, 0, cellsCount);
+            } else {
+                pool.invoke(new SpanTask(chart, length, 0, cellsCount));
+            }
+        }
+        return testBit(chart.cells, chart.offset(n, 0), 0);
+    }
+
+    private static void setBit(long[] bits, int offset, int index) {
+        bits[offset + (index >>> 6)] |= 1L << index;
+    }
+
+    private static boolean testBit(long[] bits, int offset, int index) {
+        return (bits[offset + (index >>> 6)] & (1L << index)) != 0;
+    }
+
+    /* Triangular chart. Cells of span length l are stored one after another,
+     * starting with the one beginning at position 0. */
+    private class Chart {
+
+        private final int n;
+        private final long[] cells;
+
+        Chart(int n) {
+            this.n = n;
+            long size = (long) n * (n + 1) / 2 * words;
+            if (size > Integer.MAX_VALUE - 8) {
+                throw new IllegalArgumentException("Word too long: " + n);
+            }
+            cells = new long[(int) size];
+        }
+
+        int offset(int length, int start) {
+            /* Number of cells with span length less than a given one. */
+            long before = (long) (length - 1) * n - (long) (length - 1) * (length - 2) / 2;
+            return (int) ((before + start) * words);
+        }
+
+        /* Computes cells of a given span length starting at positions from..to-1. */
+        void fill(int length, int from, int to) {
+            for (int start = from; start < to; start++) {
+                int target = offset(length, start);
+                for (int split = 1; split < length; split++) {
+                    combine(offset(split, start), offset(length - split, start + split), target);
+                }
+            }
+        }
+
+        private void combine(int left, int right, int target) {
+            for (int w = 0; w < words; w++) {
+                long bits = cells[left + w];
+                while (bits != 0) {
+                    int first = (w << 6) + Long.numberOfTrailingZeros(bits);
+                    bits &= bits - 1;
+                    for (int pair = pairsStart[first]; pair < pairsStart[first + 1]; pair++) {
+                        if (testBit(cells, right, pairRight[pair])) {
+                            int heads = pair * words;
+                            for (int v = 0; v < words; v++) {
+                                cells[target + v] |= pairHeads[heads + v];
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static class SpanTask extends RecursiveAction {
+
+        private final CykRecognizer.Chart chart;
+        private final int length;
+        private final int from;
+        private final int to;
+
+        SpanTask(CykRecognizer.Chart chart, int length, int from, int to) {
+            this.chart = chart;
+            this.length = length;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= 1 || (long) (to - from) * (length - 1) < SEQUENTIAL_THRESHOLD) {
+                chart.fill(length, from, to);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new SpanTask(chart, length, from, middle), new SpanTask(chart, length, middle, to));
+        }
+    }
+}
@@ -0,0 +1,321 @@
+package gramatyka;
+
+import java.nio.CharBuffer;
+import java.util.Arrays;
+
+/**
+ * * Deterministic finite automaton of a regular grammar, with a matcher that
+ * doesn't allocate.
+ *
+ * Columns of the transition table are terminals of the grammar (terminal id
+ * minus the number of nonterminals) and transitions of state s are
+ * transitions[s * columns..s * columns + columns - 1]. State 0 is the start
+ * state and REJECT marks a missing transition, after which no word is
+ * accepted. Characters are mapped to columns through a dense table, so only
+ * terminals with one-character names can be matched as characters. **
+ */
+public final class Dfa implements Recognizer {
+
+    public static final int REJECT = -1;
+
+    private final CompiledGrammar compiled;
+    private final int statesCount;
+    private final int columns;
+    private final int[] transitions;
+    private final boolean[] accepting;
+    /* Column of every character, REJECT for characters not being terminals. */
+    private final int[] columnByChar;
+
+    Dfa(CompiledGrammar compiled, int statesCount, int[] transitions, boolean[] accepting) {
+        this.compiled = compiled;
+        this.statesCount = statesCount;
+        this.columns = compiled.getTerminalsCount();
+        this.transitions = transitions;
+        this.accepting = accepting;
+
+        int maxChar = -1;
+        for (int column = 0; column < columns; column++) {
+            String name = compiled.nameOf(compiled.getNonterminalsCount() + column);
+            if (name.length() == 1) {
+                maxChar = Math.max(maxChar, name.charAt(0));
+            }
+        }
+        columnByChar = new int[maxChar + 1];
+        Arrays.fill(columnByChar, REJECT);
+        for (int column = 0; column < columns; column++) {
+            String name = compiled.nameOf(compiled.getNonterminalsCount() + column);
+            if (name.length() == 1) {
+                columnByChar[name.charAt(0)] = column;
+            }
+        }
+    }
+
+    /* Minimal automaton of a regular grammar, if the deterministic one
+     * built before minimization has at most statesLimit states. */
+    static Dfa of(CompiledGrammar compiled, int statesLimit) throws ConstructorException {
+        return Nfa.of(compiled).determinize(compiled, statesLimit).minimize();
+    }
+
+    public int getStatesCount() {
+        return statesCount;
+    }
+
+    public int start() {
+        return 0;
+    }
+
+    public boolean isAccepting(int state) {
+        return state != REJECT && accepting[state];
+    }
+
+    /* State after reading a character, REJECT stays REJECT. */
+    public int next(int state, char c) {
+        if (state == REJECT || c >= columnByChar.length || columnByChar[c] == REJECT) {
+            return REJECT;
+        }
+        return transitions[state * columns + columnByChar[c]];
+    }
+
+    /* State after reading a terminal given by its symbol id. */
+    public int next(int state, int terminal) {
+        if (state == REJECT || !compiled.isTerminal(terminal)) {
+            return REJECT;
+        }
+        return transitions[state * columns + terminal - compiled.getNonterminalsCount()];
+    }
+
+    public boolean matches(CharSequence word) {
+        int state = 0;
+        for (int i = 0, length = word.length(); i < length; i++) {
+            char c = word.charAt(i);
+            if (c >= columnByChar.length || columnByChar[c] == REJECT
+                    || (state = transitions[state * columns + columnByChar[c]]) == REJECT) {
+                return false;
+            }
+        }
+        return accepting[state];
+    }
+
+    public boolean matches(char[] word) {
+        return matches(word, 0, word.length);
+    }
+
+    public boolean matches(char[] word, int offset, int length) {
+        int state = 0;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            char c = word[i];
+            if (c >= columnByChar.length || columnByChar[c] == REJECT
+                    || (state = transitions[state * columns + columnByChar[c]]) == REJECT) {
+                return false;
+            }
+        }
+        return accepting[state];
+    }
+
+    /* Matches remaining characters of the buffer, without moving its position. */
+    public boolean matches(CharBuffer word) {
+        if (word.hasArray()) {
+            return matches(word.array(), word.arrayOffset() + word.position(), word.remaining());
+        }
+        int state = 0;
+        for (int i = word.position(), end = word.limit(); i < end; i++) {
+            char c = word.get(i);
+            if (c >= columnByChar.length || columnByChar[c] == REJECT
+                    || (state = transitions[state * columns + columnByChar[c]]) == REJECT) {
+                return false;
+            }
+        }
+        return accepting[state];
+    }
+
+    @Override
+    public boolean recognize(String word) {
+        return matches(word);
+    }
+
+    @Override
+    public boolean recognize(int[] word) {
+        int state = 0;
+        for (int terminal : word) {
+            if ((state = next(state, terminal)) == REJECT) {
+                return false;
+            }
+        }
+        return accepting[state];
+    }
+
+    /**
+     * * Equivalent automaton with the least number of states, by Hopcroft's
+     * partition refinement.
+     *
+     * Missing transitions go to an added dead state. Blocks of the partition
+     * are ranges of the elements array. Splitting a block by predecessors of
+     * a splitter moves them to the front of the block; after a split, only
+     * the smaller half is queued as a splitter for symbols for which the
+     * block wasn't queued already, which gives O(n k log n) time for n states
+     * and k symbols. The block of the dead state is dropped again and states
+     * are renumbered in the order of a breadth-first search from the start. **
+     */
+    Dfa minimize() {
+        int n = statesCount + 1;
+        int dead = statesCount;
+        /* Predecessors of state s on symbol c:
+         * predecessors[predecessorsStart[c * n + s]..predecessorsStart[c * n + s + 1] - 1]. */
+        int[] predecessorsStart = new int[columns * n + 1];
+        for (int state = 0; state < n; state++) {
+            for (int column = 0; column < columns; column++) {
+                predecessorsStart[column * n + target(state, column) + 1]++;
+            }
+        }
+        for (int i = 0; i + 1 < predecessorsStart.length; i++) {
+            predecessorsStart[i + 1] += predecessorsStart[i];
+        }
+        int[] predecessors = new int[columns * n];
+        int[] filled = Arrays.copyOf(predecessorsStart, columns * n);
+        for (int state = 0; state < n; state++) {
+            for (int column = 0; column < columns; column++) {
+                predecessors[filled[column * n + target(state, column)]++] = state;
+            }
+        }
+
+        int[] elements = new int[n];
+        int[] location = new int[n];
+        int[] block = new int[n];
+        int[] blockStart = new int[n];
+        int[] blockEnd = new int[n];
+        int[] marked = new int[n];
+        int blocksCount = 0;
+        int acceptingCount = 0;
+        for (int state = 0; state < statesCount; state++) {
+            if (accepting[state]) {
+                elements[acceptingCount++] = state;
+            }
+        }
+        int position = acceptingCount;
+        for (int state = 0; state < n; state++) {
+            if (state == dead || !accepting[state]) {
+                elements[position++] = state;
+            }
+        }
+        if (acceptingCount > 0) {
+            blockEnd[blocksCount++] = acceptingCount;
+        }
+        blockStart[blocksCount] = acceptingCount;
+        blockEnd[blocksCount++] = n;
+        for (int i = 0; i < n; i++) {
+            location[elements[i]] = i;
+            block[elements[i]] = i < acceptingCount ? 0 : blocksCount - 1;
+        }
+
+        /* Pairs (block, symbol) waiting as splitters, as block * columns + symbol. */
+        boolean[] waiting = new boolean[n * columns];
+        int[] splitters = new int[n * columns];
+        int splittersCount = 0;
+        int smaller = blocksCount == 1 || acceptingCount <= n - acceptingCount ? 0 : 1;
+        for (int column = 0; column < columns; column++) {
+            waiting[smaller * columns + column] = true;
+            splitters[splittersCount++] = smaller * columns + column;
+        }
+
+        int[] touched = new int[n];
+        int[] splitterStates = new int[n];
+        while (splittersCount > 0) {
+            int splitter = splitters[--splittersCount];
+            waiting[splitter] = false;
+            int splitterBlock = splitter / columns;
+            int column = splitter % columns;
+
+            int statesToMark = 0;
+            for (int i = blockStart[splitterBlock]; i < blockEnd[splitterBlock]; i++) {
+                int state = elements[i];
+                for (int p = predecessorsStart[column * n + state]; p < predecessorsStart[column * n + state + 1]; p++) {
+                    splitterStates[statesToMark++] = predecessors[p];
+                }
+            }
+            int touchedCount = 0;
+            for (int i = 0; i < statesToMark; i++) {
+                int state = splitterStates[i];
+                int b = block[state];
+                if (marked[b] == 0) {
+                    touched[touchedCount++] = b;
+                }
+                int front = blockStart[b] + marked[b]++;
+                int other = elements[front];
+                elements[front] = state;
+                elements[location[state]] = other;
+                location[other] = location[state];
+                location[state] = front;
+            }
+            for (int i = 0; i < touchedCount; i++) {
+                int b = touched[i];
+                int markedCount = marked[b];
+                marked[b] = 0;
+                if (markedCount == blockEnd[b] - blockStart[b]) {
+                    continue;
+                }
+                int newBlock = blocksCount++;
+                blockStart[newBlock] = blockStart[b];
+                blockEnd[newBlock] = blockStart[b] + markedCount;
+                blockStart[b] = blockEnd[newBlock];
+                for (int j = blockStart[newBlock]; j < blockEnd[newBlock]; j++) {
+                    block[elements[j]] = newBlock;
+                }
+                for (int symbol = 0; symbol < columns; symbol++) {
+                    int queued;
+                    if (waiting[b * columns + symbol]) {
+                        queued = newBlock;
+                    } else {
+                        queued = blockEnd[newBlock] - blockStart[newBlock] <= blockEnd[b] - blockStart[b] ? newBlock : b;
+                    }
+                    waiting[queued * columns + symbol] = true;
+                    splitters[splittersCount++] = queued * columns + symbol;
+                }
+            }
+        }
+        return quotient(block, blocksCount, block[dead]);
+    }
+
+    private int target(int state, int column) {
+        if (state == statesCount) {
+            return statesCount;
+        }
+        int target = transitions[state * columns + column];
+        return target == REJECT ? statesCount : target;
+    }
+
+    /* Automaton with a state for every block except the dead one. */
+    private Dfa quotient(int[] block, int blocksCount, int deadBlock) {
+        int[] representative = new int[blocksCount];
+        for (int state = statesCount - 1; state >= 0; state--) {
+            representative[block[state]] = state;
+        }
+        int[] number = new int[blocksCount];
+        Arrays.fill(number, REJECT);
+        int[] queue = new int[blocksCount];
+        int queueEnd = 0;
+        /* Start block is the dead one only for an empty language. */
+        queue[queueEnd++] = block[0];
+        number[block[0]] = 0;
+        for (int queueStart = 0; queueStart < queueEnd; queueStart++) {
+            int state = representative[queue[queueStart]];
+            for (int column = 0; column < columns; column++) {
+                int next = block[target(state, column)];
+                if (next != deadBlock && number[next] == REJECT) {
+                    number[next] = queueEnd;
+                    queue[queueEnd++] = next;
+                }
+            }
+        }
+        int[] newTransitions = new int[queueEnd * columns];
+        boolean[] newAccepting = new boolean[queueEnd];
+        for (int i = 0; i < queueEnd; i++) {
+            int state = representative[queue[i]];
+            newAccepting[i] = queue[i] != deadBlock && accepting[state];
+            for (int column = 0; column < columns; column++) {
+                int next = block[target(state, column)];
+                newTransitions[i * columns + column] = next == deadBlock || queue[i] == deadBlock ? REJECT : number[next];
+            }
+        }
+        return new Dfa(compiled, queueEnd, newTransitions, newAccepting);
+    }
+}
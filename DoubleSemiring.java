@@ -0,0 +1,99 @@
+package gramatyka;
+
+/**
+ * * Semiring of double scores of derivations, for WeightedCyk. Scores of
+ * alternative derivations of a part of a word are added with plus, scores of
+ * parts of one derivation are multiplied with times, and the weight of
+ * a production is mapped to its score by weight. zero() is the score of no
+ * derivation, neutral for plus and absorbing for times.
+ *
+ * Scores of long words underflow as probabilities, so VITERBI and
+ * LOG_INSIDE work on their logarithms. **
+ */
+public interface DoubleSemiring {
+
+    /* Logarithm of the probability of the best derivation: max and +. */
+    DoubleSemiring VITERBI = new DoubleSemiring() {
+        @Override
+        public double zero() {
+            return Double.NEGATIVE_INFINITY;
+        }
+
+        @Override
+        public double plus(double a, double b) {
+            return Math.max(a, b);
+        }
+
+        @Override
+        public double times(double a, double b) {
+            return a + b;
+        }
+
+        @Override
+        public double weight(double probability) {
+            return Math.log(probability);
+        }
+    };
+
+    /* Sum of probabilities of all derivations: + and *. */
+    DoubleSemiring INSIDE = new DoubleSemiring() {
+        @Override
+        public double zero() {
+            return 0;
+        }
+
+        @Override
+        public double plus(double a, double b) {
+            return a + b;
+        }
+
+        @Override
+        public double times(double a, double b) {
+            return a * b;
+        }
+
+        @Override
+        public double weight(double probability) {
+            return probability;
+        }
+    };
+
+    /* Logarithm of the sum of probabilities of all derivations: log-sum-exp
+     * and +. */
+    DoubleSemiring LOG_INSIDE = new DoubleSemiring() {
+        @Override
+        public double zero() {
+            return Double.NEGATIVE_INFINITY;
+        }
+
+        @Override
+        public double plus(double a, double b) {
+            if (a < b) {
+                double swap = a;
+                a = b;
+                b = swap;
+            }
+            /* exp(-40) is below the precision of the sum. */
+            return b - a < -40 ? a : a + Math.log1p(Math.exp(b - a));
+        }
+
+        @Override
+        public double times(double a, double b) {
+            return a + b;
+        }
+
+        @Override
+        public double weight(double probability) {
+            return Math.log(probability);
+        }
+    };
+
+    double zero();
+
+    double plus(double a, double b);
+
+    double times(double a, double b);
+
+    /* Score of a production with a given weight. */
+    double weight(double probability);
+}
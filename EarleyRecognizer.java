@@ -0,0 +1,309 @@
+package gramatyka;
+
+import java.util.Arrays;
+
+/**
+ * * Earley recognizer working directly on rules of any context-free grammar,
+ * including empty productions.
+ *
+ * Items are pairs (dotted rule, origin) kept in flat int arrays, one after
+ * another for consecutive Earley sets. Nullable nonterminals are skipped
+ * already when predicted (Aycock and Horspool), so completions never have to
+ * look into the set being built. Deterministic reduction paths are shortened
+ * with Leo items, which makes right-recursive grammars linear. **
+ */
+public class EarleyRecognizer implements Recognizer {
+
+    static final int COMPLETE = -1;
+
+    final CompiledGrammar compiled;
+    /* Added nonterminal with the only production START -> S, numbered after
+     * all symbols of the grammar. */
+    final int start;
+    /* Dotted rules. Production with right-hand side of length k takes k + 1
+     * consecutive slots, one for every position of the dot. */
+    final int[] slotSymbol;
+    final int[] slotLhs;
+    /* First slots of productions of every nonterminal:
+     * firstSlots[productionsStart[A]..productionsStart[A + 1] - 1]. */
+    final int[] productionsStart;
+    final int[] firstSlots;
+    final boolean[] nullable;
+
+    EarleyRecognizer(ContextFreeGrammar grammar) {
+        compiled = grammar.getCompiled();
+        int nonterminalsCount = compiled.getNonterminalsCount();
+        int productionsCount = compiled.getProductionsCount();
+        start = compiled.getSymbolsCount();
+
+        int slotsCount = 2;
+        for (int production = 0; production < productionsCount; production++) {
+            slotsCount += compiled.length(production) + 1;
+        }
+        slotSymbol = new int[slotsCount];
+        slotLhs = new int[slotsCount];
+        productionsStart = new int[start + 2];
+        firstSlots = new int[productionsCount + 1];
+
+        int slot = 0;
+        for (int production = 0; production < productionsCount; production++) {
+            int lhs = compiled.lhs(production);
+            firstSlots[production] = slot;
+            for (int i = 0; i < compiled.length(production); i++) {
+                slotSymbol[slot] = compiled.symbolAt(production, i);
+                slotLhs[slot++] = lhs;
+            }
+            slotSymbol[slot] = COMPLETE;
+            slotLhs[slot++] = lhs;
+        }
+        /* Terminals have no productions. */
+        for (int symbol = 0; symbol <= start; symbol++) {
+            productionsStart[symbol] = symbol < nonterminalsCount
+                    ? compiled.rulesStart(symbol) : productionsCount;
+        }
+        firstSlots[productionsCount] = slot;
+        slotSymbol[slot] = 0;
+        slotLhs[slot++] = start;
+        slotSymbol[slot] = COMPLETE;
+        slotLhs[slot] = start;
+        productionsStart[start + 1] = productionsCount + 1;
+
+        nullable = computeNullable();
+    }
+
+    /* Nonterminal is nullable if it has a production made of nullable
+     * nonterminals only. */
+    private boolean[] computeNullable() {
+        boolean[] result = new boolean[start + 1];
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int lhs = 0; lhs <= start; lhs++) {
+                if (result[lhs] || !isNonterminal(lhs)) {
+                    continue;
+                }
+                for (int p = productionsStart[lhs]; p < productionsStart[lhs + 1] && !result[lhs]; p++) {
+                    int slot = firstSlots[p];
+                    while (slotSymbol[slot] != COMPLETE && isNonterminal(slotSymbol[slot])
+                            && result[slotSymbol[slot]]) {
+                        slot++;
+                    }
+                    if (slotSymbol[slot] == COMPLETE) {
+                        result[lhs] = true;
+                        changed = true;
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    boolean isNonterminal(int symbol) {
+        return compiled.isNonterminal(symbol) || symbol == start;
+    }
+
+    @Override
+    public boolean recognize(String word) {
+        int[] input = new int[word.length()];
+        for (int i = 0; i < word.length(); i++) {
+            input[i] = compiled.symbolOf(word.charAt(i));
+        }
+        return recognize(input);
+    }
+
+    @Override
+    public boolean recognize(int[] word) {
+        for (int symbol : word) {
+            if (!compiled.isTerminal(symbol)) {
+                return false;
+            }
+        }
+        return new Parse(word).run();
+    }
+
+    /* State of a single recognition. */
+    private class Parse {
+
+        private final int[] input;
+        /* Items of set i are itemSlot/itemOrigin[setStart[i]..setStart[i + 1] - 1]. */
+        private int[] itemSlot = new int[64];
+        private int[] itemOrigin = new int[64];
+        private int itemsCount;
+        private final int[] setStart;
+        /* Items of set i waiting for a symbol, as (symbol << 32 | item),
+         * sorted: waiting[waitingStart[i]..waitingStart[i + 1] - 1]. */
+        private long[] waiting = new long[64];
+        private int waitingCount;
+        private final int[] waitingStart;
+        /* Leo items of set i, sorted by symbol:
+         * leoSymbol/leoSlot/leoOrigin[leoStart[i]..leoStart[i + 1] - 1]. */
+        private int[] leoSymbol = new int[16];
+        private int[] leoSlot = new int[16];
+        private int[] leoOrigin = new int[16];
+        private int leoCount;
+        private final int[] leoStart;
+        /* Items and predicted nonterminals of the set being built. */
+        private final LongSet current = new LongSet();
+
+        Parse(int[] input) {
+            this.input = input;
+            setStart = new int[input.length + 2];
+            waitingStart = new int[input.length + 2];
+            leoStart = new int[input.length + 2];
+        }
+
+        boolean run() {
+            add(firstSlots[productionsStart[start]], 0);
+            for (int i = 0; i <= input.length; i++) {
+                process(i);
+                index(i);
+                setStart[i + 1] = itemsCount;
+                current.clear();
+                if (i == input.length) {
+                    break;
+                }
+                int from = find(waiting, waitingStart[i], waitingStart[i + 1], input[i]);
+                for (int w = from; w < waitingStart[i + 1] && (int) (waiting[w] >>> 32) == input[i]; w++) {
+                    int item = (int) waiting[w];
+                    add(itemSlot[item] + 1, itemOrigin[item]);
+                }
+                if (itemsCount == setStart[i + 1]) {
+                    return false;
+                }
+            }
+            int accepted = firstSlots[productionsStart[start]] + 1;
+            for (int item = setStart[input.length]; item < setStart[input.length + 1]; item++) {
+                if (itemSlot[item] == accepted && itemOrigin[item] == 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void add(int slot, int origin) {
+            if (!current.add(((long) slot << 32) | origin)) {
+                return;
+            }
+            if (itemsCount == itemSlot.length) {
+                itemSlot = Arrays.copyOf(itemSlot, itemsCount * 2);
+                itemOrigin = Arrays.copyOf(itemOrigin, itemsCount * 2);
+            }
+            itemSlot[itemsCount] = slot;
+            itemOrigin[itemsCount++] = origin;
+        }
+
+        /* Predicts and completes items of set i until nothing changes. */
+        private void process(int i) {
+            for (int item = setStart[i]; item < itemsCount; item++) {
+                int slot = itemSlot[item];
+                int origin = itemOrigin[item];
+                int symbol = slotSymbol[slot];
+                if (symbol == COMPLETE) {
+                    /* Items completed at their origin were already advanced
+                     * when the nullable nonterminal was predicted. */
+                    if (origin < i) {
+                        complete(slotLhs[slot], origin);
+                    }
+                } else if (isNonterminal(symbol)) {
+                    if (current.add(-1L - symbol)) {
+                        for (int p = productionsStart[symbol]; p < productionsStart[symbol + 1]; p++) {
+                            add(firstSlots[p], i);
+                        }
+                    }
+                    if (nullable[symbol]) {
+                        add(slot + 1, origin);
+                    }
+                }
+            }
+        }
+
+        private void complete(int nonterminal, int set) {
+            int leo = find(leoSymbol, leoStart[set], leoStart[set + 1], nonterminal);
+            if (leo < leoStart[set + 1] && leoSymbol[leo] == nonterminal) {
+                add(leoSlot[leo], leoOrigin[leo]);
+                return;
+            }
+            int from = find(waiting, waitingStart[set], waitingStart[set + 1], nonterminal);
+            for (int w = from; w < waitingStart[set + 1] && (int) (waiting[w] >>> 32) == nonterminal; w++) {
+                int item = (int) waiting[w];
+                add(itemSlot[item] + 1, itemOrigin[item]);
+            }
+        }
+
+        /* Builds the waiting index and Leo items of a finished set i. */
+        private void index(int i) {
+            waitingStart[i] = waitingCount;
+            for (int item = setStart[i]; item < itemsCount; item++) {
+                int symbol = slotSymbol[itemSlot[item]];
+                if (symbol != COMPLETE) {
+                    if (waitingCount == waiting.length) {
+                        waiting = Arrays.copyOf(waiting, waitingCount * 2);
+                    }
+                    waiting[waitingCount++] = ((long) symbol << 32) | item;
+                }
+            }
+            waitingStart[i + 1] = waitingCount;
+            Arrays.sort(waiting, waitingStart[i], waitingCount);
+
+            leoStart[i] = leoCount;
+            for (int w = waitingStart[i]; w < waitingCount; w++) {
+                int symbol = (int) (waiting[w] >>> 32);
+                boolean unique = (w + 1 == waitingCount || (int) (waiting[w + 1] >>> 32) != symbol)
+                        && (w == waitingStart[i] || (int) (waiting[w - 1] >>> 32) != symbol);
+                int item = (int) waiting[w];
+                int next = itemSlot[item] + 1;
+                if (!unique || !isNonterminal(symbol) || slotSymbol[next] != COMPLETE) {
+                    continue;
+                }
+                /* The only item waiting for the symbol is B -> alpha . symbol, so
+                 * completing the symbol here always leads to B -> alpha symbol . and
+                 * further up along the path, if B is deterministic in its origin. */
+                int origin = itemOrigin[item];
+                int slot = next;
+                if (origin < i) {
+                    int leo = find(leoSymbol, leoStart[origin], leoStart[origin + 1], slotLhs[next]);
+                    if (leo < leoStart[origin + 1] && leoSymbol[leo] == slotLhs[next]) {
+                        slot = leoSlot[leo];
+                        origin = leoOrigin[leo];
+                    }
+                }
+                if (leoCount == leoSymbol.length) {
+                    leoSymbol = Arrays.copyOf(leoSymbol, leoCount * 2);
+                    leoSlot = Arrays.copyOf(leoSlot, leoCount * 2);
+                    leoOrigin = Arrays.copyOf(leoOrigin, leoCount * 2);
+                }
+                leoSymbol[leoCount] = symbol;
+                leoSlot[leoCount] = slot;
+                leoOrigin[leoCount++] = origin;
+            }
+            leoStart[i + 1] = leoCount;
+        }
+    }
+
+    /* First index in sorted keys[from..to-1] with a symbol not less than
+     * a given one. */
+    static int find(long[] keys, int from, int to, int symbol) {
+        long key = (long) symbol << 32;
+        while (from < to) {
+            int middle = (from + to) >>> 1;
+            if (keys[middle] < key) {
+                from = middle + 1;
+            } else {
+                to = middle;
+            }
+        }
+        return from;
+    }
+
+    static int find(int[] symbols, int from, int to, int symbol) {
+        while (from < to) {
+            int middle = (from + to) >>> 1;
+            if (symbols[middle] < symbol) {
+                from = middle + 1;
+            } else {
+                to = middle;
+            }
+        }
+        return from;
+    }
+}
@@ -0,0 +1,417 @@
+package gramatyka;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * * Properties of a compiled grammar: normal forms, nullable, productive and
+ * reachable nonterminals and FIRST and FOLLOW sets.
+ *
+ * Every part is computed on first use and kept, as compiled grammars are
+ * immutable. Reads don't lock: parts are published through volatile fields
+ * and computing them is deterministic, so threads racing on the first use
+ * at worst compute the same part twice. Grammars built on the same compiled
+ * grammar, as NormalChomskyGrammar and NormalGreibachGrammar built from
+ * a ContextFreeGrammar, share the analysis, so a grammar checked once is not
+ * checked again.
+ *
+ * Sets of terminals are rows of bits indexed by terminal id minus the
+ * number of nonterminals; column T of FOLLOW marks the end of a word. **
+ */
+public final class GrammarAnalysis {
+
+    private static final int REGULAR = 1;
+    private static final int CHOMSKY = 2;
+    private static final int GREIBACH = 4;
+    private static final int FORMS_KNOWN = 8;
+
+    private final CompiledGrammar compiled;
+    private final int terminalsCount;
+    private final int words;
+
+    private volatile int forms;
+    private volatile boolean contextFree;
+    private volatile boolean[] nullable;
+    private volatile boolean[] productive;
+    private volatile boolean[] reachable;
+    private volatile long[][] first;
+    private volatile long[][] follow;
+
+    GrammarAnalysis(CompiledGrammar compiled) {
+        this.compiled = compiled;
+        this.terminalsCount = compiled.getTerminalsCount();
+        this.words = (terminalsCount + 1 + 63) >>> 6;
+    }
+
+    /* Type of regular grammar: not set, left linear, right linear. */
+    private enum RegularType {
+
+        NONE, LEFT, RIGHT
+    }
+
+    /* All normal forms in one pass over productions. */
+    private int forms() {
+        int known = forms;
+        if (known != 0) {
+            return known;
+        }
+        Instrumentation instrumentation = Instrumentation.begin();
+        if (instrumentation != null) {
+            instrumentation.startPhase(compiled.getProductionsCount(), compiled.getNonterminalsCount());
+        }
+        boolean regular = true;
+        boolean chomsky = true;
+        boolean greibach = true;
+        RegularType type = RegularType.NONE;
+        for (int production = 0; production < compiled.getProductionsCount(); production++) {
+            int length = compiled.length(production);
+            int first = length > 0 ? compiled.symbolAt(production, 0) : CompiledGrammar.UNKNOWN;
+            int second = length > 1 ? compiled.symbolAt(production, 1) : CompiledGrammar.UNKNOWN;
+            if (length > 2 || (length == 1 && !compiled.isTerminal(first))) {
+                regular = false;
+            }
+            if (length == 2) {
+                if (compiled.isTerminal(first) && compiled.isNonterminal(second)) {
+                    regular &= type != RegularType.LEFT;
+                    type = RegularType.RIGHT;
+                }
+                if (compiled.isTerminal(second) && compiled.isNonterminal(first)) {
+                    regular &= type != RegularType.RIGHT;
+                    type = RegularType.LEFT;
+                }
+            }
+
+            if (length == 0 || length > 2 || (length == 1 && !compiled.isTerminal(first))
+                    || (length == 2 && (!compiled.isNonterminal(first) || !compiled.isNonterminal(second)))) {
+                chomsky = false;
+            }
+
+            if (length == 0 || !compiled.isTerminal(first)) {
+                greibach = false;
+            }
+            for (int i = 1; i < length && greibach; i++) {
+                greibach = compiled.isNonterminal(compiled.symbolAt(production, i));
+            }
+        }
+        known = FORMS_KNOWN | (regular ? REGULAR : 0) | (chomsky ? CHOMSKY : 0) | (greibach ? GREIBACH : 0);
+        forms = known;
+        if (instrumentation != null) {
+            instrumentation.finishPhase("forms", compiled.getProductionsCount(), compiled.getNonterminalsCount(),
+                    compiled.maxProductionLength());
+        }
+        return known;
+    }
+
+    /* Left- or right-linear; productions of two nonterminals pass too. */
+    public boolean isRegularForm() {
+        return (forms() & REGULAR) != 0;
+    }
+
+    public boolean isChomskyForm() {
+        return (forms() & CHOMSKY) != 0;
+    }
+
+    public boolean isGreibachForm() {
+        return (forms() & GREIBACH) != 0;
+    }
+
+    /* Whether ContextFreeGrammar.checkIfContextFree passed on these rules. */
+    boolean isContextFree() {
+        return contextFree;
+    }
+
+    void setContextFree() {
+        contextFree = true;
+    }
+
+    /* Parts computed before, as ones read with the rules. */
+    void restore(boolean regular, boolean chomsky, boolean greibach, boolean[] nullable, boolean[] productive,
+            boolean[] reachable) {
+        forms = FORMS_KNOWN | (regular ? REGULAR : 0) | (chomsky ? CHOMSKY : 0) | (greibach ? GREIBACH : 0);
+        this.nullable = nullable;
+        this.productive = productive;
+        this.reachable = reachable;
+    }
+
+    private boolean[] nullable() {
+        boolean[] known = nullable;
+        if (known == null) {
+            known = compiled.derivingNonterminals(false);
+            nullable = known;
+        }
+        return known;
+    }
+
+    private boolean[] productive() {
+        boolean[] known = productive;
+        if (known == null) {
+            known = compiled.derivingNonterminals(true);
+            productive = known;
+        }
+        return known;
+    }
+
+    /* Nonterminals reachable from the start variable through any production. */
+    private boolean[] reachable() {
+        boolean[] known = reachable;
+        if (known != null) {
+            return known;
+        }
+        known = new boolean[compiled.getNonterminalsCount()];
+        int[] queue = new int[known.length];
+        int queueEnd = 0;
+        known[0] = true;
+        queue[queueEnd++] = 0;
+        for (int queueStart = 0; queueStart < queueEnd; queueStart++) {
+            int lhs = queue[queueStart];
+            for (int production = compiled.rulesStart(lhs); production < compiled.rulesEnd(lhs); production++) {
+                for (int i = 0; i < compiled.length(production); i++) {
+                    int symbol = compiled.symbolAt(production, i);
+                    if (compiled.isNonterminal(symbol) && !known[symbol]) {
+                        known[symbol] = true;
+                        queue[queueEnd++] = symbol;
+                    }
+                }
+            }
+        }
+        reachable = known;
+        return known;
+    }
+
+    public boolean isNullable(int nonterminal) {
+        return nullable()[nonterminal];
+    }
+
+    public boolean isProductive(int nonterminal) {
+        return productive()[nonterminal];
+    }
+
+    public boolean isReachable(int nonterminal) {
+        return reachable()[nonterminal];
+    }
+
+    public int[] unproductiveNonterminals() {
+        return missing(productive());
+    }
+
+    public int[] unreachableNonterminals() {
+        return missing(reachable());
+    }
+
+    private static int[] missing(boolean[] present) {
+        int count = 0;
+        for (boolean p : present) {
+            count += p ? 0 : 1;
+        }
+        int[] result = new int[count];
+        count = 0;
+        for (int nonterminal = 0; nonterminal < present.length; nonterminal++) {
+            if (!present[nonterminal]) {
+                result[count++] = nonterminal;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * * Edges of a graph, as in CSR: targets of node v are
+     * targets[start[v]..start[v + 1] - 1]. Sets of a target include sets
+     * of its sources. Used for lookaheads of LALR(1) items too. **
+     */
+    static final class Graph {
+
+        private final int[] start;
+        private final int[] targets;
+
+        Graph(int nodesCount, int[] from, int[] to, int edgesCount) {
+            start = new int[nodesCount + 1];
+            for (int edge = 0; edge < edgesCount; edge++) {
+                start[from[edge] + 1]++;
+            }
+            for (int i = 0; i < nodesCount; i++) {
+                start[i + 1] += start[i];
+            }
+            targets = new int[edgesCount];
+            int[] filled = Arrays.copyOf(start, nodesCount);
+            for (int edge = 0; edge < edgesCount; edge++) {
+                targets[filled[from[edge]]++] = to[edge];
+            }
+        }
+
+        /* Unions sets along edges until nothing changes; every
+         * node is queued again only when its set grows. */
+        void propagate(long[][] sets) {
+            int n = sets.length;
+            int[] queue = new int[n];
+            boolean[] queued = new boolean[n];
+            int head = 0;
+            int size = 0;
+            for (int node = 0; node < n; node++) {
+                queue[size++] = node;
+                queued[node] = true;
+            }
+            while (size > 0) {
+                int source = queue[head];
+                head = head + 1 == n ? 0 : head + 1;
+                size--;
+                queued[source] = false;
+                for (int i = start[source]; i < start[source + 1]; i++) {
+                    int target = targets[i];
+                    if (or(sets[target], sets[source]) && !queued[target]) {
+                        queued[target] = true;
+                        queue[(head + size++) % n] = target;
+                    }
+                }
+            }
+        }
+    }
+
+    /* target |= source, returns whether target changed. */
+    private static boolean or(long[] target, long[] source) {
+        boolean changed = false;
+        for (int i = 0; i < target.length; i++) {
+            long union = target[i] | source[i];
+            changed |= union != target[i];
+            target[i] = union;
+        }
+        return changed;
+    }
+
+    private static void set(long[] row, int column) {
+        row[column >>> 6] |= 1L << column;
+    }
+
+    private static boolean get(long[] row, int column) {
+        return (row[column >>> 6] & 1L << column) != 0;
+    }
+
+    /* FIRST(A) gets terminals starting productions of A after nullable
+     * nonterminals, and FIRST(B) for every such B. */
+    private long[][] first() {
+        long[][] known = first;
+        if (known != null) {
+            return known;
+        }
+        boolean[] nullable = nullable();
+        int nonterminalsCount = compiled.getNonterminalsCount();
+        known = new long[nonterminalsCount][words];
+        int[] from = new int[compiled.getProductionsCount()];
+        int[] to = new int[from.length];
+        int edgesCount = 0;
+        for (int production = 0; production < compiled.getProductionsCount(); production++) {
+            int lhs = compiled.lhs(production);
+            for (int i = 0; i < compiled.length(production); i++) {
+                int symbol = compiled.symbolAt(production, i);
+                if (compiled.isTerminal(symbol)) {
+                    set(known[lhs], symbol - nonterminalsCount);
+                    break;
+                }
+                if (edgesCount == from.length) {
+                    from = Arrays.copyOf(from, 2 * edgesCount);
+                    to = Arrays.copyOf(to, 2 * edgesCount);
+                }
+                from[edgesCount] = symbol;
+                to[edgesCount++] = lhs;
+                if (!nullable[symbol]) {
+                    break;
+                }
+            }
+        }
+        new Graph(nonterminalsCount, from, to, edgesCount).propagate(known);
+        first = known;
+        return known;
+    }
+
+    /* FOLLOW(B) gets FIRST of what follows B in a production of A, and
+     * FOLLOW(A) if all of it is nullable; FOLLOW of the start variable has
+     * the end of a word. */
+    private long[][] follow() {
+        long[][] known = follow;
+        if (known != null) {
+            return known;
+        }
+        boolean[] nullable = nullable();
+        long[][] first = first();
+        int nonterminalsCount = compiled.getNonterminalsCount();
+        known = new long[nonterminalsCount][words];
+        set(known[0], terminalsCount);
+        int[] from = new int[compiled.getProductionsCount()];
+        int[] to = new int[from.length];
+        int edgesCount = 0;
+        /* FIRST of the rest of the production, scanned from its end. */
+        long[] rest = new long[words];
+        for (int production = 0; production < compiled.getProductionsCount(); production++) {
+            int lhs = compiled.lhs(production);
+            Arrays.fill(rest, 0);
+            boolean restNullable = true;
+            for (int i = compiled.length(production) - 1; i >= 0; i--) {
+                int symbol = compiled.symbolAt(production, i);
+                if (compiled.isTerminal(symbol)) {
+                    Arrays.fill(rest, 0);
+                    set(rest, symbol - nonterminalsCount);
+                    restNullable = false;
+                    continue;
+                }
+                or(known[symbol], rest);
+                if (restNullable) {
+                    if (edgesCount == from.length) {
+                        from = Arrays.copyOf(from, 2 * edgesCount);
+                        to = Arrays.copyOf(to, 2 * edgesCount);
+                    }
+                    from[edgesCount] = lhs;
+                    to[edgesCount++] = symbol;
+                }
+                if (!nullable[symbol]) {
+                    Arrays.fill(rest, 0);
+                    restNullable = false;
+                }
+                or(rest, first[symbol]);
+            }
+        }
+        new Graph(nonterminalsCount, from, to, edgesCount).propagate(known);
+        follow = known;
+        return known;
+    }
+
+    public boolean isInFirst(int nonterminal, int terminal) {
+        return compiled.isTerminal(terminal) && get(first()[nonterminal], terminal - compiled.getNonterminalsCount());
+    }
+
+    public boolean isInFollow(int nonterminal, int terminal) {
+        return compiled.isTerminal(terminal) && get(follow()[nonterminal], terminal - compiled.getNonterminalsCount());
+    }
+
+    /* Whether a word can end right after the nonterminal. */
+    public boolean isEndInFollow(int nonterminal) {
+        return get(follow()[nonterminal], terminalsCount);
+    }
+
+    /* Rows of FIRST and FOLLOW, shared: callers must not modify them. */
+    long[] firstRow(int nonterminal) {
+        return first()[nonterminal];
+    }
+
+    long[] followRow(int nonterminal) {
+        return follow()[nonterminal];
+    }
+
+    /* FIRST(A) as a new set of terminal ids. */
+    public BitSet getFirst(int nonterminal) {
+        return toSymbols(first()[nonterminal]);
+    }
+
+    /* FOLLOW(A) as a new set of terminal ids, without the end of a word. */
+    public BitSet getFollow(int nonterminal) {
+        return toSymbols(follow()[nonterminal]);
+    }
+
+    private BitSet toSymbols(long[] row) {
+        BitSet symbols = new BitSet(compiled.getSymbolsCount());
+        for (int column = 0; column < terminalsCount; column++) {
+            if (get(row, column)) {
+                symbols.set(compiled.getNonterminalsCount() + column);
+            }
+        }
+        return symbols;
+    }
+}
@@ -0,0 +1,516 @@
+package gramatyka;
+
+import java.util.Arrays;
+
+/**
+ * * Rules of a grammar changed one production at a time, with immutable
+ * grammars taken as snapshots.
+ *
+ * Rules are kept in the layout of CompiledGrammar, in arrays with spare
+ * room at their ends. A change moves later productions in place, growing
+ * the arrays by doubling when they are full, so it allocates nothing for
+ * most changes. A snapshot shares the current arrays and takes constant
+ * time, and the first change after it copies them, as the sets of the
+ * analysis; snapshots taken again without changes return the same grammar.
+ * Nullable, productive and reachable nonterminals and counts of
+ * productions breaking every normal form are kept up to date and given to
+ * the analysis of the snapshot, so it's not checked again. Productive and
+ * nullable nonterminals come with the height of their lowest derivation
+ * tree of a word, or of the empty word. Adding a production computes them
+ * again only if it makes a tree of its nonterminal lower, and removing one
+ * only if it was the last production giving the lowest tree; reachable
+ * nonterminals are searched from the ones a new production reaches and
+ * computed again only after removing a production with nonterminals. **
+ */
+public final class GrammarBuilder {
+
+    /* Kinds of productions counted for normal forms, as in GrammarAnalysis. */
+    private static final int NOT_REGULAR = 0;
+    private static final int RIGHT_LINEAR = 1;
+    private static final int LEFT_LINEAR = 2;
+    private static final int NOT_CHOMSKY = 3;
+    private static final int NOT_GREIBACH = 4;
+
+    private final SymbolTable symbolTable;
+    private final int nonterminalsCount;
+    private int[] ruleStart;
+    private int[] productionStart;
+    private int[] productionLhs;
+    private int[] symbols;
+    private int productionsCount;
+    private boolean[] nullable;
+    private boolean[] productive;
+    private boolean[] reachable;
+    /* Heights of lowest trees, 0 if there is none. */
+    private int[] productiveHeight;
+    private int[] nullableHeight;
+    /* Rules and sets given to the last snapshot, copied before they
+     * change. */
+    private boolean shared;
+    private final int[] kinds = new int[5];
+    private int withoutProductions;
+    private int unproductive;
+    private ContextFreeGrammar snapshot;
+
+    /* No productions yet. */
+    GrammarBuilder(SymbolTable symbolTable) {
+        this.symbolTable = symbolTable;
+        nonterminalsCount = symbolTable.getNonterminalsCount();
+        ruleStart = new int[nonterminalsCount + 1];
+        productionStart = new int[1];
+        productionLhs = new int[0];
+        symbols = new int[0];
+        nullable = new boolean[nonterminalsCount];
+        productive = new boolean[nonterminalsCount];
+        reachable = new boolean[nonterminalsCount];
+        if (nonterminalsCount > 0) {
+            reachable[0] = true;
+        }
+        productiveHeight = new int[nonterminalsCount];
+        nullableHeight = new int[nonterminalsCount];
+        withoutProductions = nonterminalsCount;
+        unproductive = nonterminalsCount;
+    }
+
+    /* Productions of the grammar, which is the first snapshot. */
+    GrammarBuilder(ContextFreeGrammar grammar) {
+        CompiledGrammar compiled = grammar.getCompiled();
+        GrammarAnalysis analysis = compiled.getAnalysis();
+        symbolTable = compiled.getSymbolTable();
+        nonterminalsCount = compiled.getNonterminalsCount();
+        productionsCount = compiled.getProductionsCount();
+        ruleStart = new int[nonterminalsCount + 1];
+        productionStart = new int[productionsCount + 1];
+        productionLhs = new int[productionsCount];
+        int size = 0;
+        for (int production = 0; production < productionsCount; production++) {
+            size += compiled.length(production);
+        }
+        symbols = new int[size];
+        size = 0;
+        for (int production = 0; production < productionsCount; production++) {
+            productionStart[production] = size;
+            productionLhs[production] = compiled.lhs(production);
+            for (int i = 0; i < compiled.length(production); i++) {
+                symbols[size++] = compiled.symbolAt(production, i);
+            }
+        }
+        productionStart[productionsCount] = size;
+        for (int production = 0; production < productionsCount; production++) {
+            count(production, 1);
+        }
+        reachable = new boolean[nonterminalsCount];
+        for (int nonterminal = 0; nonterminal < nonterminalsCount; nonterminal++) {
+            ruleStart[nonterminal + 1] = compiled.rulesEnd(nonterminal);
+            reachable[nonterminal] = analysis.isReachable(nonterminal);
+        }
+        computeProductive();
+        computeNullable();
+        snapshot = grammar;
+    }
+
+    /* Builder of a grammar with one-character names, as in the constructor
+     * of ContextFreeGrammar. */
+    static GrammarBuilder ofCharacters(String terminals, String nonterminals) throws ConstructorException {
+        if (!StringUtils.allCharactersLowerCase(terminals) || !StringUtils.allCharactersUnique(terminals)) {
+            throw new ConstructorException("Wrong terminals");
+        }
+        if (!StringUtils.allCharactersUpperCase(nonterminals) || !StringUtils.allCharactersUnique(nonterminals)) {
+            throw new ConstructorException("Wrong nonterminals");
+        }
+        return new GrammarBuilder(SymbolTable.ofCharacters(terminals, nonterminals));
+    }
+
+    public SymbolTable getSymbolTable() {
+        return symbolTable;
+    }
+
+    public int getProductionsCount() {
+        return productionsCount;
+    }
+
+    public boolean isNullable(int nonterminal) {
+        return nullable[nonterminal];
+    }
+
+    public boolean isProductive(int nonterminal) {
+        return productive[nonterminal];
+    }
+
+    public boolean isReachable(int nonterminal) {
+        return reachable[nonterminal];
+    }
+
+    public boolean ifRegular() {
+        return kinds[NOT_REGULAR] == 0 && (kinds[RIGHT_LINEAR] == 0 || kinds[LEFT_LINEAR] == 0);
+    }
+
+    public boolean ifChomsky() {
+        return kinds[NOT_CHOMSKY] == 0;
+    }
+
+    public boolean ifGreibach() {
+        return kinds[NOT_GREIBACH] == 0;
+    }
+
+    /* Whether a snapshot would be a correct context-free grammar. */
+    public boolean isContextFree() {
+        return withoutProductions == 0 && unproductive == 0;
+    }
+
+    /**
+     * * Adds the production lhs -> product after other productions of lhs.
+     * Throws ConstructorException for symbols not in the symbol table. **
+     */
+    public GrammarBuilder add(int lhs, int... product) throws ConstructorException {
+        if (lhs < 0 || lhs >= nonterminalsCount) {
+            throw new ConstructorException("Wrong nonterminal");
+        }
+        for (int symbol : product) {
+            if (symbol < 0 || symbol >= symbolTable.getSymbolsCount()) {
+                throw new ConstructorException("Non-existing character in a production");
+            }
+        }
+        copyIfShared();
+        int production = ruleStart[lhs + 1];
+        int position = productionStart[production];
+        int end = productionStart[productionsCount];
+        productionLhs = withCapacity(productionLhs, productionsCount + 1);
+        productionStart = withCapacity(productionStart, productionsCount + 2);
+        symbols = withCapacity(symbols, end + product.length);
+        System.arraycopy(productionLhs, production, productionLhs, production + 1, productionsCount - production);
+        productionLhs[production] = lhs;
+        System.arraycopy(productionStart, production, productionStart, production + 1, productionsCount + 1 - production);
+        for (int p = production + 1; p <= productionsCount + 1; p++) {
+            productionStart[p] += product.length;
+        }
+        System.arraycopy(symbols, position, symbols, position + product.length, end - position);
+        System.arraycopy(product, 0, symbols, position, product.length);
+        productionsCount++;
+        shiftRules(lhs, 1);
+        snapshot = null;
+        count(production, 1);
+        if (ruleStart[lhs + 1] - ruleStart[lhs] == 1) {
+            withoutProductions--;
+        }
+
+        if (lowers(production, productiveHeight, true)) {
+            computeProductive();
+        }
+        if (lowers(production, nullableHeight, false)) {
+            computeNullable();
+        }
+        if (reachable[lhs]) {
+            reachThrough(production);
+        }
+        return this;
+    }
+
+    /* Production given by names of one-character symbols. */
+    public GrammarBuilder add(char lhs, String product) throws ConstructorException {
+        return add(symbolTable.idOf(lhs), idsOf(product));
+    }
+
+    /**
+     * * Removes the first production lhs -> product, if there is one, and
+     * tells whether it was found. **
+     */
+    public boolean remove(int lhs, int... product) {
+        if (lhs < 0 || lhs >= nonterminalsCount) {
+            return false;
+        }
+        int production = ruleStart[lhs];
+        while (production < ruleStart[lhs + 1] && !Arrays.equals(symbols, productionStart[production],
+                productionStart[production + 1], product, 0, product.length)) {
+            production++;
+        }
+        if (production == ruleStart[lhs + 1]) {
+            return false;
+        }
+        boolean supportsProductive = onlyLowest(production, productiveHeight, true);
+        boolean supportsNullable = onlyLowest(production, nullableHeight, false);
+        boolean reachesOthers = false;
+        for (int symbol : product) {
+            reachesOthers |= symbolTable.isNonterminal(symbol) && symbol != lhs;
+        }
+        count(production, -1);
+
+        copyIfShared();
+        int position = productionStart[production];
+        int end = productionStart[productionsCount];
+        System.arraycopy(productionLhs, production + 1, productionLhs, production, productionsCount - production - 1);
+        System.arraycopy(productionStart, production + 1, productionStart, production, productionsCount - production);
+        for (int p = production; p < productionsCount; p++) {
+            productionStart[p] -= product.length;
+        }
+        System.arraycopy(symbols, position + product.length, symbols, position, end - position - product.length);
+        productionsCount--;
+        shiftRules(lhs, -1);
+        snapshot = null;
+        if (ruleStart[lhs + 1] == ruleStart[lhs]) {
+            withoutProductions++;
+        }
+
+        if (supportsProductive) {
+            computeProductive();
+        }
+        if (supportsNullable) {
+            computeNullable();
+        }
+        if (reachable[lhs] && reachesOthers) {
+            reachable = new boolean[nonterminalsCount];
+            reachable[0] = true;
+            reachFrom(0);
+        }
+        return true;
+    }
+
+    public boolean remove(char lhs, String product) {
+        return remove(symbolTable.idOf(lhs), idsOf(product));
+    }
+
+    /**
+     * * Immutable grammar with the current productions. Throws
+     * ConstructorException, as the constructor of ContextFreeGrammar, if
+     * they don't make a correct context-free grammar. **
+     */
+    public ContextFreeGrammar snapshot() throws ConstructorException {
+        if (snapshot != null) {
+            return snapshot;
+        }
+        if (withoutProductions > 0) {
+            throw new ConstructorException("Useless nonterminal");
+        }
+        if (unproductive > 0) {
+            StringBuilder sb = new StringBuilder("Useless nonterminal:");
+            for (int nonterminal = 0; nonterminal < nonterminalsCount; nonterminal++) {
+                if (!productive[nonterminal]) {
+                    if (sb.charAt(sb.length() - 1) == ':' || !symbolTable.hasSingleCharacterNames()) {
+                        sb.append(' ');
+                    }
+                    sb.append(symbolTable.nameOf(nonterminal));
+                }
+            }
+            throw new ConstructorException(sb.toString());
+        }
+        CompiledGrammar compiled = compiled();
+        compiled.getAnalysis().restore(ifRegular(), ifChomsky(), ifGreibach(), nullable, productive, reachable);
+        compiled.getAnalysis().setContextFree();
+        shared = true;
+        snapshot = new ContextFreeGrammar(compiled);
+        return snapshot;
+    }
+
+    private int[] idsOf(String product) {
+        int[] ids = new int[product.length()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = symbolTable.idOf(product.charAt(i));
+        }
+        return ids;
+    }
+
+    private CompiledGrammar compiled() {
+        return new CompiledGrammar(symbolTable, ruleStart, productionStart, productionLhs, symbols, productionsCount);
+    }
+
+    private void computeProductive() {
+        productiveHeight = heights(true);
+        productive = new boolean[nonterminalsCount];
+        unproductive = 0;
+        for (int nonterminal = 0; nonterminal < nonterminalsCount; nonterminal++) {
+            productive[nonterminal] = productiveHeight[nonterminal] > 0;
+            unproductive += productive[nonterminal] ? 0 : 1;
+        }
+    }
+
+    private void computeNullable() {
+        nullableHeight = heights(false);
+        nullable = new boolean[nonterminalsCount];
+        for (int nonterminal = 0; nonterminal < nonterminalsCount; nonterminal++) {
+            nullable[nonterminal] = nullableHeight[nonterminal] > 0;
+        }
+    }
+
+    /**
+     * * Heights of lowest trees deriving a word, of terminals if they are
+     * allowed, as in CompiledGrammar.derivingNonterminals. Nonterminals are
+     * queued in order of heights, so the first production resolved for
+     * a nonterminal gives its lowest tree. **
+     */
+    private int[] heights(boolean terminalsAllowed) {
+        int[] unresolved = new int[productionsCount];
+        int[] occurrencesStart = new int[nonterminalsCount + 1];
+        for (int production = 0; production < productionsCount; production++) {
+            for (int i = productionStart[production]; i < productionStart[production + 1]; i++) {
+                if (symbolTable.isNonterminal(symbols[i])) {
+                    unresolved[production]++;
+                    occurrencesStart[symbols[i] + 1]++;
+                } else if (!terminalsAllowed) {
+                    unresolved[production] = Integer.MAX_VALUE / 2;
+                }
+            }
+        }
+        for (int nonterminal = 0; nonterminal < nonterminalsCount; nonterminal++) {
+            occurrencesStart[nonterminal + 1] += occurrencesStart[nonterminal];
+        }
+        int[] occurrences = new int[occurrencesStart[nonterminalsCount]];
+        int[] filled = Arrays.copyOf(occurrencesStart, nonterminalsCount);
+        for (int production = 0; production < productionsCount; production++) {
+            for (int i = productionStart[production]; i < productionStart[production + 1]; i++) {
+                if (symbolTable.isNonterminal(symbols[i])) {
+                    occurrences[filled[symbols[i]]++] = production;
+                }
+            }
+        }
+
+        int[] heights = new int[nonterminalsCount];
+        int[] queue = new int[nonterminalsCount];
+        int queueEnd = 0;
+        for (int production = 0; production < productionsCount; production++) {
+            int lhs = productionLhs[production];
+            if (unresolved[production] == 0 && heights[lhs] == 0) {
+                heights[lhs] = 1;
+                queue[queueEnd++] = lhs;
+            }
+        }
+        for (int queueStart = 0; queueStart < queueEnd; queueStart++) {
+            int nonterminal = queue[queueStart];
+            for (int i = occurrencesStart[nonterminal]; i < occurrencesStart[nonterminal + 1]; i++) {
+                int production = occurrences[i];
+                int lhs = productionLhs[production];
+                if (--unresolved[production] == 0 && heights[lhs] == 0) {
+                    heights[lhs] = heights[nonterminal] + 1;
+                    queue[queueEnd++] = lhs;
+                }
+            }
+        }
+        return heights;
+    }
+
+    /* Height of the lowest tree starting with the production, 0 if there
+     * is none. */
+    private int height(int production, int[] heights, boolean terminalsAllowed) {
+        int max = 0;
+        for (int i = productionStart[production]; i < productionStart[production + 1]; i++) {
+            int symbol = symbols[i];
+            if (symbolTable.isNonterminal(symbol)) {
+                if (heights[symbol] == 0) {
+                    return 0;
+                }
+                max = Math.max(max, heights[symbol]);
+            } else if (!terminalsAllowed) {
+                return 0;
+            }
+        }
+        return max + 1;
+    }
+
+    /* Whether the new production gives its nonterminal a lower tree. */
+    private boolean lowers(int production, int[] heights, boolean terminalsAllowed) {
+        int height = height(production, heights, terminalsAllowed);
+        int lhs = productionLhs[production];
+        return height > 0 && (heights[lhs] == 0 || height < heights[lhs]);
+    }
+
+    /* Whether the production is the only one giving the lowest tree of its
+     * nonterminal. */
+    private boolean onlyLowest(int production, int[] heights, boolean terminalsAllowed) {
+        int lhs = productionLhs[production];
+        if (heights[lhs] == 0 || height(production, heights, terminalsAllowed) != heights[lhs]) {
+            return false;
+        }
+        for (int other = ruleStart[lhs]; other < ruleStart[lhs + 1]; other++) {
+            if (other != production && height(other, heights, terminalsAllowed) == heights[lhs]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void copyIfShared() {
+        if (shared) {
+            ruleStart = ruleStart.clone();
+            productionStart = productionStart.clone();
+            productionLhs = productionLhs.clone();
+            symbols = symbols.clone();
+            nullable = nullable.clone();
+            productive = productive.clone();
+            reachable = reachable.clone();
+            shared = false;
+        }
+    }
+
+    /* The array, or a copy twice as long if it's shorter than the length. */
+    private static int[] withCapacity(int[] array, int length) {
+        return length <= array.length ? array : Arrays.copyOf(array, Math.max(length, 2 * array.length));
+    }
+
+    /* Productions of nonterminals after lhs move by the change. */
+    private void shiftRules(int lhs, int change) {
+        for (int nonterminal = lhs + 1; nonterminal <= nonterminalsCount; nonterminal++) {
+            ruleStart[nonterminal] += change;
+        }
+    }
+
+    /* Marks nonterminals newly reachable through the production. */
+    private void reachThrough(int production) {
+        for (int i = productionStart[production]; i < productionStart[production + 1]; i++) {
+            int symbol = symbols[i];
+            if (symbolTable.isNonterminal(symbol) && !reachable[symbol]) {
+                reachable[symbol] = true;
+                reachFrom(symbol);
+            }
+        }
+    }
+
+    /* Breadth-first search from a reachable nonterminal, through
+     * nonterminals not reached before. */
+    private void reachFrom(int from) {
+        int[] queue = new int[nonterminalsCount];
+        int queueEnd = 0;
+        queue[queueEnd++] = from;
+        for (int queueStart = 0; queueStart < queueEnd; queueStart++) {
+            int lhs = queue[queueStart];
+            for (int i = productionStart[ruleStart[lhs]]; i < productionStart[ruleStart[lhs + 1]]; i++) {
+                int symbol = symbols[i];
+                if (symbolTable.isNonterminal(symbol) && !reachable[symbol]) {
+                    reachable[symbol] = true;
+                    queue[queueEnd++] = symbol;
+                }
+            }
+        }
+    }
+
+    /* Adds the change to counts of kinds of the production, as in
+     * GrammarAnalysis.forms(). */
+    private void count(int production, int change) {
+        int from = productionStart[production];
+        int length = productionStart[production + 1] - from;
+        int first = length > 0 ? symbols[from] : CompiledGrammar.UNKNOWN;
+        int second = length > 1 ? symbols[from + 1] : CompiledGrammar.UNKNOWN;
+        boolean firstTerminal = length > 0 && symbolTable.isTerminal(first);
+        boolean firstNonterminal = length > 0 && symbolTable.isNonterminal(first);
+        boolean secondTerminal = length > 1 && symbolTable.isTerminal(second);
+        boolean secondNonterminal = length > 1 && symbolTable.isNonterminal(second);
+        if (length > 2 || (length == 1 && !firstTerminal)) {
+            kinds[NOT_REGULAR] += change;
+        }
+        if (length == 2 && firstTerminal && secondNonterminal) {
+            kinds[RIGHT_LINEAR] += change;
+        }
+        if (length == 2 && firstNonterminal && secondTerminal) {
+            kinds[LEFT_LINEAR] += change;
+        }
+        if (length == 0 || length > 2 || (length == 1 && !firstTerminal)
+                || (length == 2 && (!firstNonterminal || !secondNonterminal))) {
+            kinds[NOT_CHOMSKY] += change;
+        }
+        boolean greibach = firstTerminal;
+        for (int i = 1; i < length && greibach; i++) {
+            greibach = symbolTable.isNonterminal(symbols[from + i]);
+        }
+        if (!greibach) {
+            kinds[NOT_GREIBACH] += change;
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package gramatyka;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+ * * Binary file of a grammar with results of its analysis, read without
+ * parsing productions.
+ *
+ * A header of fixed size holds sizes, normal forms, the fingerprint and
+ * a CRC32C of the whole file. Then come the flat arrays of CompiledGrammar
+ * as big-endian ints, lengths of names, a byte of nullable, productive and
+ * reachable for every nonterminal, and names of symbols in UTF-8.
+ *
+ * Files are mapped and checked: the checksum, the sizes, the ranges of
+ * arrays and names. Arrays are copied out of the mapped buffer in bulk, one
+ * copy for each, into the grammar, and the analysis read with them is
+ * trusted, so the check of a context-free grammar and the fingerprint are
+ * not computed again. **
+ */
+public final class GrammarFile {
+
+    private static final int MAGIC = 0x47524d42;
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int CHECKSUM_OFFSET = 52;
+
+    /* Flags of the header. */
+    private static final int REGULAR_GRAMMAR = 1;
+    private static final int REGULAR_FORM = 2;
+    private static final int CHOMSKY_FORM = 4;
+    private static final int GREIBACH_FORM = 8;
+
+    /* Flags of nonterminals. */
+    private static final int NULLABLE = 1;
+    private static final int PRODUCTIVE = 2;
+    private static final int REACHABLE = 4;
+
+    private GrammarFile() {
+    }
+
+    /* Written to a temporary file first, so readers never see a part of it. */
+    public static void write(ContextFreeGrammar grammar, Path file) throws IOException {
+        CompiledGrammar compiled = grammar.getCompiled();
+        GrammarAnalysis analysis = compiled.getAnalysis();
+        int nonterminalsCount = compiled.getNonterminalsCount();
+        int productionsCount = compiled.getProductionsCount();
+        byte[][] names = new byte[compiled.getSymbolsCount()][];
+        long namesBytes = 0;
+        for (int symbol = 0; symbol < names.length; symbol++) {
+            names[symbol] = compiled.nameOf(symbol).getBytes(StandardCharsets.UTF_8);
+            namesBytes += names[symbol].length;
+        }
+        int symbolsLength = 0;
+        for (int production = 0; production < productionsCount; production++) {
+            symbolsLength += compiled.length(production);
+        }
+        long size = HEADER_SIZE + (long) Integer.BYTES * (nonterminalsCount + 1 + productionsCount + 1
+                + symbolsLength + names.length) + nonterminalsCount + namesBytes;
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Grammar too large for a file: " + size + " bytes");
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate((int) size);
+        buffer.position(HEADER_SIZE);
+        for (int nonterminal = 0; nonterminal <= nonterminalsCount; nonterminal++) {
+            buffer.putInt(nonterminal < nonterminalsCount ? compiled.rulesStart(nonterminal) : productionsCount);
+        }
+        int position = 0;
+        for (int production = 0; production < productionsCount; production++) {
+            buffer.putInt(position);
+            position += compiled.length(production);
+        }
+        buffer.putInt(position);
+        for (int production = 0; production < productionsCount; production++) {
+            for (int i = 0; i < compiled.length(production); i++) {
+                buffer.putInt(compiled.symbolAt(production, i));
+            }
+        }
+        for (byte[] name : names) {
+            buffer.putInt(name.length);
+        }
+        for (int nonterminal = 0; nonterminal < nonterminalsCount; nonterminal++) {
+            buffer.put((byte) ((analysis.isNullable(nonterminal) ? NULLABLE : 0)
+                    | (analysis.isProductive(nonterminal) ? PRODUCTIVE : 0)
+                    | (analysis.isReachable(nonterminal) ? REACHABLE : 0)));
+        }
+        for (byte[] name : names) {
+            buffer.put(name);
+        }
+
+        GrammarFingerprint fingerprint = compiled.getFingerprint();
+        buffer.position(0);
+        buffer.putInt(MAGIC);
+        buffer.putInt(FORMAT_VERSION);
+        buffer.putInt((grammar.isRegular() ? REGULAR_GRAMMAR : 0) | (analysis.isRegularForm() ? REGULAR_FORM : 0)
+                | (analysis.isChomskyForm() ? CHOMSKY_FORM : 0) | (analysis.isGreibachForm() ? GREIBACH_FORM : 0));
+        buffer.putInt(nonterminalsCount);
+        buffer.putInt(compiled.getTerminalsCount());
+        buffer.putInt(productionsCount);
+        buffer.putInt(symbolsLength);
+        buffer.putInt((int) namesBytes);
+        buffer.putInt(GrammarFingerprint.VERSION);
+        buffer.putLong(fingerprint.getHigh());
+        buffer.putLong(fingerprint.getLow());
+        buffer.putLong(CHECKSUM_OFFSET, checksum(buffer));
+        buffer.position(0);
+
+        Path directory = file.toAbsolutePath().getParent();
+        Path temporary = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+            try {
+                Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /* Whether the file starts as a grammar file, without checking the rest. */
+    public static boolean isGrammarFile(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(Integer.BYTES);
+            while (magic.hasRemaining() && channel.read(magic) >= 0) {
+                /* Reads until the buffer is full or the file ends. */
+            }
+            return !magic.hasRemaining() && magic.getInt(0) == MAGIC;
+        }
+    }
+
+    /* Throws ConstructorException if the file doesn't hold a correct grammar. */
+    public static ContextFreeGrammar read(Path file) throws IOException, ConstructorException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+                throw new ConstructorException("Wrong grammar file size: " + size);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+
+        if (buffer.getInt() != MAGIC) {
+            throw new ConstructorException("Not a grammar file");
+        }
+        int version = buffer.getInt();
+        if (version != FORMAT_VERSION) {
+            throw new ConstructorException("Unsupported grammar file version: " + version);
+        }
+        int flags = buffer.getInt();
+        int nonterminalsCount = buffer.getInt();
+        int terminalsCount = buffer.getInt();
+        int productionsCount = buffer.getInt();
+        int symbolsLength = buffer.getInt();
+        int namesBytes = buffer.getInt();
+        int fingerprintVersion = buffer.getInt();
+        long high = buffer.getLong();
+        long low = buffer.getLong();
+        long expectedChecksum = buffer.getLong(CHECKSUM_OFFSET);
+        if (nonterminalsCount < 1 || terminalsCount < 0 || productionsCount < 0 || symbolsLength < 0
+                || namesBytes < 0) {
+            throw new ConstructorException("Wrong sizes in grammar file");
+        }
+        int symbolsCount = nonterminalsCount + terminalsCount;
+        long expectedSize = HEADER_SIZE + (long) Integer.BYTES * ((long) nonterminalsCount + 1 + productionsCount + 1
+                + symbolsLength + symbolsCount) + nonterminalsCount + namesBytes;
+        if (expectedSize != buffer.capacity()) {
+            throw new ConstructorException("Wrong grammar file size: " + buffer.capacity());
+        }
+        if (checksum(buffer) != expectedChecksum) {
+            throw new ConstructorException("Wrong grammar file checksum");
+        }
+
+        IntBuffer ints = buffer.position(HEADER_SIZE).slice().asIntBuffer();
+        int[] ruleStart = new int[nonterminalsCount + 1];
+        int[] productionStart = new int[productionsCount + 1];
+        int[] symbols = new int[symbolsLength];
+        int[] nameLengths = new int[symbolsCount];
+        ints.get(ruleStart).get(productionStart).get(symbols).get(nameLengths);
+        buffer.position(HEADER_SIZE + Integer.BYTES * (ruleStart.length + productionStart.length + symbols.length
+                + nameLengths.length));
+        byte[] nonterminalFlags = new byte[nonterminalsCount];
+        byte[] namesData = new byte[namesBytes];
+        buffer.get(nonterminalFlags).get(namesData);
+
+        checkOffsets(ruleStart, productionsCount, "rules");
+        checkOffsets(productionStart, symbolsLength, "productions");
+        for (int lhs = 0; lhs < nonterminalsCount; lhs++) {
+            if (ruleStart[lhs] == ruleStart[lhs + 1]) {
+                throw new ConstructorException("Useless nonterminal");
+            }
+        }
+        for (int symbol : symbols) {
+            if (symbol < 0 || symbol >= symbolsCount) {
+                throw new ConstructorException("Non-existing character in a production");
+            }
+        }
+
+        String[] nonterminals = new String[nonterminalsCount];
+        String[] terminals = new String[terminalsCount];
+        int offset = 0;
+        for (int symbol = 0; symbol < symbolsCount; symbol++) {
+            if (nameLengths[symbol] < 0 || nameLengths[symbol] > namesBytes - offset) {
+                throw new ConstructorException("Wrong names in grammar file");
+            }
+            String name = new String(namesData, offset, nameLengths[symbol], StandardCharsets.UTF_8);
+            offset += nameLengths[symbol];
+            if (symbol < nonterminalsCount) {
+                nonterminals[symbol] = name;
+            } else {
+                terminals[symbol - nonterminalsCount] = name;
+            }
+        }
+        if (offset != namesBytes) {
+            throw new ConstructorException("Wrong names in grammar file");
+        }
+
+        boolean[] nullable = new boolean[nonterminalsCount];
+        boolean[] productive = new boolean[nonterminalsCount];
+        boolean[] reachable = new boolean[nonterminalsCount];
+        for (int nonterminal = 0; nonterminal < nonterminalsCount; nonterminal++) {
+            nullable[nonterminal] = (nonterminalFlags[nonterminal] & NULLABLE) != 0;
+            productive[nonterminal] = (nonterminalFlags[nonterminal] & PRODUCTIVE) != 0;
+            reachable[nonterminal] = (nonterminalFlags[nonterminal] & REACHABLE) != 0;
+            if (!productive[nonterminal]) {
+                throw new ConstructorException("Useless nonterminal");
+            }
+        }
+
+        CompiledGrammar compiled = new CompiledGrammar(new SymbolTable(terminals, nonterminals), ruleStart,
+                productionStart, symbols);
+        compiled.getAnalysis().restore((flags & REGULAR_FORM) != 0, (flags & CHOMSKY_FORM) != 0,
+                (flags & GREIBACH_FORM) != 0, nullable, productive, reachable);
+        compiled.getAnalysis().setContextFree();
+        if (fingerprintVersion == GrammarFingerprint.VERSION) {
+            compiled.setFingerprint(GrammarFingerprint.of(high, low));
+        }
+        ContextFreeGrammar grammar = new ContextFreeGrammar(compiled);
+        return (flags & REGULAR_GRAMMAR) != 0 ? ContextFreeGrammar.regularGrammar(grammar) : grammar;
+    }
+
+    /* CRC32C of the whole file with the checksum taken as 0. */
+    private static long checksum(ByteBuffer buffer) {
+        CRC32C checksum = new CRC32C();
+        checksum.update(buffer.duplicate().position(0).limit(CHECKSUM_OFFSET));
+        checksum.update(new byte[Long.BYTES]);
+        checksum.update(buffer.duplicate().limit(buffer.capacity()).position(CHECKSUM_OFFSET + Long.BYTES));
+        return checksum.getValue();
+    }
+
+    /* Offsets start at 0, don't decrease and end at the given size. */
+    private static void checkOffsets(int[] offsets, int end, String what) throws ConstructorException {
+        if (offsets[0] != 0 || offsets[offsets.length - 1] != end) {
+            throw new ConstructorException("Wrong " + what + " in grammar file");
+        }
+        for (int i = 1; i < offsets.length; i++) {
+            if (offsets[i] < offsets[i - 1]) {
+                throw new ConstructorException("Wrong " + what + " in grammar file");
+            }
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package gramatyka;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * * 128-bit fingerprint of a grammar: the first half of SHA-256 of its
+ * canonical form, stable between runs.
+ *
+ * The canonical form leaves out names and order of nonterminals, order of
+ * productions and unreachable nonterminals, which don't change the language;
+ * names of terminals are in, as words are given by them. Grammars with equal
+ * fingerprints generate the same words, so results built for one can be
+ * shared by the other once nonterminals are renamed. Ids of terminals in
+ * them are equal if they have as many nonterminals. **
+ */
+public final class GrammarFingerprint {
+
+    /* Changes when the hashed form changes, so stored fingerprints can be
+     * told apart. */
+    static final int VERSION = 2;
+
+    private final long high;
+    private final long low;
+
+    private GrammarFingerprint(long high, long low) {
+        this.high = high;
+        this.low = low;
+    }
+
+    /* Fingerprint read back, as from a grammar file. */
+    static GrammarFingerprint of(long high, long low) {
+        return new GrammarFingerprint(high, low);
+    }
+
+    static GrammarFingerprint of(CompiledGrammar compiled) {
+        Hasher hasher = new Hasher();
+        hasher.putInt(VERSION);
+        hasher.putInt(compiled.getTerminalsCount());
+        for (int terminal = compiled.getNonterminalsCount(); terminal < compiled.getSymbolsCount(); terminal++) {
+            byte[] name = compiled.nameOf(terminal).getBytes(StandardCharsets.UTF_8);
+            hasher.putInt(name.length);
+            for (byte b : name) {
+                hasher.putByte(b);
+            }
+        }
+        CanonicalForm canonical = compiled.getCanonicalForm();
+        hasher.putInt(canonical.getNonterminalsCount());
+        for (int nonterminal = 0; nonterminal < canonical.getNonterminalsCount(); nonterminal++) {
+            hasher.putInt(canonical.rulesEnd(nonterminal) - canonical.rulesStart(nonterminal));
+            for (int production = canonical.rulesStart(nonterminal); production < canonical.rulesEnd(nonterminal); production++) {
+                hasher.putInt(canonical.length(production));
+                for (int i = 0; i < canonical.length(production); i++) {
+                    hasher.putInt(canonical.symbolAt(production, i));
+                }
+            }
+        }
+        return hasher.fingerprint();
+    }
+
+    public long getHigh() {
+        return high;
+    }
+
+    public long getLow() {
+        return low;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof GrammarFingerprint && high == ((GrammarFingerprint) o).high
+                && low == ((GrammarFingerprint) o).low;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(high ^ low);
+    }
+
+    /* 32 hexadecimal digits. */
+    @Override
+    public String toString() {
+        return String.format("%016x%016x", high, low);
+    }
+
+    /* SHA-256 fed through a buffer of big-endian ints. */
+    private static final class Hasher {
+
+        private final MessageDigest digest;
+        private final ByteBuffer buffer = ByteBuffer.allocate(1 << 12);
+
+        Hasher() {
+            try {
+                digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                /* Every Java platform has SHA-256. */
+                throw new IllegalStateException(e);
+            }
+        }
+
+        void putInt(int value) {
+            if (buffer.remaining() < Integer.BYTES) {
+                flush();
+            }
+            buffer.putInt(value);
+        }
+
+        void putByte(byte value) {
+            if (!buffer.hasRemaining()) {
+                flush();
+            }
+            buffer.put(value);
+        }
+
+        private void flush() {
+            buffer.flip();
+            digest.update(buffer);
+            buffer.clear();
+        }
+
+        GrammarFingerprint fingerprint() {
+            flush();
+            ByteBuffer hash = ByteBuffer.wrap(digest.digest());
+            return new GrammarFingerprint(hash.getLong(), hash.getLong());
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package gramatyka;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * * Grammar read from text in the form printed by toString:
+ *
+ *     Gramatyka: bezkontekstowa/&
+ *     Terminale: ab
+ *     Nieterminale: SA
+ *     Produkcje
+ *     S -> aA
+ *     A -> &
+ *
+ * The first line is optional, and a regular grammar marked as one is read
+ * as one. The first nonterminal is the start. Names are separated with
+ * spaces if any line of names has a space, as toString separates them
+ * when some name is longer than one character; otherwise every character
+ * is a name, unless that gives no grammar, as for a single terminal and
+ * a single nonterminal with longer names. & is the empty right-hand side.
+ * Blank lines are skipped. **
+ */
+public final class GrammarText {
+
+    private static final String TYPE = "Gramatyka:";
+    private static final String TERMINALS = "Terminale:";
+    private static final String NONTERMINALS = "Nieterminale:";
+    private static final String PRODUCTIONS = "Produkcje";
+    private static final String ARROW = "->";
+    private static final String EMPTY = "&";
+
+    private GrammarText() {
+    }
+
+    public static ContextFreeGrammar read(Path file) throws IOException, ConstructorException {
+        return parse(Files.readAllLines(file, StandardCharsets.UTF_8));
+    }
+
+    public static ContextFreeGrammar parse(String text) throws ConstructorException {
+        return parse(List.of(text.split("\r?\n")));
+    }
+
+    private static ContextFreeGrammar parse(List<String> lines) throws ConstructorException {
+        boolean regular = false;
+        String terminalsLine = null;
+        String nonterminalsLine = null;
+        int productionsLine = -1;
+        int lineNumber = 0;
+        for (; lineNumber < lines.size() && productionsLine < 0; lineNumber++) {
+            String line = lines.get(lineNumber).trim();
+            if (line.isEmpty()) {
+                continue;
+            }
+            if (line.startsWith(TYPE) && terminalsLine == null) {
+                regular = line.substring(TYPE.length()).trim().startsWith("regularna");
+            } else if (line.startsWith(TERMINALS) && terminalsLine == null) {
+                terminalsLine = line.substring(TERMINALS.length()).trim();
+            } else if (line.startsWith(NONTERMINALS) && nonterminalsLine == null) {
+                nonterminalsLine = line.substring(NONTERMINALS.length()).trim();
+            } else if (line.equals(PRODUCTIONS) && terminalsLine != null && nonterminalsLine != null) {
+                productionsLine = lineNumber;
+            } else {
+                throw new ConstructorException("Wrong line " + (lineNumber + 1));
+            }
+        }
+        if (productionsLine < 0) {
+            throw new ConstructorException("No productions");
+        }
+        boolean spaced = terminalsLine.contains(" ") || nonterminalsLine.contains(" ");
+        if (!spaced) {
+            try {
+                return parse(lines, lineNumber, terminalsLine, nonterminalsLine, regular, false);
+            } catch (ConstructorException e) {
+                /* A single name longer than one character of both kinds. */
+                spaced = true;
+            }
+        }
+        return parse(lines, lineNumber, terminalsLine, nonterminalsLine, regular, spaced);
+    }
+
+    private static ContextFreeGrammar parse(List<String> lines, int lineNumber, String terminalsLine,
+            String nonterminalsLine, boolean regular, boolean spaced) throws ConstructorException {
+        String[] terminals = names(terminalsLine, spaced);
+        String[] nonterminals = names(nonterminalsLine, spaced);
+        SymbolTable symbolTable = new SymbolTable(terminals, nonterminals);
+
+        List<List<String[]>> productions = new ArrayList<>();
+        for (int i = 0; i < nonterminals.length; i++) {
+            productions.add(new ArrayList<>());
+        }
+        for (; lineNumber < lines.size(); lineNumber++) {
+            String line = lines.get(lineNumber).trim();
+            if (line.isEmpty()) {
+                continue;
+            }
+            int arrow = line.indexOf(ARROW);
+            if (arrow < 0) {
+                throw new ConstructorException("Wrong line " + (lineNumber + 1));
+            }
+            int lhs = symbolTable.idOf(line.substring(0, arrow).trim());
+            if (lhs == SymbolTable.UNKNOWN || !symbolTable.isNonterminal(lhs)) {
+                throw new ConstructorException("Wrong nonterminal");
+            }
+            String product = line.substring(arrow + ARROW.length()).trim();
+            productions.get(lhs).add(product.equals(EMPTY) ? new String[0] : names(product, spaced));
+        }
+        String[][][] rules = new String[nonterminals.length][][];
+        for (int lhs = 0; lhs < rules.length; lhs++) {
+            rules[lhs] = productions.get(lhs).toArray(new String[0][]);
+        }
+        ContextFreeGrammar grammar = new ContextFreeGrammar(terminals, nonterminals, rules);
+        return regular ? ContextFreeGrammar.regularGrammar(grammar) : grammar;
+    }
+
+    private static String[] names(String line, boolean spaced) {
+        if (line.isEmpty()) {
+            return new String[0];
+        }
+        if (spaced) {
+            return line.split("\\s+");
+        }
+        return line.chars().mapToObj(c -> String.valueOf((char) c)).toArray(String[]::new);
+    }
+}
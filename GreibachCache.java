@@ -0,0 +1,411 @@
+package gramatyka;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * * Results of conversions to Greibach normal form, keyed by fingerprints of
+ * the converted grammars and strategies of conversion.
+ *
+ * A result is kept before its nonterminals are named, with every original
+ * nonterminal it has given by its canonical id, so a grammar equal up to
+ * names and order of nonterminals and productions gets it through its own
+ * canonical numbering, with names given from its own as its conversion
+ * would give them. It derives the same words as the grammar's own
+ * conversion, and it is equal to it if the grammar differs only in names;
+ * otherwise the conversion, which depends on the order, may have given
+ * other productions. The grammar which was converted gets back the same
+ * result. Results with an unreachable nonterminal among the originals are
+ * not cached. Results are kept in memory with least recently used eviction
+ * and, if a directory is given, in one file each, read when they are not in
+ * memory, so they survive restarts. A file ends with a CRC32C of the rest;
+ * files which can't be read, don't match their checksum or don't hold
+ * a valid result for the grammar are ignored, and the result is converted
+ * and written again. **
+ */
+public final class GreibachCache {
+
+    private static final int DEFAULT_CAPACITY = 64;
+    private static final int MAGIC = 0x474e4643;
+    private static final int FORMAT_VERSION = 4;
+
+    private static final class Key {
+
+        private final GrammarFingerprint fingerprint;
+        private final NormalChomskyGrammar.GreibachConversion conversion;
+
+        Key(GrammarFingerprint fingerprint, NormalChomskyGrammar.GreibachConversion conversion) {
+            this.fingerprint = fingerprint;
+            this.conversion = conversion;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && fingerprint.equals(((Key) o).fingerprint)
+                    && conversion == ((Key) o).conversion;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * fingerprint.hashCode() + conversion.hashCode();
+        }
+
+        String fileName() {
+            return fingerprint + "-" + conversion.name().toLowerCase() + ".gnf";
+        }
+    }
+
+    /**
+     * * Result of a conversion in canonical ids, with names of canonical
+     * nonterminals of the converted grammar and the number of all its
+     * nonterminals. The result itself is kept for the converted grammar,
+     * with its names of nonterminals. **
+     */
+    private static final class Entry {
+
+        private final NormalChomskyGrammar.GreibachRules rules;
+        private final String[] canonicalNames;
+        private final int nonterminalsCount;
+        private NormalGreibachGrammar result;
+
+        Entry(NormalChomskyGrammar.GreibachRules rules, String[] canonicalNames, int nonterminalsCount,
+                NormalGreibachGrammar result) {
+            this.rules = rules;
+            this.canonicalNames = canonicalNames;
+            this.nonterminalsCount = nonterminalsCount;
+            this.result = result;
+        }
+    }
+
+    private final int capacity;
+    private final Path directory;
+    /* Access ordered, so the eldest entry is the least recently used. */
+    private final LinkedHashMap<Key, Entry> entries;
+    private long hits;
+    private long misses;
+
+    public GreibachCache() {
+        this(DEFAULT_CAPACITY, null);
+    }
+
+    public GreibachCache(int capacity) {
+        this(capacity, null);
+    }
+
+    /* Results are also kept in files in the directory, if it isn't null. */
+    public GreibachCache(int capacity, Path directory) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Wrong capacity: " + capacity);
+        }
+        this.capacity = capacity;
+        this.directory = directory;
+        entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                return size() > GreibachCache.this.capacity;
+            }
+        };
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getCachedCount() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long getHits() {
+        synchronized (entries) {
+            return hits;
+        }
+    }
+
+    public long getMisses() {
+        synchronized (entries) {
+            return misses;
+        }
+    }
+
+    /* Conversions are done outside the lock; racing threads may both
+     * convert a grammar, and the first result is kept. */
+    NormalGreibachGrammar toGreibach(NormalChomskyGrammar grammar, NormalChomskyGrammar.GreibachConversion conversion)
+            throws ConstructorException {
+        CompiledGrammar compiled = grammar.getCompiled();
+        Key key = new Key(grammar.getFingerprint(), conversion);
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+            if (entry != null) {
+                hits++;
+            }
+        }
+        if (entry == null) {
+            entry = read(key, compiled);
+            if (entry == null) {
+                NormalChomskyGrammar.GreibachRules rules = grammar.convertToGreibach(conversion);
+                NormalGreibachGrammar result = rules.name(compiled);
+                NormalChomskyGrammar.GreibachRules canonicalRules = rules.renumbered(canonicalIds(compiled));
+                if (canonicalRules == null) {
+                    synchronized (entries) {
+                        misses++;
+                    }
+                    return result;
+                }
+                entry = new Entry(canonicalRules, canonicalNames(compiled), compiled.getNonterminalsCount(), result);
+                write(key, entry);
+            }
+            synchronized (entries) {
+                misses++;
+                Entry cached = entries.putIfAbsent(key, entry);
+                entry = cached != null ? cached : entry;
+            }
+        }
+        return resultFor(compiled, entry);
+    }
+
+    private static int[] canonicalIds(CompiledGrammar compiled) {
+        CanonicalForm canonical = compiled.getCanonicalForm();
+        int[] ids = new int[compiled.getNonterminalsCount()];
+        for (int nonterminal = 0; nonterminal < ids.length; nonterminal++) {
+            ids[nonterminal] = canonical.canonicalOf(nonterminal);
+        }
+        return ids;
+    }
+
+    private static int[] originalIds(CompiledGrammar compiled) {
+        CanonicalForm canonical = compiled.getCanonicalForm();
+        int[] ids = new int[canonical.getNonterminalsCount()];
+        for (int nonterminal = 0; nonterminal < ids.length; nonterminal++) {
+            ids[nonterminal] = canonical.originalOf(nonterminal);
+        }
+        return ids;
+    }
+
+    private static String[] canonicalNames(CompiledGrammar compiled) {
+        CanonicalForm canonical = compiled.getCanonicalForm();
+        String[] names = new String[canonical.getNonterminalsCount()];
+        for (int nonterminal = 0; nonterminal < names.length; nonterminal++) {
+            names[nonterminal] = compiled.nameOf(canonical.originalOf(nonterminal));
+        }
+        return names;
+    }
+
+    /* The result named from the grammar's nonterminals, the kept one if
+     * they have the names of the converted grammar. */
+    private static NormalGreibachGrammar resultFor(CompiledGrammar compiled, Entry entry) throws ConstructorException {
+        boolean sameNames = compiled.getNonterminalsCount() == entry.nonterminalsCount
+                && Arrays.equals(canonicalNames(compiled), entry.canonicalNames);
+        synchronized (entry) {
+            if (sameNames && entry.result != null) {
+                return entry.result;
+            }
+        }
+        NormalGreibachGrammar result = entry.rules.renumbered(originalIds(compiled)).name(compiled);
+        if (sameNames) {
+            synchronized (entry) {
+                entry.result = result;
+            }
+        }
+        return result;
+    }
+
+    /* Null if there is no file or it doesn't hold a valid result for the
+     * grammar. */
+    private Entry read(Key key, CompiledGrammar compiled) {
+        if (directory == null) {
+            return null;
+        }
+        Path file = directory.resolve(key.fileName());
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try (CheckedInputStream checked = new CheckedInputStream(new BufferedInputStream(Files.newInputStream(file)),
+                new CRC32C());
+                DataInputStream in = new DataInputStream(checked)) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION || in.readLong() != key.fingerprint.getHigh()
+                    || in.readLong() != key.fingerprint.getLow() || !in.readUTF().equals(key.conversion.name())) {
+                return null;
+            }
+            int originalsCount = compiled.getCanonicalForm().getNonterminalsCount();
+            String[] canonicalNames = readNames(in);
+            int nonterminalsCount = readCount(in);
+            int count = readCount(in);
+            String[] letters = in.readBoolean() ? readNames(in) : null;
+            boolean freeLetters = in.readBoolean();
+            if (canonicalNames.length != originalsCount || letters != null && letters.length != count) {
+                return null;
+            }
+            /* Every original nonterminal is one of the result at most once,
+             * and originalOf is only asked for canonical ids the grammar
+             * has. */
+            boolean[] seen = new boolean[originalsCount];
+            int[] origins = new int[count];
+            int[][] bases = new int[count][];
+            for (int nonterminal = 0; nonterminal < count; nonterminal++) {
+                origins[nonterminal] = in.readInt();
+                if (origins[nonterminal] < -1 || origins[nonterminal] >= originalsCount) {
+                    return null;
+                }
+                if (origins[nonterminal] >= 0) {
+                    if (seen[origins[nonterminal]]) {
+                        return null;
+                    }
+                    seen[origins[nonterminal]] = true;
+                }
+                bases[nonterminal] = new int[readCount(in)];
+                if (bases[nonterminal].length < 1 || bases[nonterminal].length > 2) {
+                    return null;
+                }
+                for (int i = 0; i < bases[nonterminal].length; i++) {
+                    bases[nonterminal][i] = in.readInt();
+                    if (bases[nonterminal][i] < 0 || bases[nonterminal][i] >= originalsCount) {
+                        return null;
+                    }
+                }
+            }
+            int[][][] rules = readRules(in, count + compiled.getTerminalsCount());
+            if (rules.length != count) {
+                return null;
+            }
+            long checksum = checked.getChecksum().getValue();
+            if (in.readLong() != checksum || in.read() != -1) {
+                return null;
+            }
+            /* Checks the result as any grammar; it is named again for the
+             * grammar which asks for it. */
+            NormalChomskyGrammar.GreibachRules result = new NormalChomskyGrammar.GreibachRules(rules, origins, bases,
+                    letters, freeLetters);
+            result.renumbered(originalIds(compiled)).name(compiled);
+            return new Entry(result, canonicalNames, nonterminalsCount, null);
+        } catch (IOException | ConstructorException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /* Rules with every symbol below symbolsCount. */
+    private static int[][][] readRules(DataInputStream in, int symbolsCount) throws IOException {
+        int[][][] rules = new int[readCount(in)][][];
+        for (int nonterminal = 0; nonterminal < rules.length; nonterminal++) {
+            rules[nonterminal] = new int[readCount(in)][];
+            for (int i = 0; i < rules[nonterminal].length; i++) {
+                int[] product = new int[readCount(in)];
+                for (int j = 0; j < product.length; j++) {
+                    product[j] = in.readInt();
+                    if (product[j] < 0 || product[j] >= symbolsCount) {
+                        throw new IOException("Wrong symbol: " + product[j]);
+                    }
+                }
+                rules[nonterminal][i] = product;
+            }
+        }
+        return rules;
+    }
+
+    private static void writeRules(DataOutputStream out, int[][][] rules) throws IOException {
+        out.writeInt(rules.length);
+        for (int[][] products : rules) {
+            out.writeInt(products.length);
+            for (int[] product : products) {
+                out.writeInt(product.length);
+                for (int symbol : product) {
+                    out.writeInt(symbol);
+                }
+            }
+        }
+    }
+
+    private static int readCount(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        if (count < 0 || count > 1 << 26) {
+            throw new IOException("Wrong count: " + count);
+        }
+        return count;
+    }
+
+    private static String[] readNames(DataInputStream in) throws IOException {
+        String[] names = new String[readCount(in)];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = in.readUTF();
+        }
+        return names;
+    }
+
+    private static void writeNames(DataOutputStream out, String[] names) throws IOException {
+        out.writeInt(names.length);
+        for (String name : names) {
+            out.writeUTF(name);
+        }
+    }
+
+    /* Written to a temporary file first, so readers never see a part of
+     * it. A result which can't be written is still returned and cached in
+     * memory. */
+    private void write(Key key, Entry entry) {
+        if (directory == null) {
+            return;
+        }
+        Path file = directory.resolve(key.fileName());
+        Path temporary = null;
+        try {
+            Files.createDirectories(directory);
+            temporary = Files.createTempFile(directory, key.fileName(), ".tmp");
+            try (OutputStream stream = Files.newOutputStream(temporary);
+                    CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(stream), new CRC32C());
+                    DataOutputStream out = new DataOutputStream(checked)) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeLong(key.fingerprint.getHigh());
+                out.writeLong(key.fingerprint.getLow());
+                out.writeUTF(key.conversion.name());
+                writeNames(out, entry.canonicalNames);
+                out.writeInt(entry.nonterminalsCount);
+                NormalChomskyGrammar.GreibachRules rules = entry.rules;
+                out.writeInt(rules.origins.length);
+                out.writeBoolean(rules.letters != null);
+                if (rules.letters != null) {
+                    writeNames(out, rules.letters);
+                }
+                out.writeBoolean(rules.freeLetters);
+                for (int nonterminal = 0; nonterminal < rules.origins.length; nonterminal++) {
+                    out.writeInt(rules.origins[nonterminal]);
+                    out.writeInt(rules.bases[nonterminal].length);
+                    for (int base : rules.bases[nonterminal]) {
+                        out.writeInt(base);
+                    }
+                }
+                writeRules(out, rules.rules);
+                out.writeLong(checked.getChecksum().getValue());
+            }
+            try {
+                Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            if (temporary != null) {
+                try {
+                    Files.deleteIfExists(temporary);
+                } catch (IOException ignored) {
+                    /* Nothing more to clean up. */
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,435 @@
+package gramatyka;
+
+import java.util.Arrays;
+
+/**
+ * * Earley recognizer of a word being edited, which keeps its sets between
+ * edits and recomputes only the ones an edit changes.
+ *
+ * Items point to the set of their origin as an object, not as a position,
+ * so sets keep their meaning when symbols before them are inserted or
+ * deleted. Sets are kept in a gap buffer with the gap at the last edit, so
+ * an edit moves only the sets between it and the previous one. Sets up to
+ * the offset of an edit depend only on symbols before it and are kept.
+ * Sets after it are built again, one by one, and every set after the
+ * inserted symbols is compared with the old set at the same distance from
+ * the end of the edit, the first one after the gap; so are the last new
+ * set and the last old one of the edit. Sets waiting for the same
+ * nonterminals with the same items, with origins doing so as well, give
+ * the same items to the sets completing through them, so they share
+ * a representative and origins are compared by it. Once a new set has
+ * the same items as the old one, all later sets would be built the same,
+ * so the old ones are taken as they are. The first set is only its own
+ * representative, as items from it accept the word. An edit costs its
+ * length and the span of items crossing it, not the length of the word.
+ * Sets after an empty set are not built, as nothing after it is
+ * recognized, but old sets there are kept for edits which make the word
+ * recognizable again. Leo items, as in EarleyRecognizer, keep right
+ * recursion linear; they point only to sets before their own, so they
+ * follow from the items of a set as well. **
+ */
+public final class IncrementalRecognizer {
+
+    /* Earley set; items are (slot, origin) with origins as sets. */
+    private static final class ItemSet {
+
+        /* Distinct for sets of one recognizer, keys of origins; SELF is
+         * never used, as sets are numbered from 0. */
+        private final int serial;
+        private int[] slot = new int[8];
+        private ItemSet[] origin = new ItemSet[8];
+        private int count;
+        /* Items waiting for a symbol, as (symbol << 32 | item), sorted. */
+        private long[] waiting;
+        /* Representative of the sets found waiting the same way as this
+         * one. */
+        private ItemSet root = this;
+        /* Leo items, sorted by symbol. */
+        private int[] leoSymbol;
+        private int[] leoSlot;
+        private ItemSet[] leoOrigin;
+
+        ItemSet(int serial) {
+            this.serial = serial;
+        }
+    }
+
+    private static final long SELF = 0xFFFFFFFFL;
+
+    private final EarleyRecognizer tables;
+    private final int accepted;
+    private int length;
+    /* Gap buffer of positions 0..length: the set after i symbols and the
+     * i-th symbol, with the gap after the last edit. Sets after position
+     * firstEmpty, where the set is empty, are not built for the word; the
+     * ones not null are old sets kept for later edits. */
+    private ItemSet[] sets = new ItemSet[16];
+    private int[] symbols = new int[16];
+    private int gapStart;
+    private int gapEnd = 16;
+    private int firstEmpty;
+    private int emptyCount;
+    private int serials;
+    private int recomputed;
+    /* Items and predicted nonterminals of the set being built. */
+    private final LongSet current = new LongSet();
+
+    IncrementalRecognizer(ContextFreeGrammar grammar, int[] word) {
+        tables = new EarleyRecognizer(grammar);
+        accepted = tables.firstSlots[tables.productionsStart[tables.start]] + 1;
+        insert(build(null, 0), 0);
+        firstEmpty = 1;
+        edit(0, 0, word);
+    }
+
+    static IncrementalRecognizer of(ContextFreeGrammar grammar, int[] word) {
+        return new IncrementalRecognizer(grammar, word);
+    }
+
+    static IncrementalRecognizer of(ContextFreeGrammar grammar, String word) {
+        return new IncrementalRecognizer(grammar, symbolsOf(grammar.getCompiled(), word));
+    }
+
+    private static int[] symbolsOf(CompiledGrammar compiled, String word) {
+        int[] symbols = new int[word.length()];
+        for (int i = 0; i < word.length(); i++) {
+            symbols[i] = compiled.symbolOf(word.charAt(i));
+        }
+        return symbols;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    /* Ids of symbols of the word. */
+    public int[] getWord() {
+        int[] word = new int[length];
+        for (int i = 0; i < length; i++) {
+            word[i] = symbols[index(i + 1)];
+        }
+        return word;
+    }
+
+    /* Sets built by the last edit. */
+    public int getRecomputedCount() {
+        return recomputed;
+    }
+
+    public boolean isMember() {
+        if (firstEmpty <= length) {
+            return false;
+        }
+        ItemSet last = sets[index(length)];
+        ItemSet first = sets[index(0)];
+        for (int item = 0; item < last.count; item++) {
+            if (last.slot[item] == accepted && last.origin[item] == first) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean edit(int offset, int deletedLength, String inserted) {
+        return edit(offset, deletedLength, symbolsOf(tables.compiled, inserted));
+    }
+
+    /**
+     * * Replaces deletedLength symbols from the offset with the inserted ones
+     * and tells whether the word is in the language after the edit. **
+     */
+    public boolean edit(int offset, int deletedLength, int[] inserted) {
+        if (offset < 0 || deletedLength < 0 || offset > length || deletedLength > length - offset) {
+            throw new IndexOutOfBoundsException("Wrong edit: " + offset + ", " + deletedLength
+                    + " of " + length);
+        }
+        recomputed = 0;
+        int shift = inserted.length - deletedLength;
+        moveGap(offset + 1);
+        ItemSet oldEnd = deletedLength > 0 ? sets[gapEnd + deletedLength - 1] : sets[index(offset)];
+        for (int i = 0; i < deletedLength; i++) {
+            removeAfterGap();
+        }
+        length += shift;
+        if (firstEmpty <= offset) {
+            /* Rejected before the edit, and still is. The old set after
+             * the deleted symbols was built from another set than the one
+             * before it now. */
+            for (int symbol : inserted) {
+                insert(null, symbol);
+            }
+            if (inserted.length == 0 && deletedLength > 0 && gapEnd < sets.length && sets[gapEnd] != null) {
+                sets[gapEnd] = null;
+                emptyCount++;
+            }
+            return false;
+        }
+        firstEmpty = length + 1;
+        ItemSet previous = sets[index(offset)];
+        for (int i = 0; i < inserted.length; i++) {
+            previous = previous == null ? null : build(previous, inserted[i]);
+            if (previous == null) {
+                firstEmpty = Math.min(firstEmpty, offset + i + 1);
+            }
+            insert(previous, inserted[i]);
+        }
+        if (previous == null) {
+            return false;
+        }
+        join(previous, oldEnd);
+        /* Old sets after the gap are compared with new ones at the same
+         * positions until they are equal. Positions without old sets are
+         * built from the set before them. */
+        int position = offset + inserted.length + 1;
+        while (position <= length) {
+            ItemSet old = sets[gapEnd];
+            int symbol = symbols[gapEnd];
+            ItemSet set = build(previous, symbol);
+            if (set != null && old != null && Arrays.equals(keysOf(set, false), keysOf(old, false))) {
+                position = findEmpty(position + 1);
+                if (position <= length) {
+                    moveGap(position);
+                    previous = sets[index(position - 1)];
+                }
+                continue;
+            }
+            join(set, old);
+            removeAfterGap();
+            insert(set, symbol);
+            if (set == null) {
+                firstEmpty = position;
+                break;
+            }
+            previous = set;
+            position++;
+        }
+        return isMember();
+    }
+
+    private static ItemSet rootOf(ItemSet set) {
+        while (set.root != set) {
+            set.root = set.root.root;
+            set = set.root;
+        }
+        return set;
+    }
+
+    /* Gives the new set the representative of the old one if they wait
+     * for nonterminals with the same items. */
+    private void join(ItemSet set, ItemSet old) {
+        ItemSet first = sets[index(0)];
+        if (set == null || old == null || set == first || old == first || rootOf(set) == rootOf(old)) {
+            return;
+        }
+        if (Arrays.equals(keysOf(set, true), keysOf(old, true))) {
+            rootOf(set).root = rootOf(old);
+        }
+    }
+
+    /**
+     * * Items of the set, or only the ones waiting for a nonterminal, as
+     * (slot << 32 | serial of the representative of origin), with SELF for
+     * the set itself, sorted. Equal keys of all items mean the same later
+     * sets. **
+     */
+    private long[] keysOf(ItemSet set, boolean waitingOnly) {
+        long[] keys = new long[set.count];
+        int count = 0;
+        for (int item = 0; item < set.count; item++) {
+            int slot = set.slot[item];
+            if (waitingOnly && !tables.isNonterminal(tables.slotSymbol[slot])) {
+                continue;
+            }
+            ItemSet origin = set.origin[item];
+            keys[count++] = ((long) slot << 32) | (origin == set ? SELF : rootOf(origin).serial & SELF);
+        }
+        keys = Arrays.copyOf(keys, count);
+        Arrays.sort(keys);
+        return keys;
+    }
+
+    private int index(int position) {
+        return position < gapStart ? position : position + gapEnd - gapStart;
+    }
+
+    /* First position from the given one with no set built, length + 1 if
+     * there is none. */
+    private int findEmpty(int from) {
+        if (emptyCount > 0) {
+            for (int position = from; position <= length; position++) {
+                if (sets[index(position)] == null) {
+                    return position;
+                }
+            }
+        }
+        return length + 1;
+    }
+
+    /* Moves the gap to start at the position, by copying the positions
+     * between it and the old gap. */
+    private void moveGap(int position) {
+        if (position < gapStart) {
+            int moved = gapStart - position;
+            System.arraycopy(sets, position, sets, gapEnd - moved, moved);
+            System.arraycopy(symbols, position, symbols, gapEnd - moved, moved);
+            Arrays.fill(sets, position, Math.min(gapStart, gapEnd - moved), null);
+            gapStart = position;
+            gapEnd -= moved;
+        } else if (position > gapStart) {
+            int moved = position - gapStart;
+            System.arraycopy(sets, gapEnd, sets, gapStart, moved);
+            System.arraycopy(symbols, gapEnd, symbols, gapStart, moved);
+            Arrays.fill(sets, Math.max(gapEnd, position), gapEnd + moved, null);
+            gapStart = position;
+            gapEnd += moved;
+        }
+    }
+
+    private void insert(ItemSet set, int symbol) {
+        if (gapStart == gapEnd) {
+            int capacity = 2 * sets.length;
+            int after = sets.length - gapEnd;
+            ItemSet[] grownSets = Arrays.copyOf(sets, capacity);
+            int[] grownSymbols = Arrays.copyOf(symbols, capacity);
+            System.arraycopy(sets, gapEnd, grownSets, capacity - after, after);
+            System.arraycopy(symbols, gapEnd, grownSymbols, capacity - after, after);
+            Arrays.fill(grownSets, gapEnd, capacity - after, null);
+            sets = grownSets;
+            symbols = grownSymbols;
+            gapEnd = capacity - after;
+        }
+        if (set == null) {
+            emptyCount++;
+        }
+        sets[gapStart] = set;
+        symbols[gapStart++] = symbol;
+    }
+
+    private void removeAfterGap() {
+        if (sets[gapEnd] == null) {
+            emptyCount--;
+        }
+        sets[gapEnd++] = null;
+    }
+
+    /* Set after reading the symbol with the previous set, the first set if
+     * previous is null; null if it has no items. */
+    private ItemSet build(ItemSet previous, int symbol) {
+        recomputed++;
+        ItemSet set = new ItemSet(serials++);
+        if (previous == null) {
+            add(set, accepted - 1, set);
+        } else if (tables.compiled.isTerminal(symbol)) {
+            int from = EarleyRecognizer.find(previous.waiting, 0, previous.waiting.length, symbol);
+            for (int w = from; w < previous.waiting.length && (int) (previous.waiting[w] >>> 32) == symbol; w++) {
+                int item = (int) previous.waiting[w];
+                add(set, previous.slot[item] + 1, previous.origin[item]);
+            }
+        }
+        if (set.count == 0) {
+            current.clear();
+            return null;
+        }
+        process(set);
+        current.clear();
+        index(set);
+        return set;
+    }
+
+    private void add(ItemSet set, int slot, ItemSet origin) {
+        if (!current.add(((long) slot << 32) | (origin.serial & SELF))) {
+            return;
+        }
+        if (set.count == set.slot.length) {
+            set.slot = Arrays.copyOf(set.slot, set.count * 2);
+            set.origin = Arrays.copyOf(set.origin, set.count * 2);
+        }
+        set.slot[set.count] = slot;
+        set.origin[set.count++] = origin;
+    }
+
+    /* Predicts and completes items of the set until nothing changes, as in
+     * EarleyRecognizer. */
+    private void process(ItemSet set) {
+        for (int item = 0; item < set.count; item++) {
+            int slot = set.slot[item];
+            ItemSet origin = set.origin[item];
+            int symbol = tables.slotSymbol[slot];
+            if (symbol == EarleyRecognizer.COMPLETE) {
+                if (origin != set) {
+                    complete(set, tables.slotLhs[slot], origin);
+                }
+            } else if (tables.isNonterminal(symbol)) {
+                if (current.add(-1L - symbol)) {
+                    for (int p = tables.productionsStart[symbol]; p < tables.productionsStart[symbol + 1]; p++) {
+                        add(set, tables.firstSlots[p], set);
+                    }
+                }
+                if (tables.nullable[symbol]) {
+                    add(set, slot + 1, origin);
+                }
+            }
+        }
+    }
+
+    private void complete(ItemSet set, int nonterminal, ItemSet origin) {
+        int leo = EarleyRecognizer.find(origin.leoSymbol, 0, origin.leoSymbol.length, nonterminal);
+        if (leo < origin.leoSymbol.length && origin.leoSymbol[leo] == nonterminal) {
+            add(set, origin.leoSlot[leo], origin.leoOrigin[leo]);
+            return;
+        }
+        long[] waiting = origin.waiting;
+        int from = EarleyRecognizer.find(waiting, 0, waiting.length, nonterminal);
+        for (int w = from; w < waiting.length && (int) (waiting[w] >>> 32) == nonterminal; w++) {
+            int item = (int) waiting[w];
+            add(set, origin.slot[item] + 1, origin.origin[item]);
+        }
+    }
+
+    /* Builds the waiting index and Leo items of a finished set and
+     * trims its arrays. */
+    private void index(ItemSet set) {
+        set.slot = Arrays.copyOf(set.slot, set.count);
+        set.origin = Arrays.copyOf(set.origin, set.count);
+        long[] waiting = new long[set.count];
+        int waitingCount = 0;
+        for (int item = 0; item < set.count; item++) {
+            int symbol = tables.slotSymbol[set.slot[item]];
+            if (symbol != EarleyRecognizer.COMPLETE) {
+                waiting[waitingCount++] = ((long) symbol << 32) | item;
+            }
+        }
+        set.waiting = Arrays.copyOf(waiting, waitingCount);
+        Arrays.sort(set.waiting);
+
+        int[] leoSymbol = new int[waitingCount];
+        int[] leoSlot = new int[waitingCount];
+        ItemSet[] leoOrigin = new ItemSet[waitingCount];
+        int leoCount = 0;
+        for (int w = 0; w < waitingCount; w++) {
+            int symbol = (int) (set.waiting[w] >>> 32);
+            boolean unique = (w + 1 == waitingCount || (int) (set.waiting[w + 1] >>> 32) != symbol)
+                    && (w == 0 || (int) (set.waiting[w - 1] >>> 32) != symbol);
+            int item = (int) set.waiting[w];
+            int next = set.slot[item] + 1;
+            if (!unique || !tables.isNonterminal(symbol) || tables.slotSymbol[next] != EarleyRecognizer.COMPLETE) {
+                continue;
+            }
+            ItemSet origin = set.origin[item];
+            int slot = next;
+            if (origin != set) {
+                int leo = EarleyRecognizer.find(origin.leoSymbol, 0, origin.leoSymbol.length, tables.slotLhs[next]);
+                if (leo < origin.leoSymbol.length && origin.leoSymbol[leo] == tables.slotLhs[next]) {
+                    slot = origin.leoSlot[leo];
+                    origin = origin.leoOrigin[leo];
+                }
+            }
+            leoSymbol[leoCount] = symbol;
+            leoSlot[leoCount] = slot;
+            leoOrigin[leoCount++] = origin;
+        }
+        set.leoSymbol = Arrays.copyOf(leoSymbol, leoCount);
+        set.leoSlot = Arrays.copyOf(leoSlot, leoCount);
+        set.leoOrigin = Arrays.copyOf(leoOrigin, leoCount);
+    }
+}
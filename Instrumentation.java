@@ -0,0 +1,114 @@
+package gramatyka;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.function.ToIntFunction;
+
+/**
+ * * Reports of phases of conversions and checks of grammars, passed to
+ * a listener set for the whole program, to find which phase of a slow
+ * conversion takes the time or blows up the grammar.
+ *
+ * Phases are the steps of conversions to normal forms, the check of
+ * a context-free grammar and the check of normal forms. Without a listener,
+ * which is the default, a phase only reads one volatile field; times and
+ * counts of productions are taken only for a listener. Conversions found
+ * in a GreibachCache run no phases. An instance times the phases of one
+ * conversion. **
+ */
+public final class Instrumentation {
+
+    /**
+     * * Receives a report after every phase, in the thread which ran it. **
+     */
+    public interface Listener {
+
+        void phaseFinished(PhaseStatistics statistics);
+    }
+
+    private static volatile Listener listener;
+
+    private final Listener target;
+    /* Grammar converted, reported until the converter has built rules. */
+    private final CompiledGrammar source;
+    private long start;
+    private int productionsBefore;
+    private int nonterminalsBefore;
+
+    private Instrumentation(Listener target, CompiledGrammar source) {
+        this.target = target;
+        this.source = source;
+    }
+
+    /* Null turns reports off. */
+    public static void setListener(Listener listener) {
+        Instrumentation.listener = listener;
+    }
+
+    public static Listener getListener() {
+        return listener;
+    }
+
+    /* Null without a listener, so phases cost a check for null. */
+    static Instrumentation begin() {
+        return begin(null);
+    }
+
+    /* For a conversion of the grammar, with phases reported from its rules. */
+    static Instrumentation begin(CompiledGrammar source) {
+        Listener current = listener;
+        return current == null ? null : new Instrumentation(current, source);
+    }
+
+    void startPhase(int productions, int nonterminals) {
+        productionsBefore = productions;
+        nonterminalsBefore = nonterminals;
+        start = System.nanoTime();
+    }
+
+    void finishPhase(String phase, int productions, int nonterminals, int maxProductionLength) {
+        long elapsed = System.nanoTime() - start;
+        target.phaseFinished(new PhaseStatistics(phase, elapsed, productionsBefore, productions,
+                Math.max(nonterminals - nonterminalsBefore, 0), maxProductionLength));
+    }
+
+    /* Phases of a converter with rules of nonterminals as collections of
+     * products, all counted at the start and only the kept ones at the end
+     * (all if kept is null); while there are no rules yet, the productions
+     * of the source grammar. */
+    void startPhase(List<? extends Collection<?>> rules, int nonterminals) {
+        startPhase(productionsCount(rules, null), nonterminals);
+    }
+
+    void finishPhase(String phase, List<? extends Collection<int[]>> rules, boolean[] kept, int nonterminals) {
+        finishPhase(phase, rules, product -> product.length, kept, nonterminals);
+    }
+
+    <P> void finishPhase(String phase, List<? extends Collection<P>> rules, ToIntFunction<? super P> length,
+            boolean[] kept, int nonterminals) {
+        int productions = productionsCount(rules, kept);
+        int maxProductionLength = 0;
+        if (rules.isEmpty()) {
+            maxProductionLength = source.maxProductionLength();
+        }
+        for (int nonterminal = 0; nonterminal < rules.size(); nonterminal++) {
+            if (kept == null || kept[nonterminal]) {
+                for (P product : rules.get(nonterminal)) {
+                    maxProductionLength = Math.max(maxProductionLength, length.applyAsInt(product));
+                }
+            }
+        }
+        finishPhase(phase, productions, nonterminals, maxProductionLength);
+    }
+
+    private int productionsCount(List<? extends Collection<?>> rules, boolean[] kept) {
+        if (rules.isEmpty()) {
+            return source.getProductionsCount();
+        }
+        int count = 0;
+        for (int nonterminal = 0; nonterminal < rules.size(); nonterminal++) {
+            count += kept == null || kept[nonterminal] ? rules.get(nonterminal).size() : 0;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,622 @@
+package gramatyka;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * * LALR(1) action and goto tables of a grammar and a table-driven
+ * recognizer.
+ *
+ * States are sets of LR(0) items of the grammar with an added production
+ * START -> S, built from their kernels. Lookaheads of kernel items are found
+ * by propagation: within a state, the closure gives every nonterminal after
+ * the dot the lookaheads generated spontaneously (FIRST of what follows it)
+ * and the kernel items whose lookaheads pass to it through nullable rests,
+ * and moving the dot over a symbol passes them to kernel items of the next
+ * state. Lookaheads then flow along these edges until nothing changes.
+ *
+ * Columns of actions are terminals (terminal id minus the number of
+ * nonterminals) and column T for the end of a word. Shift to state s is
+ * s + 1, reduction by production p is -p - 1, ERROR is 0 and ACCEPT is the
+ * reduction by START -> S at the end of a word. Conflicts keep the shift
+ * or the first production, but the table can't recognize words until
+ * there are none. **
+ */
+public final class Lalr1Table implements Recognizer {
+
+    public static final int ERROR = 0;
+    public static final int ACCEPT = Integer.MIN_VALUE;
+    private static final int COMPLETE = -1;
+
+    private final CompiledGrammar compiled;
+    private final int nonterminalsCount;
+    private final int columns;
+    private final int statesCount;
+    /* Action of state s in column c, at s * columns + c. */
+    private final int[] actions;
+    /* State after reducing to nonterminal A in state s, at
+     * s * nonterminals + A, or -1. */
+    private final int[] gotos;
+    private final int[] productionLength;
+    private final int[] productionLhs;
+    private final List<String> conflicts;
+
+    private Lalr1Table(CompiledGrammar compiled, int statesCount, int[] actions, int[] gotos, List<String> conflicts) {
+        this.compiled = compiled;
+        this.nonterminalsCount = compiled.getNonterminalsCount();
+        this.columns = compiled.getTerminalsCount() + 1;
+        this.statesCount = statesCount;
+        this.actions = actions;
+        this.gotos = gotos;
+        this.conflicts = Collections.unmodifiableList(conflicts);
+        productionLength = new int[compiled.getProductionsCount()];
+        productionLhs = new int[productionLength.length];
+        for (int production = 0; production < productionLength.length; production++) {
+            productionLength[production] = compiled.length(production);
+            productionLhs[production] = compiled.lhs(production);
+        }
+    }
+
+    /* Kernel of a state: sorted items, as a key of the construction. */
+    private static final class Kernel {
+
+        private final int[] items;
+        private final int hash;
+
+        Kernel(int[] items) {
+            this.items = items;
+            this.hash = Arrays.hashCode(items);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Kernel && hash == ((Kernel) o).hash && Arrays.equals(items, ((Kernel) o).items);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * * Construction of the tables. Items of production p are
+     * itemStart[p]..itemStart[p] + length, one for every position of the
+     * dot; production number productionsCount is START -> S. **
+     */
+    private static final class Builder {
+
+        private final CompiledGrammar compiled;
+        private final GrammarAnalysis analysis;
+        private final int nonterminalsCount;
+        private final int columns;
+        private final int words;
+        private final int start;
+        private final int[] itemStart;
+        private final int[] itemSymbol;
+        private final int[] itemProduction;
+        /* FIRST of symbols from the dot to the end of the production, and
+         * whether they are all nullable. */
+        private final long[][] restFirst;
+        private final boolean[] restNullable;
+
+        private final List<int[]> kernels = new ArrayList<>();
+        /* Transitions of every state as pairs symbol, target, by symbol. */
+        private final List<int[]> transitions = new ArrayList<>();
+        private int[] kernelOffset;
+        private long[][] lookaheads;
+
+        /* Closure of the current state: items, and nonterminals after the
+         * dot with their lookaheads and kernel items passing lookaheads to
+         * them (as bits of kernel positions). */
+        private int[] closure = new int[16];
+        private int closureSize;
+        private final int[] closureStamp;
+        private int stamp;
+        private final int[] positionInClosure;
+        private int[] closureNonterminals = new int[16];
+        private int closureNonterminalsCount;
+        private long[][] spontaneous = new long[16][];
+        private long[][] passing = new long[16][];
+
+        Builder(CompiledGrammar compiled) {
+            this.compiled = compiled;
+            analysis = compiled.getAnalysis();
+            nonterminalsCount = compiled.getNonterminalsCount();
+            columns = compiled.getTerminalsCount() + 1;
+            words = (columns + 63) >>> 6;
+            start = compiled.getProductionsCount();
+            itemStart = new int[start + 2];
+            for (int production = 0; production <= start; production++) {
+                itemStart[production + 1] = itemStart[production] + length(production) + 1;
+            }
+            int itemsCount = itemStart[start + 1];
+            itemSymbol = new int[itemsCount];
+            itemProduction = new int[itemsCount];
+            restFirst = new long[itemsCount][];
+            restNullable = new boolean[itemsCount];
+            for (int production = 0; production <= start; production++) {
+                int length = length(production);
+                int last = itemStart[production] + length;
+                itemSymbol[last] = COMPLETE;
+                itemProduction[last] = production;
+                restFirst[last] = new long[words];
+                restNullable[last] = true;
+                for (int dot = length - 1; dot >= 0; dot--) {
+                    int item = itemStart[production] + dot;
+                    int symbol = production == start ? 0 : compiled.symbolAt(production, dot);
+                    itemSymbol[item] = symbol;
+                    itemProduction[item] = production;
+                    restFirst[item] = new long[words];
+                    if (compiled.isTerminal(symbol)) {
+                        set(restFirst[item], symbol - nonterminalsCount);
+                    } else {
+                        or(restFirst[item], analysis.firstRow(symbol));
+                        if (analysis.isNullable(symbol)) {
+                            or(restFirst[item], restFirst[item + 1]);
+                            restNullable[item] = restNullable[item + 1];
+                        }
+                    }
+                }
+            }
+            closureStamp = new int[nonterminalsCount];
+            positionInClosure = new int[nonterminalsCount];
+        }
+
+        private int length(int production) {
+            return production == start ? 1 : compiled.length(production);
+        }
+
+        private void addToClosure(int item) {
+            if (closureSize == closure.length) {
+                closure = Arrays.copyOf(closure, 2 * closureSize);
+            }
+            closure[closureSize++] = item;
+        }
+
+        /* Closure of a kernel, with its nonterminals in order of addition. */
+        private void close(int[] kernel) {
+            stamp++;
+            closureSize = 0;
+            closureNonterminalsCount = 0;
+            for (int item : kernel) {
+                addToClosure(item);
+            }
+            for (int i = 0; i < closureSize; i++) {
+                int symbol = itemSymbol[closure[i]];
+                if (symbol == COMPLETE || !compiled.isNonterminal(symbol) || closureStamp[symbol] == stamp) {
+                    continue;
+                }
+                closureStamp[symbol] = stamp;
+                if (closureNonterminalsCount == closureNonterminals.length) {
+                    closureNonterminals = Arrays.copyOf(closureNonterminals, 2 * closureNonterminalsCount);
+                }
+                positionInClosure[symbol] = closureNonterminalsCount;
+                closureNonterminals[closureNonterminalsCount++] = symbol;
+                for (int production = compiled.rulesStart(symbol); production < compiled.rulesEnd(symbol); production++) {
+                    addToClosure(itemStart[production]);
+                }
+            }
+        }
+
+        /* LR(0) states reachable from the kernel of START -> .S. */
+        void buildStates(long cellsLimit) throws ConstructorException {
+            Map<Kernel, Integer> numbers = new HashMap<>();
+            int[] first = {itemStart[start]};
+            numbers.put(new Kernel(first), 0);
+            kernels.add(first);
+            long cellsPerState = columns + nonterminalsCount;
+            for (int state = 0; state < kernels.size(); state++) {
+                close(kernels.get(state));
+                /* Moved items as symbol << 32 | item + 1, sorted to group
+                 * them by symbol. */
+                long[] moved = new long[closureSize];
+                int movedCount = 0;
+                for (int i = 0; i < closureSize; i++) {
+                    int symbol = itemSymbol[closure[i]];
+                    if (symbol != COMPLETE) {
+                        moved[movedCount++] = (long) symbol << 32 | (closure[i] + 1);
+                    }
+                }
+                Arrays.sort(moved, 0, movedCount);
+                int[] stateTransitions = new int[2 * movedCount];
+                int transitionsCount = 0;
+                for (int from = 0; from < movedCount;) {
+                    int symbol = (int) (moved[from] >>> 32);
+                    int to = from;
+                    while (to < movedCount && (int) (moved[to] >>> 32) == symbol) {
+                        to++;
+                    }
+                    int[] kernel = new int[to - from];
+                    int size = 0;
+                    for (int i = from; i < to; i++) {
+                        int item = (int) moved[i];
+                        if (size == 0 || kernel[size - 1] != item) {
+                            kernel[size++] = item;
+                        }
+                    }
+                    kernel = Arrays.copyOf(kernel, size);
+                    Kernel key = new Kernel(kernel);
+                    Integer target = numbers.get(key);
+                    if (target == null) {
+                        if ((numbers.size() + 1) * cellsPerState > cellsLimit) {
+                            throw new ConstructorException("Automaton too large");
+                        }
+                        target = numbers.size();
+                        numbers.put(key, target);
+                        kernels.add(kernel);
+                    }
+                    stateTransitions[transitionsCount++] = symbol;
+                    stateTransitions[transitionsCount++] = target;
+                    from = to;
+                }
+                transitions.add(Arrays.copyOf(stateTransitions, transitionsCount));
+            }
+        }
+
+        private int target(int state, int symbol) {
+            int[] stateTransitions = transitions.get(state);
+            int low = 0;
+            int high = stateTransitions.length / 2 - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                int current = stateTransitions[2 * middle];
+                if (current == symbol) {
+                    return stateTransitions[2 * middle + 1];
+                } else if (current < symbol) {
+                    low = middle + 1;
+                } else {
+                    high = middle - 1;
+                }
+            }
+            return -1;
+        }
+
+        /* Spontaneous lookaheads and passing kernel items of nonterminals in
+         * the closure of a state, by a fixpoint over their productions. */
+        private void analyzeClosure(int state) {
+            int[] kernel = kernels.get(state);
+            close(kernel);
+            int kernelWords = (kernel.length + 63) >>> 6;
+            if (spontaneous.length < closureNonterminalsCount) {
+                spontaneous = Arrays.copyOf(spontaneous, Math.max(2 * spontaneous.length, closureNonterminalsCount));
+                passing = Arrays.copyOf(passing, spontaneous.length);
+            }
+            for (int i = 0; i < closureNonterminalsCount; i++) {
+                if (spontaneous[i] == null) {
+                    spontaneous[i] = new long[words];
+                }
+                Arrays.fill(spontaneous[i], 0);
+                if (passing[i] == null || passing[i].length < kernelWords) {
+                    passing[i] = new long[Math.max(kernelWords, 1)];
+                }
+                Arrays.fill(passing[i], 0);
+            }
+            for (int k = 0; k < kernel.length; k++) {
+                int symbol = itemSymbol[kernel[k]];
+                if (symbol != COMPLETE && compiled.isNonterminal(symbol)) {
+                    int position = positionInClosure[symbol];
+                    or(spontaneous[position], restFirst[kernel[k] + 1]);
+                    if (restNullable[kernel[k] + 1]) {
+                        set(passing[position], k);
+                    }
+                }
+            }
+            boolean changed = true;
+            while (changed) {
+                changed = false;
+                for (int i = 0; i < closureNonterminalsCount; i++) {
+                    int lhs = closureNonterminals[i];
+                    for (int production = compiled.rulesStart(lhs); production < compiled.rulesEnd(lhs); production++) {
+                        int item = itemStart[production];
+                        int symbol = itemSymbol[item];
+                        if (symbol == COMPLETE || !compiled.isNonterminal(symbol)) {
+                            continue;
+                        }
+                        int position = positionInClosure[symbol];
+                        changed |= or(spontaneous[position], restFirst[item + 1]);
+                        if (restNullable[item + 1]) {
+                            changed |= or(spontaneous[position], spontaneous[i]);
+                            changed |= or(passing[position], passing[i]);
+                        }
+                    }
+                }
+            }
+        }
+
+        private int kernelPosition(int state, int item) {
+            return Arrays.binarySearch(kernels.get(state), item);
+        }
+
+        /* Lookaheads of all kernel items, flowing along propagation edges. */
+        void computeLookaheads() {
+            int statesCount = kernels.size();
+            kernelOffset = new int[statesCount + 1];
+            for (int state = 0; state < statesCount; state++) {
+                kernelOffset[state + 1] = kernelOffset[state] + kernels.get(state).length;
+            }
+            lookaheads = new long[kernelOffset[statesCount]][words];
+            set(lookaheads[0], columns - 1);
+            int[] from = new int[16];
+            int[] to = new int[16];
+            int edgesCount = 0;
+            for (int state = 0; state < statesCount; state++) {
+                analyzeClosure(state);
+                int kernelSize = kernels.get(state).length;
+                for (int i = 0; i < closureSize; i++) {
+                    int item = closure[i];
+                    int symbol = itemSymbol[item];
+                    if (symbol == COMPLETE) {
+                        continue;
+                    }
+                    int target = target(state, symbol);
+                    int targetItem = kernelOffset[target] + kernelPosition(target, item + 1);
+                    if (edgesCount + kernelSize >= from.length) {
+                        from = Arrays.copyOf(from, 2 * (edgesCount + kernelSize));
+                        to = Arrays.copyOf(to, from.length);
+                    }
+                    if (i < kernelSize) {
+                        from[edgesCount] = kernelOffset[state] + i;
+                        to[edgesCount++] = targetItem;
+                        continue;
+                    }
+                    int position = positionInClosure[compiled.lhs(itemProduction[item])];
+                    or(lookaheads[targetItem], spontaneous[position]);
+                    for (int k = 0; k < kernelSize; k++) {
+                        if (get(passing[position], k)) {
+                            from[edgesCount] = kernelOffset[state] + k;
+                            to[edgesCount++] = targetItem;
+                        }
+                    }
+                }
+            }
+            new GrammarAnalysis.Graph(lookaheads.length, from, to, edgesCount).propagate(lookaheads);
+        }
+
+        Lalr1Table build() {
+            int statesCount = kernels.size();
+            int[] actions = new int[statesCount * columns];
+            int[] gotos = new int[statesCount * nonterminalsCount];
+            Arrays.fill(gotos, -1);
+            List<String> conflicts = new ArrayList<>();
+            long[] reduced = new long[words];
+            for (int state = 0; state < statesCount; state++) {
+                int[] stateTransitions = transitions.get(state);
+                for (int i = 0; i < stateTransitions.length; i += 2) {
+                    int symbol = stateTransitions[i];
+                    if (compiled.isTerminal(symbol)) {
+                        actions[state * columns + symbol - nonterminalsCount] = stateTransitions[i + 1] + 1;
+                    } else {
+                        gotos[state * nonterminalsCount + symbol] = stateTransitions[i + 1];
+                    }
+                }
+                analyzeClosure(state);
+                int kernelSize = kernels.get(state).length;
+                for (int i = 0; i < closureSize; i++) {
+                    int item = closure[i];
+                    if (itemSymbol[item] != COMPLETE) {
+                        continue;
+                    }
+                    int production = itemProduction[item];
+                    if (i < kernelSize) {
+                        System.arraycopy(lookaheads[kernelOffset[state] + i], 0, reduced, 0, words);
+                    } else {
+                        int position = positionInClosure[compiled.lhs(production)];
+                        System.arraycopy(spontaneous[position], 0, reduced, 0, words);
+                        for (int k = 0; k < kernelSize; k++) {
+                            if (get(passing[position], k)) {
+                                or(reduced, lookaheads[kernelOffset[state] + k]);
+                            }
+                        }
+                    }
+                    int action = production == start ? ACCEPT : -production - 1;
+                    for (int word = 0; word < words; word++) {
+                        for (long bits = reduced[word]; bits != 0; bits &= bits - 1) {
+                            int column = (word << 6) + Long.numberOfTrailingZeros(bits);
+                            int cell = state * columns + column;
+                            if (actions[cell] == ERROR) {
+                                actions[cell] = action;
+                            } else {
+                                conflicts.add("LALR(1) conflict in state " + state + " on " + columnName(column) + ": "
+                                        + actionToString(actions[cell]) + " | " + actionToString(action));
+                            }
+                        }
+                    }
+                }
+            }
+            return new Lalr1Table(compiled, statesCount, actions, gotos, conflicts);
+        }
+
+        private String columnName(int column) {
+            return column == columns - 1 ? "end of word" : compiled.nameOf(nonterminalsCount + column);
+        }
+
+        private String actionToString(int action) {
+            if (action > 0) {
+                return "shift " + (action - 1);
+            }
+            return action == ACCEPT ? "accept" : "reduce " + compiled.productionToString(-action - 1);
+        }
+    }
+
+    private static boolean or(long[] target, long[] source) {
+        boolean changed = false;
+        for (int i = 0; i < source.length; i++) {
+            long union = target[i] | source[i];
+            changed |= union != target[i];
+            target[i] = union;
+        }
+        return changed;
+    }
+
+    private static void set(long[] row, int column) {
+        row[column >>> 6] |= 1L << column;
+    }
+
+    private static boolean get(long[] row, int column) {
+        return (row[column >>> 6] & 1L << column) != 0;
+    }
+
+    /* Tables of a grammar, if they take at most cellsLimit cells of actions
+     * and gotos together. */
+    static Lalr1Table of(CompiledGrammar compiled, long cellsLimit) throws ConstructorException {
+        Builder builder = new Builder(compiled);
+        builder.buildStates(cellsLimit);
+        builder.computeLookaheads();
+        return builder.build();
+    }
+
+    public int getStatesCount() {
+        return statesCount;
+    }
+
+    public boolean hasConflicts() {
+        return !conflicts.isEmpty();
+    }
+
+    /* Descriptions of cells with more than one action. */
+    public List<String> getConflicts() {
+        return conflicts;
+    }
+
+    /* Action of a state for a terminal id, or for the end of a word if
+     * terminal is UNKNOWN. */
+    public int action(int state, int terminal) {
+        int column = terminal == CompiledGrammar.UNKNOWN ? columns - 1 : terminal - nonterminalsCount;
+        return actions[state * columns + column];
+    }
+
+    public int goTo(int state, int nonterminal) {
+        return gotos[state * nonterminalsCount + nonterminal];
+    }
+
+    /**
+     * * Recognition of a single input, fed one terminal at a time. The stack
+     * of states only grows when a longer one is needed. **
+     */
+    public final class Run {
+
+        private int[] stack = new int[16];
+        private int top;
+        /* Copy of the stack for checking the end of a word. */
+        private int[] scratch = new int[16];
+        private int scratchTop;
+        private long position;
+        private boolean rejected;
+
+        private Run() {
+            stack[top++] = 0;
+        }
+
+        public boolean isRejected() {
+            return rejected;
+        }
+
+        /* True if the input read so far is a word of the grammar, checked by
+         * reductions at the end of a word on a copy of the stack. */
+        public boolean isAccepting() {
+            if (rejected) {
+                return false;
+            }
+            if (scratch.length < stack.length) {
+                scratch = new int[stack.length];
+            }
+            System.arraycopy(stack, 0, scratch, 0, top);
+            scratchTop = top;
+            return reduce(true, columns - 1) == ACCEPT;
+        }
+
+        public long getPosition() {
+            return position;
+        }
+
+        public boolean feed(char c) {
+            return feed(compiled.symbolOf(c));
+        }
+
+        /* Reads a terminal given by its symbol id; returns !isRejected(). */
+        public boolean feed(int terminal) {
+            if (rejected || !compiled.isTerminal(terminal)) {
+                rejected = true;
+                return false;
+            }
+            int action = reduce(false, terminal - nonterminalsCount);
+            if (action <= 0) {
+                rejected = true;
+                return false;
+            }
+            if (top == stack.length) {
+                stack = Arrays.copyOf(stack, 2 * top);
+            }
+            stack[top++] = action - 1;
+            position++;
+            return true;
+        }
+
+        /* Applies reductions to the stack or its copy until the action in
+         * a column is a shift, ACCEPT or ERROR, and returns it. */
+        private int reduce(boolean copy, int column) {
+            int[] states = copy ? scratch : stack;
+            int size = copy ? scratchTop : top;
+            int action;
+            while ((action = actions[states[size - 1] * columns + column]) < 0 && action != ACCEPT) {
+                int production = -action - 1;
+                size -= productionLength[production];
+                int next = gotos[states[size - 1] * nonterminalsCount + productionLhs[production]];
+                if (size == states.length) {
+                    states = Arrays.copyOf(states, 2 * size);
+                }
+                states[size++] = next;
+            }
+            if (copy) {
+                scratch = states;
+                scratchTop = size;
+            } else {
+                stack = states;
+                top = size;
+            }
+            return action;
+        }
+
+        /* Feeds characters until the input is rejected; returns !isRejected(). */
+        public boolean feed(CharSequence characters) {
+            for (int i = 0, length = characters.length(); i < length && !rejected; i++) {
+                feed(characters.charAt(i));
+            }
+            return !rejected;
+        }
+
+        public boolean feed(char[] characters, int offset, int length) {
+            for (int i = offset, end = offset + length; i < end && !rejected; i++) {
+                feed(characters[i]);
+            }
+            return !rejected;
+        }
+    }
+
+    public Run start() {
+        if (hasConflicts()) {
+            throw new IllegalStateException("Grammar not LALR(1)");
+        }
+        return new Run();
+    }
+
+    @Override
+    public boolean recognize(String word) {
+        Run run = start();
+        return run.feed(word) && run.isAccepting();
+    }
+
+    @Override
+    public boolean recognize(int[] word) {
+        Run run = start();
+        for (int i = 0; i < word.length && !run.isRejected(); i++) {
+            run.feed(word[i]);
+        }
+        return run.isAccepting();
+    }
+}
@@ -0,0 +1,87 @@
+package gramatyka;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * * Deterministic automaton of a regular grammar built on demand by the
+ * subset construction, for searches which usually visit only a part of it.
+ *
+ * States are sets of states of the Nfa, numbered in order of discovery
+ * from the start state 0, and a transition is computed on first use and
+ * kept. Symbols are indexes in an alphabet given by a column of the Nfa
+ * for every symbol, REJECT for symbols which are not terminals of the
+ * grammar. **
+ */
+final class LazyDfa implements RegularLanguages.Automaton {
+
+    private static final int UNKNOWN = -2;
+
+    private final Nfa nfa;
+    private final int[] columns;
+    private final Map<Nfa.StateSet, Integer> numbers = new HashMap<>();
+    private final List<long[]> states = new ArrayList<>();
+    private boolean[] accepting = new boolean[16];
+    private int[] transitions;
+
+    LazyDfa(Nfa nfa, int[] columns) {
+        this.nfa = nfa;
+        this.columns = columns;
+        transitions = new int[16 * columns.length];
+        Arrays.fill(transitions, UNKNOWN);
+        number(nfa.start());
+    }
+
+    private int number(long[] set) {
+        Nfa.StateSet key = new Nfa.StateSet(set);
+        Integer known = numbers.get(key);
+        if (known != null) {
+            return known;
+        }
+        int state = states.size();
+        numbers.put(key, state);
+        states.add(set);
+        if (state == accepting.length) {
+            accepting = Arrays.copyOf(accepting, 2 * state);
+            int oldLength = transitions.length;
+            transitions = Arrays.copyOf(transitions, 2 * oldLength);
+            Arrays.fill(transitions, oldLength, transitions.length, UNKNOWN);
+        }
+        accepting[state] = nfa.isAccepting(set);
+        return state;
+    }
+
+    /* States discovered so far. */
+    int getStatesCount() {
+        return states.size();
+    }
+
+    @Override
+    public int start() {
+        return 0;
+    }
+
+    @Override
+    public boolean isAccepting(int state) {
+        return state != Dfa.REJECT && accepting[state];
+    }
+
+    @Override
+    public int next(int state, int symbol) {
+        if (state == Dfa.REJECT) {
+            return Dfa.REJECT;
+        }
+        int transition = state * columns.length + symbol;
+        int target = transitions[transition];
+        if (target == UNKNOWN) {
+            long[] next = columns[symbol] == Dfa.REJECT ? null : nfa.next(states.get(state), columns[symbol]);
+            target = next == null ? Dfa.REJECT : number(next);
+            /* Numbering may have grown the table. */
+            transitions[transition] = target;
+        }
+        return target;
+    }
+}
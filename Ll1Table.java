@@ -0,0 +1,228 @@
+package gramatyka;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * * LL(1) predict table of a grammar and a table-driven recognizer.
+ *
+ * Columns are terminals (terminal id minus the number of nonterminals) and
+ * column T for the end of a word. Production p of A is predicted in column
+ * a if a is in FIRST of its right-hand side, or in FOLLOW(A) if the
+ * right-hand side is nullable. Cells predicting two productions are
+ * conflicts: the table keeps the first one, but can't recognize words
+ * until there are none. Right-hand sides are kept reversed in a flat array,
+ * so a prediction pushes them on the stack as they are. **
+ */
+public final class Ll1Table implements Recognizer {
+
+    public static final int ERROR = -1;
+
+    private final CompiledGrammar compiled;
+    private final int nonterminalsCount;
+    private final int columns;
+    /* Production predicted for A and column c, at A * columns + c. */
+    private final int[] predict;
+    /* Right-hand side of production p, last symbol first:
+     * reversed[reversedStart[p]..reversedStart[p + 1] - 1]. */
+    private final int[] reversedStart;
+    private final int[] reversed;
+    private final List<String> conflicts;
+
+    private Ll1Table(CompiledGrammar compiled) {
+        this.compiled = compiled;
+        nonterminalsCount = compiled.getNonterminalsCount();
+        columns = compiled.getTerminalsCount() + 1;
+        predict = new int[nonterminalsCount * columns];
+        Arrays.fill(predict, ERROR);
+        int productionsCount = compiled.getProductionsCount();
+        reversedStart = new int[productionsCount + 1];
+        for (int production = 0; production < productionsCount; production++) {
+            reversedStart[production + 1] = reversedStart[production] + compiled.length(production);
+        }
+        reversed = new int[reversedStart[productionsCount]];
+        for (int production = 0; production < productionsCount; production++) {
+            for (int i = 0; i < compiled.length(production); i++) {
+                reversed[reversedStart[production + 1] - 1 - i] = compiled.symbolAt(production, i);
+            }
+        }
+
+        GrammarAnalysis analysis = compiled.getAnalysis();
+        List<String> found = new ArrayList<>();
+        long[] lookaheads = new long[(columns + 63) >>> 6];
+        for (int production = 0; production < productionsCount; production++) {
+            int lhs = compiled.lhs(production);
+            Arrays.fill(lookaheads, 0);
+            boolean nullable = true;
+            for (int i = 0; i < compiled.length(production) && nullable; i++) {
+                int symbol = compiled.symbolAt(production, i);
+                if (compiled.isTerminal(symbol)) {
+                    int column = symbol - nonterminalsCount;
+                    lookaheads[column >>> 6] |= 1L << column;
+                    nullable = false;
+                } else {
+                    or(lookaheads, analysis.firstRow(symbol));
+                    nullable = analysis.isNullable(symbol);
+                }
+            }
+            if (nullable) {
+                or(lookaheads, analysis.followRow(lhs));
+            }
+            for (int word = 0; word < lookaheads.length; word++) {
+                for (long bits = lookaheads[word]; bits != 0; bits &= bits - 1) {
+                    int column = (word << 6) + Long.numberOfTrailingZeros(bits);
+                    int cell = lhs * columns + column;
+                    if (predict[cell] == ERROR) {
+                        predict[cell] = production;
+                    } else {
+                        found.add("LL(1) conflict for " + compiled.nameOf(lhs) + " on " + columnName(column) + ": "
+                                + compiled.productionToString(predict[cell]) + " | "
+                                + compiled.productionToString(production));
+                    }
+                }
+            }
+        }
+        conflicts = Collections.unmodifiableList(found);
+    }
+
+    static Ll1Table of(CompiledGrammar compiled) {
+        return new Ll1Table(compiled);
+    }
+
+    private static void or(long[] target, long[] source) {
+        for (int i = 0; i < target.length; i++) {
+            target[i] |= source[i];
+        }
+    }
+
+    private String columnName(int column) {
+        return column == columns - 1 ? "end of word" : compiled.nameOf(nonterminalsCount + column);
+    }
+
+    public boolean hasConflicts() {
+        return !conflicts.isEmpty();
+    }
+
+    /* Descriptions of cells predicting more than one production. */
+    public List<String> getConflicts() {
+        return conflicts;
+    }
+
+    /* Production predicted for a nonterminal and a terminal id, or for the
+     * end of a word if terminal is UNKNOWN; ERROR if none. */
+    public int predict(int nonterminal, int terminal) {
+        int column = terminal == CompiledGrammar.UNKNOWN ? columns - 1 : terminal - nonterminalsCount;
+        return predict[nonterminal * columns + column];
+    }
+
+    /**
+     * * Recognition of a single input, fed one terminal at a time. The stack
+     * holds symbols still to be matched, the top last; it only grows when
+     * a longer one is needed. **
+     */
+    public final class Run {
+
+        private int[] stack = new int[16];
+        private int top;
+        private long position;
+        private boolean rejected;
+
+        private Run() {
+            stack[top++] = 0;
+        }
+
+        public boolean isRejected() {
+            return rejected;
+        }
+
+        /* True if the input read so far is a word of the grammar: every
+         * symbol left is a nonterminal predicting a production at the end. */
+        public boolean isAccepting() {
+            if (rejected) {
+                return false;
+            }
+            for (int i = 0; i < top; i++) {
+                if (!compiled.isNonterminal(stack[i]) || predict[stack[i] * columns + columns - 1] == ERROR) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        public long getPosition() {
+            return position;
+        }
+
+        public boolean feed(char c) {
+            return feed(compiled.symbolOf(c));
+        }
+
+        /* Reads a terminal given by its symbol id; returns !isRejected(). */
+        public boolean feed(int terminal) {
+            if (rejected || !compiled.isTerminal(terminal)) {
+                rejected = true;
+                return false;
+            }
+            int column = terminal - nonterminalsCount;
+            while (top > 0) {
+                int symbol = stack[--top];
+                if (symbol == terminal) {
+                    position++;
+                    return true;
+                }
+                int production = compiled.isNonterminal(symbol) ? predict[symbol * columns + column] : ERROR;
+                if (production == ERROR) {
+                    break;
+                }
+                int length = reversedStart[production + 1] - reversedStart[production];
+                if (top + length > stack.length) {
+                    stack = Arrays.copyOf(stack, Math.max(2 * stack.length, top + length));
+                }
+                System.arraycopy(reversed, reversedStart[production], stack, top, length);
+                top += length;
+            }
+            rejected = true;
+            return false;
+        }
+
+        /* Feeds characters until the input is rejected; returns !isRejected(). */
+        public boolean feed(CharSequence characters) {
+            for (int i = 0, length = characters.length(); i < length && !rejected; i++) {
+                feed(characters.charAt(i));
+            }
+            return !rejected;
+        }
+
+        public boolean feed(char[] characters, int offset, int length) {
+            for (int i = offset, end = offset + length; i < end && !rejected; i++) {
+                feed(characters[i]);
+            }
+            return !rejected;
+        }
+    }
+
+    /* Throws IllegalStateException if the table has conflicts. */
+    public Run start() {
+        if (hasConflicts()) {
+            throw new IllegalStateException("Grammar not LL(1)");
+        }
+        return new Run();
+    }
+
+    @Override
+    public boolean recognize(String word) {
+        Run run = start();
+        return run.feed(word) && run.isAccepting();
+    }
+
+    @Override
+    public boolean recognize(int[] word) {
+        Run run = start();
+        for (int i = 0; i < word.length && !run.isRejected(); i++) {
+            run.feed(word[i]);
+        }
+        return run.isAccepting();
+    }
+}
@@ -0,0 +1,67 @@
+package gramatyka;
+
+/**
+ * * Semiring of long scores of derivations, for WeightedCyk, as
+ * DoubleSemiring. Productions with weight 0 have score zero(). **
+ */
+public interface LongSemiring {
+
+    /* 1 if there is a derivation, 0 otherwise: or and and. */
+    LongSemiring BOOLEAN = new LongSemiring() {
+        @Override
+        public long zero() {
+            return 0;
+        }
+
+        @Override
+        public long plus(long a, long b) {
+            return a | b;
+        }
+
+        @Override
+        public long times(long a, long b) {
+            return a & b;
+        }
+
+        @Override
+        public long weight(double probability) {
+            return probability > 0 ? 1 : 0;
+        }
+    };
+
+    /* Number of derivations, saturated at Long.MAX_VALUE as
+     * ParseForest.countTreesSaturated. */
+    LongSemiring COUNTING = new LongSemiring() {
+        @Override
+        public long zero() {
+            return 0;
+        }
+
+        @Override
+        public long plus(long a, long b) {
+            long sum = a + b;
+            return sum < 0 ? Long.MAX_VALUE : sum;
+        }
+
+        @Override
+        public long times(long a, long b) {
+            long high = Math.multiplyHigh(a, b);
+            long product = a * b;
+            return high != 0 || product < 0 ? Long.MAX_VALUE : product;
+        }
+
+        @Override
+        public long weight(double probability) {
+            return probability > 0 ? 1 : 0;
+        }
+    };
+
+    long zero();
+
+    long plus(long a, long b);
+
+    long times(long a, long b);
+
+    /* Score of a production with a given weight. */
+    long weight(double probability);
+}
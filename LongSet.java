@@ -0,0 +1,60 @@
+package gramatyka;
+
+import java.util.Arrays;
+
+/* Open addressing set of long keys, cleared and reused by recognizers. */
+class LongSet {
+
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    private long[] keys = newTable(64);
+    private int size;
+
+    private static long[] newTable(int capacity) {
+        long[] table = new long[capacity];
+        Arrays.fill(table, EMPTY);
+        return table;
+    }
+
+    boolean add(long key) {
+        if (2 * (size + 1) > keys.length) {
+            long[] old = keys;
+            keys = newTable(old.length * 2);
+            for (long k : old) {
+                if (k != EMPTY) {
+                    insert(k);
+                }
+            }
+        }
+        if (insert(key)) {
+            size++;
+            return true;
+        }
+        return false;
+    }
+
+    private boolean insert(long key) {
+        int mask = keys.length - 1;
+        int index = (int) (mix(key) & mask);
+        while (keys[index] != EMPTY) {
+            if (keys[index] == key) {
+                return false;
+            }
+            index = (index + 1) & mask;
+        }
+        keys[index] = key;
+        return true;
+    }
+
+    private static long mix(long key) {
+        key *= 0x9E3779B97F4A7C15L;
+        return key ^ (key >>> 29);
+    }
+
+    void clear() {
+        if (size > 0) {
+            Arrays.fill(keys, EMPTY);
+            size = 0;
+        }
+    }
+}
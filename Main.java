@@ -1,78 +1,137 @@
 /***
  * Author: Anna Prochowska
  * Date: May 2015
- * 
- * Representation of context free grammar. 
- * Enables checking if grammar is regular and if is in normal Chomsky or Greibach 
+ *
+ * Representation of context free grammar.
+ * Enables checking if grammar is regular and if is in normal Chomsky or Greibach
  * form and converting from Chomsky to Greibach form.
+ *
+ * Command line tool recognizing words of a file by grammars of files, in
+ * parallel, with results in order of words and statistics of the batch.
  */
 
 package gramatyka;
 
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
 public class Main {
-    public static void main(String args[]) throws ConstructorException, Exception {
-        String[][] tab =  {{"P","Q","R"},{"a","aP","aPb"},{"b", "Qb", "aQb"},{""}};
-        ContextFreeGrammar grammar = new ContextFreeGrammar(
-                "ab",
-                "SPQR",
-                tab);
-        System.out.println(grammar.toString());
-        
-        String[][] tab1 =  {{"a"},{"aA","b"},{"bC"},{"", "cC"}};
-        ContextFreeGrammar grammar1 = new ContextFreeGrammar(
-                "abc",
-                "SABC",
-                tab1);
-        assert(grammar1.ifRegular() == true);
-        ContextFreeGrammar regular = ContextFreeGrammar.regularGrammar(grammar1);
-        System.out.println(regular.toString());
-        
-        String[][] tab2 =  {{"a"},{"aA","b"},{"bC"},{"", "Cc"}};
-        ContextFreeGrammar grammar2 = new ContextFreeGrammar(
-                "abc",
-                "SABC",
-                tab2);
-        assert(grammar2.ifRegular() == false);
-  
-        String[][] tab3 =  {{"AB"},{"AB", "CB", "a"},{"AB", "b"},{"AC", "c"}};
-        ContextFreeGrammar grammar3 = new ContextFreeGrammar(
-                "abc",
-                "SABC",
-                tab3);
-        assert(grammar3.ifChomsky() == true);
-        NormalChomskyGrammar chomskyGram = new NormalChomskyGrammar(grammar3);
-        ContextFreeGrammar greibachGram = chomskyGram.toGreibach();
-        assert(greibachGram.ifGreibach());
-        System.out.println(greibachGram.toString());
-        
-        String[][] tab4 =  {{"BC"},{"CA", "b"},{"AB", "a"}};
-        ContextFreeGrammar ChToG2 = new ContextFreeGrammar(
-                "ab",
-                "ABC",
-                tab4);
-        assert(ChToG2.ifChomsky());
-        NormalChomskyGrammar chomskyG2 = new NormalChomskyGrammar(ChToG2);
-        ContextFreeGrammar greibach2 = chomskyG2.toGreibach();
-        assert(greibach2.ifGreibach());
-        System.out.println(greibach2.toString());
-        
-        String[][] tab5 =  {{"BC"},{"DA", "a"}, {"b"}, {"a"}};
-        ContextFreeGrammar ChToG3 = new ContextFreeGrammar(
-                "ab",
-                "ABCD",
-                tab5);
-        NormalChomskyGrammar chomskyG3 = new NormalChomskyGrammar(ChToG3);
-        ContextFreeGrammar greibach3 = chomskyG3.toGreibach();
-        assert(greibach3.ifGreibach());
-        System.out.println(greibach3.toString());   
-        String[][] tab6 =  {{"a","AA"}};
-        ContextFreeGrammar grammar4 = new ContextFreeGrammar(
-                "a",
-                "A",
-                tab6);
-        NormalChomskyGrammar chomskyG4 = new NormalChomskyGrammar(grammar4);
-        ContextFreeGrammar greibach4 = chomskyG4.toGreibach();
-        System.out.println(greibach4.toString());
-    }  
-}
 
+    private static final String USAGE =
+            "Użycie: java -jar gramatyka.jar [-t wątki] [-o plik wyników] -w plik słów gramatyka...\n"
+            + "Gramatyki są plikami GrammarFile albo tekstem w postaci wypisywanej przez toString.\n"
+            + "Słowa są w osobnych wierszach, nazwy dłuższe niż jeden znak oddzielone spacjami.\n"
+            + "Dla każdego słowa wypisywany jest wiersz z 1 albo 0 dla każdej gramatyki, a na końcu\n"
+            + "statystyki: na standardowe wyjście z -o, inaczej na standardowe wyjście błędów.";
+
+    /* Wrong arguments. */
+    private static final int USAGE_ERROR = 2;
+    private static final int ERROR = 1;
+
+    public static void main(String args[]) {
+        Path words = null;
+        Path output = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        List<Path> grammarFiles = new ArrayList<>();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "-w":
+                        words = Paths.get(args[++i]);
+                        break;
+                    case "-o":
+                        output = Paths.get(args[++i]);
+                        break;
+                    case "-t":
+                        threads = Integer.parseInt(args[++i]);
+                        if (threads < 1) {
+                            throw new IllegalArgumentException("Wrong number of threads: " + threads);
+                        }
+                        break;
+                    case "-h":
+                        System.out.println(USAGE);
+                        return;
+                    default:
+                        if (args[i].startsWith("-")) {
+                            throw new IllegalArgumentException("Unknown option " + args[i]);
+                        }
+                        grammarFiles.add(Paths.get(args[i]));
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            exit(USAGE_ERROR, "Missing value of option " + args[args.length - 1]);
+        } catch (IllegalArgumentException e) {
+            exit(USAGE_ERROR, e.getMessage());
+        }
+        if (words == null || grammarFiles.isEmpty()) {
+            exit(USAGE_ERROR, null);
+        }
+
+        List<ContextFreeGrammar> grammars = new ArrayList<>();
+        for (Path file : grammarFiles) {
+            try {
+                grammars.add(load(file));
+            } catch (IOException | ConstructorException e) {
+                exit(ERROR, file + ": " + messageOf(e));
+            }
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            /* Only the file is closed; System.out stays open for whatever is
+             * written after. */
+            WordFileStatistics statistics;
+            if (output == null) {
+                statistics = WordFile.recognize(words, grammars, System.out, pool);
+                System.out.flush();
+            } else {
+                try (OutputStream results = new BufferedOutputStream(Files.newOutputStream(output), 1 << 16)) {
+                    statistics = WordFile.recognize(words, grammars, results, pool);
+                }
+            }
+            PrintStream report = output == null ? System.err : System.out;
+            for (int grammar = 0; grammar < grammarFiles.size(); grammar++) {
+                report.println("Gramatyka " + (grammar + 1) + ": " + grammarFiles.get(grammar));
+            }
+            report.print(statistics);
+        } catch (IOException e) {
+            exit(ERROR, words + ": " + messageOf(e));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /* Grammar of a binary or a text file; grammars in regular form are
+     * recognized by their automaton. */
+    static ContextFreeGrammar load(Path file) throws IOException, ConstructorException {
+        ContextFreeGrammar grammar = GrammarFile.isGrammarFile(file) ? GrammarFile.read(file) : GrammarText.read(file);
+        if (!grammar.isRegular() && grammar.ifRegular()) {
+            return ContextFreeGrammar.regularGrammar(grammar);
+        }
+        return grammar;
+    }
+
+    /* Exceptions of missing files have only the name as the message. */
+    private static String messageOf(Exception e) {
+        return e instanceof NoSuchFileException ? "No such file" : e.getMessage();
+    }
+
+    private static void exit(int status, String message) {
+        if (message != null) {
+            System.err.println(message);
+        }
+        if (status == USAGE_ERROR) {
+            System.err.println(USAGE);
+        }
+        System.exit(status);
+    }
+}
@@ -0,0 +1,258 @@
+package gramatyka;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * * Nondeterministic finite automaton of a regular grammar, without empty
+ * transitions, and its determinization by the subset construction.
+ *
+ * Symbols of the automaton are terminals of the grammar, numbered from 0.
+ * States of a right-linear grammar are its nonterminals and a final state:
+ * A -> a B gives A -a-> B, A -> a gives A -a-> final and A -> epsilon makes A
+ * accepting. A left-linear grammar is read backwards: an initial state goes
+ * to A on A -> a, B goes to A on A -> B a, nonterminals with A -> epsilon are
+ * initial too, and the start variable is the only accepting state.
+ * Productions of two terminals get an intermediate state. **
+ */
+class Nfa {
+
+    private final int statesCount;
+    private final int symbolsCount;
+    private final boolean[] initial;
+    private final boolean[] accepting;
+    /* Targets of state s on symbol c:
+     * targets[transitionsStart[s * symbolsCount + c]..transitionsStart[s * symbolsCount + c + 1] - 1]. */
+    private final int[] transitionsStart;
+    private final int[] targets;
+
+    private Nfa(int statesCount, int symbolsCount, boolean[] initial, boolean[] accepting,
+            int[] edgeFrom, int[] edgeSymbol, int[] edgeTo, int edgesCount) {
+        this.statesCount = statesCount;
+        this.symbolsCount = symbolsCount;
+        this.initial = initial;
+        this.accepting = accepting;
+        transitionsStart = new int[statesCount * symbolsCount + 1];
+        for (int edge = 0; edge < edgesCount; edge++) {
+            transitionsStart[edgeFrom[edge] * symbolsCount + edgeSymbol[edge] + 1]++;
+        }
+        for (int i = 0; i + 1 < transitionsStart.length; i++) {
+            transitionsStart[i + 1] += transitionsStart[i];
+        }
+        targets = new int[edgesCount];
+        int[] filled = Arrays.copyOf(transitionsStart, transitionsStart.length - 1);
+        for (int edge = 0; edge < edgesCount; edge++) {
+            targets[filled[edgeFrom[edge] * symbolsCount + edgeSymbol[edge]]++] = edgeTo[edge];
+        }
+    }
+
+    private enum Direction {
+
+        NONE, LEFT, RIGHT
+    }
+
+    /* Left-linear if any production is, right-linear otherwise. */
+    private static Direction direction(CompiledGrammar compiled) throws ConstructorException {
+        Direction direction = Direction.NONE;
+        for (int production = 0; production < compiled.getProductionsCount(); production++) {
+            int length = compiled.length(production);
+            if (length > 2 || (length == 1 && !compiled.isTerminal(compiled.symbolAt(production, 0)))) {
+                throw new ConstructorException("Grammar not regular");
+            }
+            if (length == 2) {
+                boolean firstTerminal = compiled.isTerminal(compiled.symbolAt(production, 0));
+                boolean secondTerminal = compiled.isTerminal(compiled.symbolAt(production, 1));
+                if (!firstTerminal && !secondTerminal) {
+                    throw new ConstructorException("Grammar not regular");
+                }
+                Direction current = firstTerminal == secondTerminal ? Direction.NONE
+                        : firstTerminal ? Direction.RIGHT : Direction.LEFT;
+                if (current != Direction.NONE && direction != Direction.NONE && current != direction) {
+                    throw new ConstructorException("Grammar not regular");
+                }
+                if (current != Direction.NONE) {
+                    direction = current;
+                }
+            }
+        }
+        return direction;
+    }
+
+    static Nfa of(CompiledGrammar compiled) throws ConstructorException {
+        boolean left = direction(compiled) == Direction.LEFT;
+        int nonterminalsCount = compiled.getNonterminalsCount();
+        int symbolsCount = compiled.getTerminalsCount();
+        /* Final state of a right-linear grammar or initial state of
+         * a left-linear one. */
+        int extra = nonterminalsCount;
+        int statesCount = nonterminalsCount + 1;
+        for (int production = 0; production < compiled.getProductionsCount(); production++) {
+            if (compiled.length(production) == 2 && compiled.isTerminal(compiled.symbolAt(production, 0))
+                    && compiled.isTerminal(compiled.symbolAt(production, 1))) {
+                statesCount++;
+            }
+        }
+        boolean[] initial = new boolean[statesCount];
+        boolean[] accepting = new boolean[statesCount];
+        initial[left ? extra : 0] = true;
+        accepting[left ? 0 : extra] = true;
+
+        int edgesCount = 0;
+        int[] edgeFrom = new int[2 * compiled.getProductionsCount()];
+        int[] edgeSymbol = new int[edgeFrom.length];
+        int[] edgeTo = new int[edgeFrom.length];
+        int freeState = nonterminalsCount + 1;
+        for (int production = 0; production < compiled.getProductionsCount(); production++) {
+            int lhs = compiled.lhs(production);
+            int length = compiled.length(production);
+            if (length == 0) {
+                (left ? initial : accepting)[lhs] = true;
+                continue;
+            }
+            int first = compiled.symbolAt(production, 0);
+            int second = length == 2 ? compiled.symbolAt(production, 1) : CompiledGrammar.UNKNOWN;
+            /* Path of one or two terminals between from and to. */
+            int from;
+            int to;
+            int[] path;
+            if (length == 1) {
+                from = left ? extra : lhs;
+                to = left ? lhs : extra;
+                path = new int[]{first};
+            } else if (compiled.isTerminal(first) && compiled.isTerminal(second)) {
+                from = left ? extra : lhs;
+                to = left ? lhs : extra;
+                path = new int[]{first, second};
+            } else if (left) {
+                from = first;
+                to = lhs;
+                path = new int[]{second};
+            } else {
+                from = lhs;
+                to = second;
+                path = new int[]{first};
+            }
+            for (int i = 0; i < path.length; i++) {
+                edgeFrom[edgesCount] = from;
+                edgeSymbol[edgesCount] = path[i] - nonterminalsCount;
+                from = i + 1 < path.length ? freeState++ : to;
+                edgeTo[edgesCount++] = from;
+            }
+        }
+        return new Nfa(statesCount, symbolsCount, initial, accepting, edgeFrom, edgeSymbol, edgeTo, edgesCount);
+    }
+
+    /* Set of states of the automaton, as a key of the subset construction. */
+    static final class StateSet {
+
+        private final long[] bits;
+        private final int hash;
+
+        StateSet(long[] bits) {
+            this.bits = bits;
+            this.hash = Arrays.hashCode(bits);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof StateSet && hash == ((StateSet) o).hash
+                    && Arrays.equals(bits, ((StateSet) o).bits);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    int getSymbolsCount() {
+        return symbolsCount;
+    }
+
+    /* Bits of initial states. */
+    long[] start() {
+        long[] states = new long[(statesCount + 63) >>> 6];
+        for (int state = 0; state < statesCount; state++) {
+            if (initial[state]) {
+                states[state >>> 6] |= 1L << state;
+            }
+        }
+        return states;
+    }
+
+    boolean isAccepting(long[] states) {
+        for (int word = 0; word < states.length; word++) {
+            for (long bits = states[word]; bits != 0; bits &= bits - 1) {
+                if (accepting[(word << 6) + Long.numberOfTrailingZeros(bits)]) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /* Bits of states after reading the symbol, null if there are none. */
+    long[] next(long[] states, int symbol) {
+        long[] next = new long[states.length];
+        boolean empty = true;
+        for (int word = 0; word < states.length; word++) {
+            for (long bits = states[word]; bits != 0; bits &= bits - 1) {
+                int state = (word << 6) + Long.numberOfTrailingZeros(bits);
+                int transition = state * symbolsCount + symbol;
+                for (int i = transitionsStart[transition]; i < transitionsStart[transition + 1]; i++) {
+                    next[targets[i] >>> 6] |= 1L << targets[i];
+                    empty = false;
+                }
+            }
+        }
+        return empty ? null : next;
+    }
+
+    /**
+     * * Deterministic automaton with a state for every set of states reachable
+     * from the initial ones. The empty set is not a state: missing
+     * transitions are Dfa.REJECT. Their number may grow exponentially, so
+     * the construction stops above a given limit. **
+     */
+    Dfa determinize(CompiledGrammar compiled, int statesLimit) throws ConstructorException {
+        Map<StateSet, Integer> numbers = new HashMap<>();
+        ArrayDeque<long[]> queue = new ArrayDeque<>();
+        int[] transitions = new int[16 * symbolsCount];
+        boolean[] dfaAccepting = new boolean[16];
+
+        long[] start = start();
+        numbers.put(new StateSet(start), 0);
+        queue.add(start);
+        for (int dfaState = 0; !queue.isEmpty(); dfaState++) {
+            long[] states = queue.poll();
+            if (dfaState == dfaAccepting.length) {
+                dfaAccepting = Arrays.copyOf(dfaAccepting, 2 * dfaState);
+                transitions = Arrays.copyOf(transitions, 2 * dfaState * symbolsCount);
+            }
+            dfaAccepting[dfaState] = isAccepting(states);
+            for (int symbol = 0; symbol < symbolsCount; symbol++) {
+                long[] next = next(states, symbol);
+                if (next == null) {
+                    transitions[dfaState * symbolsCount + symbol] = Dfa.REJECT;
+                    continue;
+                }
+                StateSet key = new StateSet(next);
+                Integer number = numbers.get(key);
+                if (number == null) {
+                    if (numbers.size() == statesLimit) {
+                        throw new ConstructorException("Automaton too large");
+                    }
+                    number = numbers.size();
+                    numbers.put(key, number);
+                    queue.add(next);
+                }
+                transitions[dfaState * symbolsCount + symbol] = number;
+            }
+        }
+        int dfaStatesCount = numbers.size();
+        return new Dfa(compiled, dfaStatesCount, Arrays.copyOf(transitions, dfaStatesCount * symbolsCount),
+                Arrays.copyOf(dfaAccepting, dfaStatesCount));
+    }
+}
@@ -1,13 +1,10 @@
 package gramatyka;
 
 import java.util.ArrayList;
-import java.util.Dictionary;
-import java.util.HashSet;
-import java.util.Hashtable;
-import java.util.LinkedList;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Objects;
-import java.util.Queue;
 import java.util.Set;
 
 public class NormalChomskyGrammar extends ContextFreeGrammar {
@@ -28,114 +25,267 @@ public class NormalChomskyGrammar extends ContextFreeGrammar {
         }
     }
 
+    @Override
+    protected Recognizer createRecognizer() {
+        return new CykRecognizer(this);
+    }
+
+    /**
+     * * Strategy of conversion to Greibach normal form.
+     *
+     * SUBSTITUTION orders nonterminals and substitutes productions starting
+     * with lower ones, which may blow up the number of productions.
+     * ROSENKRANTZ solves the rules as a system of linear equations and gives
+     * a result of polynomial size. **
+     */
+    public enum GreibachConversion {
+
+        SUBSTITUTION, ROSENKRANTZ
+    }
+
+    /**
+     * * Algorithm of a recognizer.
+     *
+     * CYK checks splits of every cell one by one and is the default.
+     * VALIANT reduces recognition to products of boolean matrices of bit
+     * rows, done a machine word at a time and by the method of Four
+     * Russians for large blocks, and is faster for long words; see
+     * ValiantRecognizer. **
+     */
+    public enum RecognizerAlgorithm {
+
+        CYK, VALIANT
+    }
+
+    /* New recognizer by the algorithm; getRecognizer() is CYK. */
+    public Recognizer getRecognizer(RecognizerAlgorithm algorithm) {
+        if (algorithm == RecognizerAlgorithm.VALIANT) {
+            return new ValiantRecognizer(this);
+        }
+        return new CykRecognizer(this);
+    }
+
+    /**
+     * * CYK over productions with weights, such as probabilities of a PCFG,
+     * given by production ids. Throws if there isn't a weight for every
+     * production or some is negative. **
+     */
+    public WeightedCyk withWeights(double[] weights) throws ConstructorException {
+        return WeightedCyk.of(this, weights);
+    }
+
     public NormalGreibachGrammar toGreibach() throws ConstructorException {
+        return toGreibach(GreibachConversion.SUBSTITUTION);
+    }
+
+    public NormalGreibachGrammar toGreibach(GreibachConversion conversion) throws ConstructorException {
+        return convertToGreibach(conversion).name(getCompiled());
+    }
+
+    /* Results are cached in the given cache, so grammars with equal rules
+     * are converted once. */
+    public NormalGreibachGrammar toGreibach(GreibachConversion conversion, GreibachCache cache)
+            throws ConstructorException {
+        return cache.toGreibach(this, conversion);
+    }
+
+    /* Conversion without naming the nonterminals of the result. */
+    GreibachRules convertToGreibach(GreibachConversion conversion) {
+        if (conversion == GreibachConversion.ROSENKRANTZ) {
+            return new RosenkrantzConverter(this).convertChomskyToGreibach();
+        }
         ChomskyToGreibachConverter converter = new ChomskyToGreibachConverter();
         return converter.convertChomskyToGreibach();
     }
 
+    /**
+     * * Result of a conversion to Greibach normal form before its nonterminals
+     * are named. Rules are in ids of the result, terminals after nonterminals
+     * in the order of the converted grammar. Every nonterminal of the result
+     * is an original one, given by its id in the converted grammar, or an
+     * extra one, named after the original nonterminals in bases. As only ids
+     * are kept, it is the result of every grammar with equal rules, whatever
+     * its names.
+     *
+     * Names are given as the converters always gave them. If the grammar has
+     * one-character names, either every nonterminal takes its letter of
+     * letters, or, with freeLetters, extra ones take letters free in the
+     * grammar. Otherwise original nonterminals keep their names and extra
+     * ones are named after their one base, or Y_A_B after two of them. **
+     */
+    static final class GreibachRules {
+
+        final int[][][] rules;
+        final int[] origins;
+        final int[][] bases;
+        final String[] letters;
+        final boolean freeLetters;
+
+        GreibachRules(int[][][] rules, int[] origins, int[][] bases, String[] letters, boolean freeLetters) {
+            this.rules = rules;
+            this.origins = origins;
+            this.bases = bases;
+            this.letters = letters;
+            this.freeLetters = freeLetters;
+        }
+
+        /* The same result with original nonterminals renumbered by the map,
+         * null if some of them have no number in it. */
+        GreibachRules renumbered(int[] map) {
+            int[] newOrigins = new int[origins.length];
+            int[][] newBases = new int[bases.length][];
+            for (int nonterminal = 0; nonterminal < origins.length; nonterminal++) {
+                newOrigins[nonterminal] = origins[nonterminal] < 0 ? -1 : map[origins[nonterminal]];
+                newBases[nonterminal] = new int[bases[nonterminal].length];
+                for (int i = 0; i < newBases[nonterminal].length; i++) {
+                    newBases[nonterminal][i] = map[bases[nonterminal][i]];
+                    if (newBases[nonterminal][i] < 0) {
+                        return null;
+                    }
+                }
+                if (origins[nonterminal] >= 0 && newOrigins[nonterminal] < 0) {
+                    return null;
+                }
+            }
+            return new GreibachRules(rules, newOrigins, newBases, letters, freeLetters);
+        }
+
+        NormalGreibachGrammar name(CompiledGrammar source) throws ConstructorException {
+            SymbolTable symbolTable = source.getSymbolTable();
+            boolean singleCharacters = symbolTable.hasSingleCharacterNames();
+            SymbolTable.Builder builder = new SymbolTable.Builder(symbolTable);
+            char freeLetter = 'A';
+            for (int nonterminal = 0; nonterminal < origins.length; nonterminal++) {
+                if (singleCharacters && letters != null) {
+                    builder.addNonterminal(letters[nonterminal]);
+                } else if (origins[nonterminal] >= 0) {
+                    builder.addNonterminal(source.nameOf(origins[nonterminal]));
+                } else if (singleCharacters && freeLetters) {
+                    while (symbolTable.idOf(freeLetter) != SymbolTable.UNKNOWN) {
+                        freeLetter++;
+                    }
+                    builder.addNonterminal(String.valueOf(freeLetter++));
+                } else if (bases[nonterminal].length == 1) {
+                    builder.addFreshNonterminal(source.nameOf(bases[nonterminal][0]));
+                } else {
+                    builder.addFreshNonterminal("Y_" + source.nameOf(bases[nonterminal][0]) + "_"
+                            + source.nameOf(bases[nonterminal][1]));
+                }
+            }
+            for (int symbol = source.getNonterminalsCount(); symbol < source.getSymbolsCount(); symbol++) {
+                builder.addTerminal(source.nameOf(symbol));
+            }
+            return new NormalGreibachGrammar(builder.build(), rules);
+        }
+    }
+
     private class ChomskyToGreibachConverter {
 
-        private final String terminals = getTerminals();
-        private String nonterminals = getNonterminals();
-        private Set<Character> necessaryNonterminals;
-        private Dictionary<Character,List<String>> newRules = new Hashtable<>();
-        private String transformedNonterminals = "";
-        private String extraNonterminals = "";
-        private Set<Character> visited = new HashSet<>();
-        private int lastFreeNonterminal;
-        private Queue<Character> nonterminalsToAnalyse;
+        private final CompiledGrammar compiled = getCompiled();
+        private final int originalsCount = compiled.getNonterminalsCount();
+        /* Productions of every nonterminal. Nonterminals are numbered from 0,
+         * originals first and then extra ones in order of creation, and
+         * terminal t (counting among terminals) is -1 - t. Sets keep
+         * productions in order of first insertion, so the result doesn't
+         * depend on duplicates created on the way. */
+        private final List<Set<SymbolString>> newRules = new ArrayList<>();
+        /* Original nonterminal for which every extra one was created. */
+        private final List<Integer> extraOrigins = new ArrayList<>();
+        private final BitSet visited = new BitSet();
+        private final List<SymbolString> productsToRemove = new ArrayList<>();
+        private final List<SymbolString> productsToAdd = new ArrayList<>();
+        /* Nonterminals of the result, in order of their numbers. */
+        private int[] nonterminals;
+        private final Instrumentation instrumentation = Instrumentation.begin(compiled);
+
+        private boolean isNonterminal(int symbol) {
+            return symbol >= 0;
+        }
 
         /**
-         * * Nonterminals names are transformed to consecutive letters, starting
-         * from the end of an alphabet. Thanks to transformation new
-         * nonterminals can be easily added.
+         * * Nonterminals are transformed to consecutive numbers, so new
+         * nonterminals can be easily added after them.
          */
         private void transformNonterminalsNames() {
-            Dictionary<Character,Character> newNonterminalValue = new Hashtable<>();
-
-            for (int i = 0; i < nonterminals.length(); i++) {
-                char newNonterminal = (char) ((int) 'Z' - nonterminals.length() + 1 + i);
-                newNonterminalValue.put(nonterminals.charAt(i), newNonterminal);
-                transformedNonterminals += newNonterminal;
-            }
-
-            for (int i = 0; i < getRules().length; i++) {
-                String[] products = getRules()[i];
-                List<String> newProducts = new ArrayList<>();
-                for (String product : products) {
-                    String newProduct = "";
-                    for (int j = 0; j < product.length(); j++) {
-                        if (product.charAt(j) >= 'A' && product.charAt(j) <= 'Z') {
-                            newProduct += newNonterminalValue.get(product.charAt(j));
-                        } else {
-                            newProduct += product.charAt(j);
-                        }
+            for (int i = 0; i < originalsCount; i++) {
+                Set<SymbolString> newProducts = new LinkedHashSet<>();
+                for (int production = compiled.rulesStart(i); production < compiled.rulesEnd(i); production++) {
+                    int[] newProduct = new int[compiled.length(production)];
+                    for (int j = 0; j < newProduct.length; j++) {
+                        int symbol = compiled.symbolAt(production, j);
+                        newProduct[j] = compiled.isNonterminal(symbol) ? symbol : -1 - (symbol - originalsCount);
                     }
-                    newProducts.add(newProduct);
+                    newProducts.add(new SymbolString(newProduct));
                 }
-                newRules.put(transformedNonterminals.charAt(i), newProducts);
+                newRules.add(newProducts);
             }
         }
 
+        /* Removes productions collected for removal one by one, as
+         * Set.removeAll with a list argument may scan the list for every
+         * production. */
+        private void removeCollectedProducts(Set<SymbolString> products) {
+            for (SymbolString product : productsToRemove) {
+                products.remove(product);
+            }
+            productsToRemove.clear();
+        }
+
+        private void addCollectedProducts(Set<SymbolString> products) {
+            products.addAll(productsToAdd);
+            productsToAdd.clear();
+        }
+
         /* Transforms products for a given nonterminal such that every production
          * starts with a terminal or a nonterminal which is not before given one
          * on the list of nonterminals. */
-        private List<String> eliminateProductsStartingWithLessNonterminal(Character nonterminal) {
-            List<String> products = newRules.get(nonterminal);
+        private void eliminateProductsStartingWithLessNonterminal(int nonterminal) {
+            Set<SymbolString> products = newRules.get(nonterminal);
             boolean changedLastly = true;
             while (changedLastly) {
                 changedLastly = false;
-                List<String> newProducts = new ArrayList<>();
-                List<String> productsToRemove = new ArrayList<>();
-                for (String product : products) {
-                    Character firstCharacter = product.charAt(0);
-                    if (visited.contains(firstCharacter)) {
+                for (SymbolString product : products) {
+                    int firstSymbol = product.symbolAt(0);
+                    if (isNonterminal(firstSymbol) && visited.get(firstSymbol)) {
                         changedLastly = true;
                         productsToRemove.add(product);
-                        List<String> firstCharProducts = newRules.get(firstCharacter);
-
-                        for (String firstCharProduct : firstCharProducts) {
-                            newProducts.add(firstCharProduct + product.substring(1));
+                        for (SymbolString firstSymbolProduct : newRules.get(firstSymbol)) {
+                            productsToAdd.add(product.replaceFirst(firstSymbolProduct));
                         }
                     }
                 }
-                products.removeAll(productsToRemove);
-                products.addAll(newProducts);
+                removeCollectedProducts(products);
+                addCollectedProducts(products);
             }
-            return products;
         }
 
         /* Transforms products for a given nonterminal such that every production
          * doesn't start with that nonterminal.
          * Assumes that every production starts with a not less nonterminal or terminal. */
-        private List<String> eliminateProductsStartingWithEqualNonterminal(Character nonterminal) {
-            List<String> products = newRules.get(nonterminal);
-            List<String> equalProducts = new ArrayList<>();
-            for (int j = 0; j < products.size(); j++) {
-                String product = products.get(j);
-                Character firstCharacter = product.charAt(0);
-                if (Objects.equals(firstCharacter, nonterminal)) {
-                    equalProducts.add(product.substring(1));
-                    products.remove(product);
-                    j--;
+        private void eliminateProductsStartingWithEqualNonterminal(int nonterminal) {
+            Set<SymbolString> products = newRules.get(nonterminal);
+            List<SymbolString> equalTails = new ArrayList<>();
+            for (Iterator<SymbolString> iterator = products.iterator(); iterator.hasNext();) {
+                SymbolString product = iterator.next();
+                if (product.symbolAt(0) == nonterminal) {
+                    equalTails.add(product.tail());
+                    iterator.remove();
                 }
             }
-            if (!equalProducts.isEmpty()) {
-                Character newNonterminal = (char) lastFreeNonterminal--;
-                extraNonterminals += newNonterminal;
+            if (!equalTails.isEmpty()) {
+                int newNonterminal = newRules.size();
+                extraOrigins.add(nonterminal);
 
-                int productsSize = products.size();
-                for (int j = 0; j < productsSize; j++) {
-                    products.add(products.get(j) + newNonterminal);
+                for (SymbolString product : new ArrayList<>(products)) {
+                    products.add(product.append(newNonterminal));
                 }
 
-                int equalsSize = equalProducts.size();
-                for (int j = 0; j < equalsSize; j++) {
-                    equalProducts.add(equalProducts.get(j) + newNonterminal);
+                Set<SymbolString> equalProducts = new LinkedHashSet<>(equalTails);
+                for (SymbolString tail : equalTails) {
+                    equalProducts.add(tail.append(newNonterminal));
                 }
-                newRules.put(newNonterminal, equalProducts);
+                newRules.add(equalProducts);
             }
-            return products;
         }
 
         /* Transform rules such as every rule is either single terminal or
@@ -143,109 +293,144 @@ public class NormalChomskyGrammar extends ContextFreeGrammar {
          * After transformation last nonterminal has all productions starting
          * with a terminal. */
         private void transformToTemporaryForm() {
-            lastFreeNonterminal = (int) 'Z' - nonterminals.length();
-            List<String> products;
-
-            for (int i = 0; i < transformedNonterminals.length(); i++) {
-                Character nonterminal = transformedNonterminals.charAt(i);
-                products = eliminateProductsStartingWithLessNonterminal(nonterminal);
-                newRules.put(nonterminal, products);
-                products = eliminateProductsStartingWithEqualNonterminal(nonterminal);
-                newRules.put(nonterminal, products);
-                visited.add(nonterminal);
+            for (int nonterminal = 0; nonterminal < originalsCount; nonterminal++) {
+                eliminateProductsStartingWithLessNonterminal(nonterminal);
+                eliminateProductsStartingWithEqualNonterminal(nonterminal);
+                visited.set(nonterminal);
             }
         }
 
         /* For a given nonterminal eliminate productions not starting with a terminal.
          * Assumes that every production starts with a terminal or a greater nonterminal
          * and greater nonterminals' productions are in Greibach form. */
-        private List<String> eliminateRulesStartingWithNonterminal(Character nonterminal) {
-            List<String> products = newRules.get(nonterminal);
-            List<String> productsToRemove = new ArrayList<>();
-            List<String> productsToAdd = new ArrayList<>();
-            for (String product : products) {
-                if (product.charAt(0) >= 'A' && product.charAt(0) <= 'Z') {
+        private void eliminateRulesStartingWithNonterminal(int nonterminal) {
+            Set<SymbolString> products = newRules.get(nonterminal);
+            for (SymbolString product : products) {
+                int firstSymbol = product.symbolAt(0);
+                if (isNonterminal(firstSymbol)) {
                     productsToRemove.add(product);
-                    Character firstCharacter = product.charAt(0);
-                    List<String> firstCharProducts = newRules.get(firstCharacter);
-                    for (String firstCharProduct : firstCharProducts) {
-                        productsToAdd.add(firstCharProduct + product.substring(1));
+                    for (SymbolString firstSymbolProduct : newRules.get(firstSymbol)) {
+                        productsToAdd.add(product.replaceFirst(firstSymbolProduct));
                     }
                 }
             }
-            products.addAll(productsToAdd);
-            products.removeAll(productsToRemove);
-            return products;
-        }
-
-        private void transformToLastForm(String charactersToTransform) {
-            for (int i = charactersToTransform.length() - 1; i >= 0; i--) {
-                Character nonterminal = charactersToTransform.charAt(i);
-                List<String> products = eliminateRulesStartingWithNonterminal(nonterminal);
-                newRules.put(nonterminal, products);
-            }
+            addCollectedProducts(products);
+            removeCollectedProducts(products);
         }
 
         /* Transforms every productions to ones in Greibach normal form.
          * Assumes that productions are in temporary forms. */
         private void transformToLastForm() {
-            transformToLastForm(transformedNonterminals);
-            transformToLastForm(extraNonterminals);
-            nonterminals = transformedNonterminals + extraNonterminals;
-        }
-
-        private void searchNecessaryNonterminals(Character nonterminal) {
-            List<String> products = newRules.get(nonterminal);
-            for (String product : products) {
-                for (int i = 0; i < product.length(); i++) {
-                    Character letter = product.charAt(i);
-                    if (letter >= 'A' && letter <= 'Z') {
-                        if (!necessaryNonterminals.contains(letter)) {
-                            necessaryNonterminals.add(letter);
-                            nonterminalsToAnalyse.add(letter);
+            for (int nonterminal = originalsCount - 1; nonterminal >= 0; nonterminal--) {
+                eliminateRulesStartingWithNonterminal(nonterminal);
+            }
+            for (int nonterminal = newRules.size() - 1; nonterminal >= originalsCount; nonterminal--) {
+                eliminateRulesStartingWithNonterminal(nonterminal);
+            }
+        }
+
+        private void removeUselessProductions() {
+            BitSet necessaryNonterminals = new BitSet();
+            int[] nonterminalsToAnalyse = new int[newRules.size()];
+            int queueEnd = 0;
+            nonterminalsToAnalyse[queueEnd++] = 0;
+            necessaryNonterminals.set(0);
+            for (int queueStart = 0; queueStart < queueEnd; queueStart++) {
+                for (SymbolString product : newRules.get(nonterminalsToAnalyse[queueStart])) {
+                    for (int i = 0; i < product.length(); i++) {
+                        int symbol = product.symbolAt(i);
+                        if (isNonterminal(symbol) && !necessaryNonterminals.get(symbol)) {
+                            necessaryNonterminals.set(symbol);
+                            nonterminalsToAnalyse[queueEnd++] = symbol;
                         }
                     }
                 }
             }
+            nonterminals = necessaryNonterminals.stream().toArray();
         }
 
-        private void removeUselessProductions() {
-            necessaryNonterminals = new HashSet<>();
-            nonterminalsToAnalyse = new LinkedList<>();
-            nonterminalsToAnalyse.add(nonterminals.charAt(0));
-            necessaryNonterminals.add(nonterminals.charAt(0));
-            while (!nonterminalsToAnalyse.isEmpty()) {
-                searchNecessaryNonterminals(nonterminalsToAnalyse.poll());
-            }
-            for (int i = 0; i < nonterminals.length(); i++) {
-                if (!necessaryNonterminals.contains(nonterminals.charAt(i))) {
-                    StringBuilder sb = new StringBuilder(nonterminals);
-                    sb.deleteCharAt(i);
-                    i--;
-                    nonterminals = sb.toString();
+        /* Nonterminals take the names given them by the first version of the
+         * converter if the grammar has one-character names and there are at
+         * most 26 nonterminals: consecutive letters ending with Z for the
+         * original ones and letters before them for extra ones. Otherwise
+         * original nonterminals keep their names, extra ones are named after
+         * the nonterminal they were created for. */
+        private String letterOf(int nonterminal) {
+            if (nonterminal < originalsCount) {
+                return String.valueOf((char) ((int) 'Z' - originalsCount + 1 + nonterminal));
+            }
+            return String.valueOf((char) ((int) 'Z' - nonterminal));
+        }
+
+        private GreibachRules castRules() {
+            int[] newIds = new int[newRules.size()];
+            for (int i = 0; i < nonterminals.length; i++) {
+                newIds[nonterminals[i]] = i;
+            }
+            int[][][] rulesArray = new int[nonterminals.length][][];
+            int[] origins = new int[nonterminals.length];
+            int[][] bases = new int[nonterminals.length][];
+            boolean fitsInLetters = newRules.size() <= 'Z' - 'A' + 1;
+            String[] letters = fitsInLetters ? new String[nonterminals.length] : null;
+            for (int i = 0; i < nonterminals.length; i++) {
+                int nonterminal = nonterminals[i];
+                boolean original = nonterminal < originalsCount;
+                origins[i] = original ? nonterminal : -1;
+                bases[i] = new int[]{original ? nonterminal : extraOrigins.get(nonterminal - originalsCount)};
+                if (fitsInLetters) {
+                    letters[i] = letterOf(nonterminal);
                 }
+                Set<SymbolString> products = newRules.get(nonterminal);
+                rulesArray[i] = new int[products.size()][];
+                int j = 0;
+                for (SymbolString product : products) {
+                    int[] symbols = product.toArray();
+                    for (int k = 0; k < symbols.length; k++) {
+                        symbols[k] = isNonterminal(symbols[k]) ? newIds[symbols[k]]
+                                : nonterminals.length - 1 - symbols[k];
+                    }
+                    rulesArray[i][j++] = symbols;
+                }
+            }
+            return new GreibachRules(rulesArray, origins, bases, letters, false);
+        }
+
+        private void startPhase() {
+            if (instrumentation != null) {
+                instrumentation.startPhase(newRules, Math.max(newRules.size(), originalsCount));
             }
         }
 
-        private String[][] castRulesToTwoDimensionalArray() {
-            String[][] rulesArray = new String[nonterminals.length()][];
-            for (int i = 0; i < nonterminals.length(); i++) {
-                Character nonterminal = nonterminals.charAt(i);
-                List<String> products = newRules.get(nonterminal);
-                Set<String> productsSet = new HashSet<>();
-                productsSet.addAll(products);
-                rulesArray[i] = productsSet.toArray(new String[0]);
+        /* Productions of nonterminals of the result once they are known. */
+        private void finishPhase(String phase) {
+            if (instrumentation == null) {
+                return;
+            }
+            boolean[] kept = null;
+            if (nonterminals != null) {
+                kept = new boolean[newRules.size()];
+                for (int nonterminal : nonterminals) {
+                    kept[nonterminal] = true;
+                }
             }
-            return rulesArray;
+            instrumentation.finishPhase(phase, newRules, SymbolString::length, kept,
+                    Math.max(newRules.size(), originalsCount));
         }
 
-        public NormalGreibachGrammar convertChomskyToGreibach() throws ConstructorException {
+        public GreibachRules convertChomskyToGreibach() {
+            startPhase();
             transformNonterminalsNames();
+            finishPhase("transformNonterminalsNames");
+            startPhase();
             transformToTemporaryForm();
+            finishPhase("transformToTemporaryForm");
+            startPhase();
             transformToLastForm();
+            finishPhase("transformToLastForm");
+            startPhase();
             removeUselessProductions();
-
-            return new NormalGreibachGrammar(terminals, nonterminals, castRulesToTwoDimensionalArray());
+            finishPhase("removeUselessProductions");
+            return castRules();
         }
     }
 
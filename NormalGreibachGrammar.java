@@ -1,6 +1,8 @@
 package gramatyka;
 
 public class NormalGreibachGrammar extends ContextFreeGrammar {
+
+    private StreamingGreibachRecognizer streamingRecognizer;
     
     NormalGreibachGrammar(ContextFreeGrammar grammar) throws ConstructorException {
         super(grammar, grammar.isRegular());
@@ -13,6 +15,12 @@ public class NormalGreibachGrammar extends ContextFreeGrammar {
         if (!this.ifGreibach())
             throw new ConstructorException("Grammar not in Greibach normal form");
     }
+
+    NormalGreibachGrammar(SymbolTable symbolTable, int[][][] rules) throws ConstructorException {
+        super(symbolTable, rules);
+        if (!this.ifGreibach())
+            throw new ConstructorException("Grammar not in Greibach normal form");
+    }
     
     @Override
     public String typeToString() {
@@ -22,4 +30,15 @@ public class NormalGreibachGrammar extends ContextFreeGrammar {
             return "Gramatyka: bezkontekstowa/Greibach\n";
     }
 
+    /**
+     * * Recognizer reading one terminal per step, for input given in chunks
+     * or too large to keep in memory. Created once and shared. **
+     */
+    public synchronized StreamingGreibachRecognizer getStreamingRecognizer() {
+        if (streamingRecognizer == null) {
+            streamingRecognizer = new StreamingGreibachRecognizer(this);
+        }
+        return streamingRecognizer;
+    }
+
 }
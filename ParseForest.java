@@ -0,0 +1,553 @@
+package gramatyka;
+
+import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * * Shared packed parse forest of a word, holding all its derivation trees
+ * from the start variable of any context-free grammar.
+ *
+ * Symbol nodes (X, i, j) stand for X deriving word[i..j - 1]; their packed
+ * alternatives are productions of X. Rest nodes (p, d, i, j) stand for
+ * symbols d.. of production p deriving word[i..j - 1]; their packed
+ * alternatives are split points k, with children (symbol d, i, k) and
+ * (p, d + 1, k, j). So every node has at most two children and the forest
+ * has O(n^3 |G|) size for a word of length n. Nodes are interned by their
+ * (symbol or rest, start, end) keys, so shared parts of trees are one node.
+ *
+ * Which nodes derive their parts is computed bottom-up by span length, over
+ * charts of O(n^2) bits for every nonterminal and every rest of
+ * a production; a span depends on itself through empty and unit
+ * productions, so it is repeated until nothing changes. Only nodes reachable
+ * from the root are built.
+ *
+ * Derivations through cycles of unit or empty productions make the number of
+ * trees infinite: such forests have a node reachable from itself. **
+ */
+public final class ParseForest {
+
+    public static final int NONE = -1;
+
+    /**
+     * * Node of the forest. A leaf has no alternatives: a terminal, or the
+     * end of a production (rest with dot equal to its length). **
+     */
+    public static final class Node {
+
+        private static final Node[][] NO_ALTERNATIVES = new Node[0][];
+
+        private final int symbol;
+        private final int production;
+        private final int dot;
+        private final int start;
+        private final int end;
+        private Node[][] alternatives = NO_ALTERNATIVES;
+        /* Index among nodes, in order of building. */
+        private final int index;
+
+        private Node(int symbol, int production, int dot, int start, int end, int index) {
+            this.symbol = symbol;
+            this.production = production;
+            this.dot = dot;
+            this.start = start;
+            this.end = end;
+            this.index = index;
+        }
+
+        public boolean isSymbol() {
+            return production == NONE;
+        }
+
+        /* Symbol of a symbol node, NONE for a rest. */
+        public int getSymbol() {
+            return symbol;
+        }
+
+        /* Production of a rest node, NONE for a symbol. */
+        public int getProduction() {
+            return production;
+        }
+
+        public int getDot() {
+            return dot;
+        }
+
+        public int getStart() {
+            return start;
+        }
+
+        public int getEnd() {
+            return end;
+        }
+
+        public int getAlternativesCount() {
+            return alternatives.length;
+        }
+
+        /* Children of a packed alternative: the rest of a production for
+         * a symbol node, the symbol and the next rest for a rest node. */
+        public List<Node> getChildren(int alternative) {
+            return List.of(alternatives[alternative]);
+        }
+    }
+
+    private final CompiledGrammar compiled;
+    private final int length;
+    private final Node root;
+    private final List<Node> nodes = new ArrayList<>();
+    private boolean cyclic;
+    private BigInteger treesCount;
+
+    private ParseForest(CompiledGrammar compiled, int[] word) {
+        this.compiled = compiled;
+        this.length = word.length;
+        root = new Builder(word).build();
+        if (root != null) {
+            cyclic = findCycle();
+        }
+    }
+
+    static ParseForest of(CompiledGrammar compiled, int[] word) {
+        return new ParseForest(compiled, word);
+    }
+
+    /**
+     * * Charts of the bottom-up pass and building of nodes. Items of
+     * production p are itemStart[p]..itemStart[p] + length - 1, one for every
+     * rest that isn't empty; spans (i, j) are i * (n + 1) + j. **
+     */
+    private final class Builder {
+
+        private final int[] word;
+        private final int nonterminalsCount;
+        private final int spans;
+        private final int[] itemStart;
+        private final BitSet[] derives;
+        private final BitSet[] rests;
+        private final Map<Long, Node> interned = new HashMap<>();
+
+        Builder(int[] word) {
+            this.word = word;
+            nonterminalsCount = compiled.getNonterminalsCount();
+            spans = (length + 1) * (length + 1);
+            int productionsCount = compiled.getProductionsCount();
+            itemStart = new int[productionsCount + 1];
+            for (int production = 0; production < productionsCount; production++) {
+                itemStart[production + 1] = itemStart[production] + compiled.length(production);
+            }
+            derives = new BitSet[nonterminalsCount];
+            for (int nonterminal = 0; nonterminal < nonterminalsCount; nonterminal++) {
+                derives[nonterminal] = new BitSet();
+            }
+            rests = new BitSet[itemStart[productionsCount]];
+            for (int item = 0; item < rests.length; item++) {
+                rests[item] = new BitSet();
+            }
+        }
+
+        private int span(int i, int j) {
+            return i * (length + 1) + j;
+        }
+
+        private boolean derives(int symbol, int i, int j) {
+            if (compiled.isTerminal(symbol)) {
+                return j == i + 1 && word[i] == symbol;
+            }
+            return derives[symbol].get(span(i, j));
+        }
+
+        /* Whether symbols dot.. of a production derive word[i..j - 1]. */
+        private boolean rest(int production, int dot, int i, int j) {
+            if (dot == compiled.length(production)) {
+                return i == j;
+            }
+            return rests[itemStart[production] + dot].get(span(i, j));
+        }
+
+        private void fill() {
+            for (int spanLength = 0; spanLength <= length; spanLength++) {
+                for (int i = 0; i + spanLength <= length; i++) {
+                    int j = i + spanLength;
+                    boolean changed = true;
+                    while (changed) {
+                        changed = false;
+                        for (int production = 0; production < compiled.getProductionsCount(); production++) {
+                            for (int dot = compiled.length(production) - 1; dot >= 0; dot--) {
+                                int item = itemStart[production] + dot;
+                                if (rests[item].get(span(i, j))) {
+                                    continue;
+                                }
+                                int symbol = compiled.symbolAt(production, dot);
+                                for (int k = i; k <= j; k++) {
+                                    if (derives(symbol, i, k) && rest(production, dot + 1, k, j)) {
+                                        rests[item].set(span(i, j));
+                                        break;
+                                    }
+                                }
+                            }
+                            int lhs = compiled.lhs(production);
+                            if (!derives[lhs].get(span(i, j)) && rest(production, 0, i, j)) {
+                                derives[lhs].set(span(i, j));
+                                changed = true;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        private Node node(int symbol, int production, int dot, int i, int j, ArrayDeque<Node> pending) {
+            /* Rests of production p take length + 1 ids after symbols. */
+            long id = production == NONE ? symbol : compiled.getSymbolsCount() + itemStart[production] + production + dot;
+            long key = id * spans + span(i, j);
+            Node node = interned.get(key);
+            if (node == null) {
+                node = new Node(symbol, production, dot, i, j, nodes.size());
+                nodes.add(node);
+                interned.put(key, node);
+                pending.add(node);
+            }
+            return node;
+        }
+
+        Node build() {
+            if (compiled.getNonterminalsCount() == 0) {
+                return null;
+            }
+            for (int symbol : word) {
+                if (!compiled.isTerminal(symbol)) {
+                    return null;
+                }
+            }
+            fill();
+            if (!derives[0].get(span(0, length))) {
+                return null;
+            }
+            ArrayDeque<Node> pending = new ArrayDeque<>();
+            Node top = node(0, NONE, 0, 0, length, pending);
+            List<Node[]> alternatives = new ArrayList<>();
+            while (!pending.isEmpty()) {
+                Node node = pending.poll();
+                alternatives.clear();
+                int i = node.start;
+                int j = node.end;
+                if (node.production == NONE) {
+                    if (compiled.isTerminal(node.symbol)) {
+                        continue;
+                    }
+                    for (int production = compiled.rulesStart(node.symbol); production < compiled.rulesEnd(node.symbol); production++) {
+                        if (rest(production, 0, i, j)) {
+                            alternatives.add(new Node[]{node(NONE, production, 0, i, j, pending)});
+                        }
+                    }
+                } else if (node.dot < compiled.length(node.production)) {
+                    int symbol = compiled.symbolAt(node.production, node.dot);
+                    for (int k = i; k <= j; k++) {
+                        if (derives(symbol, i, k) && rest(node.production, node.dot + 1, k, j)) {
+                            alternatives.add(new Node[]{node(symbol, NONE, 0, i, k, pending),
+                                node(NONE, node.production, node.dot + 1, k, j, pending)});
+                        }
+                    }
+                }
+                node.alternatives = alternatives.toArray(new Node[0][]);
+            }
+            return top;
+        }
+    }
+
+    /* Whether a node is reachable from itself, by an iterative depth-first
+     * search with states 0 (new), 1 (on the path) and 2 (done). */
+    private boolean findCycle() {
+        byte[] state = new byte[nodes.size()];
+        int[] stackNode = new int[nodes.size()];
+        int[] stackChild = new int[nodes.size()];
+        int top = 0;
+        stackNode[top] = root.index;
+        stackChild[top++] = 0;
+        state[root.index] = 1;
+        while (top > 0) {
+            Node node = nodes.get(stackNode[top - 1]);
+            Node next = nextChild(node, stackChild, top - 1);
+            if (next == null) {
+                state[node.index] = 2;
+                top--;
+            } else if (state[next.index] == 1) {
+                return true;
+            } else if (state[next.index] == 0) {
+                state[next.index] = 1;
+                stackNode[top] = next.index;
+                stackChild[top++] = 0;
+            }
+        }
+        return false;
+    }
+
+    /* Child c % 2 of alternative c / 2 of a node, skipping missing ones;
+     * moves the cursor past it and returns null after the last one. */
+    private static Node nextChild(Node node, int[] cursors, int top) {
+        while (cursors[top] >> 1 < node.alternatives.length) {
+            int cursor = cursors[top]++;
+            Node[] alternative = node.alternatives[cursor >> 1];
+            if ((cursor & 1) < alternative.length) {
+                return alternative[cursor & 1];
+            }
+        }
+        return null;
+    }
+
+    /* Whether the word is in the language; other methods need it. */
+    public boolean isEmpty() {
+        return root == null;
+    }
+
+    public Node getRoot() {
+        return root;
+    }
+
+    public int getNodesCount() {
+        return nodes.size();
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    /* Whether the word has infinitely many trees. */
+    public boolean isCyclic() {
+        return cyclic;
+    }
+
+    /* Whether the word has more than one tree: some node reachable from the
+     * root has two alternatives, each giving a different tree, or a cycle. */
+    public boolean isAmbiguous() {
+        if (root == null) {
+            return false;
+        }
+        for (Node node : nodes) {
+            if (node.alternatives.length > 1) {
+                return true;
+            }
+        }
+        return cyclic;
+    }
+
+    /**
+     * * Exact number of trees: sums over alternatives of products over their
+     * children, taken in postorder of the forest, computed once. Throws
+     * ArithmeticException if there are infinitely many trees. **
+     */
+    public synchronized BigInteger countTrees() {
+        if (root == null) {
+            return BigInteger.ZERO;
+        }
+        if (cyclic) {
+            throw new ArithmeticException("Infinitely many trees");
+        }
+        if (treesCount == null) {
+            BigInteger[] counts = new BigInteger[nodes.size()];
+            for (int index : postorder()) {
+                Node node = nodes.get(index);
+                BigInteger count = node.alternatives.length == 0 ? BigInteger.ONE : BigInteger.ZERO;
+                for (Node[] alternative : node.alternatives) {
+                    BigInteger product = BigInteger.ONE;
+                    for (Node child : alternative) {
+                        product = product.multiply(counts[child.index]);
+                    }
+                    count = count.add(product);
+                }
+                counts[index] = count;
+            }
+            treesCount = counts[root.index];
+        }
+        return treesCount;
+    }
+
+    /* Number of trees, Long.MAX_VALUE if there are at least as many or
+     * infinitely many. */
+    public long countTreesSaturated() {
+        if (cyclic) {
+            return Long.MAX_VALUE;
+        }
+        BigInteger count = countTrees();
+        return count.bitLength() < Long.SIZE ? count.longValue() : Long.MAX_VALUE;
+    }
+
+    /* Indices of nodes with every child before its parents; the forest has
+     * no cycles. */
+    private int[] postorder() {
+        int[] order = new int[nodes.size()];
+        int ordered = 0;
+        boolean[] visited = new boolean[nodes.size()];
+        int[] stackNode = new int[nodes.size()];
+        int[] stackChild = new int[nodes.size()];
+        int top = 0;
+        stackNode[top] = root.index;
+        stackChild[top++] = 0;
+        visited[root.index] = true;
+        while (top > 0) {
+            Node node = nodes.get(stackNode[top - 1]);
+            Node next = nextChild(node, stackChild, top - 1);
+            if (next == null) {
+                order[ordered++] = node.index;
+                top--;
+            } else if (!visited[next.index]) {
+                visited[next.index] = true;
+                stackNode[top] = next.index;
+                stackChild[top++] = 0;
+            }
+        }
+        return order;
+    }
+
+    /**
+     * * Trees of the word, built lazily one at a time in lexicographic order
+     * of choices of alternatives in preorder. Trees with a node inside
+     * itself are skipped, so there are finitely many of them even in cyclic
+     * forests. The next tree is found by advancing the last choice and
+     * rebuilding the tree from the root. A node inside itself, or one whose
+     * alternatives all ran out without giving a subtree, depends only on
+     * choices above it, so the search jumps back to the choice of its parent
+     * instead of trying other choices in between. **
+     */
+    public Iterator<ParseTree> trees() {
+        return new Iterator<ParseTree>() {
+
+            private static final int BUILT = -2;
+
+            /* Choices of alternatives of nodes with any, in preorder; the
+             * number of alternatives; the position of the choice of the
+             * parent node, NONE for the root; whether the node gave a subtree
+             * since it was reached. */
+            private int[] choices = new int[16];
+            private int[] counts = new int[16];
+            private int[] parents = new int[16];
+            private boolean[] completed = new boolean[16];
+            private int choicesCount;
+            private ParseTree tree;
+            /* Parent of the root on the stack, which can't hold null. */
+            private final ParseTree noParent = new ParseTree(compiled, NONE, NONE, 0, 0, null);
+            private boolean finished = root == null;
+            private ParseTree next = finished ? null : search(build(0));
+
+            @Override
+            public boolean hasNext() {
+                if (next == null && !finished) {
+                    next = search(choicesCount - 1);
+                }
+                return next != null;
+            }
+
+            @Override
+            public ParseTree next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                ParseTree tree = next;
+                next = null;
+                return tree;
+            }
+
+            /* Next tree, advancing choices from the given position. */
+            private ParseTree search(int position) {
+                while (position != BUILT) {
+                    while (position != NONE && choices[position] + 1 >= counts[position]) {
+                        position = completed[position] ? position - 1 : parents[position];
+                    }
+                    if (position == NONE) {
+                        finished = true;
+                        return null;
+                    }
+                    choices[position]++;
+                    position = build(position + 1);
+                }
+                Arrays.fill(completed, 0, choicesCount, true);
+                return tree;
+            }
+
+            /* Builds a tree keeping the first fixed choices; returns BUILT or
+             * the position of the choice to advance next. */
+            private int build(int fixed) {
+                Node[] pendingNodes = new Node[16];
+                ParseTree[] pendingParents = new ParseTree[16];
+                int[] pendingPositions = new int[16];
+                int pending = 0;
+                int position = 0;
+                tree = null;
+                pendingNodes[pending] = root;
+                pendingParents[pending] = noParent;
+                pendingPositions[pending++] = NONE;
+                while (pending > 0) {
+                    Node node = pendingNodes[--pending];
+                    ParseTree parent = pendingParents[pending] == noParent ? null : pendingParents[pending];
+                    int parentPosition = pendingPositions[pending];
+                    if (node.alternatives.length == 0) {
+                        if (node.production == NONE) {
+                            new ParseTree(compiled, node.symbol, NONE, node.start, node.end, parent);
+                        }
+                        continue;
+                    }
+                    if (node.production == NONE && insideItself(node, parent)) {
+                        return parentPosition;
+                    }
+                    if (position == choices.length) {
+                        choices = Arrays.copyOf(choices, 2 * position);
+                        counts = Arrays.copyOf(counts, 2 * position);
+                        parents = Arrays.copyOf(parents, 2 * position);
+                        completed = Arrays.copyOf(completed, 2 * position);
+                    }
+                    if (position >= fixed) {
+                        choices[position] = 0;
+                        counts[position] = node.alternatives.length;
+                        parents[position] = parentPosition;
+                        completed[position] = false;
+                    }
+                    int choice = choices[position];
+                    Node[] children = node.alternatives[choice];
+                    if (pending + 2 > pendingNodes.length) {
+                        pendingNodes = Arrays.copyOf(pendingNodes, 2 * pending + 2);
+                        pendingParents = Arrays.copyOf(pendingParents, 2 * pending + 2);
+                        pendingPositions = Arrays.copyOf(pendingPositions, 2 * pending + 2);
+                    }
+                    if (node.production == NONE) {
+                        ParseTree subtree = new ParseTree(compiled, node.symbol, children[0].production,
+                                node.start, node.end, parent);
+                        if (tree == null) {
+                            tree = subtree;
+                        }
+                        pendingParents[pending] = subtree;
+                    } else {
+                        pendingNodes[pending] = children[1];
+                        pendingParents[pending] = parent;
+                        pendingPositions[pending++] = position;
+                        pendingParents[pending] = parent;
+                    }
+                    pendingNodes[pending] = children[0];
+                    pendingPositions[pending++] = position;
+                    position++;
+                }
+                choicesCount = position;
+                return BUILT;
+            }
+        };
+    }
+
+    /* Whether a nonterminal node is already on the path from the root to
+     * its parent: only ancestors with the same part of the word can be it. */
+    private static boolean insideItself(Node node, ParseTree parent) {
+        for (ParseTree ancestor = parent; ancestor != null && ancestor.getStart() == node.start
+                && ancestor.getEnd() == node.end; ancestor = ancestor.getParent()) {
+            if (ancestor.getSymbol() == node.symbol) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
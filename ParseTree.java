@@ -0,0 +1,85 @@
+package gramatyka;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * * Derivation tree of a part of a word: a nonterminal with the production
+ * used and subtrees of its right-hand side, or a terminal leaf. Symbols and
+ * productions are ids of the compiled grammar; the part is
+ * word[start..end - 1]. **
+ */
+public final class ParseTree {
+
+    private final CompiledGrammar compiled;
+    private final int symbol;
+    private final int production;
+    private final int start;
+    private final int end;
+    private final ParseTree parent;
+    private final List<ParseTree> children = new ArrayList<>();
+
+    ParseTree(CompiledGrammar compiled, int symbol, int production, int start, int end, ParseTree parent) {
+        this.compiled = compiled;
+        this.symbol = symbol;
+        this.production = production;
+        this.start = start;
+        this.end = end;
+        this.parent = parent;
+        if (parent != null) {
+            parent.children.add(this);
+        }
+    }
+
+    public int getSymbol() {
+        return symbol;
+    }
+
+    /* Production of a nonterminal, ParseForest.NONE for a terminal. */
+    public int getProduction() {
+        return production;
+    }
+
+    public int getStart() {
+        return start;
+    }
+
+    public int getEnd() {
+        return end;
+    }
+
+    ParseTree getParent() {
+        return parent;
+    }
+
+    public List<ParseTree> getChildren() {
+        return Collections.unmodifiableList(children);
+    }
+
+    /* Bracketed form, as A(B(a) b) or A(&) for an empty production. */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        append(sb);
+        return sb.toString();
+    }
+
+    private void append(StringBuilder sb) {
+        sb.append(compiled.nameOf(symbol));
+        if (compiled.isTerminal(symbol)) {
+            return;
+        }
+        sb.append('(');
+        if (children.isEmpty()) {
+            sb.append('&');
+        }
+        for (int i = 0; i < children.size(); i++) {
+            if (i > 0) {
+                sb.append(' ');
+            }
+            children.get(i).append(sb);
+        }
+        sb.append(')');
+    }
+}
@@ -0,0 +1,58 @@
+package gramatyka;
+
+/**
+ * * Report of one phase of a conversion or a check: its time in nanoseconds,
+ * productions before and after it, nonterminals it created and the length
+ * of the longest production after it. **
+ */
+public final class PhaseStatistics {
+
+    private final String phase;
+    private final long elapsedNanos;
+    private final int productionsBefore;
+    private final int productionsAfter;
+    private final int freshNonterminals;
+    private final int maxProductionLength;
+
+    PhaseStatistics(String phase, long elapsedNanos, int productionsBefore, int productionsAfter,
+            int freshNonterminals, int maxProductionLength) {
+        this.phase = phase;
+        this.elapsedNanos = elapsedNanos;
+        this.productionsBefore = productionsBefore;
+        this.productionsAfter = productionsAfter;
+        this.freshNonterminals = freshNonterminals;
+        this.maxProductionLength = maxProductionLength;
+    }
+
+    /* Name of the method which runs the phase. */
+    public String getPhase() {
+        return phase;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public int getProductionsBefore() {
+        return productionsBefore;
+    }
+
+    public int getProductionsAfter() {
+        return productionsAfter;
+    }
+
+    public int getFreshNonterminals() {
+        return freshNonterminals;
+    }
+
+    public int getMaxProductionLength() {
+        return maxProductionLength;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Faza %s: %.3f ms, produkcje: %d -> %d, nowe nieterminale: %d, "
+                + "najdłuższa produkcja: %d", phase, elapsedNanos / 1e6, productionsBefore, productionsAfter,
+                freshNonterminals, maxProductionLength);
+    }
+}
@@ -0,0 +1,13 @@
+package gramatyka;
+
+/**
+ * * Checks membership of words in the language of a grammar. **
+ */
+public interface Recognizer {
+
+    /* Every character of the word is a terminal. */
+    boolean recognize(String word);
+
+    /* Word given as ids of terminals in the symbol table of the grammar. */
+    boolean recognize(int[] word);
+}
@@ -0,0 +1,460 @@
+package gramatyka;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * * Comparisons of languages of regular grammars, and of a context-free
+ * grammar with a regular one, each answered with a word showing the answer.
+ *
+ * Grammars may have different terminals; words are over the union of names
+ * of their terminals. Automata are LazyDfa, so searches build only the
+ * states they visit and stop at the first word found.
+ *
+ * Equivalence is decided by Hopcroft and Karp: states reached by the same
+ * word are merged in a union-find structure and a pair of states is
+ * explored only if it joins two classes, so fewer pairs are explored than
+ * there are states of both automata, in nearly linear time. Inclusion of A
+ * in B is equivalence of B and the automaton of the union of A and B.
+ * Intersection is a breadth-first search over pairs of states, built on
+ * the fly. A context-free grammar is intersected with an automaton as in
+ * the construction of Bar-Hillel, Perles and Shamir, restricted to states
+ * reachable from the start: Earley items (dotted rule, state where it
+ * starts, state after its part before the dot) are derived from a
+ * worklist, with terminals read by the automaton and nonterminals by
+ * triples (nonterminal, state, state) already derived. **
+ */
+final class RegularLanguages {
+
+    /* Deterministic automaton over symbols of an alphabet; Dfa.REJECT is a
+     * state without accepting states after it, and stays REJECT. */
+    interface Automaton {
+
+        int start();
+
+        int next(int state, int symbol);
+
+        boolean isAccepting(int state);
+    }
+
+    /* Pairs of states numbered in order of discovery, accepting if both
+     * states are, or if any of them is. */
+    private static final class Product implements Automaton {
+
+        private final Automaton first;
+        private final Automaton second;
+        private final boolean both;
+        private final Map<Long, Integer> numbers = new HashMap<>();
+        private int[] firstStates = new int[16];
+        private int[] secondStates = new int[16];
+
+        Product(Automaton first, Automaton second, boolean both) {
+            this.first = first;
+            this.second = second;
+            this.both = both;
+        }
+
+        private int number(int firstState, int secondState) {
+            if (both ? firstState == Dfa.REJECT || secondState == Dfa.REJECT
+                    : firstState == Dfa.REJECT && secondState == Dfa.REJECT) {
+                return Dfa.REJECT;
+            }
+            Long key = ((long) firstState << 32) | (secondState & 0xFFFFFFFFL);
+            Integer known = numbers.get(key);
+            if (known != null) {
+                return known;
+            }
+            int state = numbers.size();
+            numbers.put(key, state);
+            if (state == firstStates.length) {
+                firstStates = Arrays.copyOf(firstStates, 2 * state);
+                secondStates = Arrays.copyOf(secondStates, 2 * state);
+            }
+            firstStates[state] = firstState;
+            secondStates[state] = secondState;
+            return state;
+        }
+
+        @Override
+        public int start() {
+            return number(first.start(), second.start());
+        }
+
+        @Override
+        public int next(int state, int symbol) {
+            if (state == Dfa.REJECT) {
+                return Dfa.REJECT;
+            }
+            return number(first.next(firstStates[state], symbol), second.next(secondStates[state], symbol));
+        }
+
+        @Override
+        public boolean isAccepting(int state) {
+            if (state == Dfa.REJECT) {
+                return false;
+            }
+            boolean firstAccepting = first.isAccepting(firstStates[state]);
+            boolean secondAccepting = second.isAccepting(secondStates[state]);
+            return both ? firstAccepting && secondAccepting : firstAccepting || secondAccepting;
+        }
+    }
+
+    /* Names of terminals of both grammars, in order of appearance. */
+    private final Map<String, Integer> symbolByName = new LinkedHashMap<>();
+    private final String[] alphabet;
+
+    /* Union-find over states of both automata: state s of automaton k is
+     * node 2 (s + 1) + k, so REJECT has a node too. Parent of a node is
+     * stored plus one, 0 for roots, so new nodes need no filling. */
+    private int[] parentNode = new int[64];
+
+    /* Items of the Bar-Hillel search. An item advanced over a terminal
+     * keeps its symbol, one advanced over a nonterminal keeps the
+     * completed item of that nonterminal as its child. */
+    private int[] itemSlot = new int[64];
+    private int[] itemFrom = new int[64];
+    private int[] itemTo = new int[64];
+    private int[] itemPrevious = new int[64];
+    private int[] itemChild = new int[64];
+    private int itemsCount;
+    private final Map<Long, Integer> pairNumbers = new HashMap<>();
+    private final LongSet items = new LongSet();
+
+    private RegularLanguages(ContextFreeGrammar... grammars) {
+        for (ContextFreeGrammar grammar : grammars) {
+            CompiledGrammar compiled = grammar.getCompiled();
+            for (int terminal = compiled.getNonterminalsCount(); terminal < compiled.getSymbolsCount(); terminal++) {
+                symbolByName.putIfAbsent(compiled.nameOf(terminal), symbolByName.size());
+            }
+        }
+        alphabet = symbolByName.keySet().toArray(new String[0]);
+    }
+
+    /* Symbol of the alphabet of every terminal of the grammar. */
+    private int[] symbolsOf(CompiledGrammar compiled) {
+        int nonterminalsCount = compiled.getNonterminalsCount();
+        int[] symbols = new int[compiled.getSymbolsCount() - nonterminalsCount];
+        for (int i = 0; i < symbols.length; i++) {
+            symbols[i] = symbolByName.get(compiled.nameOf(nonterminalsCount + i));
+        }
+        return symbols;
+    }
+
+    private LazyDfa automatonOf(ContextFreeGrammar grammar) throws ConstructorException {
+        CompiledGrammar compiled = grammar.getCompiled();
+        int[] columns = new int[alphabet.length];
+        Arrays.fill(columns, Dfa.REJECT);
+        int[] symbols = symbolsOf(compiled);
+        for (int column = 0; column < symbols.length; column++) {
+            columns[symbols[column]] = column;
+        }
+        return new LazyDfa(Nfa.of(compiled), columns);
+    }
+
+    private String[] namesOf(int[] word) {
+        if (word == null) {
+            return null;
+        }
+        String[] names = new String[word.length];
+        for (int i = 0; i < word.length; i++) {
+            names[i] = alphabet[word[i]];
+        }
+        return names;
+    }
+
+    /* Word in exactly one of the languages, null if they are equal. */
+    static String[] distinguishingWord(ContextFreeGrammar a, ContextFreeGrammar b) throws ConstructorException {
+        RegularLanguages languages = new RegularLanguages(a, b);
+        return languages.namesOf(languages.hopcroftKarp(languages.automatonOf(a), languages.automatonOf(b)));
+    }
+
+    /* Word of the language of a and not of b, null if there is none. */
+    static String[] inclusionCounterexample(ContextFreeGrammar a, ContextFreeGrammar b) throws ConstructorException {
+        RegularLanguages languages = new RegularLanguages(a, b);
+        LazyDfa second = languages.automatonOf(b);
+        Product union = new Product(languages.automatonOf(a), second, false);
+        return languages.namesOf(languages.hopcroftKarp(union, second));
+    }
+
+    /* Automaton of the grammar, null if it isn't regular or has productions
+     * of two nonterminals, which pass ifRegular. */
+    private LazyDfa automatonOrNull(ContextFreeGrammar grammar) {
+        if (!grammar.ifRegular()) {
+            return null;
+        }
+        try {
+            return automatonOf(grammar);
+        } catch (ConstructorException e) {
+            return null;
+        }
+    }
+
+    /* Word of both languages, null if there is none; at least one grammar
+     * has to have an automaton. */
+    static String[] commonWord(ContextFreeGrammar a, ContextFreeGrammar b) throws ConstructorException {
+        RegularLanguages languages = new RegularLanguages(a, b);
+        LazyDfa first = languages.automatonOrNull(a);
+        LazyDfa second = languages.automatonOrNull(b);
+        if (first != null && second != null) {
+            return languages.namesOf(languages.acceptedWord(new Product(first, second, true)));
+        }
+        if (second != null) {
+            return languages.namesOf(languages.barHillel(a, second));
+        }
+        if (first != null) {
+            return languages.namesOf(languages.barHillel(b, first));
+        }
+        throw new ConstructorException("Grammar not regular");
+    }
+
+    /* Word of item i in a breadth-first search is the word of parent[i]
+     * followed by symbol[i]; the root has parent -1. */
+    private static int[] word(int[] parent, int[] symbol, int item) {
+        int length = 0;
+        for (int i = item; parent[i] >= 0; i = parent[i]) {
+            length++;
+        }
+        int[] word = new int[length];
+        for (int i = item; parent[i] >= 0; i = parent[i]) {
+            word[--length] = symbol[i];
+        }
+        return word;
+    }
+
+    private int root(int node) {
+        if (node >= parentNode.length) {
+            parentNode = Arrays.copyOf(parentNode, Math.max(2 * parentNode.length, node + 1));
+        }
+        int root = node;
+        while (parentNode[root] != 0) {
+            root = parentNode[root] - 1;
+        }
+        while (parentNode[node] != 0) {
+            int next = parentNode[node] - 1;
+            parentNode[node] = root + 1;
+            node = next;
+        }
+        return root;
+    }
+
+    /* False if the states already were in one class. */
+    private boolean union(int firstState, int secondState) {
+        int x = root(2 * (firstState + 1));
+        int y = root(2 * (secondState + 1) + 1);
+        if (x == y) {
+            return false;
+        }
+        parentNode[x] = y + 1;
+        return true;
+    }
+
+    /* Word after which exactly one of the automata accepts, null if there
+     * is none. Pairs of states are explored breadth-first, so the word is
+     * short, but not always the shortest one. */
+    private int[] hopcroftKarp(Automaton first, Automaton second) {
+        int[] pairFirst = new int[16];
+        int[] pairSecond = new int[16];
+        int[] parent = new int[16];
+        int[] symbol = new int[16];
+        pairFirst[0] = first.start();
+        pairSecond[0] = second.start();
+        parent[0] = -1;
+        int pairsCount = 1;
+        union(pairFirst[0], pairSecond[0]);
+        if (first.isAccepting(pairFirst[0]) != second.isAccepting(pairSecond[0])) {
+            return new int[0];
+        }
+        for (int head = 0; head < pairsCount; head++) {
+            if (pairFirst[head] == Dfa.REJECT && pairSecond[head] == Dfa.REJECT) {
+                continue;
+            }
+            for (int c = 0; c < alphabet.length; c++) {
+                int p = first.next(pairFirst[head], c);
+                int q = second.next(pairSecond[head], c);
+                if (!union(p, q)) {
+                    continue;
+                }
+                if (pairsCount == pairFirst.length) {
+                    pairFirst = Arrays.copyOf(pairFirst, 2 * pairsCount);
+                    pairSecond = Arrays.copyOf(pairSecond, 2 * pairsCount);
+                    parent = Arrays.copyOf(parent, 2 * pairsCount);
+                    symbol = Arrays.copyOf(symbol, 2 * pairsCount);
+                }
+                pairFirst[pairsCount] = p;
+                pairSecond[pairsCount] = q;
+                parent[pairsCount] = head;
+                symbol[pairsCount] = c;
+                if (first.isAccepting(p) != second.isAccepting(q)) {
+                    return word(parent, symbol, pairsCount);
+                }
+                pairsCount++;
+            }
+        }
+        return null;
+    }
+
+    /* Shortest word accepted by the automaton, null if there is none.
+     * States are numbered in order of discovery, which is the order of
+     * the breadth-first search. */
+    private int[] acceptedWord(Automaton automaton) {
+        int start = automaton.start();
+        if (start == Dfa.REJECT) {
+            return null;
+        }
+        int[] parent = new int[16];
+        int[] symbol = new int[16];
+        parent[start] = -1;
+        int statesCount = start + 1;
+        if (automaton.isAccepting(start)) {
+            return new int[0];
+        }
+        for (int head = start; head < statesCount; head++) {
+            for (int c = 0; c < alphabet.length; c++) {
+                int next = automaton.next(head, c);
+                if (next < statesCount) {
+                    continue;
+                }
+                if (next == parent.length) {
+                    parent = Arrays.copyOf(parent, 2 * next);
+                    symbol = Arrays.copyOf(symbol, 2 * next);
+                }
+                parent[next] = head;
+                symbol[next] = c;
+                statesCount = next + 1;
+                if (automaton.isAccepting(next)) {
+                    return word(parent, symbol, next);
+                }
+            }
+        }
+        return null;
+    }
+
+    /* Number of the pair of states, for keys of items. */
+    private long pair(int from, int to) {
+        Long key = ((long) from << 32) | (to & 0xFFFFFFFFL);
+        Integer known = pairNumbers.get(key);
+        if (known == null) {
+            known = pairNumbers.size();
+            pairNumbers.put(key, known);
+        }
+        return known;
+    }
+
+    /* Child is -1 for predicted items, a completed item, or -2 - symbol
+     * for a terminal read. */
+    private void addItem(int slot, int from, int to, int previous, int child) {
+        if (!items.add(((long) slot << 32) | pair(from, to))) {
+            return;
+        }
+        if (itemsCount == itemSlot.length) {
+            int length = 2 * itemsCount;
+            itemSlot = Arrays.copyOf(itemSlot, length);
+            itemFrom = Arrays.copyOf(itemFrom, length);
+            itemTo = Arrays.copyOf(itemTo, length);
+            itemPrevious = Arrays.copyOf(itemPrevious, length);
+            itemChild = Arrays.copyOf(itemChild, length);
+        }
+        itemSlot[itemsCount] = slot;
+        itemFrom[itemsCount] = from;
+        itemTo[itemsCount] = to;
+        itemPrevious[itemsCount] = previous;
+        itemChild[itemsCount++] = child;
+    }
+
+    /* Word of the grammar accepted by the automaton, null if there is
+     * none. Every item is processed once, in order of discovery: a
+     * completed item advances items waiting for its nonterminal at its
+     * first state, and an item waiting for a nonterminal is advanced by
+     * triples of that nonterminal found earlier. */
+    private int[] barHillel(ContextFreeGrammar grammar, Automaton automaton) {
+        EarleyRecognizer earley = new EarleyRecognizer(grammar);
+        int nonterminalsCount = earley.compiled.getNonterminalsCount();
+        int[] symbols = symbolsOf(earley.compiled);
+        int start = automaton.start();
+        if (start == Dfa.REJECT) {
+            return null;
+        }
+        /* Keys (nonterminal, state) of items waiting at the state, and of
+         * completed items of the nonterminal from the state. */
+        Map<Long, List<Integer>> waiting = new HashMap<>();
+        Map<Long, List<Integer>> completed = new HashMap<>();
+        LongSet triples = new LongSet();
+
+        LongSet predicted = new LongSet();
+        predicted.add((long) earley.start << 32 | start);
+        for (int p = earley.productionsStart[earley.start]; p < earley.productionsStart[earley.start + 1]; p++) {
+            addItem(earley.firstSlots[p], start, start, -1, -1);
+        }
+        for (int item = 0; item < itemsCount; item++) {
+            int slot = itemSlot[item];
+            int from = itemFrom[item];
+            int to = itemTo[item];
+            int symbol = earley.slotSymbol[slot];
+            if (symbol == EarleyRecognizer.COMPLETE) {
+                int lhs = earley.slotLhs[slot];
+                if (lhs == earley.start && automaton.isAccepting(to)) {
+                    return wordOf(item);
+                }
+                if (!triples.add(((long) lhs << 32) | pair(from, to))) {
+                    continue;
+                }
+                long key = ((long) lhs << 32) | from;
+                completed.computeIfAbsent(key, k -> new ArrayList<>()).add(item);
+                for (int waitingItem : waiting.getOrDefault(key, List.of())) {
+                    addItem(itemSlot[waitingItem] + 1, itemFrom[waitingItem], to, waitingItem, item);
+                }
+            } else if (symbol < nonterminalsCount || symbol == earley.start) {
+                long key = ((long) symbol << 32) | to;
+                waiting.computeIfAbsent(key, k -> new ArrayList<>()).add(item);
+                if (predicted.add(key)) {
+                    for (int p = earley.productionsStart[symbol]; p < earley.productionsStart[symbol + 1]; p++) {
+                        addItem(earley.firstSlots[p], to, to, -1, -1);
+                    }
+                }
+                for (int completedItem : completed.getOrDefault(key, List.of())) {
+                    addItem(slot + 1, from, itemTo[completedItem], item, completedItem);
+                }
+            } else {
+                int terminal = symbols[symbol - nonterminalsCount];
+                int next = automaton.next(to, terminal);
+                if (next != Dfa.REJECT) {
+                    addItem(slot + 1, from, next, item, -2 - terminal);
+                }
+            }
+        }
+        return null;
+    }
+
+    /* Terminals read by the item and its children, left to right. Pending
+     * entries are items, or -2 - symbol for terminals. */
+    private int[] wordOf(int item) {
+        int[] word = new int[16];
+        int length = 0;
+        int[] pending = new int[16];
+        int size = 0;
+        pending[size++] = item;
+        while (size > 0) {
+            int entry = pending[--size];
+            if (entry < 0) {
+                if (length == word.length) {
+                    word = Arrays.copyOf(word, 2 * length);
+                }
+                word[length++] = -2 - entry;
+                continue;
+            }
+            if (itemPrevious[entry] < 0) {
+                continue;
+            }
+            if (size + 2 > pending.length) {
+                pending = Arrays.copyOf(pending, 2 * pending.length);
+            }
+            pending[size++] = itemChild[entry];
+            pending[size++] = itemPrevious[entry];
+        }
+        return Arrays.copyOf(word, length);
+    }
+}
@@ -0,0 +1,286 @@
+package gramatyka;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * * Conversion from Chomsky to Greibach normal form with Rosenkrantz's
+ * matrix method.
+ *
+ * Rules of a grammar in Chomsky normal form are the system A = T + A R, where
+ * T[j] are terminals a with A_j -> a and R[i][j] are nonterminals A_m with
+ * A_j -> A_i A_m. Its solution is A = T + T Y with new nonterminals
+ * Y = R + R Y. Productions of A start with a terminal and those of Y start
+ * with a nonterminal A_m, which is then replaced with productions of A_m.
+ * Only Y[i][j] with a path from A_i to A_j in R are productive, so the result
+ * has O(n^2) nonterminals and polynomially many productions, regardless of
+ * the order of nonterminals. New nonterminals are not limited to free letters. **
+ */
+class RosenkrantzConverter {
+
+    private final CompiledGrammar compiled;
+    private final int nonterminalsCount;
+    /* Nonterminals of the result: originals keep their ids, new ones are
+     * numbered after all symbols of the compiled grammar. */
+    private final int firstNew;
+    /* Edges i -> j labelled m for every production A_j -> A_i A_m:
+     * edgeTarget/edgeLabel[edgesStart[i]..edgesStart[i + 1] - 1]. */
+    private int[] edgesStart;
+    private int[] edgeTarget;
+    private int[] edgeLabel;
+    /* reach[i] is a bitset of j with a nonempty path from A_i to A_j. */
+    private long[][] reach;
+    private final Map<Long, Integer> newNonterminals = new HashMap<>();
+    private final List<List<int[]>> newRules = new ArrayList<>();
+    private final Instrumentation instrumentation;
+
+    RosenkrantzConverter(NormalChomskyGrammar grammar) {
+        compiled = grammar.getCompiled();
+        nonterminalsCount = compiled.getNonterminalsCount();
+        firstNew = compiled.getSymbolsCount();
+        instrumentation = Instrumentation.begin(compiled);
+    }
+
+    private void buildEdges() {
+        edgesStart = new int[nonterminalsCount + 1];
+        for (int production = 0; production < compiled.getProductionsCount(); production++) {
+            if (compiled.length(production) == 2) {
+                edgesStart[compiled.symbolAt(production, 0) + 1]++;
+            }
+        }
+        for (int i = 0; i < nonterminalsCount; i++) {
+            edgesStart[i + 1] += edgesStart[i];
+        }
+        edgeTarget = new int[edgesStart[nonterminalsCount]];
+        edgeLabel = new int[edgesStart[nonterminalsCount]];
+        int[] filled = Arrays.copyOf(edgesStart, nonterminalsCount);
+        for (int production = 0; production < compiled.getProductionsCount(); production++) {
+            if (compiled.length(production) == 2) {
+                int edge = filled[compiled.symbolAt(production, 0)]++;
+                edgeTarget[edge] = compiled.lhs(production);
+                edgeLabel[edge] = compiled.symbolAt(production, 1);
+            }
+        }
+    }
+
+    private void computeReach() {
+        int words = (nonterminalsCount + 63) >>> 6;
+        reach = new long[nonterminalsCount][words];
+        /* Source is queued once more if it lies on a cycle. */
+        int[] queue = new int[nonterminalsCount + 1];
+        for (int source = 0; source < nonterminalsCount; source++) {
+            long[] visited = reach[source];
+            int queueEnd = 0;
+            queue[queueEnd++] = source;
+            for (int queueStart = 0; queueStart < queueEnd; queueStart++) {
+                int i = queue[queueStart];
+                for (int edge = edgesStart[i]; edge < edgesStart[i + 1]; edge++) {
+                    int j = edgeTarget[edge];
+                    if (!reaches(visited, j)) {
+                        visited[j >>> 6] |= 1L << j;
+                        queue[queueEnd++] = j;
+                    }
+                }
+            }
+        }
+    }
+
+    private static boolean reaches(long[] bits, int j) {
+        return (bits[j >>> 6] & (1L << j)) != 0;
+    }
+
+    /* Id of Y[i][j], which must be productive. */
+    private int newNonterminal(int i, int j) {
+        return newNonterminals.get((long) i * nonterminalsCount + j);
+    }
+
+    private void numberNewNonterminals() {
+        for (int i = 0; i < nonterminalsCount; i++) {
+            for (int j = 0; j < nonterminalsCount; j++) {
+                if (reaches(reach[i], j)) {
+                    newNonterminals.put((long) i * nonterminalsCount + j, firstNew + newNonterminals.size());
+                }
+            }
+        }
+    }
+
+    /* A_j -> a for every A_j -> a and A_j -> a Y[k][j] for every A_k -> a. */
+    private void buildOriginalRules() {
+        for (int j = 0; j < nonterminalsCount; j++) {
+            List<int[]> products = new ArrayList<>();
+            for (int k = 0; k < nonterminalsCount; k++) {
+                if (k != j && !reaches(reach[k], j)) {
+                    continue;
+                }
+                for (int production = compiled.rulesStart(k); production < compiled.rulesEnd(k); production++) {
+                    if (compiled.length(production) != 1) {
+                        continue;
+                    }
+                    int terminal = compiled.symbolAt(production, 0);
+                    if (k == j) {
+                        products.add(new int[]{terminal});
+                    }
+                    if (reaches(reach[k], j)) {
+                        products.add(new int[]{terminal, newNonterminal(k, j)});
+                    }
+                }
+            }
+            newRules.add(products);
+        }
+    }
+
+    /* Pairs (i, j) of new nonterminals Y[i][j], in order of their ids. */
+    private int[][] pairsOfNewNonterminals() {
+        int[][] pairs = new int[newNonterminals.size()][];
+        for (Map.Entry<Long, Integer> entry : newNonterminals.entrySet()) {
+            long key = entry.getKey();
+            pairs[entry.getValue() - firstNew] = new int[]{(int) (key / nonterminalsCount),
+                (int) (key % nonterminalsCount)};
+        }
+        return pairs;
+    }
+
+    /* Y[i][j] -> A_m for A_m in R[i][j] and Y[i][j] -> A_m Y[k][j] for A_m in
+     * R[i][k], with A_m replaced by its productions. */
+    private void buildNewRules() {
+        for (int[] pair : pairsOfNewNonterminals()) {
+            int i = pair[0];
+            int j = pair[1];
+            List<int[]> products = new ArrayList<>();
+            for (int edge = edgesStart[i]; edge < edgesStart[i + 1]; edge++) {
+                int k = edgeTarget[edge];
+                int m = edgeLabel[edge];
+                if (k == j) {
+                    products.addAll(newRules.get(m));
+                }
+                if (reaches(reach[k], j)) {
+                    int tail = newNonterminal(k, j);
+                    for (int[] product : newRules.get(m)) {
+                        int[] newProduct = Arrays.copyOf(product, product.length + 1);
+                        newProduct[product.length] = tail;
+                        products.add(newProduct);
+                    }
+                }
+            }
+            newRules.add(products);
+        }
+    }
+
+    /* Ids of nonterminals reachable from the start one, in order of ids. */
+    private boolean[] findNecessaryNonterminals() {
+        boolean[] necessary = new boolean[newRules.size()];
+        int[] queue = new int[newRules.size()];
+        int queueEnd = 0;
+        necessary[0] = true;
+        queue[queueEnd++] = 0;
+        for (int queueStart = 0; queueStart < queueEnd; queueStart++) {
+            for (int[] product : newRules.get(index(queue[queueStart]))) {
+                for (int symbol : product) {
+                    if (!compiled.isTerminal(symbol) && !necessary[index(symbol)]) {
+                        necessary[index(symbol)] = true;
+                        queue[queueEnd++] = symbol;
+                    }
+                }
+            }
+        }
+        return necessary;
+    }
+
+    /* Position of a nonterminal of the result in newRules. */
+    private int index(int nonterminal) {
+        return nonterminal < nonterminalsCount ? nonterminal : nonterminal - firstNew + nonterminalsCount;
+    }
+
+    private int[][][] castRulesToThreeDimensionalArray(boolean[] necessary, int[] newIds, int newNonterminalsCount) {
+        int[][][] rulesArray = new int[newNonterminalsCount][][];
+        for (int index = 0; index < newRules.size(); index++) {
+            if (!necessary[index]) {
+                continue;
+            }
+            Set<SymbolString> productsSet = new LinkedHashSet<>();
+            for (int[] product : newRules.get(index)) {
+                int[] newProduct = new int[product.length];
+                for (int i = 0; i < product.length; i++) {
+                    newProduct[i] = compiled.isTerminal(product[i])
+                            ? newNonterminalsCount + product[i] - nonterminalsCount : newIds[index(product[i])];
+                }
+                productsSet.add(new SymbolString(newProduct));
+            }
+            rulesArray[newIds[index]] = new int[productsSet.size()][];
+            int i = 0;
+            for (SymbolString product : productsSet) {
+                rulesArray[newIds[index]][i++] = product.toArray();
+            }
+        }
+        return rulesArray;
+    }
+
+    private void startPhase() {
+        if (instrumentation != null) {
+            instrumentation.startPhase(newRules, nonterminalsCount + newNonterminals.size());
+        }
+    }
+
+    /* Productions of necessary nonterminals once they are known. */
+    private void finishPhase(String phase, boolean[] necessary) {
+        if (instrumentation != null) {
+            instrumentation.finishPhase(phase, newRules, necessary, nonterminalsCount + newNonterminals.size());
+        }
+    }
+
+    public NormalChomskyGrammar.GreibachRules convertChomskyToGreibach() {
+        startPhase();
+        buildEdges();
+        finishPhase("buildEdges", null);
+        startPhase();
+        computeReach();
+        finishPhase("computeReach", null);
+        startPhase();
+        numberNewNonterminals();
+        finishPhase("numberNewNonterminals", null);
+        startPhase();
+        buildOriginalRules();
+        finishPhase("buildOriginalRules", null);
+        startPhase();
+        buildNewRules();
+        finishPhase("buildNewRules", null);
+        startPhase();
+        boolean[] necessary = findNecessaryNonterminals();
+        finishPhase("findNecessaryNonterminals", necessary);
+
+        /* Original nonterminals keep their names. New ones get free letters if
+         * there are enough of them, otherwise names made of both indexes. */
+        int newNonterminalsCount = 0;
+        int necessaryOriginals = 0;
+        for (int index = 0; index < necessary.length; index++) {
+            if (necessary[index]) {
+                newNonterminalsCount++;
+                necessaryOriginals += index < nonterminalsCount ? 1 : 0;
+            }
+        }
+        /* Letters of all original nonterminals are taken, even unnecessary. */
+        boolean freeLetters = nonterminalsCount + newNonterminalsCount - necessaryOriginals <= 'Z' - 'A' + 1;
+        int[] newIds = new int[newRules.size()];
+        int[] origins = new int[newNonterminalsCount];
+        int[][] bases = new int[newNonterminalsCount][];
+        int[][] pairs = pairsOfNewNonterminals();
+        int id = 0;
+        for (int index = 0; index < newIds.length; index++) {
+            if (!necessary[index]) {
+                continue;
+            }
+            newIds[index] = id;
+            origins[id] = index < nonterminalsCount ? index : -1;
+            bases[id] = index < nonterminalsCount ? new int[]{index} : pairs[index - nonterminalsCount];
+            id++;
+        }
+        return new NormalChomskyGrammar.GreibachRules(
+                castRulesToThreeDimensionalArray(necessary, newIds, newNonterminalsCount), origins, bases, null,
+                freeLetters);
+    }
+}
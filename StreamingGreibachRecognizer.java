@@ -0,0 +1,468 @@
+package gramatyka;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * * Real-time recognizer for a grammar in Greibach normal form, reading input
+ * one terminal at a time.
+ *
+ * The grammar is a pushdown automaton: the stack starts with the start
+ * variable, and a terminal a replaces the top nonterminal A with B1..Bk for a
+ * production A -> a B1..Bk. A word is accepted if the stack gets empty
+ * exactly at its end. All stacks possible after a prefix are kept in a
+ * graph-structured stack: a node is a nonterminal on top of a tail, which is
+ * a union of nodes and other tails, and stands for all stacks made of its
+ * nonterminal on top of a stack of the tail. All tops with the same
+ * nonterminal, pushed or uncovered by popping, are merged into one, with the
+ * union of their tails, and tails are shared rather than copied, so a step
+ * works on at most one top per nonterminal and memory depends on the live
+ * stacks and not on the length of the input; nodes no longer reachable from
+ * the tops are left to the garbage collector.
+ *
+ * Input is taken from strings, a Reader, a ReadableByteChannel or
+ * a memory-mapped file, decoded in chunks. **
+ */
+public class StreamingGreibachRecognizer implements Recognizer {
+
+    /* Size of chunks read from a reader or a channel. */
+    private static final int CHUNK = 1 << 16;
+    /* Size of windows of a memory-mapped file. */
+    private static final long WINDOW = 1L << 28;
+
+    private final CompiledGrammar compiled;
+    private final int nonterminalsCount;
+    private final int terminalsCount;
+    /* Productions A -> a B1..Bk of every pair (A, a), group A * terminalsCount + (a - N).
+     * Tails Bj..Bk of all productions of a group form a trie read from the
+     * bottom of the stack: trie node t of a group is trieSymbol[t] on top of
+     * trie node trieParent[t] (NONE for the bottom of a tail), for t in
+     * trieStart[group]..trieStart[group + 1] - 1, parents before children.
+     * Productions of a group are productionTop[productionsStart[group]..productionsStart[group + 1] - 1],
+     * the trie node of B1 or NONE for A -> a. */
+    private final int[] trieStart;
+    private final int[] trieSymbol;
+    private final int[] trieParent;
+    /* Trie nodes below some other one, which get a node of the stack. */
+    private final boolean[] trieShared;
+    private final int[] productionsStart;
+    private final int[] productionTop;
+    private final int maxTrieSize;
+
+    private static final int NONE = -1;
+
+    StreamingGreibachRecognizer(NormalGreibachGrammar grammar) {
+        compiled = grammar.getCompiled();
+        nonterminalsCount = compiled.getNonterminalsCount();
+        terminalsCount = compiled.getTerminalsCount();
+        int groupsCount = nonterminalsCount * terminalsCount;
+
+        List<List<Integer>> groups = new ArrayList<>();
+        for (int group = 0; group < groupsCount; group++) {
+            groups.add(new ArrayList<>());
+        }
+        for (int production = 0; production < compiled.getProductionsCount(); production++) {
+            int terminal = compiled.symbolAt(production, 0) - nonterminalsCount;
+            groups.get(compiled.lhs(production) * terminalsCount + terminal).add(production);
+        }
+
+        trieStart = new int[groupsCount + 1];
+        productionsStart = new int[groupsCount + 1];
+        productionTop = new int[compiled.getProductionsCount()];
+        List<Integer> symbols = new ArrayList<>();
+        List<Integer> parents = new ArrayList<>();
+        List<Boolean> shared = new ArrayList<>();
+        int production = 0;
+        int maxSize = 0;
+        for (int group = 0; group < groupsCount; group++) {
+            trieStart[group] = symbols.size();
+            productionsStart[group] = production;
+            /* Trie node by (parent, symbol), as (parent + 1) * nonterminals + symbol. */
+            Map<Long, Integer> trie = new HashMap<>();
+            for (int p : groups.get(group)) {
+                int node = NONE;
+                for (int i = compiled.length(p) - 1; i >= 1; i--) {
+                    int symbol = compiled.symbolAt(p, i);
+                    long key = (long) (node + 1) * nonterminalsCount + symbol;
+                    Integer child = trie.get(key);
+                    if (child == null) {
+                        child = symbols.size() - trieStart[group];
+                        trie.put(key, child);
+                        symbols.add(symbol);
+                        parents.add(node);
+                        shared.add(false);
+                    }
+                    if (node != NONE) {
+                        shared.set(trieStart[group] + node, true);
+                    }
+                    node = child;
+                }
+                productionTop[production++] = node;
+            }
+            maxSize = Math.max(maxSize, symbols.size() - trieStart[group]);
+        }
+        trieStart[groupsCount] = symbols.size();
+        productionsStart[groupsCount] = production;
+        trieSymbol = new int[symbols.size()];
+        trieParent = new int[symbols.size()];
+        trieShared = new boolean[symbols.size()];
+        for (int i = 0; i < trieSymbol.length; i++) {
+            trieSymbol[i] = symbols.get(i);
+            trieParent[i] = parents.get(i);
+            trieShared[i] = shared.get(i);
+        }
+        maxTrieSize = maxSize;
+    }
+
+    /**
+     * * Set of stacks of the graph-structured stack, a union of other sets.
+     * A node is the set of stacks made of its nonterminal on top of a stack
+     * of its tail. **
+     */
+    private static class Tail {
+
+        /* Number of the set in its run. */
+        private final long id;
+        private Tail[] parts;
+        private int partsCount;
+        /* Nodes in the union, computed when first needed, which is after the
+         * step that built the union. */
+        private Node[] nodes;
+
+        Tail(long id) {
+            this.id = id;
+        }
+
+        void add(Tail part) {
+            if (parts == null) {
+                parts = new Tail[4];
+            } else if (partsCount == parts.length) {
+                parts = Arrays.copyOf(parts, 2 * partsCount);
+            }
+            parts[partsCount++] = part;
+        }
+    }
+
+    private static final class Node extends Tail {
+
+        private final int symbol;
+        private final Tail tail;
+
+        Node(long id, int symbol, Tail tail) {
+            super(id);
+            this.symbol = symbol;
+            this.tail = tail;
+        }
+    }
+
+    /**
+     * * Recognition of a single input, fed one terminal at a time. **
+     */
+    public final class Run {
+
+        /* Node below the start variable: popping it means the stack is empty. */
+        private final Node bottom = new Node(0, NONE, null);
+        private long setsCount = 1;
+        /* Stacks with nonterminal A on top are A on top of tails[A], for the
+         * topsCount nonterminals in topSymbols; the others have no tail. */
+        private Tail[] tails = new Tail[nonterminalsCount];
+        private int[] topSymbols = new int[nonterminalsCount];
+        private int topsCount;
+        private Tail[] nextTails = new Tail[nonterminalsCount];
+        private int[] nextTopSymbols = new int[nonterminalsCount];
+        private int nextTopsCount;
+        /* Step in which the union in nextTails was created, for every nonterminal. */
+        private final long[] unionStep = new long[nonterminalsCount];
+        private final Node[] trieNodes = new Node[maxTrieSize];
+        /* Pairs (tail, nonterminal) added in the current step, as
+         * id * nonterminals + nonterminal. */
+        private final LongSet added = new LongSet();
+        private final LongSet collected = new LongSet();
+        private Tail[] pending = new Tail[16];
+        private Node[] collectedNodes = new Node[16];
+        private long step;
+        private boolean empty;
+
+        private Run() {
+            Arrays.fill(unionStep, -1);
+            if (nonterminalsCount > 0) {
+                tails[0] = bottom;
+                topSymbols[topsCount++] = 0;
+            }
+        }
+
+        /* True if neither the input read so far nor any continuation of it
+         * is a word of the grammar. */
+        public boolean isRejected() {
+            return topsCount == 0 && !empty;
+        }
+
+        /* True if the input read so far is a word of the grammar. */
+        public boolean isAccepting() {
+            return empty;
+        }
+
+        public long getPosition() {
+            return step;
+        }
+
+        /* Number of nonterminals on top of stacks, which bounds the work of
+         * the next step together with the sizes of their tails. */
+        public int getTopsCount() {
+            return topsCount;
+        }
+
+        public boolean feed(char c) {
+            return feed(compiled.symbolOf(c));
+        }
+
+        /* Reads a terminal given by its symbol id; returns !isRejected(). */
+        public boolean feed(int terminal) {
+            empty = false;
+            step++;
+            nextTopsCount = 0;
+            int column = terminal - nonterminalsCount;
+            for (int i = 0; i < topsCount && compiled.isTerminal(terminal); i++) {
+                int symbol = topSymbols[i];
+                Tail tail = tails[symbol];
+                int group = symbol * terminalsCount + column;
+                int trieOffset = trieStart[group];
+                for (int t = trieOffset; t < trieStart[group + 1]; t++) {
+                    if (trieShared[t]) {
+                        trieNodes[t - trieOffset] = new Node(setsCount++, trieSymbol[t],
+                                trieParent[t] == NONE ? tail : trieNodes[trieParent[t]]);
+                    }
+                }
+                for (int p = productionsStart[group]; p < productionsStart[group + 1]; p++) {
+                    int node = productionTop[p];
+                    if (node == NONE) {
+                        pop(tail);
+                    } else {
+                        int parent = trieParent[trieOffset + node];
+                        push(trieSymbol[trieOffset + node], parent == NONE ? tail : trieNodes[parent]);
+                    }
+                }
+            }
+            Arrays.fill(trieNodes, null);
+            added.clear();
+            /* Tails of old tops are cleared, so they can be collected. */
+            for (int i = 0; i < topsCount; i++) {
+                tails[topSymbols[i]] = null;
+            }
+            Tail[] swapTails = tails;
+            tails = nextTails;
+            nextTails = swapTails;
+            int[] swapSymbols = topSymbols;
+            topSymbols = nextTopSymbols;
+            nextTopSymbols = swapSymbols;
+            topsCount = nextTopsCount;
+            return !isRejected();
+        }
+
+        /* Nodes of a tail become tops, merged with other tops of their
+         * nonterminals. */
+        private void pop(Tail tail) {
+            if (tail instanceof Node) {
+                uncover((Node) tail);
+                return;
+            }
+            for (Node node : nodesOf(tail)) {
+                uncover(node);
+            }
+        }
+
+        private void uncover(Node node) {
+            if (node == bottom) {
+                empty = true;
+            } else {
+                push(node.symbol, node.tail);
+            }
+        }
+
+        /* Adds stacks made of a nonterminal on top of a tail. */
+        private void push(int symbol, Tail tail) {
+            if (!added.add(tail.id * nonterminalsCount + symbol)) {
+                return;
+            }
+            Tail current = nextTails[symbol];
+            if (current == null) {
+                nextTails[symbol] = tail;
+                nextTopSymbols[nextTopsCount++] = symbol;
+            } else if (unionStep[symbol] == step) {
+                current.add(tail);
+            } else {
+                Tail union = new Tail(setsCount++);
+                union.add(current);
+                union.add(tail);
+                nextTails[symbol] = union;
+                unionStep[symbol] = step;
+            }
+        }
+
+        /* Distinct nodes in a union, found without recursion, as unions may
+         * be nested as deep as the input is long. */
+        private Node[] nodesOf(Tail union) {
+            if (union.nodes != null) {
+                return union.nodes;
+            }
+            int collectedCount = 0;
+            int pendingCount = 0;
+            pending[pendingCount++] = union;
+            while (pendingCount > 0) {
+                Tail tail = pending[--pendingCount];
+                if (!collected.add(tail.id)) {
+                    continue;
+                }
+                if (tail instanceof Node) {
+                    if (collectedCount == collectedNodes.length) {
+                        collectedNodes = Arrays.copyOf(collectedNodes, 2 * collectedCount);
+                    }
+                    collectedNodes[collectedCount++] = (Node) tail;
+                    continue;
+                }
+                for (int i = 0; i < tail.partsCount; i++) {
+                    if (pendingCount == pending.length) {
+                        pending = Arrays.copyOf(pending, 2 * pendingCount);
+                    }
+                    pending[pendingCount++] = tail.parts[i];
+                }
+            }
+            collected.clear();
+            union.nodes = Arrays.copyOf(collectedNodes, collectedCount);
+            Arrays.fill(collectedNodes, 0, collectedCount, null);
+            return union.nodes;
+        }
+
+        /* Feeds characters until the input is rejected; returns !isRejected(). */
+        public boolean feed(CharSequence characters) {
+            for (int i = 0, length = characters.length(); i < length && !isRejected(); i++) {
+                feed(characters.charAt(i));
+            }
+            return !isRejected();
+        }
+
+        public boolean feed(char[] characters, int offset, int length) {
+            for (int i = offset, end = offset + length; i < end && !isRejected(); i++) {
+                feed(characters[i]);
+            }
+            return !isRejected();
+        }
+    }
+
+    public Run start() {
+        return new Run();
+    }
+
+    @Override
+    public boolean recognize(String word) {
+        Run run = start();
+        return run.feed(word) && run.isAccepting();
+    }
+
+    @Override
+    public boolean recognize(int[] word) {
+        Run run = start();
+        for (int i = 0; i < word.length && !run.isRejected(); i++) {
+            run.feed(word[i]);
+        }
+        return run.isAccepting();
+    }
+
+    /* Stops reading as soon as the input is rejected. */
+    public boolean recognize(Reader reader) throws IOException {
+        Run run = start();
+        char[] buffer = new char[CHUNK];
+        int read;
+        while ((read = reader.read(buffer)) >= 0) {
+            if (!run.feed(buffer, 0, read)) {
+                return false;
+            }
+        }
+        return run.isAccepting();
+    }
+
+    public boolean recognize(ReadableByteChannel channel, Charset charset) throws IOException {
+        Run run = start();
+        CharsetDecoder decoder = charset.newDecoder();
+        ByteBuffer bytes = ByteBuffer.allocate(CHUNK);
+        CharBuffer characters = CharBuffer.allocate(CHUNK);
+        boolean end = false;
+        while (!end) {
+            end = channel.read(bytes) < 0;
+            bytes.flip();
+            if (!decode(run, decoder, bytes, characters, end)) {
+                return false;
+            }
+            bytes.compact();
+        }
+        return finish(run, decoder, characters);
+    }
+
+    /* Maps the file in windows, so files larger than 2 GB can be read. */
+    public boolean recognize(Path file, Charset charset) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            Run run = start();
+            CharsetDecoder decoder = charset.newDecoder();
+            CharBuffer characters = CharBuffer.allocate(CHUNK);
+            long size = channel.size();
+            long position = 0;
+            do {
+                long length = Math.min(WINDOW, size - position);
+                MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                boolean end = position + length == size;
+                if (!decode(run, decoder, bytes, characters, end)) {
+                    return false;
+                }
+                /* Bytes of a character split between windows are mapped again. */
+                position += length - bytes.remaining();
+            } while (position < size);
+            return finish(run, decoder, characters);
+        }
+    }
+
+    /* Decodes and feeds bytes; leaves an incomplete character in bytes
+     * unless the input ends. */
+    private static boolean decode(Run run, CharsetDecoder decoder, ByteBuffer bytes, CharBuffer characters,
+            boolean end) throws CharacterCodingException {
+        while (true) {
+            CoderResult result = decoder.decode(bytes, characters, end);
+            if (result.isError()) {
+                result.throwException();
+            }
+            characters.flip();
+            if (!run.feed(characters.array(), characters.arrayOffset() + characters.position(), characters.remaining())) {
+                return false;
+            }
+            characters.clear();
+            if (result.isUnderflow()) {
+                return true;
+            }
+        }
+    }
+
+    private static boolean finish(Run run, CharsetDecoder decoder, CharBuffer characters)
+            throws CharacterCodingException {
+        CoderResult result = decoder.flush(characters);
+        if (result.isError()) {
+            result.throwException();
+        }
+        characters.flip();
+        return run.feed(characters.array(), characters.arrayOffset(), characters.remaining()) && run.isAccepting();
+    }
+}
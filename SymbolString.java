@@ -0,0 +1,60 @@
+package gramatyka;
+
+import java.util.Arrays;
+
+/**
+ * * Immutable sequence of symbol ids, used by conversions the way String is
+ * used for grammars with one-character names. **
+ */
+final class SymbolString {
+
+    private final int[] symbols;
+    private final int hash;
+
+    SymbolString(int... symbols) {
+        this.symbols = symbols;
+        this.hash = Arrays.hashCode(symbols);
+    }
+
+    int length() {
+        return symbols.length;
+    }
+
+    int symbolAt(int index) {
+        return symbols[index];
+    }
+
+    /* Symbols without the first one. */
+    SymbolString tail() {
+        return new SymbolString(Arrays.copyOfRange(symbols, 1, symbols.length));
+    }
+
+    /* Symbols with the first one replaced by a given sequence. */
+    SymbolString replaceFirst(SymbolString replacement) {
+        int[] result = new int[replacement.symbols.length + symbols.length - 1];
+        System.arraycopy(replacement.symbols, 0, result, 0, replacement.symbols.length);
+        System.arraycopy(symbols, 1, result, replacement.symbols.length, symbols.length - 1);
+        return new SymbolString(result);
+    }
+
+    SymbolString append(int symbol) {
+        int[] result = Arrays.copyOf(symbols, symbols.length + 1);
+        result[symbols.length] = symbol;
+        return new SymbolString(result);
+    }
+
+    int[] toArray() {
+        return symbols.clone();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof SymbolString && hash == ((SymbolString) o).hash
+                && Arrays.equals(symbols, ((SymbolString) o).symbols);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+}
@@ -0,0 +1,159 @@
+package gramatyka;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * * Names of terminals and nonterminals of a grammar and their int ids.
+ *
+ * Nonterminals get ids 0..N-1 (the first one is a start variable) and
+ * terminals get ids N..N+T-1. Names are arbitrary nonempty strings, unique
+ * among all symbols. Grammars created from characters have one-character
+ * names, which can also be looked up by a char. **
+ */
+public final class SymbolTable {
+
+    public static final int UNKNOWN = -1;
+
+    private final String[] names;
+    private final int nonterminalsCount;
+    private final Map<String, Integer> ids = new HashMap<>();
+    /* Id of a one-character name for every character, UNKNOWN for others. */
+    private final int[] symbolByChar;
+    private final boolean singleCharacterNames;
+
+    public SymbolTable(String[] terminals, String[] nonterminals) throws ConstructorException {
+        nonterminalsCount = nonterminals.length;
+        names = new String[nonterminals.length + terminals.length];
+        System.arraycopy(nonterminals, 0, names, 0, nonterminals.length);
+        System.arraycopy(terminals, 0, names, nonterminals.length, terminals.length);
+
+        boolean singleCharacters = true;
+        for (int i = 0; i < names.length; i++) {
+            if (names[i] == null || names[i].isEmpty()) {
+                throw new ConstructorException(i < nonterminalsCount ? "Wrong nonterminals" : "Wrong terminals");
+            }
+            if (ids.put(names[i], i) != null) {
+                throw new ConstructorException("Repeated symbol " + names[i]);
+            }
+            singleCharacters &= names[i].length() == 1;
+        }
+        singleCharacterNames = singleCharacters;
+        symbolByChar = indexByChar(names);
+    }
+
+    private static int[] indexByChar(String[] names) {
+        int maxChar = -1;
+        for (String name : names) {
+            if (name.length() == 1) {
+                maxChar = Math.max(maxChar, name.charAt(0));
+            }
+        }
+        int[] symbolByChar = new int[maxChar + 1];
+        Arrays.fill(symbolByChar, UNKNOWN);
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].length() == 1) {
+                symbolByChar[names[i].charAt(0)] = i;
+            }
+        }
+        return symbolByChar;
+    }
+
+    /* Every character of the strings is a name of a symbol. */
+    static SymbolTable ofCharacters(String terminals, String nonterminals) throws ConstructorException {
+        return new SymbolTable(split(terminals), split(nonterminals));
+    }
+
+    private static String[] split(String characters) {
+        String[] result = new String[characters.length()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = String.valueOf(characters.charAt(i));
+        }
+        return result;
+    }
+
+    public int getNonterminalsCount() {
+        return nonterminalsCount;
+    }
+
+    public int getTerminalsCount() {
+        return names.length - nonterminalsCount;
+    }
+
+    public int getSymbolsCount() {
+        return names.length;
+    }
+
+    public String nameOf(int symbol) {
+        return names[symbol];
+    }
+
+    public int idOf(String name) {
+        Integer id = ids.get(name);
+        return id == null ? UNKNOWN : id;
+    }
+
+    public int idOf(char c) {
+        return c < symbolByChar.length ? symbolByChar[c] : UNKNOWN;
+    }
+
+    public boolean isNonterminal(int symbol) {
+        return symbol >= 0 && symbol < nonterminalsCount;
+    }
+
+    public boolean isTerminal(int symbol) {
+        return symbol >= nonterminalsCount && symbol < names.length;
+    }
+
+    /* True if the grammar can be written with the char based api. */
+    public boolean hasSingleCharacterNames() {
+        return singleCharacterNames;
+    }
+
+    /**
+     * * Collects names of symbols created during conversions. Fresh
+     * nonterminals get a name of a given base with primes appended, so they
+     * never collide with existing symbols and their number is not limited. **
+     */
+    static class Builder {
+
+        private final List<String> nonterminals = new ArrayList<>();
+        private final List<String> terminals = new ArrayList<>();
+        private final Set<String> taken = new HashSet<>();
+
+        Builder(SymbolTable reserved) {
+            taken.addAll(Arrays.asList(reserved.names));
+        }
+
+        /* Returns the index of the nonterminal among nonterminals. */
+        int addNonterminal(String name) {
+            taken.add(name);
+            nonterminals.add(name);
+            return nonterminals.size() - 1;
+        }
+
+        int addFreshNonterminal(String base) {
+            String name = base;
+            while (taken.contains(name)) {
+                name += "'";
+            }
+            return addNonterminal(name);
+        }
+
+        /* Returns the index of the terminal among terminals. */
+        int addTerminal(String name) {
+            taken.add(name);
+            terminals.add(name);
+            return terminals.size() - 1;
+        }
+
+        SymbolTable build() throws ConstructorException {
+            return new SymbolTable(terminals.toArray(new String[0]), nonterminals.toArray(new String[0]));
+        }
+    }
+}
@@ -0,0 +1,397 @@
+package gramatyka;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * * Recognizer for a grammar in Chomsky normal form by Valiant's reduction
+ * to products of boolean matrices, in the formulation of Okhotin.
+ *
+ * The chart holds, for every nonterminal A, the matrix of spans (i, j)
+ * derived from A, as bit rows: row i has a bit for every position j > i,
+ * in long words from the one of i, so a word of length n takes N n^2 / 16
+ * bytes. Spans are completed by rectangles of rows X and columns Z with
+ * all splits between X and Z already counted: a rectangle is split in
+ * four, and the splits inside X and Z are added by products T[X1, X2]
+ * T[X2, Z] and T[X, Z1] T[Z1, Z2] of the quarters done before, as in
+ * Valiant's algorithm, so nearly all the work is in products of large
+ * blocks. A product adds A to (i, j) for A -> BC, B in (i, k) and C in
+ * (k, j). Products of few rows or, for every k of row i of B, row k of C
+ * into row i of A, a long word of Z at a time, which is O(|X| |Y| |Z| / w)
+ * for words of w bits. Products of many rows go by the method of Four
+ * Russians: splits are taken t at a time, with t about log |X|, and for
+ * every C a table of ors of its t rows for all 2^t subsets of them is
+ * built once and used by every row of X, so a product is
+ * O(|X| |Y| |Z| / (w log |X|)) and recognition O(|G| n^3 / (w log n)),
+ * against O(|G| n^3) of CYK, which tests nonterminals one by one. Only
+ * bits of true derivations are ever set, so words at the edges of Z are
+ * or-ed whole. Small rectangles are filled cell by cell, and quarters
+ * which don't depend on each other are computed in parallel, as they
+ * write to different rows. **
+ */
+public class ValiantRecognizer implements Recognizer {
+
+    /* Rectangles with both sides at most this long are filled cell by
+     * cell. */
+    private static final int DIRECT_SIZE = 32;
+    /* Below this number of bit operations a product or a rectangle is
+     * computed in the calling thread. */
+    private static final long SEQUENTIAL_THRESHOLD = 1 << 20;
+    /* Products of at least this many rows go by tables, of at most 2^10
+     * entries. */
+    static final int TABLE_ROWS = 64;
+    private static final int MAX_TABLE_BITS = 10;
+
+    private final CompiledGrammar compiled;
+    private final int nonterminalsCount;
+    /* Nonterminals A with a rule A -> a: terminalHeads[a], a counted
+     * among terminals. */
+    private final int[][] terminalHeads;
+    /* Productions A -> BC of B: binaryRight (C) and binaryHead (A) at
+     * binaryStart[B]..binaryStart[B + 1] - 1. */
+    private final int[] binaryStart;
+    private final int[] binaryRight;
+    private final int[] binaryHead;
+    /* The same productions by C: rightLeft (B) and rightHead (A) at
+     * rightStart[C]..rightStart[C + 1] - 1. */
+    private final int[] rightStart;
+    private final int[] rightLeft;
+    private final int[] rightHead;
+    private final int tableRows;
+    private final ForkJoinPool pool;
+
+    ValiantRecognizer(NormalChomskyGrammar grammar) {
+        this(grammar, ForkJoinPool.commonPool(), TABLE_ROWS);
+    }
+
+    /* Products of fewer than tableRows rows are done without tables. */
+    ValiantRecognizer(NormalChomskyGrammar grammar, ForkJoinPool pool, int tableRows) {
+        this.pool = pool;
+        this.tableRows = tableRows;
+        compiled = grammar.getCompiled();
+        nonterminalsCount = compiled.getNonterminalsCount();
+        int[] terminalCounts = new int[compiled.getTerminalsCount()];
+        binaryStart = new int[nonterminalsCount + 1];
+        for (int production = 0; production < compiled.getProductionsCount(); production++) {
+            if (compiled.length(production) == 1) {
+                terminalCounts[compiled.symbolAt(production, 0) - nonterminalsCount]++;
+            } else {
+                binaryStart[compiled.symbolAt(production, 0) + 1]++;
+            }
+        }
+        terminalHeads = new int[terminalCounts.length][];
+        for (int terminal = 0; terminal < terminalCounts.length; terminal++) {
+            terminalHeads[terminal] = new int[terminalCounts[terminal]];
+            terminalCounts[terminal] = 0;
+        }
+        for (int left = 0; left < nonterminalsCount; left++) {
+            binaryStart[left + 1] += binaryStart[left];
+        }
+        binaryRight = new int[binaryStart[nonterminalsCount]];
+        binaryHead = new int[binaryRight.length];
+        int[] next = binaryStart.clone();
+        for (int production = 0; production < compiled.getProductionsCount(); production++) {
+            int head = compiled.lhs(production);
+            int first = compiled.symbolAt(production, 0);
+            if (compiled.length(production) == 1) {
+                int terminal = first - nonterminalsCount;
+                terminalHeads[terminal][terminalCounts[terminal]++] = head;
+            } else {
+                binaryRight[next[first]] = compiled.symbolAt(production, 1);
+                binaryHead[next[first]++] = head;
+            }
+        }
+        rightStart = new int[nonterminalsCount + 1];
+        for (int p = 0; p < binaryRight.length; p++) {
+            rightStart[binaryRight[p] + 1]++;
+        }
+        for (int right = 0; right < nonterminalsCount; right++) {
+            rightStart[right + 1] += rightStart[right];
+        }
+        rightLeft = new int[binaryRight.length];
+        rightHead = new int[binaryRight.length];
+        next = rightStart.clone();
+        for (int left = 0; left < nonterminalsCount; left++) {
+            for (int p = binaryStart[left]; p < binaryStart[left + 1]; p++) {
+                rightLeft[next[binaryRight[p]]] = left;
+                rightHead[next[binaryRight[p]]++] = binaryHead[p];
+            }
+        }
+    }
+
+    @Override
+    public boolean recognize(String word) {
+        int[] input = new int[word.length()];
+        for (int i = 0; i < word.length(); i++) {
+            input[i] = compiled.symbolOf(word.charAt(i));
+        }
+        return recognize(input);
+    }
+
+    @Override
+    public boolean recognize(int[] word) {
+        int n = word.length;
+        if (n == 0) {
+            /* Grammar in Chomsky normal form has no empty productions. */
+            return false;
+        }
+        for (int terminal : word) {
+            if (!compiled.isTerminal(terminal)) {
+                return false;
+            }
+        }
+        Chart chart = new Chart(n);
+        for (int i = 0; i < n; i++) {
+            for (int head : terminalHeads[word[i] - nonterminalsCount]) {
+                chart.set(head, i, i + 1);
+            }
+        }
+        pool.invoke(ForkJoinTask.adapt(() -> chart.compute(0, n + 1)));
+        return chart.test(0, 0, n);
+    }
+
+    /* Bit rows of spans of all nonterminals, for positions 0..n. */
+    private class Chart {
+
+        private final int[] rowStart;
+        private final long[][] rows;
+
+        Chart(int n) {
+            rowStart = new int[n + 1];
+            long size = 0;
+            for (int i = 0; i <= n; i++) {
+                rowStart[i] = (int) size;
+                size += (n >>> 6) - (i >>> 6) + 1;
+                if (size > Integer.MAX_VALUE - 8) {
+                    throw new IllegalArgumentException("Word too long: " + n);
+                }
+            }
+            rows = new long[nonterminalsCount][(int) size];
+        }
+
+        /* Index of the word of column j in row i. */
+        private int word(int i, int j) {
+            return rowStart[i] + (j >>> 6) - (i >>> 6);
+        }
+
+        void set(int nonterminal, int i, int j) {
+            rows[nonterminal][word(i, j)] |= 1L << j;
+        }
+
+        boolean test(int nonterminal, int i, int j) {
+            return (rows[nonterminal][word(i, j)] & (1L << j)) != 0;
+        }
+
+        /* All spans of positions l..m - 1. */
+        void compute(int l, int m) {
+            if (m - l <= DIRECT_SIZE) {
+                fill(l, m, l, m);
+                return;
+            }
+            int middle = (l + m) >>> 1;
+            parallel(() -> compute(l, middle), () -> compute(middle, m), (long) (m - l) * (m - l) * (m - l));
+            complete(l, middle, middle, m);
+        }
+
+        /* Spans (i, j) for l <= i < m <= l2 <= j < m2, with splits between
+         * m and l2 already added. */
+        void complete(int l, int m, int l2, int m2) {
+            if (m - l <= DIRECT_SIZE && m2 - l2 <= DIRECT_SIZE) {
+                fill(l, m, l2, m2);
+                return;
+            }
+            if (m - l == 1 || m2 - l2 > 2 * (m - l)) {
+                /* Columns only: (X, Z1), splits in Z1 for (X, Z2), (X, Z2). */
+                int middle2 = (l2 + m2) >>> 1;
+                complete(l, m, l2, middle2);
+                multiply(l, m, l2, middle2, middle2, m2);
+                complete(l, m, middle2, m2);
+                return;
+            }
+            if (m2 - l2 == 1 || m - l > 2 * (m2 - l2)) {
+                /* Rows only: (X2, Z), splits in X2 for (X1, Z), (X1, Z). */
+                int middle = (l + m) >>> 1;
+                complete(middle, m, l2, m2);
+                multiply(l, middle, middle, m, l2, m2);
+                complete(l, middle, l2, m2);
+                return;
+            }
+            int middle = (l + m) >>> 1;
+            int middle2 = (l2 + m2) >>> 1;
+            complete(middle, m, l2, middle2);
+            parallel(() -> {
+                multiply(l, middle, middle, m, l2, middle2);
+                complete(l, middle, l2, middle2);
+            }, () -> {
+                multiply(middle, m, l2, middle2, middle2, m2);
+                complete(middle, m, middle2, m2);
+            }, (long) (m - l) * (m - l) * (m2 - l2));
+            multiply(l, middle, middle, m, middle2, m2);
+            multiply(l, middle, l2, middle2, middle2, m2);
+            complete(l, middle, middle2, m2);
+        }
+
+        /* Both actions, in parallel if there is enough work. They write to
+         * different rows. */
+        private void parallel(Runnable first, Runnable second, long work) {
+            if (work < SEQUENTIAL_THRESHOLD) {
+                first.run();
+                second.run();
+            } else {
+                ForkJoinTask.invokeAll(ForkJoinTask.adapt(first), ForkJoinTask.adapt(second));
+            }
+        }
+
+        /* Adds splits k in y..y2 - 1 to spans (i, j) of rows x..x2 - 1 and
+         * columns z..z2 - 1, in parallel for halves of the rows. */
+        void multiply(int x, int x2, int y, int y2, int z, int z2) {
+            if (x2 - x > 1 && (long) (x2 - x) * (y2 - y) * (z2 - z) >= SEQUENTIAL_THRESHOLD) {
+                int middle = (x + x2) >>> 1;
+                parallel(() -> multiply(x, middle, y, y2, z, z2), () -> multiply(middle, x2, y, y2, z, z2), 0);
+                return;
+            }
+            int firstWord = z >>> 6;
+            int length = ((z2 - 1) >>> 6) - firstWord + 1;
+            if (x2 - x >= tableRows) {
+                multiplyByTables(x, x2, y, y2, firstWord, length);
+                return;
+            }
+            for (int i = x; i < x2; i++) {
+                int target = rowStart[i] - (i >>> 6) + firstWord;
+                for (int left = 0; left < nonterminalsCount; left++) {
+                    if (binaryStart[left] == binaryStart[left + 1]) {
+                        continue;
+                    }
+                    long[] leftRow = rows[left];
+                    for (int w = y >>> 6, last = (y2 - 1) >>> 6; w <= last; w++) {
+                        long bits = leftRow[rowStart[i] - (i >>> 6) + w] & rangeMask(w, y, y2);
+                        while (bits != 0) {
+                            int k = (w << 6) + Long.numberOfTrailingZeros(bits);
+                            bits &= bits - 1;
+                            int source = rowStart[k] - (k >>> 6) + firstWord;
+                            for (int p = binaryStart[left]; p < binaryStart[left + 1]; p++) {
+                                long[] headRow = rows[binaryHead[p]];
+                                long[] rightRow = rows[binaryRight[p]];
+                                for (int v = 0; v < length; v++) {
+                                    headRow[target + v] |= rightRow[source + v];
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        /* Splits k in y..y2 - 1 taken t at a time: for every C with bits of
+         * these splits in some row of B, the table of ors of rows k of C over
+         * the words of Z for every subset of the splits, entry 0 empty. Then
+         * row i of A takes the entry of the bits of row i of B. Tables of
+         * 2^t entries, with t about log |X|, cost as much as or-ing them into
+         * all rows. */
+        private void multiplyByTables(int x, int x2, int y, int y2, int firstWord, int length) {
+            int bits = Math.min(MAX_TABLE_BITS, 31 - Integer.numberOfLeadingZeros(x2 - x));
+            long[] table = new long[length << bits];
+            for (int k = y; k < y2; k += bits) {
+                int chunk = Math.min(bits, y2 - k);
+                for (int right = 0; right < nonterminalsCount; right++) {
+                    boolean built = false;
+                    for (int q = rightStart[right]; q < rightStart[right + 1]; q++) {
+                        long[] leftRow = rows[rightLeft[q]];
+                        long[] headRow = rows[rightHead[q]];
+                        for (int i = x; i < x2; i++) {
+                            int subset = splits(leftRow, i, k, chunk);
+                            if (subset == 0) {
+                                continue;
+                            }
+                            if (!built) {
+                                buildTable(table, rows[right], k, chunk, firstWord, length);
+                                built = true;
+                            }
+                            int target = rowStart[i] - (i >>> 6) + firstWord;
+                            int entry = subset * length;
+                            for (int v = 0; v < length; v++) {
+                                headRow[target + v] |= table[entry + v];
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        /* Bits of columns k..k + chunk - 1 of row i. */
+        private int splits(long[] row, int i, int k, int chunk) {
+            int index = rowStart[i] - (i >>> 6) + (k >>> 6);
+            int offset = k & 63;
+            long value = row[index] >>> offset;
+            if (offset + chunk > 64) {
+                value |= row[index + 1] << -offset;
+            }
+            return (int) value & ((1 << chunk) - 1);
+        }
+
+        /* Every entry is an entry without its lowest split or-ed with the row
+         * of that split. */
+        private void buildTable(long[] table, long[] rightRow, int k, int chunk, int firstWord, int length) {
+            for (int subset = 1; subset < 1 << chunk; subset++) {
+                int split = k + Integer.numberOfTrailingZeros(subset);
+                int source = rowStart[split] - (split >>> 6) + firstWord;
+                int entry = subset * length;
+                int rest = (subset & (subset - 1)) * length;
+                for (int v = 0; v < length; v++) {
+                    table[entry + v] = table[rest + v] | rightRow[source + v];
+                }
+            }
+        }
+
+        /* Spans (i, j) of rows l..m - 1 and columns l2..m2 - 1, one by one,
+         * with splits in both ranges; the ranges are equal or m <= l2. */
+        private void fill(int l, int m, int l2, int m2) {
+            for (int i = m - 1; i >= l; i--) {
+                for (int j = Math.max(l2, i + 2); j < m2; j++) {
+                    if (l2 >= m) {
+                        addSplits(i, j, i + 1, m);
+                        addSplits(i, j, l2, j);
+                    } else {
+                        addSplits(i, j, i + 1, j);
+                    }
+                }
+            }
+        }
+
+        /* Adds splits k in from..to - 1 to span (i, j). */
+        private void addSplits(int i, int j, int from, int to) {
+            if (from >= to) {
+                return;
+            }
+            for (int left = 0; left < nonterminalsCount; left++) {
+                if (binaryStart[left] == binaryStart[left + 1]) {
+                    continue;
+                }
+                for (int w = from >>> 6, last = (to - 1) >>> 6; w <= last; w++) {
+                    long bits = rows[left][rowStart[i] - (i >>> 6) + w] & rangeMask(w, from, to);
+                    while (bits != 0) {
+                        int k = (w << 6) + Long.numberOfTrailingZeros(bits);
+                        bits &= bits - 1;
+                        for (int p = binaryStart[left]; p < binaryStart[left + 1]; p++) {
+                            if (test(binaryRight[p], k, j)) {
+                                set(binaryHead[p], i, j);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /* Bits of word w for positions from..to - 1. */
+    private static long rangeMask(int w, int from, int to) {
+        long mask = -1L;
+        if (from > w << 6) {
+            mask &= -1L << from;
+        }
+        if (to < (w + 1) << 6) {
+            mask &= -1L >>> -to;
+        }
+        return mask;
+    }
+}
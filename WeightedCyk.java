@@ -0,0 +1,436 @@
+package gramatyka;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * * CYK over weighted productions of a grammar in Chomsky normal form,
+ * generic over a semiring of scores: probability of the best derivation,
+ * total probability of a word, number of derivations or membership.
+ *
+ * Weights are indexed by production ids of the compiled grammar, as
+ * probabilities of a PCFG or any other non-negative numbers. Doubles and
+ * longs have their own semiring interfaces and kernels, so scores are never
+ * boxed. The chart is a flat triangular array with the scores of all
+ * nonterminals of a cell next to each other, cells of span length l after
+ * those of length l - 1, as in CykRecognizer: a word of length n takes
+ * n(n + 1)/2 * N scores. Binary productions are sorted by their first
+ * nonterminal, so for every one with a nonzero score in the left cell only
+ * its productions are checked. Cells of the same span length are computed in
+ * parallel. **
+ */
+public final class WeightedCyk {
+
+    /* Below this number of (cell, split, nonterminal) triples a span length
+     * is computed in the calling thread. */
+    private static final int SEQUENTIAL_THRESHOLD = 1 << 14;
+
+    private final CompiledGrammar compiled;
+    private final int nonterminalsCount;
+    private final double[] weights;
+    /* Productions A -> a of terminal a (counting among terminals):
+     * terminalProductions[terminalStart[a]..terminalStart[a + 1] - 1]. */
+    private final int[] terminalStart;
+    private final int[] terminalProductions;
+    /* Productions A -> BC of nonterminal B:
+     * binaryProductions[binaryStart[B]..binaryStart[B + 1] - 1], with their
+     * C and A at the same indices, read by the inner loop. */
+    private final int[] binaryStart;
+    private final int[] binaryProductions;
+    private final int[] binaryRight;
+    private final int[] binaryHead;
+    private final ForkJoinPool pool;
+
+    private WeightedCyk(NormalChomskyGrammar grammar, double[] weights, ForkJoinPool pool) {
+        this.pool = pool;
+        this.weights = weights;
+        compiled = grammar.getCompiled();
+        nonterminalsCount = compiled.getNonterminalsCount();
+        int productionsCount = compiled.getProductionsCount();
+        terminalStart = new int[compiled.getTerminalsCount() + 1];
+        binaryStart = new int[nonterminalsCount + 1];
+        for (int production = 0; production < productionsCount; production++) {
+            if (compiled.length(production) == 1) {
+                terminalStart[compiled.symbolAt(production, 0) - nonterminalsCount + 1]++;
+            } else {
+                binaryStart[compiled.symbolAt(production, 0) + 1]++;
+            }
+        }
+        for (int i = 1; i < terminalStart.length; i++) {
+            terminalStart[i] += terminalStart[i - 1];
+        }
+        for (int i = 1; i < binaryStart.length; i++) {
+            binaryStart[i] += binaryStart[i - 1];
+        }
+        terminalProductions = new int[terminalStart[terminalStart.length - 1]];
+        binaryProductions = new int[binaryStart[nonterminalsCount]];
+        binaryRight = new int[binaryProductions.length];
+        binaryHead = new int[binaryProductions.length];
+        int[] terminalNext = Arrays.copyOf(terminalStart, terminalStart.length - 1);
+        int[] binaryNext = Arrays.copyOf(binaryStart, nonterminalsCount);
+        for (int production = 0; production < productionsCount; production++) {
+            int first = compiled.symbolAt(production, 0);
+            if (compiled.length(production) == 1) {
+                terminalProductions[terminalNext[first - nonterminalsCount]++] = production;
+            } else {
+                binaryRight[binaryNext[first]] = compiled.symbolAt(production, 1);
+                binaryHead[binaryNext[first]] = compiled.lhs(production);
+                binaryProductions[binaryNext[first]++] = production;
+            }
+        }
+    }
+
+    static WeightedCyk of(NormalChomskyGrammar grammar, double[] weights) throws ConstructorException {
+        return of(grammar, weights, ForkJoinPool.commonPool());
+    }
+
+    /* Weights are copied; throws if there isn't one for every production or
+     * some is negative or not a number. */
+    static WeightedCyk of(NormalChomskyGrammar grammar, double[] weights, ForkJoinPool pool) throws ConstructorException {
+        if (weights.length != grammar.getProductionsCount()) {
+            throw new ConstructorException("Wrong number of weights");
+        }
+        for (double weight : weights) {
+            if (!(weight >= 0)) {
+                throw new ConstructorException("Wrong weight: " + weight);
+            }
+        }
+        return new WeightedCyk(grammar, weights.clone(), pool);
+    }
+
+    public double getWeight(int production) {
+        return weights[production];
+    }
+
+    private int[] input(String word) {
+        int[] input = new int[word.length()];
+        for (int i = 0; i < word.length(); i++) {
+            input[i] = compiled.symbolOf(word.charAt(i));
+        }
+        return input;
+    }
+
+    private boolean isSentence(int[] word) {
+        if (word.length == 0) {
+            /* Grammar in Chomsky normal form has no empty productions. */
+            return false;
+        }
+        for (int symbol : word) {
+            if (!compiled.isTerminal(symbol)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /* Score of the word derived from the start nonterminal, zero() if there
+     * is no derivation. */
+    public double score(String word, DoubleSemiring semiring) {
+        return score(input(word), semiring);
+    }
+
+    public double score(int[] word, DoubleSemiring semiring) {
+        if (!isSentence(word)) {
+            return semiring.zero();
+        }
+        DoubleChart chart = new DoubleChart(word, semiring);
+        chart.fill();
+        return chart.scores[chart.offset(word.length, 0)];
+    }
+
+    public long score(String word, LongSemiring semiring) {
+        return score(input(word), semiring);
+    }
+
+    public long score(int[] word, LongSemiring semiring) {
+        if (!isSentence(word)) {
+            return semiring.zero();
+        }
+        LongChart chart = new LongChart(word, semiring);
+        chart.fill();
+        return chart.scores[chart.offset(word.length, 0)];
+    }
+
+    /**
+     * * Most probable derivation tree of the word, null if there is none.
+     * The tree is read top-down from the VITERBI chart: the max of a cell
+     * is one of the products which were compared, computed again in the
+     * same way, so the production and split giving it are found without
+     * keeping back pointers. **
+     */
+    public ParseTree bestParse(String word) {
+        return bestParse(input(word));
+    }
+
+    public ParseTree bestParse(int[] word) {
+        if (!isSentence(word)) {
+            return null;
+        }
+        DoubleChart chart = new DoubleChart(word, DoubleSemiring.VITERBI);
+        chart.fill();
+        double[] scores = chart.scores;
+        if (scores[chart.offset(word.length, 0)] == Double.NEGATIVE_INFINITY) {
+            return null;
+        }
+        DoubleSemiring semiring = DoubleSemiring.VITERBI;
+        ParseTree root = null;
+        /* Nonterminals still to be expanded, with their parts of the word
+         * and parents; the parts are disjoint, so there are at most n. */
+        int[] pendingSymbols = new int[word.length + 1];
+        int[] pendingStarts = new int[word.length + 1];
+        int[] pendingLengths = new int[word.length + 1];
+        ParseTree[] pendingParents = new ParseTree[word.length + 1];
+        int pending = 0;
+        pendingLengths[pending++] = word.length;
+        while (pending > 0) {
+            pending--;
+            int symbol = pendingSymbols[pending];
+            int start = pendingStarts[pending];
+            int length = pendingLengths[pending];
+            ParseTree parent = pendingParents[pending];
+            double score = scores[chart.offset(length, start) + symbol];
+            if (length == 1) {
+                int terminal = word[start] - nonterminalsCount;
+                for (int i = terminalStart[terminal]; i < terminalStart[terminal + 1]; i++) {
+                    int production = terminalProductions[i];
+                    if (compiled.lhs(production) == symbol && chart.weights[production] == score) {
+                        ParseTree tree = new ParseTree(compiled, symbol, production, start, start + 1, parent);
+                        new ParseTree(compiled, word[start], ParseForest.NONE, start, start + 1, tree);
+                        root = root == null ? tree : root;
+                        break;
+                    }
+                }
+                continue;
+            }
+            search:
+            for (int split = 1; split < length; split++) {
+                int left = chart.offset(split, start);
+                int right = chart.offset(length - split, start + split);
+                for (int production = compiled.rulesStart(symbol); production < compiled.rulesEnd(symbol); production++) {
+                    if (compiled.length(production) != 2) {
+                        continue;
+                    }
+                    int first = compiled.symbolAt(production, 0);
+                    int second = compiled.symbolAt(production, 1);
+                    if (semiring.times(chart.weights[production],
+                            semiring.times(scores[left + first], scores[right + second])) == score) {
+                        ParseTree tree = new ParseTree(compiled, symbol, production, start, start + length, parent);
+                        root = root == null ? tree : root;
+                        pendingSymbols[pending] = second;
+                        pendingStarts[pending] = start + split;
+                        pendingLengths[pending] = length - split;
+                        pendingParents[pending++] = tree;
+                        pendingSymbols[pending] = first;
+                        pendingStarts[pending] = start;
+                        pendingLengths[pending] = split;
+                        pendingParents[pending++] = tree;
+                        break search;
+                    }
+                }
+            }
+        }
+        return root;
+    }
+
+    /* Triangular chart of one word, indexed as in CykRecognizer. */
+    private abstract class Chart {
+
+        final int[] word;
+        final int n;
+
+        Chart(int[] word) {
+            this.word = word;
+            n = word.length;
+            if ((long) n * (n + 1) / 2 * nonterminalsCount > Integer.MAX_VALUE - 8) {
+                throw new IllegalArgumentException("Word too long: " + n);
+            }
+        }
+
+        int size() {
+            return n * (n + 1) / 2 * nonterminalsCount;
+        }
+
+        int offset(int length, int start) {
+            /* Number of cells with span length less than a given one. */
+            long before = (long) (length - 1) * n - (long) (length - 1) * (length - 2) / 2;
+            return (int) ((before + start) * nonterminalsCount);
+        }
+
+        abstract void fillTerminals();
+
+        /* Computes cells of a given span length starting at positions from..to-1. */
+        abstract void fill(int length, int from, int to);
+
+        boolean isSmall(int cellsCount, int length) {
+            return (long) cellsCount * (length - 1) * nonterminalsCount < SEQUENTIAL_THRESHOLD;
+        }
+
+        void fill() {
+            fillTerminals();
+            for (int length = 2; length <= n; length++) {
+                int cellsCount = n - length + 1;
+                if (isSmall(cellsCount, length)) {
+                    fill(length, 0, cellsCount);
+                } else {
+                    pool.invoke(new SpanTask(this, length, 0, cellsCount));
+                }
+            }
+        }
+    }
+
+    private final class DoubleChart extends Chart {
+
+        private final DoubleSemiring semiring;
+        private final double zero;
+        /* Scores of productions in the semiring, and of binary ones in the
+         * order of binaryProductions. */
+        private final double[] weights;
+        private final double[] binaryWeights;
+        private final double[] scores;
+
+        DoubleChart(int[] word, DoubleSemiring semiring) {
+            super(word);
+            this.semiring = semiring;
+            zero = semiring.zero();
+            weights = new double[WeightedCyk.this.weights.length];
+            for (int production = 0; production < weights.length; production++) {
+                weights[production] = semiring.weight(WeightedCyk.this.weights[production]);
+            }
+            binaryWeights = new double[binaryProductions.length];
+            for (int i = 0; i < binaryWeights.length; i++) {
+                binaryWeights[i] = weights[binaryProductions[i]];
+            }
+            scores = new double[size()];
+            Arrays.fill(scores, zero);
+        }
+
+        @Override
+        void fillTerminals() {
+            for (int start = 0; start < n; start++) {
+                int target = offset(1, start);
+                int terminal = word[start] - nonterminalsCount;
+                for (int i = terminalStart[terminal]; i < terminalStart[terminal + 1]; i++) {
+                    int production = terminalProductions[i];
+                    int cell = target + compiled.lhs(production);
+                    scores[cell] = semiring.plus(scores[cell], weights[production]);
+                }
+            }
+        }
+
+        @Override
+        void fill(int length, int from, int to) {
+            for (int start = from; start < to; start++) {
+                int target = offset(length, start);
+                for (int split = 1; split < length; split++) {
+                    int left = offset(split, start);
+                    int right = offset(length - split, start + split);
+                    for (int first = 0; first < nonterminalsCount; first++) {
+                        double leftScore = scores[left + first];
+                        if (leftScore == zero) {
+                            continue;
+                        }
+                        for (int i = binaryStart[first]; i < binaryStart[first + 1]; i++) {
+                            double rightScore = scores[right + binaryRight[i]];
+                            if (rightScore == zero) {
+                                continue;
+                            }
+                            int cell = target + binaryHead[i];
+                            scores[cell] = semiring.plus(scores[cell],
+                                    semiring.times(binaryWeights[i], semiring.times(leftScore, rightScore)));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private final class LongChart extends Chart {
+
+        private final LongSemiring semiring;
+        private final long zero;
+        private final long[] weights;
+        private final long[] binaryWeights;
+        private final long[] scores;
+
+        LongChart(int[] word, LongSemiring semiring) {
+            super(word);
+            this.semiring = semiring;
+            zero = semiring.zero();
+            weights = new long[WeightedCyk.this.weights.length];
+            for (int production = 0; production < weights.length; production++) {
+                weights[production] = semiring.weight(WeightedCyk.this.weights[production]);
+            }
+            binaryWeights = new long[binaryProductions.length];
+            for (int i = 0; i < binaryWeights.length; i++) {
+                binaryWeights[i] = weights[binaryProductions[i]];
+            }
+            scores = new long[size()];
+            Arrays.fill(scores, zero);
+        }
+
+        @Override
+        void fillTerminals() {
+            for (int start = 0; start < n; start++) {
+                int target = offset(1, start);
+                int terminal = word[start] - nonterminalsCount;
+                for (int i = terminalStart[terminal]; i < terminalStart[terminal + 1]; i++) {
+                    int production = terminalProductions[i];
+                    int cell = target + compiled.lhs(production);
+                    scores[cell] = semiring.plus(scores[cell], weights[production]);
+                }
+            }
+        }
+
+        @Override
+        void fill(int length, int from, int to) {
+            for (int start = from; start < to; start++) {
+                int target = offset(length, start);
+                for (int split = 1; split < length; split++) {
+                    int left = offset(split, start);
+                    int right = offset(length - split, start + split);
+                    for (int first = 0; first < nonterminalsCount; first++) {
+                        long leftScore = scores[left + first];
+                        if (leftScore == zero) {
+                            continue;
+                        }
+                        for (int i = binaryStart[first]; i < binaryStart[first + 1]; i++) {
+                            long rightScore = scores[right + binaryRight[i]];
+                            if (rightScore == zero) {
+                                continue;
+                            }
+                            int cell = target + binaryHead[i];
+                            scores[cell] = semiring.plus(scores[cell],
+                                    semiring.times(binaryWeights[i], semiring.times(leftScore, rightScore)));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static class SpanTask extends RecursiveAction {
+
+        private final WeightedCyk.Chart chart;
+        private final int length;
+        private final int from;
+        private final int to;
+
+        SpanTask(WeightedCyk.Chart chart, int length, int from, int to) {
+            this.chart = chart;
+            this.length = length;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= 1 || chart.isSmall(to - from, length)) {
+                chart.fill(length, from, to);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new SpanTask(chart, length, from, middle), new SpanTask(chart, length, middle, to));
+        }
+    }
+}
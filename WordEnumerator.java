@@ -0,0 +1,381 @@
+package gramatyka;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * * Words of the language of a grammar, shortest first and in order of ids
+ * of terminals among words of the same length, every word once.
+ *
+ * Words are read from the grammar in Chomsky normal form, with the empty
+ * word first if the grammar derives it. Words of length n are found by a
+ * depth-first search over their prefixes, so only one word is built at a
+ * time. A prefix is kept as the stacks of a leftmost derivation after it,
+ * made of nodes: a nonterminal with the part of the word it derives, on top
+ * of a set of nodes for the rest. Stacks are graph-structured, as in
+ * StreamingGreibachRecognizer: nodes made in a step with the same
+ * nonterminal and part are merged, with the union of the nodes below, and
+ * nodes of earlier steps are shared, so a step makes at most one node for
+ * every nonterminal and pair of positions and takes polynomial time even
+ * for ambiguous grammars. Only nodes with a nonterminal deriving a word of
+ * the length of its part, starting with the terminal read, are pushed, so
+ * every prefix with tops has a word after it and the search never
+ * backtracks from a dead end. Merged stacks give every word once. Words of
+ * a finite language end after the longest one. **
+ */
+final class WordEnumerator implements Iterator<int[]> {
+
+    /* Nonterminal deriving positions from..to - 1, on top of any of the
+     * nodes below; END, with no nonterminal, is the bottom. Nodes get nodes
+     * below only in the step which made them. */
+    private static final class Node {
+
+        private final int nonterminal;
+        private final int from;
+        private final int to;
+        private final Set<Node> below = new LinkedHashSet<>();
+
+        Node(int nonterminal, int from, int to) {
+            this.nonterminal = nonterminal;
+            this.from = from;
+            this.to = to;
+        }
+    }
+
+    /* Reading a terminal at a position: nodes pushed in the step, by the
+     * pair of nonterminals of a production and the part of the right one,
+     * and the new tops. */
+    private final class Step {
+
+        private final int position;
+        private final int terminal;
+        private final Map<Long, Node> pushed = new HashMap<>();
+        private final List<Node> tops = new ArrayList<>();
+
+        Step(int position, int terminal) {
+            this.position = position;
+            this.terminal = terminal;
+        }
+
+        /* Nonterminal deriving positions from the current one to end,
+         * over the nodes below, or over node if it isn't null. */
+        void expand(int nonterminal, int end, Set<Node> below, Node node) {
+            int partLength = end - position;
+            for (int production = compiled.rulesStart(nonterminal); production < compiled.rulesEnd(nonterminal); production++) {
+                if (compiled.length(production) == 1) {
+                    if (partLength == 1 && compiled.symbolAt(production, 0) == nonterminalsCount + terminal) {
+                        if (node != null) {
+                            tops.add(node);
+                        } else {
+                            tops.addAll(below);
+                        }
+                    }
+                    continue;
+                }
+                int left = compiled.symbolAt(production, 0);
+                int right = compiled.symbolAt(production, 1);
+                for (int k = 1; k < partLength; k++) {
+                    if (!startsWith(left, k, terminal) || !isDerivable(right, partLength - k)) {
+                        continue;
+                    }
+                    /* Nodes pushed over the right nonterminal come from the
+                     * left one, so only nodes with the same left one are
+                     * merged. */
+                    long key = (((long) left * nonterminalsCount + right) * (length + 1) + position + k)
+                            * (length + 1) + end;
+                    Node next = pushed.get(key);
+                    boolean expanded = next != null;
+                    if (!expanded) {
+                        next = new Node(right, position + k, end);
+                        pushed.put(key, next);
+                    }
+                    if (node != null) {
+                        next.below.add(node);
+                    } else {
+                        next.below.addAll(below);
+                    }
+                    if (!expanded) {
+                        expand(left, position + k, null, next);
+                    }
+                }
+            }
+        }
+
+        /* Tops with the same nonterminal and part merged into one, with
+         * the union of the nodes below; nothing is pushed over them in the
+         * step, so their nodes below don't depend on how they were reached. */
+        Set<Node> mergedTops() {
+            Map<Long, Set<Node>> groups = new LinkedHashMap<>();
+            for (Node top : tops) {
+                groups.computeIfAbsent((long) (top.nonterminal + 1) * (length + 1) + top.to,
+                        k -> new LinkedHashSet<>()).add(top);
+            }
+            Set<Node> result = new LinkedHashSet<>();
+            for (Set<Node> group : groups.values()) {
+                Node first = group.iterator().next();
+                if (group.size() == 1) {
+                    result.add(first);
+                    continue;
+                }
+                Node union = new Node(first.nonterminal, first.from, first.to);
+                for (Node top : group) {
+                    union.below.addAll(top.below);
+                }
+                result.add(union);
+            }
+            return result;
+        }
+    }
+
+    /* Null if the grammar derives only the empty word. */
+    private final CompiledGrammar compiled;
+    private final int originalNonterminalsCount;
+    private final int nonterminalsCount;
+    private final int terminalsCount;
+    /* Length of the longest word, -1 for an infinite language. */
+    private final long maxLength;
+    /* derivable.get(m)[A]: A derives a word of length m. */
+    private final List<boolean[]> derivable = new ArrayList<>();
+    /* starting.get(m)[A * terminalsCount + a]: A derives a word of length
+     * m starting with terminal a. */
+    private final List<boolean[]> starting = new ArrayList<>();
+
+    private boolean emptyWordPending;
+    private int length;
+    private int depth = -1;
+    private final List<Set<Node>> sets = new ArrayList<>();
+    private int[] nextTerminal = new int[0];
+    private int[] prefix = new int[0];
+    private int[] pending;
+
+    WordEnumerator(ContextFreeGrammar grammar) throws ConstructorException {
+        CompiledGrammar original = grammar.getCompiled();
+        originalNonterminalsCount = original.getNonterminalsCount();
+        emptyWordPending = original.getAnalysis().isNullable(0);
+        NormalChomskyGrammar chomsky;
+        try {
+            chomsky = grammar.toChomsky();
+        } catch (ConstructorException e) {
+            /* Grammars have no useless nonterminals, so a grammar without
+             * words in Chomsky normal form derives only the empty word. */
+            if (!emptyWordPending) {
+                throw e;
+            }
+            chomsky = null;
+        }
+        compiled = chomsky == null ? null : chomsky.getCompiled();
+        nonterminalsCount = compiled == null ? 0 : compiled.getNonterminalsCount();
+        terminalsCount = original.getTerminalsCount();
+        maxLength = compiled == null ? 0 : longestWord();
+        derivable.add(new boolean[nonterminalsCount]);
+        starting.add(new boolean[nonterminalsCount * terminalsCount]);
+    }
+
+    /* Longest word over a graph of binary productions, -1 if it has a cycle,
+     * saturated at Long.MAX_VALUE. */
+    private long longestWord() {
+        long[] longest = new long[nonterminalsCount];
+        /* 0 not visited, 1 on the path, 2 done. */
+        int[] state = new int[nonterminalsCount];
+        int[] stack = new int[nonterminalsCount];
+        /* Next symbol to visit: production and position in it. */
+        int[] nextProduction = new int[nonterminalsCount];
+        int[] nextPosition = new int[nonterminalsCount];
+        for (int root = 0; root < nonterminalsCount; root++) {
+            if (state[root] != 0) {
+                continue;
+            }
+            int size = 0;
+            stack[size++] = root;
+            state[root] = 1;
+            nextProduction[root] = compiled.rulesStart(root);
+            while (size > 0) {
+                int nonterminal = stack[size - 1];
+                int production = nextProduction[nonterminal];
+                if (production == compiled.rulesEnd(nonterminal)) {
+                    size--;
+                    state[nonterminal] = 2;
+                    for (int p = compiled.rulesStart(nonterminal); p < compiled.rulesEnd(nonterminal); p++) {
+                        long length = compiled.length(p) == 1 ? 1 : saturatedSum(
+                                longest[compiled.symbolAt(p, 0)], longest[compiled.symbolAt(p, 1)]);
+                        longest[nonterminal] = Math.max(longest[nonterminal], length);
+                    }
+                    continue;
+                }
+                int symbol = compiled.symbolAt(production, nextPosition[nonterminal]);
+                if (++nextPosition[nonterminal] == compiled.length(production)) {
+                    nextProduction[nonterminal]++;
+                    nextPosition[nonterminal] = 0;
+                }
+                if (!compiled.isNonterminal(symbol)) {
+                    continue;
+                }
+                if (state[symbol] == 1) {
+                    return -1;
+                }
+                if (state[symbol] == 0) {
+                    state[symbol] = 1;
+                    nextProduction[symbol] = compiled.rulesStart(symbol);
+                    stack[size++] = symbol;
+                }
+            }
+        }
+        return longest[0];
+    }
+
+    private static long saturatedSum(long a, long b) {
+        long sum = a + b;
+        return sum < 0 ? Long.MAX_VALUE : sum;
+    }
+
+    private boolean isDerivable(int nonterminal, int length) {
+        while (derivable.size() <= length) {
+            int m = derivable.size();
+            boolean[] row = new boolean[nonterminalsCount];
+            for (int production = 0; production < compiled.getProductionsCount(); production++) {
+                int lhs = compiled.lhs(production);
+                if (row[lhs]) {
+                    continue;
+                }
+                if (compiled.length(production) == 1) {
+                    row[lhs] = m == 1;
+                    continue;
+                }
+                int left = compiled.symbolAt(production, 0);
+                int right = compiled.symbolAt(production, 1);
+                for (int k = 1; k < m && !row[lhs]; k++) {
+                    row[lhs] = derivable.get(k)[left] && derivable.get(m - k)[right];
+                }
+            }
+            derivable.add(row);
+        }
+        return derivable.get(length)[nonterminal];
+    }
+
+    private boolean startsWith(int nonterminal, int length, int terminal) {
+        while (starting.size() <= length) {
+            int m = starting.size();
+            boolean[] row = new boolean[nonterminalsCount * terminalsCount];
+            for (int production = 0; production < compiled.getProductionsCount(); production++) {
+                int lhs = compiled.lhs(production) * terminalsCount;
+                if (compiled.length(production) == 1) {
+                    if (m == 1) {
+                        row[lhs + compiled.symbolAt(production, 0) - nonterminalsCount] = true;
+                    }
+                    continue;
+                }
+                int left = compiled.symbolAt(production, 0) * terminalsCount;
+                int right = compiled.symbolAt(production, 1);
+                for (int k = 1; k < m; k++) {
+                    if (isDerivable(right, m - k)) {
+                        boolean[] leftRow = starting.get(k);
+                        for (int a = 0; a < terminalsCount; a++) {
+                            row[lhs + a] |= leftRow[left + a];
+                        }
+                    }
+                }
+            }
+            starting.add(row);
+        }
+        return starting.get(length)[nonterminal * terminalsCount + terminal];
+    }
+
+    /* Tops after reading the terminal at the position from the tops. */
+    private Set<Node> successors(Set<Node> tops, int position, int terminal) {
+        Step step = new Step(position, terminal);
+        for (Node top : tops) {
+            if (startsWith(top.nonterminal, top.to - position, terminal)) {
+                step.expand(top.nonterminal, top.to, top.below, null);
+            }
+        }
+        return step.mergedTops();
+    }
+
+    private boolean startLength(int length) {
+        this.length = length;
+        if (!isDerivable(0, length)) {
+            return false;
+        }
+        if (nextTerminal.length < length + 1) {
+            nextTerminal = new int[length + 1];
+            prefix = new int[length];
+        }
+        sets.clear();
+        Node start = new Node(0, 0, length);
+        start.below.add(new Node(-1, length, length));
+        sets.add(Set.of(start));
+        nextTerminal[0] = 0;
+        depth = 0;
+        return true;
+    }
+
+    /* Next word, null after the last one. */
+    private int[] advance() {
+        if (emptyWordPending) {
+            emptyWordPending = false;
+            return new int[0];
+        }
+        if (compiled == null) {
+            return null;
+        }
+        while (true) {
+            if (depth < 0) {
+                if (maxLength >= 0 && length >= maxLength) {
+                    return null;
+                }
+                startLength(length + 1);
+                continue;
+            }
+            if (depth == length) {
+                int[] word = new int[length];
+                for (int i = 0; i < length; i++) {
+                    word[i] = originalNonterminalsCount + prefix[i];
+                }
+                depth--;
+                return word;
+            }
+            if (nextTerminal[depth] == terminalsCount) {
+                depth--;
+                continue;
+            }
+            int terminal = nextTerminal[depth]++;
+            Set<Node> next = successors(sets.get(depth), depth, terminal);
+            if (!next.isEmpty()) {
+                prefix[depth] = terminal;
+                depth++;
+                if (sets.size() > depth) {
+                    sets.set(depth, next);
+                } else {
+                    sets.add(next);
+                }
+                nextTerminal[depth] = 0;
+            }
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (pending == null) {
+            pending = advance();
+        }
+        return pending != null;
+    }
+
+    /* Ids of terminals in the symbol table of the grammar. */
+    @Override
+    public int[] next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        int[] word = pending;
+        pending = null;
+        return word;
+    }
+}
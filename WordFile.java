@@ -0,0 +1,295 @@
+package gramatyka;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * * Membership of words of a file, one per line, in languages of grammars.
+ *
+ * Words of grammars with one-character names are written as they are,
+ * other words as names separated with spaces; a word with a name which
+ * isn't a terminal of a grammar isn't in its language. Line ends may be
+ * \n or \r\n, and an empty line is the empty word. For every word one line
+ * is written with a 1 or 0 for every grammar, in order of grammars.
+ *
+ * The file is split into chunks of up to a few megabytes at line ends, and
+ * every chunk is mapped, copied out of the mapping in bulk and recognized
+ * by a task of a fork-join pool, so files of any size are read in parallel
+ * and only a few chunks at a time are in memory. Automata run on bytes,
+ * without decoding words. Results of chunks are written in order, as soon
+ * as all chunks before them are done; new chunks are submitted as old ones
+ * are written, so the memory used doesn't grow with the file. Recognizers
+ * of grammars are built once and shared by all tasks. **
+ */
+public final class WordFile {
+
+    /* Bytes of a chunk before it's extended to the next line end: a part
+     * of the file for every chunk submitted at once, within these bounds. */
+    private static final long MIN_CHUNK_BYTES = 1 << 16;
+    private static final long MAX_CHUNK_BYTES = 1 << 22;
+    /* Chunks submitted and not yet written, for every thread of the pool. */
+    private static final int CHUNKS_PER_THREAD = 4;
+    private static final int MAX_CACHED_LENGTH = 256;
+
+    /* Terminals of words of a grammar, and its recognizer. */
+    private static final class Decoder {
+
+        private final SymbolTable symbolTable;
+        private final Recognizer recognizer;
+        private final boolean singleCharacterNames;
+        /* Recognizer if it's an automaton, which reads characters. */
+        private final Dfa dfa;
+        /* Terminal of every ASCII character, UNKNOWN for others. */
+        private final int[] terminalByByte = new int[128];
+
+        Decoder(ContextFreeGrammar grammar) {
+            symbolTable = grammar.getSymbolTable();
+            recognizer = grammar.getRecognizer();
+            singleCharacterNames = symbolTable.hasSingleCharacterNames();
+            dfa = recognizer instanceof Dfa ? (Dfa) recognizer : null;
+            for (int c = 0; c < terminalByByte.length; c++) {
+                terminalByByte[c] = terminalOf(symbolTable.idOf((char) c));
+            }
+        }
+
+        private int terminalOf(int symbol) {
+            return symbol != SymbolTable.UNKNOWN && symbolTable.isTerminal(symbol) ? symbol : SymbolTable.UNKNOWN;
+        }
+
+        /* Word of bytes from..to - 1, words of lengths below
+         * MAX_CACHED_LENGTH decoded into arrays kept by the task. */
+        boolean recognize(byte[] bytes, int from, int to, int[][] words) {
+            if (!singleCharacterNames) {
+                return recognizeNames(bytes, from, to);
+            }
+            if (dfa != null) {
+                return matches(bytes, from, to);
+            }
+            int length = to - from;
+            int[] word = length < MAX_CACHED_LENGTH ? words[length] : new int[length];
+            for (int i = 0; i < length; i++) {
+                int b = bytes[from + i];
+                if (b < 0) {
+                    return recognizeCharacters(bytes, from, to);
+                }
+                word[i] = terminalByByte[b];
+                if (word[i] == SymbolTable.UNKNOWN) {
+                    return false;
+                }
+            }
+            return recognizer.recognize(word);
+        }
+
+        /* Automaton run on bytes, as characters of ASCII. */
+        private boolean matches(byte[] bytes, int from, int to) {
+            int state = dfa.start();
+            for (int i = from; i < to; i++) {
+                int b = bytes[i];
+                if (b < 0) {
+                    return recognizeCharacters(bytes, from, to);
+                }
+                if ((state = dfa.next(state, (char) b)) == Dfa.REJECT) {
+                    return false;
+                }
+            }
+            return dfa.isAccepting(state);
+        }
+
+        /* Word with characters beyond ASCII. */
+        private boolean recognizeCharacters(byte[] bytes, int from, int to) {
+            String characters = new String(bytes, from, to - from, StandardCharsets.UTF_8);
+            int[] word = new int[characters.length()];
+            for (int i = 0; i < word.length; i++) {
+                word[i] = terminalOf(symbolTable.idOf(characters.charAt(i)));
+                if (word[i] == SymbolTable.UNKNOWN) {
+                    return false;
+                }
+            }
+            return recognizer.recognize(word);
+        }
+
+        private boolean recognizeNames(byte[] bytes, int from, int to) {
+            String line = new String(bytes, from, to - from, StandardCharsets.UTF_8).trim();
+            String[] names = line.isEmpty() ? new String[0] : line.split("[ \t]+");
+            int[] word = new int[names.length];
+            for (int i = 0; i < word.length; i++) {
+                word[i] = terminalOf(symbolTable.idOf(names[i]));
+                if (word[i] == SymbolTable.UNKNOWN) {
+                    return false;
+                }
+            }
+            return recognizer.recognize(word);
+        }
+    }
+
+    /* Results of a chunk: output lines and counts. */
+    private static final class Chunk {
+
+        private byte[] output;
+        private int outputLength;
+        private long wordsCount;
+        private final long[] hits;
+        private final long[] histogram = new long[WordFileStatistics.BUCKETS];
+
+        Chunk(int grammarsCount, long bytes) {
+            hits = new long[grammarsCount];
+            output = new byte[(int) Math.min(bytes + 16, 1 << 20)];
+        }
+
+        void add(boolean[] members, long nanos) {
+            if (outputLength + members.length + 1 > output.length) {
+                output = Arrays.copyOf(output, 2 * output.length + members.length + 1);
+            }
+            for (int grammar = 0; grammar < members.length; grammar++) {
+                output[outputLength++] = (byte) (members[grammar] ? '1' : '0');
+                if (members[grammar]) {
+                    hits[grammar]++;
+                }
+            }
+            output[outputLength++] = '\n';
+            histogram[WordFileStatistics.bucketOf(nanos)]++;
+            wordsCount++;
+        }
+    }
+
+    private WordFile() {
+    }
+
+    /**
+     * * Recognizes all words of the file by the grammars on the pool and
+     * writes results to the stream, which isn't closed. **
+     */
+    public static WordFileStatistics recognize(Path words, List<ContextFreeGrammar> grammars, OutputStream results,
+            ForkJoinPool pool) throws IOException {
+        long begin = System.nanoTime();
+        Decoder[] decoders = new Decoder[grammars.size()];
+        for (int grammar = 0; grammar < decoders.length; grammar++) {
+            decoders[grammar] = new Decoder(grammars.get(grammar));
+        }
+        long wordsCount = 0;
+        long[] hits = new long[decoders.length];
+        long[] histogram = new long[WordFileStatistics.BUCKETS];
+        int window = CHUNKS_PER_THREAD * pool.getParallelism();
+        ArrayDeque<ForkJoinTask<Chunk>> pending = new ArrayDeque<>();
+        try (FileChannel channel = FileChannel.open(words, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long chunkBytes = Math.max(MIN_CHUNK_BYTES, Math.min(MAX_CHUNK_BYTES, size / window));
+            long position = 0;
+            while (position < size || !pending.isEmpty()) {
+                while (position < size && pending.size() < window) {
+                    long from = position;
+                    long to = lineEnd(channel, from + chunkBytes, size);
+                    if (to - from > Integer.MAX_VALUE) {
+                        throw new IOException("Line too long at byte " + from);
+                    }
+                    pending.add(pool.submit(() -> recognizeChunk(channel, from, to, decoders)));
+                    position = to;
+                }
+                Chunk chunk = result(pending.poll());
+                results.write(chunk.output, 0, chunk.outputLength);
+                wordsCount += chunk.wordsCount;
+                for (int grammar = 0; grammar < hits.length; grammar++) {
+                    hits[grammar] += chunk.hits[grammar];
+                }
+                for (int bucket = 0; bucket < histogram.length; bucket++) {
+                    histogram[bucket] += chunk.histogram[bucket];
+                }
+            }
+            results.flush();
+        } finally {
+            for (ForkJoinTask<Chunk> task : pending) {
+                task.cancel(false);
+            }
+        }
+        return new WordFileStatistics(wordsCount, System.nanoTime() - begin, hits, histogram);
+    }
+
+    /* Position after the first line end at or after the position, the
+     * size if there is none. */
+    private static long lineEnd(FileChannel channel, long position, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 13);
+        while (position < size) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    private static Chunk recognizeChunk(FileChannel channel, long from, long to, Decoder[] decoders)
+            throws IOException {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+        /* One bulk copy out of the mapping, for reads without checks of
+         * the buffer. */
+        byte[] bytes = new byte[(int) (to - from)];
+        buffer.get(0, bytes);
+        Chunk chunk = new Chunk(decoders.length, bytes.length);
+        int[][] words = new int[MAX_CACHED_LENGTH][];
+        for (int i = 0; i < MAX_CACHED_LENGTH; i++) {
+            words[i] = new int[i];
+        }
+        boolean[] members = new boolean[decoders.length];
+        /* Time of a word is from the end of the previous one, with its line
+         * end found and its result added, to the end of its recognition. */
+        long time = System.nanoTime();
+        int start = 0;
+        while (start < bytes.length) {
+            int end = start;
+            while (end < bytes.length && bytes[end] != '\n') {
+                end++;
+            }
+            int wordEnd = end > start && bytes[end - 1] == '\r' ? end - 1 : end;
+            for (int grammar = 0; grammar < decoders.length; grammar++) {
+                members[grammar] = decoders[grammar].recognize(bytes, start, wordEnd, words);
+            }
+            long now = System.nanoTime();
+            chunk.add(members, now - time);
+            time = now;
+            start = end + 1;
+        }
+        return chunk;
+    }
+
+    /* Result of a task; exceptions thrown by the task are thrown again. */
+    private static Chunk result(ForkJoinTask<Chunk> task) throws IOException {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+}
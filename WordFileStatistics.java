@@ -0,0 +1,114 @@
+package gramatyka;
+
+import java.util.Arrays;
+
+/**
+ * * Results of a word file: words recognized, the time from the start to
+ * the last result written, words of the language of every grammar, and a
+ * histogram of times of words, in nanoseconds.
+ *
+ * A word takes bucket b if its time has b bits, so bucket b holds times
+ * from 2^(b-1) to 2^b - 1 and the histogram has a fixed size for any
+ * number of words. Percentiles are taken by the nearest rank and given as
+ * the upper bound of their bucket. **
+ */
+public final class WordFileStatistics {
+
+    static final int BUCKETS = Long.SIZE + 1;
+
+    private final long wordsCount;
+    private final long elapsedNanos;
+    private final long[] hits;
+    private final long[] histogram;
+
+    WordFileStatistics(long wordsCount, long elapsedNanos, long[] hits, long[] histogram) {
+        this.wordsCount = wordsCount;
+        this.elapsedNanos = elapsedNanos;
+        this.hits = hits;
+        this.histogram = histogram;
+    }
+
+    static int bucketOf(long nanos) {
+        return Long.SIZE - Long.numberOfLeadingZeros(nanos);
+    }
+
+    public long getWordsCount() {
+        return wordsCount;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /* Words per second. */
+    public double getThroughput() {
+        return elapsedNanos == 0 ? 0 : wordsCount * 1e9 / elapsedNanos;
+    }
+
+    public int getGrammarsCount() {
+        return hits.length;
+    }
+
+    /* Words of the language of the grammar, in order of grammars given. */
+    public long getHits(int grammar) {
+        return hits[grammar];
+    }
+
+    public double getHitRate(int grammar) {
+        return wordsCount == 0 ? 0 : (double) hits[grammar] / wordsCount;
+    }
+
+    public long[] getHistogram() {
+        return Arrays.copyOf(histogram, histogram.length);
+    }
+
+    private static long upperBound(int bucket) {
+        return bucket == Long.SIZE ? Long.MAX_VALUE : (1L << bucket) - 1;
+    }
+
+    /* Upper bound of the bucket of the given percentile, 0 for no words. */
+    public long getLatencyPercentile(double percent) {
+        if (!(percent >= 0 && percent <= 100)) {
+            throw new IllegalArgumentException("Wrong percentile: " + percent);
+        }
+        long rank = Math.max((long) Math.ceil(percent / 100 * wordsCount), 1);
+        long count = 0;
+        for (int bucket = 0; bucket < histogram.length; bucket++) {
+            count += histogram[bucket];
+            if (count >= rank) {
+                return upperBound(bucket);
+            }
+        }
+        return 0;
+    }
+
+    private static String nanosToString(long nanos) {
+        if (nanos < 1_000) {
+            return nanos + " ns";
+        }
+        if (nanos < 1_000_000) {
+            return String.format("%.1f µs", nanos / 1e3);
+        }
+        return String.format("%.1f ms", nanos / 1e6);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("Słowa: %d, czas: %.3f ms, przepustowość: %.0f słów/s%n", wordsCount,
+                elapsedNanos / 1e6, getThroughput()));
+        for (int grammar = 0; grammar < hits.length; grammar++) {
+            sb.append(String.format("Gramatyka %d: trafienia: %d (%.2f%%)%n", grammar + 1, hits[grammar],
+                    100 * getHitRate(grammar)));
+        }
+        sb.append(String.format("Opóźnienie p50/p90/p99 do: %s/%s/%s%n", nanosToString(getLatencyPercentile(50)),
+                nanosToString(getLatencyPercentile(90)), nanosToString(getLatencyPercentile(99))));
+        for (int bucket = 0; bucket < histogram.length; bucket++) {
+            if (histogram[bucket] > 0) {
+                sb.append(String.format("  do %s: %d (%.2f%%)%n", nanosToString(upperBound(bucket)),
+                        histogram[bucket], 100.0 * histogram[bucket] / wordsCount));
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,254 @@
+package gramatyka;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * * Random words of given lengths of the language of a grammar, the same for
+ * the same seed.
+ *
+ * Words are derived in the grammar in Chomsky normal form. For every
+ * nonterminal A and length m up to the limit, setup counts the derivation
+ * trees of words of length m from A and keeps, in order, the cumulative
+ * counts of its choices: a terminal production for m = 1, or a production
+ * A -> B C with a length k of the word of B, weighted by the trees of both
+ * parts. A sample draws one choice in every node of the tree, by a binary
+ * search over these counts, so it takes O(n log(|P| n)) comparisons of
+ * counts, which have O(n) bits, after setup of O(|P| n^2) multiplications
+ * and memory, and every derivation tree of the given length is equally
+ * likely. Words with more trees in the grammar in Chomsky normal form are
+ * more likely, so uniformSample draws a tree and keeps its word with
+ * probability 1 / the number of its trees, which gives every word the same
+ * chance at the cost of counting the trees of every drawn word, O(n^3).
+ * That takes as many tries on average as there are trees per word, which
+ * grows exponentially with n for some grammars, such as S -> SS | a, so
+ * tries are bounded and uniformSample fails when they run out. Samplers
+ * are immutable and can be shared by threads using their own
+ * generators. **
+ */
+public final class WordSampler {
+
+    /* Tries of uniformSample, far more than a grammar with a few trees
+     * per word takes. */
+    public static final int DEFAULT_MAX_TRIES = 256;
+
+    private static final BigInteger[] NO_COUNTS = new BigInteger[0];
+    private static final int[] NO_CHOICES = new int[0];
+
+    private final int maxLength;
+    private final int originalNonterminalsCount;
+    private final boolean emptyWord;
+    /* Null if the grammar derives only the empty word. */
+    private final CompiledGrammar compiled;
+    /* For length m and nonterminal A: choices as pairs (production, length
+     * of the word of its first nonterminal), 0 for terminal productions,
+     * and cumulative counts of trees after every choice. */
+    private final int[][][] choices;
+    private final BigInteger[][][] cumulative;
+
+    private WordSampler(ContextFreeGrammar grammar, int maxLength) throws ConstructorException {
+        if (maxLength < 0) {
+            throw new IllegalArgumentException("Wrong length: " + maxLength);
+        }
+        this.maxLength = maxLength;
+        CompiledGrammar original = grammar.getCompiled();
+        originalNonterminalsCount = original.getNonterminalsCount();
+        emptyWord = original.getAnalysis().isNullable(0);
+        NormalChomskyGrammar chomsky;
+        try {
+            chomsky = grammar.toChomsky();
+        } catch (ConstructorException e) {
+            /* Only the empty word, as in WordEnumerator. */
+            if (!emptyWord) {
+                throw e;
+            }
+            chomsky = null;
+        }
+        compiled = chomsky == null ? null : chomsky.getCompiled();
+        int nonterminalsCount = compiled == null ? 0 : compiled.getNonterminalsCount();
+        choices = new int[maxLength + 1][nonterminalsCount][];
+        cumulative = new BigInteger[maxLength + 1][nonterminalsCount][];
+        for (int nonterminal = 0; nonterminal < nonterminalsCount; nonterminal++) {
+            choices[0][nonterminal] = NO_CHOICES;
+            cumulative[0][nonterminal] = NO_COUNTS;
+        }
+        for (int length = 1; length <= maxLength; length++) {
+            for (int nonterminal = 0; nonterminal < nonterminalsCount; nonterminal++) {
+                countChoices(length, nonterminal);
+            }
+        }
+    }
+
+    static WordSampler of(ContextFreeGrammar grammar, int maxLength) throws ConstructorException {
+        return new WordSampler(grammar, maxLength);
+    }
+
+    /* Trees of words of the length derived from the nonterminal. */
+    private BigInteger count(int length, int nonterminal) {
+        BigInteger[] counts = cumulative[length][nonterminal];
+        return counts.length == 0 ? BigInteger.ZERO : counts[counts.length - 1];
+    }
+
+    private void countChoices(int length, int nonterminal) {
+        int start = compiled.rulesStart(nonterminal);
+        int end = compiled.rulesEnd(nonterminal);
+        int[] found = new int[2 * (end - start) * Math.max(length - 1, 1)];
+        BigInteger[] counts = new BigInteger[found.length / 2];
+        int size = 0;
+        BigInteger total = BigInteger.ZERO;
+        for (int production = start; production < end; production++) {
+            if (compiled.length(production) == 1) {
+                if (length == 1) {
+                    total = total.add(BigInteger.ONE);
+                    found[2 * size] = production;
+                    counts[size++] = total;
+                }
+                continue;
+            }
+            int left = compiled.symbolAt(production, 0);
+            int right = compiled.symbolAt(production, 1);
+            for (int k = 1; k < length; k++) {
+                BigInteger trees = count(k, left).multiply(count(length - k, right));
+                if (trees.signum() == 0) {
+                    continue;
+                }
+                total = total.add(trees);
+                found[2 * size] = production;
+                found[2 * size + 1] = k;
+                counts[size++] = total;
+            }
+        }
+        choices[length][nonterminal] = Arrays.copyOf(found, 2 * size);
+        cumulative[length][nonterminal] = Arrays.copyOf(counts, size);
+    }
+
+    public int getMaxLength() {
+        return maxLength;
+    }
+
+    private void checkLength(int length) {
+        if (length < 0 || length > maxLength) {
+            throw new IllegalArgumentException("Wrong length: " + length);
+        }
+    }
+
+    /* Derivation trees of words of the length in the grammar in Chomsky
+     * normal form, 1 for the empty word if it's in the language. */
+    public BigInteger countTrees(int length) {
+        checkLength(length);
+        if (length == 0) {
+            return emptyWord ? BigInteger.ONE : BigInteger.ZERO;
+        }
+        return compiled == null ? BigInteger.ZERO : count(length, 0);
+    }
+
+    /* Number below the bound, every one equally likely. */
+    private static BigInteger below(BigInteger bound, Random random) {
+        BigInteger result;
+        do {
+            result = new BigInteger(bound.bitLength(), random);
+        } while (result.compareTo(bound) >= 0);
+        return result;
+    }
+
+    /**
+     * * Word of the length with every derivation tree equally likely, as
+     * ids of terminals in the symbol table of the grammar, null if there is
+     * no word of the length. **
+     */
+    public int[] sample(int length, Random random) {
+        if (countTrees(length).signum() == 0) {
+            return null;
+        }
+        int[] word = new int[length];
+        if (length == 0) {
+            return word;
+        }
+        /* Pending pairs (nonterminal, length), leftmost on top. */
+        int[] pending = new int[2 * length];
+        int size = 0;
+        pending[size++] = 0;
+        pending[size++] = length;
+        int position = 0;
+        while (size > 0) {
+            int m = pending[--size];
+            int nonterminal = pending[--size];
+            BigInteger[] counts = cumulative[m][nonterminal];
+            int choice = Arrays.binarySearch(counts, below(counts[counts.length - 1], random).add(BigInteger.ONE));
+            choice = choice >= 0 ? choice : -choice - 1;
+            int production = choices[m][nonterminal][2 * choice];
+            if (m == 1) {
+                word[position++] = originalNonterminalsCount + compiled.symbolAt(production, 0)
+                        - compiled.getNonterminalsCount();
+                continue;
+            }
+            int k = choices[m][nonterminal][2 * choice + 1];
+            pending[size++] = compiled.symbolAt(production, 1);
+            pending[size++] = m - k;
+            pending[size++] = compiled.symbolAt(production, 0);
+            pending[size++] = k;
+        }
+        return word;
+    }
+
+    /* Word of the length with every word equally likely, in at most
+     * DEFAULT_MAX_TRIES tries. */
+    public int[] uniformSample(int length, Random random) {
+        return uniformSample(length, random, DEFAULT_MAX_TRIES);
+    }
+
+    /**
+     * * Word of the length with every word equally likely, null if there is
+     * no word of the length. Draws trees until one is kept, in as many
+     * tries on average as there are trees for every word, and throws
+     * IllegalStateException if none is kept in maxTries tries, as the
+     * grammar has too many trees for a word of the length. **
+     */
+    public int[] uniformSample(int length, Random random, int maxTries) {
+        if (maxTries < 1) {
+            throw new IllegalArgumentException("Wrong number of tries: " + maxTries);
+        }
+        for (int tries = 0; tries < maxTries; tries++) {
+            int[] word = sample(length, random);
+            if (word == null || length == 0) {
+                return word;
+            }
+            int[] chomskyWord = new int[length];
+            for (int i = 0; i < length; i++) {
+                chomskyWord[i] = word[i] - originalNonterminalsCount + compiled.getNonterminalsCount();
+            }
+            BigInteger trees = ParseForest.of(compiled, chomskyWord).countTrees();
+            if (below(trees, random).signum() == 0) {
+                return word;
+            }
+        }
+        throw new IllegalStateException("No word of length " + length + " kept in " + maxTries
+                + " tries, too many derivation trees per word");
+    }
+
+    /* Endless samples of the length by uniformSample from a generator with
+     * the seed, every word equally likely, none if there is no word of the
+     * length. Taking a sample throws IllegalStateException if the tries of
+     * uniformSample run out. */
+    public Stream<int[]> samples(int length, long seed) {
+        if (countTrees(length).signum() == 0) {
+            return Stream.empty();
+        }
+        Random random = new Random(seed);
+        return Stream.generate(() -> uniformSample(length, random));
+    }
+
+    /* Endless samples of the length by sample from a generator with the
+     * seed, none if there is no word of the length. Every derivation tree is
+     * equally likely, not every word: words with more trees come more
+     * often if the grammar is ambiguous. */
+    public Stream<int[]> treeSamples(int length, long seed) {
+        if (countTrees(length).signum() == 0) {
+            return Stream.empty();
+        }
+        Random random = new Random(seed);
+        return Stream.generate(() -> sample(length, random));
+    }
+}
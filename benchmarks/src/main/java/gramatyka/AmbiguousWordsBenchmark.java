@@ -0,0 +1,52 @@
+package gramatyka;
+
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * * Words of S -> SS | a up to a given length, one word per length but
+ * exponentially many derivations of every prefix, which must be merged for
+ * the enumeration to take polynomial time. Fails if a word is missing. **
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(1)
+public class AmbiguousWordsBenchmark {
+
+    @Param({"20", "40"})
+    public int length;
+
+    private ContextFreeGrammar grammar;
+
+    @Setup
+    public void setUp() throws ConstructorException {
+        grammar = new ContextFreeGrammar("a", "S", new String[][]{{"SS", "a"}});
+    }
+
+    @Benchmark
+    public int[] words() throws ConstructorException {
+        Iterator<int[]> words = grammar.words().iterator();
+        int[] word = null;
+        for (int i = 1; i <= length; i++) {
+            word = words.next();
+            if (word.length != i) {
+                throw new IllegalStateException("No word of length " + i);
+            }
+        }
+        return word;
+    }
+}
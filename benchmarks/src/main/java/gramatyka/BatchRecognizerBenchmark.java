@@ -0,0 +1,75 @@
+package gramatyka;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * * A batch of derived and random words of a random grammar in Chomsky
+ * normal form, recognized by a BatchRecognizer with the grammar created
+ * again for every batch, as by a service, compared with building the
+ * grammar's recognizer and checking the words one by one. **
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BatchRecognizerBenchmark {
+
+    @Param({"10000"})
+    public int words;
+
+    @Param({"16"})
+    public int length;
+
+    @Param({"42"})
+    public long seed;
+
+    private int[][][] rules;
+    private int[][] batch;
+    private BatchRecognizer recognizer;
+
+    @Setup
+    public void setUp() throws ConstructorException {
+        rules = RandomGrammars.chomskyRules(16, 4, 2, 3, seed);
+        NormalChomskyGrammar grammar = grammar();
+        batch = new int[words][];
+        for (int i = 0; i < words; i++) {
+            batch[i] = i % 2 == 0 ? RandomGrammars.chomskyWord(grammar, length, seed + i)
+                    : RandomGrammars.randomWord(grammar, length, seed + i);
+        }
+        recognizer = new BatchRecognizer(4);
+    }
+
+    private NormalChomskyGrammar grammar() throws ConstructorException {
+        return new NormalChomskyGrammar(new ContextFreeGrammar(RandomGrammars.symbols(16, 4), rules));
+    }
+
+    @Benchmark
+    public boolean[] batch() throws ConstructorException {
+        boolean[] results = new boolean[words];
+        recognizer.recognizeAll(grammar(), batch, results);
+        return results;
+    }
+
+    @Benchmark
+    public boolean[] oneByOne() throws ConstructorException {
+        NormalChomskyGrammar grammar = grammar();
+        boolean[] results = new boolean[words];
+        for (int i = 0; i < words; i++) {
+            results[i] = grammar.recognize(batch[i]);
+        }
+        return results;
+    }
+}
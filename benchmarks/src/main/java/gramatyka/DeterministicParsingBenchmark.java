@@ -0,0 +1,97 @@
+package gramatyka;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * * Recognition of long arithmetic expressions with the LL(1) grammar
+ * E -> T R, R -> + T R | &, T -> F Q, Q -> * F Q | &, F -> ( E ) | x by its
+ * LL(1) and LALR(1) tables, compared with the Earley recognizer, and
+ * building the LALR(1) tables. Nesting depth of parentheses stays small. **
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DeterministicParsingBenchmark {
+
+    private static final int MAX_DEPTH = 16;
+
+    @Param({"10000", "1000000"})
+    public int length;
+
+    @Param({"42"})
+    public long seed;
+
+    private ContextFreeGrammar grammar;
+    private Ll1Table ll1;
+    private Lalr1Table lalr1;
+    private String word;
+
+    @Setup
+    public void setUp() throws ConstructorException {
+        grammar = new ContextFreeGrammar(new String[]{"+", "*", "(", ")", "x"},
+                new String[]{"E", "R", "T", "Q", "F"},
+                new String[][][]{{{"T", "R"}}, {{"+", "T", "R"}, {}}, {{"F", "Q"}}, {{"*", "F", "Q"}, {}},
+                    {{"(", "E", ")"}, {"x"}}});
+        ll1 = grammar.getLl1Table();
+        lalr1 = grammar.getLalr1Table();
+        Random random = new Random(seed);
+        StringBuilder sb = new StringBuilder(length);
+        int depth = 0;
+        while (sb.length() < length - 2 * depth) {
+            if (depth < MAX_DEPTH && random.nextInt(4) == 0) {
+                sb.append('(');
+                depth++;
+                continue;
+            }
+            sb.append('x');
+            if (depth > 0 && random.nextInt(4) == 0) {
+                sb.append(')');
+                depth--;
+            }
+            sb.append(random.nextBoolean() ? '+' : '*');
+        }
+        sb.append('x');
+        while (depth-- > 0) {
+            sb.append(')');
+        }
+        word = sb.toString();
+        if (!ll1.recognize(word)) {
+            throw new IllegalStateException("Expression not in the language");
+        }
+    }
+
+    @Benchmark
+    public boolean ll1() {
+        return ll1.recognize(word);
+    }
+
+    @Benchmark
+    public boolean lalr1() {
+        return lalr1.recognize(word);
+    }
+
+    @Benchmark
+    public boolean earley() {
+        return new EarleyRecognizer(grammar).recognize(word);
+    }
+
+    @Benchmark
+    public Lalr1Table buildLalr1() throws ConstructorException {
+        return Lalr1Table.of(grammar.getCompiled(), Long.MAX_VALUE);
+    }
+}
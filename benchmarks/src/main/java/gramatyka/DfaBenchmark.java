@@ -0,0 +1,126 @@
+package gramatyka;
+
+import java.nio.CharBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * * Matching batches of short words against a random regular grammar with
+ * its minimal automaton, compared with the Earley recognizer, and building
+ * the automaton. Terminals are single letters, so words are strings. **
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DfaBenchmark {
+
+    private static final int WORDS = 1024;
+
+    @Param({"16", "64"})
+    public int nonterminals;
+
+    @Param({"4", "16"})
+    public int length;
+
+    @Param({"42"})
+    public long seed;
+
+    private ContextFreeGrammar grammar;
+    private Dfa dfa;
+    private EarleyRecognizer earley;
+    private String[] strings;
+    private char[][] arrays;
+    private CharBuffer[] buffers;
+
+    @Setup
+    public void setUp() throws ConstructorException {
+        String[] nonterminalsNames = new String[nonterminals];
+        for (int i = 0; i < nonterminals; i++) {
+            nonterminalsNames[i] = "A" + i;
+        }
+        grammar = ContextFreeGrammar.regularGrammar(new ContextFreeGrammar(
+                new SymbolTable(new String[]{"a", "b", "c", "d"}, nonterminalsNames),
+                RandomGrammars.regularRules(nonterminals, 4, 1, 3, seed)));
+        dfa = grammar.toDfa();
+        earley = new EarleyRecognizer(grammar);
+
+        /* Half of the words derived in the grammar, half random. */
+        Random random = new Random(seed);
+        strings = new String[WORDS];
+        arrays = new char[WORDS][];
+        buffers = new CharBuffer[WORDS];
+        for (int i = 0; i < WORDS; i++) {
+            int[] word = i % 2 == 0 ? RandomGrammars.regularWord(grammar, length, random.nextLong())
+                    : RandomGrammars.randomWord(grammar, length, random.nextLong());
+            char[] characters = new char[length];
+            for (int j = 0; j < length; j++) {
+                characters[j] = grammar.getCompiled().nameOf(word[j]).charAt(0);
+            }
+            strings[i] = new String(characters);
+            arrays[i] = characters;
+            buffers[i] = CharBuffer.wrap(strings[i]);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(WORDS)
+    public int dfaCharSequence() {
+        int matched = 0;
+        for (String word : strings) {
+            matched += dfa.matches(word) ? 1 : 0;
+        }
+        return matched;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(WORDS)
+    public int dfaCharArray() {
+        int matched = 0;
+        for (char[] word : arrays) {
+            matched += dfa.matches(word) ? 1 : 0;
+        }
+        return matched;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(WORDS)
+    public int dfaCharBuffer() {
+        int matched = 0;
+        for (CharBuffer word : buffers) {
+            matched += dfa.matches(word) ? 1 : 0;
+        }
+        return matched;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(WORDS)
+    public int earley() {
+        int matched = 0;
+        for (String word : strings) {
+            matched += earley.recognize(word) ? 1 : 0;
+        }
+        return matched;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public Dfa build() throws ConstructorException {
+        return Dfa.of(grammar.getCompiled(), Integer.MAX_VALUE);
+    }
+}
@@ -0,0 +1,70 @@
+package gramatyka;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * * One step of a grammar changed a production at a time: a production
+ * added and removed again, with a checked grammar in normal form known
+ * after each change, by a GrammarBuilder and by building the grammar again
+ * from its rules. **
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GrammarBuilderBenchmark {
+
+    @Param({"16", "128", "1024"})
+    public int nonterminals;
+
+    @Param({"42"})
+    public long seed;
+
+    private SymbolTable symbolTable;
+    private int[][][] rules;
+    private GrammarBuilder builder;
+    private int lhs;
+    private int[] product;
+
+    @Setup
+    public void setUp() throws ConstructorException {
+        int terminals = 8;
+        symbolTable = RandomGrammars.symbols(nonterminals, terminals);
+        rules = RandomGrammars.chomskyRules(nonterminals, terminals, 2, 4, seed);
+        builder = new ContextFreeGrammar(symbolTable, rules).toBuilder();
+        lhs = nonterminals / 2;
+        product = new int[]{nonterminals};
+    }
+
+    @Benchmark
+    public boolean builder() throws ConstructorException {
+        builder.add(lhs, product);
+        boolean chomsky = builder.snapshot().ifChomsky();
+        builder.remove(lhs, product);
+        return chomsky & builder.snapshot().ifChomsky();
+    }
+
+    @Benchmark
+    public boolean rebuild() throws ConstructorException {
+        int[][] products = rules[lhs];
+        rules[lhs] = Arrays.copyOf(products, products.length + 1);
+        rules[lhs][products.length] = product;
+        boolean chomsky = new ContextFreeGrammar(symbolTable, rules).ifChomsky();
+        rules[lhs] = products;
+        return chomsky & new ContextFreeGrammar(symbolTable, rules).ifChomsky();
+    }
+}
@@ -0,0 +1,65 @@
+package gramatyka;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * * Loading a random grammar in Chomsky normal form from a grammar file,
+ * compared with building it from its rules and checking it, with the
+ * fingerprint which a cache of a service would need. **
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GrammarFileBenchmark {
+
+    @Param({"100", "1000"})
+    public int nonterminals;
+
+    @Param({"42"})
+    public long seed;
+
+    private SymbolTable symbols;
+    private int[][][] rules;
+    private Path file;
+
+    @Setup
+    public void setUp() throws ConstructorException, IOException {
+        symbols = RandomGrammars.symbols(nonterminals, 16);
+        rules = RandomGrammars.chomskyRules(nonterminals, 16, 4, 8, seed);
+        file = Files.createTempFile("grammar", ".bin");
+        GrammarFile.write(new ContextFreeGrammar(symbols, rules), file);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public GrammarFingerprint read() throws ConstructorException, IOException {
+        return GrammarFile.read(file).getFingerprint();
+    }
+
+    @Benchmark
+    public GrammarFingerprint build() throws ConstructorException {
+        return new ContextFreeGrammar(symbols, rules).getFingerprint();
+    }
+}
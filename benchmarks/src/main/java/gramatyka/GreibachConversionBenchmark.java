@@ -0,0 +1,79 @@
+package gramatyka;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * * Conversion to Greibach normal form by substitution, without the cache,
+ * for grammars with hundreds of rules. Odd nonterminals A1, A3, ... have
+ * left recursive productions and productions starting with the previous
+ * nonterminal, so all phases of the converter have work to do without
+ * blowing up the result; T0..Tk produce single terminals. **
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GreibachConversionBenchmark {
+
+    private static final int TERMINALS = 4;
+    private static final int BRANCHES = 60;
+
+    @Param({"5", "10", "20", "40"})
+    public int size;
+
+    private NormalChomskyGrammar grammar;
+
+    @Setup
+    public void setUp() throws ConstructorException {
+        Random random = new Random(size);
+        String[] nonterminals = new String[size + TERMINALS];
+        String[] terminals = new String[TERMINALS];
+        for (int i = 0; i < size; i++) {
+            nonterminals[i] = "A" + i;
+        }
+        for (int i = 0; i < TERMINALS; i++) {
+            nonterminals[size + i] = "T" + i;
+            terminals[i] = "t" + i;
+        }
+        int[][][] rules = new int[size + TERMINALS][][];
+        for (int i = 0; i < size; i++) {
+            List<int[]> products = new ArrayList<>();
+            products.add(new int[]{size + TERMINALS + random.nextInt(TERMINALS)});
+            for (int j = 0; j < BRANCHES; j++) {
+                products.add(new int[]{size + random.nextInt(TERMINALS), random.nextInt(size)});
+            }
+            if (i % 2 == 1) {
+                for (int j = 0; j < TERMINALS; j++) {
+                    products.add(new int[]{i, size + j});
+                    products.add(new int[]{i - 1, size + j});
+                }
+            }
+            rules[i] = products.toArray(new int[0][]);
+        }
+        for (int i = 0; i < TERMINALS; i++) {
+            rules[size + i] = new int[][]{{size + TERMINALS + i}};
+        }
+        grammar = new NormalChomskyGrammar(new ContextFreeGrammar(new SymbolTable(terminals, nonterminals), rules));
+    }
+
+    @Benchmark
+    public NormalGreibachGrammar substitution() throws ConstructorException {
+        return grammar.toGreibach(NormalChomskyGrammar.GreibachConversion.SUBSTITUTION);
+    }
+}
@@ -0,0 +1,67 @@
+package gramatyka;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * * An edit of two symbols in the middle of a long word of balanced
+ * brackets, inserted and deleted again, with an IncrementalRecognizer, which
+ * should not depend on the length, and the recognition of the whole word
+ * after such an edit by the Earley recognizer. **
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IncrementalRecognizerBenchmark {
+
+    @Param({"1024", "16384", "262144"})
+    public int length;
+
+    private ContextFreeGrammar grammar;
+    private Recognizer earley;
+    private IncrementalRecognizer incremental;
+    private int[] word;
+    private int[] pair;
+    private int middle;
+
+    @Setup
+    public void setUp() throws ConstructorException {
+        /* Left recursion, so items crossing the edit start at the beginning. */
+        grammar = new ContextFreeGrammar("ab", "S", new String[][]{{"SaSb", ""}});
+        StringBuilder builder = new StringBuilder();
+        while (builder.length() < length) {
+            builder.append("aababb");
+        }
+        incremental = grammar.incrementalRecognizer(builder.toString());
+        earley = new EarleyRecognizer(grammar);
+        middle = length / 2 - length / 2 % 6;
+        incremental.edit(middle, 0, "ab");
+        word = incremental.getWord();
+        incremental.edit(middle, 2, "");
+        pair = new int[]{word[middle], word[middle + 1]};
+    }
+
+    @Benchmark
+    public boolean edit() {
+        incremental.edit(middle, 0, pair);
+        return incremental.edit(middle, 2, new int[0]);
+    }
+
+    @Benchmark
+    public boolean recognize() {
+        return earley.recognize(word);
+    }
+}
@@ -0,0 +1,70 @@
+package gramatyka;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * * Checks of normal forms on grammars which pass them, so every production
+ * is looked at. Right-linear regular grammars are also in Greibach normal
+ * form. The if* checks read results kept in the analysis of the grammar;
+ * the scan and FIRST and FOLLOW sets are measured on a fresh analysis. **
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NormalFormBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    public int nonterminals;
+
+    @Param({"42"})
+    public long seed;
+
+    private ContextFreeGrammar chomsky;
+    private ContextFreeGrammar regular;
+
+    @Setup
+    public void setUp() throws ConstructorException {
+        chomsky = RandomGrammars.chomsky(nonterminals, 8, 2, 3, seed);
+        regular = RandomGrammars.regular(nonterminals, 8, 1, 3, seed);
+    }
+
+    @Benchmark
+    public boolean ifRegular() {
+        return regular.ifRegular();
+    }
+
+    @Benchmark
+    public boolean ifChomsky() {
+        return chomsky.ifChomsky();
+    }
+
+    @Benchmark
+    public boolean ifGreibach() {
+        return regular.ifGreibach();
+    }
+
+    @Benchmark
+    public boolean scanForms() {
+        return new GrammarAnalysis(chomsky.getCompiled()).isChomskyForm();
+    }
+
+    @Benchmark
+    public boolean firstAndFollow() {
+        GrammarAnalysis analysis = new GrammarAnalysis(chomsky.getCompiled());
+        return analysis.isInFirst(0, nonterminals) | analysis.isEndInFollow(0);
+    }
+}
@@ -0,0 +1,71 @@
+package gramatyka;
+
+import java.math.BigInteger;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * * Parse forests of sums x + x + ... + x in the ambiguous grammar
+ * E -> E + E | x, which have a Catalan number of trees: building the forest,
+ * counting its trees exactly and building its first trees lazily. **
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParseForestBenchmark {
+
+    private static final int TREES = 100;
+
+    @Param({"25", "100"})
+    public int operands;
+
+    private ContextFreeGrammar grammar;
+    private String word;
+    private ParseForest forest;
+
+    @Setup
+    public void setUp() throws ConstructorException {
+        grammar = new ContextFreeGrammar(new String[]{"+", "x"}, new String[]{"E"},
+                new String[][][]{{{"E", "+", "E"}, {"x"}}});
+        StringBuilder sb = new StringBuilder("x");
+        for (int i = 1; i < operands; i++) {
+            sb.append("+x");
+        }
+        word = sb.toString();
+        forest = grammar.parse(word);
+    }
+
+    @Benchmark
+    public ParseForest parse() {
+        return grammar.parse(word);
+    }
+
+    @Benchmark
+    public BigInteger countTrees() {
+        return grammar.parse(word).countTrees();
+    }
+
+    @Benchmark
+    public int firstTrees() {
+        int nodes = 0;
+        Iterator<ParseTree> trees = forest.trees();
+        for (int i = 0; i < TREES && trees.hasNext(); i++) {
+            nodes += trees.next().getChildren().size();
+        }
+        return nodes;
+    }
+}
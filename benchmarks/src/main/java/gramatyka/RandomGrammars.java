@@ -0,0 +1,216 @@
+package gramatyka;
+
+import java.util.Random;
+
+/**
+ * * Seeded generator of valid grammars of a given size, the same for the same
+ * seed.
+ *
+ * Nonterminals are named A0, A1, ... (A0 is a start variable) and terminals
+ * a0, a1, .... Every nonterminal has a production with a terminal, so none of
+ * them is useless, and every nonterminal after A0 is used in the first
+ * nonterminal production of the previous one, so all of them are reachable. **
+ */
+public final class RandomGrammars {
+
+    private RandomGrammars() {
+    }
+
+    public static SymbolTable symbols(int nonterminals, int terminals) throws ConstructorException {
+        String[] nonterminalsNames = new String[nonterminals];
+        for (int i = 0; i < nonterminals; i++) {
+            nonterminalsNames[i] = "A" + i;
+        }
+        String[] terminalsNames = new String[terminals];
+        for (int i = 0; i < terminals; i++) {
+            terminalsNames[i] = "a" + i;
+        }
+        return new SymbolTable(terminalsNames, nonterminalsNames);
+    }
+
+    /**
+     * * Rules of a grammar in Chomsky normal form: every nonterminal has
+     * terminalProductions productions A -> a and binaryProductions productions
+     * A -> B C. **
+     */
+    public static int[][][] chomskyRules(int nonterminals, int terminals, int terminalProductions,
+            int binaryProductions, long seed) {
+        checkSizes(nonterminals, terminals, terminalProductions, binaryProductions);
+        Random random = new Random(seed);
+        int[][][] rules = new int[nonterminals][terminalProductions + binaryProductions][];
+        for (int lhs = 0; lhs < nonterminals; lhs++) {
+            for (int i = 0; i < terminalProductions; i++) {
+                rules[lhs][i] = new int[]{nonterminals + random.nextInt(terminals)};
+            }
+            for (int i = 0; i < binaryProductions; i++) {
+                rules[lhs][terminalProductions + i] = new int[]{random.nextInt(nonterminals),
+                    random.nextInt(nonterminals)};
+            }
+        }
+        for (int nonterminal = 1; nonterminal < nonterminals; nonterminal++) {
+            rules[nonterminal - 1][terminalProductions][1] = nonterminal;
+        }
+        return rules;
+    }
+
+    /**
+     * * Rules of a right-linear regular grammar: every nonterminal has
+     * terminalProductions productions A -> a and linearProductions
+     * productions A -> a B. **
+     */
+    public static int[][][] regularRules(int nonterminals, int terminals, int terminalProductions,
+            int linearProductions, long seed) {
+        checkSizes(nonterminals, terminals, terminalProductions, linearProductions);
+        Random random = new Random(seed);
+        int[][][] rules = new int[nonterminals][terminalProductions + linearProductions][];
+        for (int lhs = 0; lhs < nonterminals; lhs++) {
+            for (int i = 0; i < terminalProductions; i++) {
+                rules[lhs][i] = new int[]{nonterminals + random.nextInt(terminals)};
+            }
+            for (int i = 0; i < linearProductions; i++) {
+                rules[lhs][terminalProductions + i] = new int[]{nonterminals + random.nextInt(terminals),
+                    random.nextInt(nonterminals)};
+            }
+        }
+        for (int nonterminal = 1; nonterminal < nonterminals; nonterminal++) {
+            rules[nonterminal - 1][terminalProductions][1] = nonterminal;
+        }
+        return rules;
+    }
+
+    /**
+     * * Rules of a grammar in no normal form, shaped like hand-written ones:
+     * every nonterminal has a production A -> a and a production of five
+     * symbols, every fourth one an empty production and nonterminals form
+     * chains of unit productions A -> B of length unitChain. **
+     */
+    public static int[][][] generalRules(int nonterminals, int terminals, int unitChain, long seed) {
+        checkSizes(nonterminals, terminals, unitChain, 1);
+        Random random = new Random(seed);
+        int[][][] rules = new int[nonterminals][][];
+        for (int lhs = 0; lhs < nonterminals; lhs++) {
+            boolean unit = lhs + 1 < nonterminals && (lhs + 1) % unitChain != 0;
+            int[][] products = new int[2 + (unit ? 1 : 0) + (lhs % 4 == 3 ? 1 : 0)][];
+            int count = 0;
+            products[count++] = new int[]{nonterminals + random.nextInt(terminals)};
+            int[] longProduct = new int[5];
+            for (int i = 0; i < longProduct.length; i++) {
+                longProduct[i] = i % 2 == 0 ? nonterminals + random.nextInt(terminals) : random.nextInt(nonterminals);
+            }
+            if (lhs + 1 < nonterminals) {
+                longProduct[1] = lhs + 1;
+            }
+            products[count++] = longProduct;
+            if (unit) {
+                products[count++] = new int[]{lhs + 1};
+            }
+            if (lhs % 4 == 3) {
+                products[count++] = new int[0];
+            }
+            rules[lhs] = products;
+        }
+        return rules;
+    }
+
+    private static void checkSizes(int nonterminals, int terminals, int terminalProductions, int otherProductions) {
+        if (nonterminals < 1 || terminals < 1 || terminalProductions < 1 || otherProductions < 1) {
+            throw new IllegalArgumentException("Every size must be positive");
+        }
+    }
+
+    public static NormalChomskyGrammar chomsky(int nonterminals, int terminals, int terminalProductions,
+            int binaryProductions, long seed) throws ConstructorException {
+        return new NormalChomskyGrammar(new ContextFreeGrammar(symbols(nonterminals, terminals),
+                chomskyRules(nonterminals, terminals, terminalProductions, binaryProductions, seed)));
+    }
+
+    public static ContextFreeGrammar regular(int nonterminals, int terminals, int terminalProductions,
+            int linearProductions, long seed) throws ConstructorException {
+        return ContextFreeGrammar.regularGrammar(new ContextFreeGrammar(symbols(nonterminals, terminals),
+                regularRules(nonterminals, terminals, terminalProductions, linearProductions, seed)));
+    }
+
+    /**
+     * * Word of a given length over the alphabet of a grammar, as symbol ids,
+     * mostly not in the language. **
+     */
+    public static int[] randomWord(ContextFreeGrammar grammar, int length, long seed) {
+        CompiledGrammar compiled = grammar.getCompiled();
+        Random random = new Random(seed);
+        int[] word = new int[length];
+        for (int i = 0; i < length; i++) {
+            word[i] = compiled.getNonterminalsCount() + random.nextInt(compiled.getTerminalsCount());
+        }
+        return word;
+    }
+
+    /**
+     * * Word of a given positive length derived from the start variable of a
+     * grammar made by chomsky(), as symbol ids.
+     *
+     * Every nonterminal of such grammar has both kinds of productions, so it
+     * derives words of every length: a pending nonterminal with length 1 takes
+     * a terminal production and a longer one a binary production, with the
+     * length split randomly between both halves. **
+     */
+    public static int[] chomskyWord(NormalChomskyGrammar grammar, int length, long seed) {
+        CompiledGrammar compiled = grammar.getCompiled();
+        Random random = new Random(seed);
+        int[] word = new int[length];
+        /* Pending nonterminals with lengths of their parts, leftmost on top. */
+        int[] stackSymbol = new int[length];
+        int[] stackLength = new int[length];
+        int top = 0;
+        stackSymbol[top] = 0;
+        stackLength[top++] = length;
+        int position = 0;
+        while (top > 0) {
+            int nonterminal = stackSymbol[--top];
+            int partLength = stackLength[top];
+            int production = randomProduction(compiled, nonterminal, partLength == 1 ? 1 : 2, random);
+            if (partLength == 1) {
+                word[position++] = compiled.symbolAt(production, 0);
+            } else {
+                int leftLength = 1 + random.nextInt(partLength - 1);
+                stackSymbol[top] = compiled.symbolAt(production, 1);
+                stackLength[top++] = partLength - leftLength;
+                stackSymbol[top] = compiled.symbolAt(production, 0);
+                stackLength[top++] = leftLength;
+            }
+        }
+        return word;
+    }
+
+    /**
+     * * Word of a given positive length derived from the start variable of a
+     * grammar made by regular(), as symbol ids. Productions A -> a B are
+     * taken until the last letter, which comes from A -> a. **
+     */
+    public static int[] regularWord(ContextFreeGrammar grammar, int length, long seed) {
+        CompiledGrammar compiled = grammar.getCompiled();
+        Random random = new Random(seed);
+        int[] word = new int[length];
+        int nonterminal = 0;
+        for (int position = 0; position < length; position++) {
+            boolean last = position + 1 == length;
+            int production = randomProduction(compiled, nonterminal, last ? 1 : 2, random);
+            word[position] = compiled.symbolAt(production, 0);
+            if (!last) {
+                nonterminal = compiled.symbolAt(production, 1);
+            }
+        }
+        return word;
+    }
+
+    private static int randomProduction(CompiledGrammar compiled, int nonterminal, int productionLength,
+            Random random) {
+        int[] candidates = new int[compiled.rulesEnd(nonterminal) - compiled.rulesStart(nonterminal)];
+        int found = 0;
+        for (int production = compiled.rulesStart(nonterminal); production < compiled.rulesEnd(nonterminal); production++) {
+            if (compiled.length(production) == productionLength) {
+                candidates[found++] = production;
+            }
+        }
+        return candidates[random.nextInt(found)];
+    }
+}
@@ -0,0 +1,79 @@
+package gramatyka;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * * Recognition of words of a given length with every recognizer: a word
+ * derived in the grammar and a random word over its alphabet, which is
+ * usually rejected early. Regular grammars go to the Earley recognizer;
+ * DfaBenchmark covers their automata. **
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RecognizerBenchmark {
+
+    public enum Kind {
+
+        CYK, EARLEY
+    }
+
+    @Param({"CYK", "EARLEY"})
+    public Kind recognizer;
+
+    @Param({"8", "32"})
+    public int nonterminals;
+
+    @Param({"16", "64", "128"})
+    public int length;
+
+    @Param({"42"})
+    public long seed;
+
+    private Recognizer chomskyRecognizer;
+    private Recognizer regularRecognizer;
+    private int[] chomskyMember;
+    private int[] chomskyRandom;
+    private int[] regularMember;
+
+    @Setup
+    public void setUp() throws ConstructorException {
+        NormalChomskyGrammar chomsky = RandomGrammars.chomsky(nonterminals, 4, 2, 3, seed);
+        chomskyRecognizer = recognizer == Kind.CYK ? new CykRecognizer(chomsky) : new EarleyRecognizer(chomsky);
+        chomskyMember = RandomGrammars.chomskyWord(chomsky, length, seed);
+        chomskyRandom = RandomGrammars.randomWord(chomsky, length, seed);
+
+        ContextFreeGrammar regular = RandomGrammars.regular(nonterminals, 4, 1, 3, seed);
+        regularRecognizer = new EarleyRecognizer(regular);
+        regularMember = RandomGrammars.regularWord(regular, length, seed);
+    }
+
+    @Benchmark
+    public boolean chomskyMember() {
+        return chomskyRecognizer.recognize(chomskyMember);
+    }
+
+    @Benchmark
+    public boolean chomskyRandom() {
+        return chomskyRecognizer.recognize(chomskyRandom);
+    }
+
+    @Benchmark
+    public boolean regularMember() {
+        return regularRecognizer.recognize(regularMember);
+    }
+}
@@ -0,0 +1,76 @@
+package gramatyka;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * * Comparing languages of random regular grammars: equivalence of equal
+ * languages, which explores all pairs of states, and of different ones,
+ * which stops at the first word in one of them, compared with building
+ * both minimal automata eagerly, which a comparison of automata needs
+ * first. Also intersection with a context-free grammar in Chomsky normal
+ * form. **
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RegularLanguagesBenchmark {
+
+    @Param({"16", "64"})
+    public int nonterminals;
+
+    @Param({"42"})
+    public long seed;
+
+    private ContextFreeGrammar grammar;
+    private ContextFreeGrammar same;
+    private ContextFreeGrammar different;
+    private ContextFreeGrammar contextFree;
+
+    @Setup
+    public void setUp() throws ConstructorException {
+        grammar = RandomGrammars.regular(nonterminals, 4, 1, 3, seed);
+        same = RandomGrammars.regular(nonterminals, 4, 1, 3, seed);
+        different = RandomGrammars.regular(nonterminals, 4, 1, 3, seed + 1);
+        contextFree = RandomGrammars.chomsky(nonterminals, 4, 1, 3, seed);
+    }
+
+    @Benchmark
+    public boolean equivalent() throws ConstructorException {
+        return grammar.isEquivalent(same);
+    }
+
+    @Benchmark
+    public boolean different() throws ConstructorException {
+        return grammar.isEquivalent(different);
+    }
+
+    @Benchmark
+    public int eagerAutomata() throws ConstructorException {
+        return Dfa.of(grammar.getCompiled(), Integer.MAX_VALUE).getStatesCount()
+                + Dfa.of(same.getCompiled(), Integer.MAX_VALUE).getStatesCount();
+    }
+
+    @Benchmark
+    public boolean included() throws ConstructorException {
+        return grammar.isIncludedIn(same);
+    }
+
+    @Benchmark
+    public String[] contextFreeIntersection() throws ConstructorException {
+        return contextFree.commonWord(grammar);
+    }
+}
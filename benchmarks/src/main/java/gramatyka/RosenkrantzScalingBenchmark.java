@@ -0,0 +1,45 @@
+package gramatyka;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * * Conversion to Greibach normal form with Rosenkrantz's method on growing
+ * random grammars in Chomsky normal form. **
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RosenkrantzScalingBenchmark {
+
+    @Param({"8", "16", "32"})
+    public int nonterminals;
+
+    @Param({"42"})
+    public long seed;
+
+    private NormalChomskyGrammar grammar;
+
+    @Setup
+    public void setUp() throws ConstructorException {
+        grammar = RandomGrammars.chomsky(nonterminals, 4, 2, 3, seed);
+    }
+
+    @Benchmark
+    public NormalGreibachGrammar toGreibach() throws ConstructorException {
+        return grammar.toGreibach(NormalChomskyGrammar.GreibachConversion.ROSENKRANTZ);
+    }
+}
@@ -0,0 +1,87 @@
+package gramatyka;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * * Streaming recognition of long balanced bracket sequences with a grammar
+ * in Greibach normal form, S -> (B | (SB | (BS | (SBS, B -> ), from a string,
+ * a Reader and a channel, compared with the Earley recognizer. Nesting depth
+ * of the sequences stays small, like in real documents. **
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StreamingGreibachBenchmark {
+
+    private static final int MAX_DEPTH = 16;
+
+    @Param({"10000", "1000000"})
+    public int length;
+
+    @Param({"42"})
+    public long seed;
+
+    private NormalGreibachGrammar grammar;
+    private String word;
+    private byte[] bytes;
+
+    @Setup
+    public void setUp() throws ConstructorException {
+        grammar = new NormalGreibachGrammar(new SymbolTable(new String[]{"(", ")"}, new String[]{"S", "B"}),
+                new int[][][]{{{2, 1}, {2, 0, 1}, {2, 1, 0}, {2, 0, 1, 0}}, {{3}}});
+        Random random = new Random(seed);
+        StringBuilder sb = new StringBuilder(length);
+        int depth = 0;
+        while (sb.length() < length - depth) {
+            boolean open = depth == 0 || (depth < MAX_DEPTH && random.nextBoolean());
+            sb.append(open ? '(' : ')');
+            depth += open ? 1 : -1;
+        }
+        while (depth-- > 0) {
+            sb.append(')');
+        }
+        word = sb.toString();
+        bytes = word.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    @Benchmark
+    public boolean string() {
+        return grammar.getStreamingRecognizer().recognize(word);
+    }
+
+    @Benchmark
+    public boolean reader() throws IOException {
+        return grammar.getStreamingRecognizer().recognize(new StringReader(word));
+    }
+
+    @Benchmark
+    public boolean channel() throws IOException {
+        return grammar.getStreamingRecognizer().recognize(
+                Channels.newChannel(new ByteArrayInputStream(bytes)), StandardCharsets.US_ASCII);
+    }
+
+    @Benchmark
+    public boolean earley() {
+        return new EarleyRecognizer(grammar).recognize(word);
+    }
+}
@@ -0,0 +1,53 @@
+package gramatyka;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * * Conversion of grammars with empty, unit and long productions to Chomsky
+ * normal form. Every nonterminal of a chain of unit productions gets the
+ * productions of all after it, so the result and the time grow with the
+ * number of nonterminals times the length of chains: linearly for chains of
+ * a fixed length, and up to O(|G|^2) if the chains are as long as the
+ * grammar. **
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ToChomskyBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int nonterminals;
+
+    @Param({"8", "64"})
+    public int unitChain;
+
+    @Param({"42"})
+    public long seed;
+
+    private ContextFreeGrammar grammar;
+
+    @Setup
+    public void setUp() throws ConstructorException {
+        grammar = new ContextFreeGrammar(RandomGrammars.symbols(nonterminals, 8),
+                RandomGrammars.generalRules(nonterminals, 8, unitChain, seed));
+    }
+
+    @Benchmark
+    public NormalChomskyGrammar toChomsky() throws ConstructorException {
+        return grammar.toChomsky();
+    }
+}
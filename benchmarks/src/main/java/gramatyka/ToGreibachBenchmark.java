@@ -0,0 +1,59 @@
+package gramatyka;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * * Conversion of random grammars in Chomsky normal form to Greibach normal
+ * form with both strategies. Substitution blows up already on a few random
+ * nonterminals, so sizes are small; RosenkrantzScalingBenchmark goes
+ * further with the other strategy only. The cached conversion measures
+ * a hit of the cache, with the fingerprint already computed. **
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ToGreibachBenchmark {
+
+    @Param({"2", "4", "6"})
+    public int nonterminals;
+
+    @Param({"SUBSTITUTION", "ROSENKRANTZ"})
+    public NormalChomskyGrammar.GreibachConversion conversion;
+
+    @Param({"42"})
+    public long seed;
+
+    private NormalChomskyGrammar grammar;
+    private GreibachCache cache;
+
+    @Setup
+    public void setUp() throws ConstructorException {
+        grammar = RandomGrammars.chomsky(nonterminals, 4, 2, 3, seed);
+        cache = new GreibachCache(1);
+        grammar.toGreibach(conversion, cache);
+    }
+
+    @Benchmark
+    public NormalGreibachGrammar toGreibach() throws ConstructorException {
+        return grammar.toGreibach(conversion);
+    }
+
+    @Benchmark
+    public NormalGreibachGrammar cachedToGreibach() throws ConstructorException {
+        return grammar.toGreibach(conversion, cache);
+    }
+}
@@ -0,0 +1,53 @@
+package gramatyka;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * * Validation of growing chains of nonterminals
+ * A0 -> aA1, A1 -> aA2, ..., An -> a. Only the last nonterminal is productive
+ * at first, so every step resolves just one more. **
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UselessNonterminalBenchmark {
+
+    @Param({"1000", "2000", "5000", "10000"})
+    public int size;
+
+    private SymbolTable symbols;
+    private int[][][] rules;
+
+    @Setup
+    public void setUp() throws ConstructorException {
+        String[] nonterminals = new String[size];
+        for (int i = 0; i < size; i++) {
+            nonterminals[i] = "A" + i;
+        }
+        symbols = new SymbolTable(new String[]{"a"}, nonterminals);
+        rules = new int[size][][];
+        for (int i = 0; i + 1 < size; i++) {
+            rules[i] = new int[][]{{size, i + 1}};
+        }
+        rules[size - 1] = new int[][]{{size}};
+    }
+
+    @Benchmark
+    public ContextFreeGrammar chain() throws ConstructorException {
+        return new ContextFreeGrammar(symbols, rules);
+    }
+}
@@ -0,0 +1,80 @@
+package gramatyka;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * * CYK against ValiantRecognizer, with products by tables of the method of
+ * Four Russians and with products a word at a time only, on a word derived
+ * in a random grammar in Chomsky normal form, for lengths around those at
+ * which each one overtakes CYK. All run in one thread, so the algorithms
+ * are compared and not the parallelism. **
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ValiantBenchmark {
+
+    public enum Kind {
+
+        CYK, VALIANT_WORDS, VALIANT_TABLES
+    }
+
+    @Param({"CYK", "VALIANT_WORDS", "VALIANT_TABLES"})
+    public Kind recognizer;
+
+    @Param({"8", "32"})
+    public int nonterminals;
+
+    @Param({"8", "16", "32", "64", "256", "1024"})
+    public int length;
+
+    @Param({"42"})
+    public long seed;
+
+    private ForkJoinPool pool;
+    private Recognizer chomskyRecognizer;
+    private int[] member;
+
+    @Setup
+    public void setUp() throws ConstructorException {
+        pool = new ForkJoinPool(1);
+        NormalChomskyGrammar chomsky = RandomGrammars.chomsky(nonterminals, 4, 2, 3, seed);
+        switch (recognizer) {
+            case CYK:
+                chomskyRecognizer = new CykRecognizer(chomsky, pool);
+                break;
+            case VALIANT_WORDS:
+                chomskyRecognizer = new ValiantRecognizer(chomsky, pool, Integer.MAX_VALUE);
+                break;
+            default:
+                chomskyRecognizer = new ValiantRecognizer(chomsky, pool, ValiantRecognizer.TABLE_ROWS);
+        }
+        member = RandomGrammars.chomskyWord(chomsky, length, seed);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public boolean member() {
+        return chomskyRecognizer.recognize(member);
+    }
+}
@@ -0,0 +1,79 @@
+package gramatyka;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * * Building a grammar from symbol ids, which compiles the rules and checks
+ * them with checkIfContextFree, and the check alone. The analysis keeps
+ * the result of the check, so it is measured on a batch of rules compiled
+ * again before every invocation, long enough for the setup not to count. **
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ValidationBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    public int nonterminals;
+
+    @Param({"42"})
+    public long seed;
+
+    private static final int BATCH = 32;
+
+    private SymbolTable symbols;
+    private int[][][] rules;
+
+    /* Rules compiled again, with no result of the check; only
+     * checkIfContextFree asks for them. */
+    @State(Scope.Thread)
+    public static class Batch {
+
+        private final CompiledGrammar[] compiled = new CompiledGrammar[BATCH];
+
+        @Setup(Level.Invocation)
+        public void compile(ValidationBenchmark benchmark) {
+            for (int i = 0; i < BATCH; i++) {
+                compiled[i] = CompiledGrammar.compile(benchmark.symbols, benchmark.rules);
+            }
+        }
+    }
+
+    @Setup
+    public void setUp() throws ConstructorException {
+        symbols = RandomGrammars.symbols(nonterminals, 8);
+        rules = RandomGrammars.chomskyRules(nonterminals, 8, 2, 3, seed);
+    }
+
+    @Benchmark
+    public ContextFreeGrammar construct() throws ConstructorException {
+        return new ContextFreeGrammar(symbols, rules);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public ContextFreeGrammar checkIfContextFree(Batch batch) throws ConstructorException {
+        /* The constructor does nothing but the check. */
+        ContextFreeGrammar grammar = null;
+        for (CompiledGrammar compiled : batch.compiled) {
+            grammar = new ContextFreeGrammar(compiled);
+        }
+        return grammar;
+    }
+}
@@ -0,0 +1,85 @@
+package gramatyka;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * * Scores of a derived word in a random grammar in Chomsky normal form with
+ * random production weights, in every semiring of WeightedCyk, compared
+ * with the bitset CYK recognizer. **
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WeightedCykBenchmark {
+
+    @Param({"16", "64"})
+    public int nonterminals;
+
+    @Param({"32", "128"})
+    public int length;
+
+    @Param({"42"})
+    public long seed;
+
+    private WeightedCyk weighted;
+    private CykRecognizer recognizer;
+    private int[] word;
+
+    @Setup
+    public void setUp() throws ConstructorException {
+        NormalChomskyGrammar grammar = RandomGrammars.chomsky(nonterminals, 4, 2, 3, seed);
+        double[] weights = new double[grammar.getProductionsCount()];
+        Random random = new Random(seed);
+        for (int production = 0; production < weights.length; production++) {
+            weights[production] = random.nextDouble();
+        }
+        weighted = grammar.withWeights(weights);
+        recognizer = new CykRecognizer(grammar);
+        word = RandomGrammars.chomskyWord(grammar, length, seed);
+    }
+
+    @Benchmark
+    public double viterbi() {
+        return weighted.score(word, DoubleSemiring.VITERBI);
+    }
+
+    @Benchmark
+    public double logInside() {
+        return weighted.score(word, DoubleSemiring.LOG_INSIDE);
+    }
+
+    @Benchmark
+    public long counting() {
+        return weighted.score(word, LongSemiring.COUNTING);
+    }
+
+    @Benchmark
+    public long booleanScore() {
+        return weighted.score(word, LongSemiring.BOOLEAN);
+    }
+
+    @Benchmark
+    public ParseTree bestParse() {
+        return weighted.bestParse(word);
+    }
+
+    @Benchmark
+    public boolean recognize() {
+        return recognizer.recognize(word);
+    }
+}
@@ -0,0 +1,96 @@
+package gramatyka;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * * A file of derived and random words of a random regular grammar with
+ * single-letter terminals, recognized by WordFile on all processors,
+ * compared with reading the lines and recognizing them one by one. **
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WordFileBenchmark {
+
+    @Param({"1000000"})
+    public int words;
+
+    @Param({"16"})
+    public int length;
+
+    @Param({"42"})
+    public long seed;
+
+    private ContextFreeGrammar grammar;
+    private Path file;
+    private ForkJoinPool pool;
+
+    @Setup
+    public void setUp() throws ConstructorException, IOException {
+        String[] nonterminalsNames = new String[64];
+        for (int i = 0; i < nonterminalsNames.length; i++) {
+            nonterminalsNames[i] = "A" + i;
+        }
+        grammar = ContextFreeGrammar.regularGrammar(new ContextFreeGrammar(
+                new SymbolTable(new String[]{"a", "b", "c", "d"}, nonterminalsNames),
+                RandomGrammars.regularRules(nonterminalsNames.length, 4, 1, 3, seed)));
+        Random random = new Random(seed);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            int[] word = i % 2 == 0 ? RandomGrammars.regularWord(grammar, length, random.nextLong())
+                    : RandomGrammars.randomWord(grammar, length, random.nextLong());
+            for (int symbol : word) {
+                sb.append(grammar.getCompiled().nameOf(symbol));
+            }
+            sb.append('\n');
+        }
+        file = Files.createTempFile("words", ".txt");
+        Files.writeString(file, sb, StandardCharsets.UTF_8);
+        pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        pool.shutdown();
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public long wordFile() throws IOException {
+        return WordFile.recognize(file, List.of(grammar), OutputStream.nullOutputStream(), pool).getHits(0);
+    }
+
+    @Benchmark
+    public long lines() throws IOException {
+        long hits = 0;
+        for (String word : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            if (grammar.recognize(word)) {
+                hits++;
+            }
+        }
+        return hits;
+    }
+}
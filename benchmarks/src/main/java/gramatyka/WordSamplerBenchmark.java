@@ -0,0 +1,62 @@
+package gramatyka;
+
+import java.util.Iterator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * * A random word of a given length of a random grammar in Chomsky normal
+ * form drawn by a WordSampler, which should grow about linearly with the
+ * length, and the first thousand words of the language in length order. **
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WordSamplerBenchmark {
+
+    @Param({"16", "64", "256"})
+    public int length;
+
+    @Param({"42"})
+    public long seed;
+
+    private NormalChomskyGrammar grammar;
+    private WordSampler sampler;
+    private Random random;
+
+    @Setup
+    public void setUp() throws ConstructorException {
+        grammar = RandomGrammars.chomsky(8, 4, 2, 3, seed);
+        sampler = grammar.sampler(length);
+        random = new Random(seed);
+    }
+
+    @Benchmark
+    public int[] sample() {
+        return sampler.sample(length, random);
+    }
+
+    @Benchmark
+    public int[] firstWords() throws ConstructorException {
+        Iterator<int[]> words = grammar.words().iterator();
+        int[] word = null;
+        for (int i = 0; i < 1000; i++) {
+            word = words.next();
+        }
+        return word;
+    }
+}
@@ -0,0 +1,45 @@
+package gramatyka;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class ChomskyConverterTest {
+
+    /* N_i -> N_i+1 | a N_i for i < n - 1, N_n-1 -> N_0 | b: a cycle of
+     * unit productions through every nonterminal. */
+    private static ContextFreeGrammar unitCycle(int n) throws ConstructorException {
+        String[] nonterminals = new String[n];
+        int[][][] rules = new int[n][][];
+        for (int i = 0; i < n; i++) {
+            nonterminals[i] = "N" + i;
+            rules[i] = new int[][]{{(i + 1) % n}, i == n - 1 ? new int[]{n + 1} : new int[]{n, i}};
+        }
+        return new ContextFreeGrammar(new SymbolTable(new String[]{"a", "b"}, nonterminals), rules);
+    }
+
+    @Test
+    void collapsesCycleOfUnitProductions() throws ConstructorException {
+        NormalChomskyGrammar chomsky = unitCycle(2000).toChomsky();
+        /* N0 -> T_a N0 | b, T_a -> a. */
+        assertEquals(3, chomsky.getCompiled().getProductionsCount());
+        assertTrue(chomsky.recognize("aaab"));
+        assertFalse(chomsky.recognize("aaa"));
+    }
+
+    @Test
+    void keepsLanguageOfNestedUnitCycles() throws ConstructorException {
+        /* S -> A | c, A -> B | aS, B -> A | S | bB. */
+        ContextFreeGrammar grammar = new ContextFreeGrammar("abc", "SAB",
+                new String[][]{{"A", "c"}, {"B", "aS"}, {"A", "S", "bB"}});
+        NormalChomskyGrammar chomsky = grammar.toChomsky();
+        for (String word : new String[]{"c", "ac", "bc", "abac", "bbbc", "aaaabc"}) {
+            assertTrue(chomsky.recognize(word), word);
+        }
+        for (String word : new String[]{"a", "b", "ca", "cc", "abab"}) {
+            assertFalse(chomsky.recognize(word), word);
+        }
+    }
+}
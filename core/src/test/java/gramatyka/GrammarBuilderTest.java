@@ -0,0 +1,139 @@
+package gramatyka;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class GrammarBuilderTest {
+
+    private static final SymbolTable SYMBOLS;
+
+    static {
+        try {
+            SYMBOLS = new SymbolTable(new String[]{"a", "b"}, new String[]{"S", "A", "B"});
+        } catch (ConstructorException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private static int[][][] rulesOf(List<List<int[]>> rules) {
+        int[][][] result = new int[rules.size()][][];
+        for (int lhs = 0; lhs < result.length; lhs++) {
+            result[lhs] = rules.get(lhs).toArray(new int[0][]);
+        }
+        return result;
+    }
+
+    private static List<List<int[]>> emptyRules() {
+        List<List<int[]>> rules = new ArrayList<>();
+        for (int lhs = 0; lhs < SYMBOLS.getNonterminalsCount(); lhs++) {
+            rules.add(new ArrayList<>());
+        }
+        return rules;
+    }
+
+    private static int[] randomProduct(Random random) {
+        int[] product = new int[random.nextInt(4)];
+        for (int i = 0; i < product.length; i++) {
+            product[i] = random.nextInt(SYMBOLS.getSymbolsCount());
+        }
+        return product;
+    }
+
+    /* The builder against the analysis of rules compiled from scratch. */
+    private static void assertSameAnalysis(int[][][] rules, GrammarBuilder builder) throws ConstructorException {
+        CompiledGrammar compiled = CompiledGrammar.compile(SYMBOLS, rules);
+        GrammarAnalysis analysis = compiled.getAnalysis();
+        assertEquals(compiled.getProductionsCount(), builder.getProductionsCount());
+        boolean contextFree = true;
+        for (int nonterminal = 0; nonterminal < SYMBOLS.getNonterminalsCount(); nonterminal++) {
+            assertEquals(analysis.isNullable(nonterminal), builder.isNullable(nonterminal));
+            assertEquals(analysis.isProductive(nonterminal), builder.isProductive(nonterminal));
+            assertEquals(analysis.isReachable(nonterminal), builder.isReachable(nonterminal));
+            contextFree &= rules[nonterminal].length > 0 && analysis.isProductive(nonterminal);
+        }
+        assertEquals(analysis.isRegularForm(), builder.ifRegular());
+        assertEquals(analysis.isChomskyForm(), builder.ifChomsky());
+        assertEquals(analysis.isGreibachForm(), builder.ifGreibach());
+        assertEquals(contextFree, builder.isContextFree());
+        if (!contextFree) {
+            assertThrows(ConstructorException.class, builder::snapshot);
+        }
+    }
+
+    private static void assertSameGrammar(ContextFreeGrammar expected, ContextFreeGrammar actual) {
+        assertArrayEquals(expected.getRules(), actual.getRules());
+        GrammarAnalysis expectedAnalysis = expected.getAnalysis();
+        GrammarAnalysis actualAnalysis = actual.getAnalysis();
+        for (int nonterminal = 0; nonterminal < SYMBOLS.getNonterminalsCount(); nonterminal++) {
+            assertEquals(expectedAnalysis.isNullable(nonterminal), actualAnalysis.isNullable(nonterminal));
+            assertEquals(expectedAnalysis.isReachable(nonterminal), actualAnalysis.isReachable(nonterminal));
+        }
+        assertEquals(expected.getFingerprint(), actual.getFingerprint());
+        assertEquals(expected.toString(), actual.toString());
+    }
+
+    @Test
+    void randomChangesMatchFreshConstruction() throws ConstructorException {
+        Random random = new Random(17);
+        for (int round = 0; round < 50; round++) {
+            GrammarBuilder builder = new GrammarBuilder(SYMBOLS);
+            List<List<int[]>> rules = emptyRules();
+            List<ContextFreeGrammar> snapshots = new ArrayList<>();
+            List<int[][][]> snapshotRules = new ArrayList<>();
+            for (int change = 0; change < 60; change++) {
+                int lhs = random.nextInt(SYMBOLS.getNonterminalsCount());
+                if (random.nextInt(3) > 0 || rules.get(lhs).isEmpty()) {
+                    int[] product = randomProduct(random);
+                    builder.add(lhs, product);
+                    rules.get(lhs).add(product);
+                } else {
+                    int[] product = rules.get(lhs).get(random.nextInt(rules.get(lhs).size()));
+                    assertTrue(builder.remove(lhs, product));
+                    for (int i = 0; i < rules.get(lhs).size(); i++) {
+                        if (Arrays.equals(rules.get(lhs).get(i), product)) {
+                            rules.get(lhs).remove(i);
+                            break;
+                        }
+                    }
+                }
+                int[][][] expected = rulesOf(rules);
+                assertSameAnalysis(expected, builder);
+                if (builder.isContextFree() && random.nextBoolean()) {
+                    ContextFreeGrammar snapshot = builder.snapshot();
+                    assertSame(snapshot, builder.snapshot());
+                    assertSameGrammar(new ContextFreeGrammar(SYMBOLS, expected), snapshot);
+                    snapshots.add(snapshot);
+                    snapshotRules.add(expected);
+                }
+            }
+            /* Later changes are made in copies of the arrays of snapshots. */
+            for (int i = 0; i < snapshots.size(); i++) {
+                assertSameGrammar(new ContextFreeGrammar(SYMBOLS, snapshotRules.get(i)), snapshots.get(i));
+            }
+        }
+    }
+
+    @Test
+    void builderOfGrammarChangesOnlyItsCopy() throws ConstructorException {
+        ContextFreeGrammar grammar = new ContextFreeGrammar("ab", "SAB", new String[][]{{"AB", ""}, {"a"}, {"b"}});
+        String description = grammar.toString();
+        GrammarBuilder builder = grammar.toBuilder();
+        assertSame(grammar, builder.snapshot());
+        builder.add('A', "aS");
+        assertTrue(builder.remove('S', ""));
+        assertFalse(builder.remove('S', ""));
+        assertEquals(description, grammar.toString());
+        assertSameGrammar(new ContextFreeGrammar("ab", "SAB", new String[][]{{"AB"}, {"a", "aS"}, {"b"}}),
+                builder.snapshot());
+    }
+}
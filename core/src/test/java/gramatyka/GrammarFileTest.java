@@ -0,0 +1,30 @@
+package gramatyka;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class GrammarFileTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void readsGrammarWithUnreachableNonterminals() throws ConstructorException, IOException {
+        ContextFreeGrammar grammar = new ContextFreeGrammar("ab", "SAB",
+                new String[][]{{"aSb", ""}, {"a"}, {"b"}});
+        Path file = directory.resolve("g.bin");
+        GrammarFile.write(grammar, file);
+
+        ContextFreeGrammar read = GrammarFile.read(file);
+        assertEquals(grammar.toString(), read.toString());
+        assertEquals(grammar.getFingerprint(), read.getFingerprint());
+        assertTrue(read.recognize("aabb"));
+        assertFalse(read.recognize("aba"));
+    }
+}
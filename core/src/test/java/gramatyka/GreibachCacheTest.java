@@ -0,0 +1,102 @@
+package gramatyka;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class GreibachCacheTest {
+
+    @TempDir
+    Path directory;
+
+    private static NormalChomskyGrammar grammar(String nonterminals, String[][] rules) throws ConstructorException {
+        return new NormalChomskyGrammar(new ContextFreeGrammar("ab", nonterminals, rules));
+    }
+
+    private static NormalChomskyGrammar renamed(String first, String second) throws ConstructorException {
+        return grammar(first + second, new String[][]{{second + first, "a"}, {first + second, "b"}});
+    }
+
+    @Test
+    void toGreibachDoesNotDependOnEarlierConversions() throws ConstructorException {
+        String alone = renamed("X", "Y").toGreibach().toString();
+        renamed("S", "A").toGreibach();
+        assertEquals(alone, renamed("X", "Y").toGreibach().toString());
+    }
+
+    @Test
+    void hitEqualsConversionOfRenamedGrammar() throws ConstructorException {
+        for (NormalChomskyGrammar.GreibachConversion conversion : NormalChomskyGrammar.GreibachConversion.values()) {
+            GreibachCache cache = new GreibachCache();
+            renamed("S", "A").toGreibach(conversion, cache);
+            NormalChomskyGrammar grammar = renamed("X", "Y");
+            assertEquals(grammar.toGreibach(conversion).toString(), grammar.toGreibach(conversion, cache).toString());
+            assertEquals(1, cache.getHits());
+        }
+    }
+
+    @Test
+    void hitEqualsConversionWithLongNames() throws ConstructorException {
+        SymbolTable first = new SymbolTable(new String[]{"a", "b"}, new String[]{"expr", "term"});
+        SymbolTable second = new SymbolTable(new String[]{"a", "b"}, new String[]{"term", "expr"});
+        int[][][] rules = {{{1, 0}, {2}}, {{0, 1}, {3}}};
+        for (NormalChomskyGrammar.GreibachConversion conversion : NormalChomskyGrammar.GreibachConversion.values()) {
+            GreibachCache cache = new GreibachCache();
+            new NormalChomskyGrammar(new ContextFreeGrammar(first, rules)).toGreibach(conversion, cache);
+            NormalChomskyGrammar grammar = new NormalChomskyGrammar(new ContextFreeGrammar(second, rules));
+            assertEquals(grammar.toGreibach(conversion).toString(), grammar.toGreibach(conversion, cache).toString());
+            assertEquals(1, cache.getHits());
+        }
+    }
+
+    @Test
+    void reorderedGrammarGetsResultWithSameWords() throws ConstructorException {
+        NormalChomskyGrammar first = grammar("SAB", new String[][]{{"AB", "BA"}, {"a", "AS"}, {"b", "SB"}});
+        NormalChomskyGrammar second = grammar("TCD", new String[][]{{"DC", "CD"}, {"TC", "b"}, {"DT", "a"}});
+        for (NormalChomskyGrammar.GreibachConversion conversion : NormalChomskyGrammar.GreibachConversion.values()) {
+            GreibachCache cache = new GreibachCache();
+            first.toGreibach(conversion, cache);
+            NormalGreibachGrammar result = second.toGreibach(conversion, cache);
+            assertEquals(1, cache.getHits());
+            Recognizer expected = second.getRecognizer();
+            Recognizer actual = result.getRecognizer();
+            int words = 0;
+            for (int length = 0; length <= 8; length++) {
+                for (int mask = 0; mask < 1 << length; mask++) {
+                    StringBuilder word = new StringBuilder();
+                    for (int i = 0; i < length; i++) {
+                        word.append((mask >> i & 1) == 0 ? 'a' : 'b');
+                    }
+                    boolean recognized = expected.recognize(word.toString());
+                    assertEquals(recognized, actual.recognize(word.toString()), word.toString());
+                    words += recognized ? 1 : 0;
+                }
+            }
+            assertTrue(words > 0);
+        }
+    }
+
+    @Test
+    void readsResultFromFile() throws ConstructorException {
+        NormalChomskyGrammar grammar = renamed("X", "Y");
+        new GreibachCache(1, directory).toGreibach(grammar, NormalChomskyGrammar.GreibachConversion.SUBSTITUTION);
+        GreibachCache cache = new GreibachCache(1, directory);
+        NormalChomskyGrammar other = renamed("S", "A");
+        assertEquals(other.toGreibach().toString(),
+                other.toGreibach(NormalChomskyGrammar.GreibachConversion.SUBSTITUTION, cache).toString());
+        assertEquals(0, cache.getHits());
+        assertEquals(1, cache.getCachedCount());
+    }
+
+    @Test
+    void convertedGrammarGetsSameResult() throws ConstructorException {
+        NormalChomskyGrammar grammar = renamed("X", "Y");
+        GreibachCache cache = new GreibachCache();
+        NormalGreibachGrammar result = grammar.toGreibach(NormalChomskyGrammar.GreibachConversion.SUBSTITUTION, cache);
+        assertSame(result, grammar.toGreibach(NormalChomskyGrammar.GreibachConversion.SUBSTITUTION, cache));
+    }
+}
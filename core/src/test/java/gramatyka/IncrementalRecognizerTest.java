@@ -0,0 +1,157 @@
+package gramatyka;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class IncrementalRecognizerTest {
+
+    /* Balanced brackets, a^n b^n, right and left recursion, and an
+     * ambiguous grammar with nullable nonterminals. */
+    private static ContextFreeGrammar[] grammars() throws ConstructorException {
+        return new ContextFreeGrammar[]{
+            new ContextFreeGrammar("ab", "S", new String[][]{{"aSbS", ""}}),
+            new ContextFreeGrammar("ab", "S", new String[][]{{"aSb", "ab"}}),
+            new ContextFreeGrammar("ab", "SA", new String[][]{{"aS", "bA"}, {"bA", "a"}}),
+            new ContextFreeGrammar("ab", "S", new String[][]{{"Sa", "Sb", "b"}}),
+            new ContextFreeGrammar("ab", "SAB", new String[][]{{"SS", "AB", "a"}, {"a", "B", ""}, {"b", "AS"}})
+        };
+    }
+
+    private static int[] idsOf(ContextFreeGrammar grammar, CharSequence word) {
+        int[] ids = new int[word.length()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = grammar.getCompiled().symbolOf(word.charAt(i));
+        }
+        return ids;
+    }
+
+    private static String randomWord(Random random, int length) {
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            word.append(random.nextBoolean() ? 'a' : 'b');
+        }
+        return word.toString();
+    }
+
+    /* Applies the edit to both and checks the recognizer against a fresh
+     * Earley recognizer of the edited word. */
+    private static void edit(ContextFreeGrammar grammar, IncrementalRecognizer recognizer, StringBuilder word,
+            int offset, int deletedLength, String inserted) {
+        word.replace(offset, offset + deletedLength, inserted);
+        boolean expected = new EarleyRecognizer(grammar).recognize(word.toString());
+        String message = grammar.getRules()[0][0] + ": " + word;
+        assertEquals(expected, recognizer.edit(offset, deletedLength, inserted), message);
+        assertEquals(expected, recognizer.isMember(), message);
+        assertEquals(word.length(), recognizer.getLength());
+        assertArrayEquals(idsOf(grammar, word), recognizer.getWord(), message);
+    }
+
+    @Test
+    void randomEditsMatchEarleyRecognizer() throws ConstructorException {
+        Random random = new Random(21);
+        for (ContextFreeGrammar grammar : grammars()) {
+            for (int round = 0; round < 20; round++) {
+                StringBuilder word = new StringBuilder(randomWord(random, random.nextInt(8)));
+                IncrementalRecognizer recognizer = grammar.incrementalRecognizer(word.toString());
+                assertEquals(new EarleyRecognizer(grammar).recognize(word.toString()), recognizer.isMember());
+                for (int change = 0; change < 100; change++) {
+                    int offset = random.nextInt(word.length() + 1);
+                    int deletedLength = random.nextInt(Math.min(3, word.length() - offset) + 1);
+                    /* Words stay short, so most of them can be recognized. */
+                    int insertedLength = word.length() > 12 ? 0 : random.nextInt(4);
+                    edit(grammar, recognizer, word, offset, deletedLength, randomWord(random, insertedLength));
+                }
+            }
+        }
+    }
+
+    @Test
+    void editsAtBothEndsAndAcrossGap() throws ConstructorException {
+        for (ContextFreeGrammar grammar : grammars()) {
+            StringBuilder word = new StringBuilder("aabbab");
+            IncrementalRecognizer recognizer = grammar.incrementalRecognizer(word.toString());
+            edit(grammar, recognizer, word, word.length(), 0, "ab");
+            edit(grammar, recognizer, word, 0, 0, "ab");
+            edit(grammar, recognizer, word, 0, 2, "");
+            edit(grammar, recognizer, word, word.length() - 2, 2, "b");
+            /* The gap is at the end now; these cross it from the front. */
+            edit(grammar, recognizer, word, 2, word.length() - 3, "ba");
+            edit(grammar, recognizer, word, 3, 0, "aab");
+            edit(grammar, recognizer, word, 1, 4, "");
+            edit(grammar, recognizer, word, 0, word.length(), "ab");
+            edit(grammar, recognizer, word, 0, word.length(), "");
+            edit(grammar, recognizer, word, 0, 0, "b");
+        }
+    }
+
+    @Test
+    void wordRecognizedAgainAfterEditsOfRejectedWord() throws ConstructorException {
+        ContextFreeGrammar grammar = grammars()[0];
+        StringBuilder word = new StringBuilder("aabbaabb");
+        IncrementalRecognizer recognizer = grammar.incrementalRecognizer(word.toString());
+        assertTrue(recognizer.isMember());
+        /* No set after the leading b has items, so later edits keep the
+         * old sets there. */
+        edit(grammar, recognizer, word, 0, 0, "b");
+        assertFalse(recognizer.isMember());
+        edit(grammar, recognizer, word, 5, 1, "");
+        edit(grammar, recognizer, word, 5, 0, "a");
+        edit(grammar, recognizer, word, word.length(), 0, "ab");
+        edit(grammar, recognizer, word, 0, 1, "");
+        assertTrue(recognizer.isMember());
+        edit(grammar, recognizer, word, 3, 1, "");
+        assertFalse(recognizer.isMember());
+        edit(grammar, recognizer, word, 3, 0, "b");
+        assertTrue(recognizer.isMember());
+        edit(grammar, recognizer, word, word.length() - 1, 1, "a");
+        edit(grammar, recognizer, word, word.length() - 1, 1, "b");
+        assertTrue(recognizer.isMember());
+    }
+
+    private static StringBuilder pairs(int count) {
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            word.append("ab");
+        }
+        return word;
+    }
+
+    @Test
+    void matchingSetsStopRecomputation() throws ConstructorException {
+        /* Items of a set have origins at the start or in the last pair. */
+        ContextFreeGrammar grammar = new ContextFreeGrammar("ab", "SA", new String[][]{{"SA", "A"}, {"ab"}});
+        StringBuilder word = pairs(50);
+        IncrementalRecognizer recognizer = grammar.incrementalRecognizer(word.toString());
+        edit(grammar, recognizer, word, 40, 2, "ab");
+        assertTrue(recognizer.getRecomputedCount() < 5);
+        edit(grammar, recognizer, word, 40, 0, "ab");
+        assertTrue(recognizer.getRecomputedCount() < 5);
+        edit(grammar, recognizer, word, 60, 4, "");
+        assertTrue(recognizer.getRecomputedCount() < 5);
+        edit(grammar, recognizer, word, 0, 2, "");
+        assertTrue(recognizer.getRecomputedCount() < 5);
+        edit(grammar, recognizer, word, 10, 1, "");
+        assertFalse(recognizer.isMember());
+        edit(grammar, recognizer, word, 10, 0, "a");
+        assertTrue(recognizer.isMember());
+        assertTrue(recognizer.getRecomputedCount() < 10);
+    }
+
+    @Test
+    void replacementStopsRecomputationInRightRecursion() throws ConstructorException {
+        /* Every set has an item from the pair before it, so only edits
+         * keeping the pairs find later sets equal. */
+        ContextFreeGrammar grammar = grammars()[0];
+        StringBuilder word = pairs(50);
+        IncrementalRecognizer recognizer = grammar.incrementalRecognizer(word.toString());
+        edit(grammar, recognizer, word, 40, 2, "ab");
+        assertTrue(recognizer.getRecomputedCount() < 5);
+        edit(grammar, recognizer, word, 0, 2, "ab");
+        assertTrue(recognizer.getRecomputedCount() < 5);
+    }
+}
@@ -0,0 +1,51 @@
+package gramatyka;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class MainTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void leavesStandardOutputOpen() throws ConstructorException, IOException {
+        Path grammar = directory.resolve("g.txt");
+        Files.writeString(grammar, new ContextFreeGrammar("ab", "S", new String[][]{{"aSb", ""}}).toString());
+        Path words = directory.resolve("words.txt");
+        Files.writeString(words, "ab\nba\naabb\n");
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        boolean[] closed = new boolean[1];
+        PrintStream out = new PrintStream(new FilterOutputStream(bytes) {
+            @Override
+            public void close() throws IOException {
+                closed[0] = true;
+                super.close();
+            }
+        }, true, StandardCharsets.UTF_8);
+        PrintStream systemOut = System.out;
+        PrintStream systemErr = System.err;
+        System.setOut(out);
+        System.setErr(new PrintStream(new ByteArrayOutputStream(), true, StandardCharsets.UTF_8));
+        try {
+            Main.main(new String[]{"-w", words.toString(), grammar.toString()});
+            System.out.println("after");
+        } finally {
+            System.setOut(systemOut);
+            System.setErr(systemErr);
+        }
+        assertFalse(closed[0]);
+        assertEquals("1\n0\n1\nafter" + System.lineSeparator(), bytes.toString(StandardCharsets.UTF_8));
+    }
+}
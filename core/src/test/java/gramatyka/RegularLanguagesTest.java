@@ -0,0 +1,157 @@
+package gramatyka;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class RegularLanguagesTest {
+
+    /* Words up to this length are checked by brute force. */
+    private static final int MAX_LENGTH = 8;
+
+    /**
+     * * Right- or left-linear grammar over the terminals, with one to three
+     * productions of every nonterminal; grammars with useless nonterminals
+     * are drawn again. **
+     */
+    private static ContextFreeGrammar randomRegular(Random random, String terminals, boolean leftLinear) {
+        String nonterminals = "SAB".substring(0, 1 + random.nextInt(3));
+        while (true) {
+            String[][] rules = new String[nonterminals.length()][];
+            for (int lhs = 0; lhs < rules.length; lhs++) {
+                rules[lhs] = new String[1 + random.nextInt(3)];
+                for (int i = 0; i < rules[lhs].length; i++) {
+                    String terminal = String.valueOf(terminals.charAt(random.nextInt(terminals.length())));
+                    String nonterminal = String.valueOf(nonterminals.charAt(random.nextInt(nonterminals.length())));
+                    int kind = random.nextInt(5);
+                    rules[lhs][i] = kind == 0 ? "" : kind == 1 ? terminal
+                            : leftLinear ? nonterminal + terminal : terminal + nonterminal;
+                }
+            }
+            try {
+                return new ContextFreeGrammar(terminals, nonterminals, rules);
+            } catch (ConstructorException e) {
+                /* Drawn again. */
+            }
+        }
+    }
+
+    private static boolean contains(ContextFreeGrammar grammar, String word) {
+        for (int i = 0; i < word.length(); i++) {
+            if (grammar.getTerminals().indexOf(word.charAt(i)) < 0) {
+                return false;
+            }
+        }
+        return grammar.getRecognizer().recognize(word);
+    }
+
+    private static List<String> words(String alphabet) {
+        List<String> words = new ArrayList<>();
+        words.add("");
+        for (int from = 0; words.get(from).length() < MAX_LENGTH; from++) {
+            for (int i = 0; i < alphabet.length(); i++) {
+                words.add(words.get(from) + alphabet.charAt(i));
+            }
+        }
+        return words;
+    }
+
+    private static String joined(String[] word) {
+        return word == null ? null : String.join("", word);
+    }
+
+    /* Every answer against membership of its word, and every null answer
+     * against all words up to MAX_LENGTH. */
+    private static void assertAnswers(ContextFreeGrammar a, ContextFreeGrammar b, String alphabet)
+            throws ConstructorException {
+        String distinguishing = joined(a.distinguishingWord(b));
+        String counterexample = joined(a.inclusionCounterexample(b));
+        String common = joined(a.commonWord(b));
+        String message = a.descriptionToString() + " / " + b.descriptionToString();
+        if (distinguishing != null) {
+            assertTrue(contains(a, distinguishing) != contains(b, distinguishing), message);
+        }
+        if (counterexample != null) {
+            assertTrue(contains(a, counterexample) && !contains(b, counterexample), message);
+        }
+        if (common != null) {
+            assertTrue(contains(a, common) && contains(b, common), message);
+        }
+        for (String word : words(alphabet)) {
+            boolean inA = contains(a, word);
+            boolean inB = contains(b, word);
+            if (distinguishing == null) {
+                assertEquals(inA, inB, message + ": " + word);
+            }
+            if (counterexample == null) {
+                assertFalse(inA && !inB, message + ": " + word);
+            }
+            if (common == null) {
+                assertFalse(inA && inB, message + ": " + word);
+            }
+        }
+        assertEquals(distinguishing == null, a.isEquivalent(b));
+        assertEquals(a.isEquivalent(b), a.isIncludedIn(b) && b.isIncludedIn(a), message);
+        assertEquals(common != null, b.intersects(a), message);
+    }
+
+    @Test
+    void randomRegularGrammarsMatchBruteForce() throws ConstructorException {
+        Random random = new Random(23);
+        for (int round = 0; round < 300; round++) {
+            boolean leftLinear = round % 3 == 0;
+            ContextFreeGrammar a = randomRegular(random, "ab", leftLinear);
+            ContextFreeGrammar b = round % 5 == 0 ? a : randomRegular(random, "ab", random.nextBoolean());
+            assertAnswers(a, b, "ab");
+        }
+    }
+
+    @Test
+    void grammarsWithDifferentTerminalsMatchBruteForce() throws ConstructorException {
+        Random random = new Random(24);
+        for (int round = 0; round < 100; round++) {
+            assertAnswers(randomRegular(random, "ab", false), randomRegular(random, "bc", round % 2 == 0), "abc");
+        }
+    }
+
+    @Test
+    void equivalentGrammarsHaveNoDistinguishingWord() throws ConstructorException {
+        /* Words with an even number of a, right- and left-linear. */
+        ContextFreeGrammar right = new ContextFreeGrammar("ab", "SA", new String[][]{{"aA", "bS", ""}, {"aS", "bA"}});
+        ContextFreeGrammar left = new ContextFreeGrammar("ab", "SA", new String[][]{{"Aa", "Sb", ""}, {"Sa", "Ab"}});
+        assertNull(right.distinguishingWord(left));
+        assertTrue(left.isIncludedIn(right));
+        assertAnswers(right, left, "ab");
+    }
+
+    @Test
+    void commonWordWithContextFreeGrammarMatchesBruteForce() throws ConstructorException {
+        ContextFreeGrammar[] contextFree = {
+            new ContextFreeGrammar("ab", "S", new String[][]{{"aSb", "ab"}}),
+            new ContextFreeGrammar("ab", "S", new String[][]{{"aSbS", ""}}),
+            new ContextFreeGrammar("ab", "SA", new String[][]{{"aAa", "bAb"}, {"aA", "bA", ""}})
+        };
+        Random random = new Random(25);
+        for (int round = 0; round < 100; round++) {
+            ContextFreeGrammar regular = randomRegular(random, "ab", random.nextBoolean());
+            ContextFreeGrammar grammar = contextFree[round % contextFree.length];
+            String common = joined(regular.commonWord(grammar));
+            assertEquals(common == null, grammar.commonWord(regular) == null);
+            if (common != null) {
+                assertTrue(contains(regular, common) && contains(grammar, common));
+            } else {
+                for (String word : words("ab")) {
+                    assertFalse(contains(regular, word) && contains(grammar, word), word);
+                }
+            }
+        }
+        assertNotNull(contextFree[0].commonWord(new ContextFreeGrammar("ab", "SA", new String[][]{{"aA"}, {"b"}})));
+    }
+}
@@ -0,0 +1,54 @@
+package gramatyka;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.jupiter.api.Test;
+
+class ValiantRecognizerTest {
+
+    /* Words with as many a as b. */
+    private static NormalChomskyGrammar balanced() throws ConstructorException {
+        return new NormalChomskyGrammar(new ContextFreeGrammar("ab", "SABXY",
+                new String[][]{{"AB", "BA", "SS", "AY", "BX"}, {"a"}, {"b"}, {"SA"}, {"SB"}}));
+    }
+
+    private static void assertAgreesWithCyk(NormalChomskyGrammar grammar, int tableRows, long seed) {
+        Recognizer cyk = new CykRecognizer(grammar, ForkJoinPool.commonPool());
+        Recognizer valiant = new ValiantRecognizer(grammar, ForkJoinPool.commonPool(), tableRows);
+        Random random = new Random(seed);
+        for (int length : new int[]{1, 2, 7, 63, 64, 65, 130, 257}) {
+            for (int trial = 0; trial < 4; trial++) {
+                StringBuilder word = new StringBuilder();
+                int balance = 0;
+                for (int i = 0; i < length; i++) {
+                    /* Mostly balanced, so both answers come up. */
+                    boolean a = i == length - 1 && length % 2 == 0 ? balance < 0 : random.nextBoolean();
+                    word.append(a ? 'a' : 'b');
+                    balance += a ? 1 : -1;
+                }
+                assertEquals(cyk.recognize(word.toString()), valiant.recognize(word.toString()), word.toString());
+            }
+        }
+    }
+
+    @Test
+    void agreesWithCykWithoutTables() throws ConstructorException {
+        assertAgreesWithCyk(balanced(), Integer.MAX_VALUE, 1);
+    }
+
+    @Test
+    void agreesWithCykByTables() throws ConstructorException {
+        assertAgreesWithCyk(balanced(), 1, 2);
+        assertAgreesWithCyk(balanced(), 2, 3);
+    }
+
+    @Test
+    void recognizesLongBalancedWord() throws ConstructorException {
+        String word = "ab".repeat(300) + "b".repeat(200) + "a".repeat(200);
+        assertTrue(new ValiantRecognizer(balanced(), ForkJoinPool.commonPool(), 1).recognize(word));
+        assertTrue(balanced().getRecognizer(NormalChomskyGrammar.RecognizerAlgorithm.VALIANT).recognize(word));
+    }
+}
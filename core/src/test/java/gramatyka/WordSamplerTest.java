@@ -0,0 +1,44 @@
+package gramatyka;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class WordSamplerTest {
+
+    /* ab has two derivation trees, ac one. */
+    private static ContextFreeGrammar ambiguous() throws ConstructorException {
+        return new ContextFreeGrammar("abc", "SABC", new String[][]{{"AB", "AC"}, {"a"}, {"b"}, {"b", "c"}});
+    }
+
+    private static double shareOfB(Iterable<int[]> words, int count, ContextFreeGrammar grammar) {
+        int b = grammar.getCompiled().symbolOf('b');
+        int found = 0;
+        int taken = 0;
+        for (int[] word : words) {
+            found += word[1] == b ? 1 : 0;
+            if (++taken == count) {
+                break;
+            }
+        }
+        return (double) found / count;
+    }
+
+    @Test
+    void samplesEveryWordEquallyLikely() throws ConstructorException {
+        ContextFreeGrammar grammar = ambiguous();
+        assertEquals(3, grammar.sampler(2).countTrees(2).intValue());
+        WordSampler sampler = grammar.sampler(2);
+        assertEquals(0.5, shareOfB(sampler.samples(2, 7)::iterator, 20000, grammar), 0.02);
+        assertEquals(2.0 / 3, shareOfB(sampler.treeSamples(2, 7)::iterator, 20000, grammar), 0.02);
+    }
+
+    @Test
+    void failsWhenTriesRunOut() throws ConstructorException {
+        WordSampler sampler = new ContextFreeGrammar("a", "S", new String[][]{{"SS", "a"}}).sampler(30);
+        assertThrows(IllegalStateException.class, () -> sampler.uniformSample(30, new Random(1)));
+        assertEquals(3, sampler.uniformSample(3, new Random(1), 1000).length);
+    }
+}